@@ -11,6 +11,7 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import com.cattsoft.coolsql.action.common.PublicAction;
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.sql.DBThread;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
 import com.cattsoft.coolsql.view.BookmarkView;
 import com.cattsoft.coolsql.view.View;
 import com.cattsoft.coolsql.view.bookmarkview.BookMarkPubInfo;
@@ -41,8 +42,8 @@ public class ConnectAction extends PublicAction {
 		    if(bm.isConnected()||bm.getConnectState()==BookMarkPubInfo.BOOKMARKSTATE_CONNECTING||
 		    		bm.getConnectState()==BookMarkPubInfo.BOOKMARKSTATE_DISCONNECTING)
 		    	return;
-		    DBThread dbthread=new DBThread(bm);
-		    dbthread.start();
+		    TaskExecutor.getInstance().execute(new DBThread(bm),"connect "+bm.getAliasName(),
+		    		TaskExecutor.PRIORITY_METADATA,bm);
 		}
 
 	}
@@ -0,0 +1,54 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.action.bookmarkmenu;
+
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.AbstractAction;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.importdata.CopyTablesDialog;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.view.bookmarkview.BookMarkPubInfo;
+import com.cattsoft.coolsql.view.bookmarkview.BookmarkTreeUtil;
+import com.cattsoft.coolsql.view.bookmarkview.model.Identifier;
+
+/**
+ * Copies the tables selected in the bookmark tree to another bookmark. Only the
+ * tables of the bookmark of the first selected table are copied.
+ * 
+ * @author agent
+ */
+public class CopyTablesAction extends AbstractAction {
+
+	private static final long serialVersionUID = 1L;
+	public CopyTablesAction() {
+	}
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
+	 */
+	public void actionPerformed(ActionEvent e) {
+		List<Identifier> ids = BookmarkTreeUtil.getInstance()
+				.getCurrentSelectedIdentifiers();
+		Bookmark source = null;
+		List<Entity> entities = new ArrayList<Entity>();
+		for (Identifier id : ids) {
+			if (id.getType() != BookMarkPubInfo.NODE_TABLE
+					&& id.getType() != BookMarkPubInfo.NODE_VIEW)
+				continue;
+			if (source == null)
+				source = id.getBookmark();
+			if (id.getBookmark() == source)
+				entities.add((Entity) id.getDataObject());
+		}
+		if (entities.size() == 0)
+			return;
+		new CopyTablesDialog(source, entities).setVisible(true);
+	}
+
+}
@@ -0,0 +1,50 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.action.bookmarkmenu;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import com.cattsoft.coolsql.exportdata.TablePartitionExportDialog;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.view.ViewManage;
+import com.cattsoft.coolsql.view.bookmarkview.BookMarkPubInfo;
+import com.cattsoft.coolsql.view.bookmarkview.model.Identifier;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Exports the table selected in the bookmark tree by partitions read in parallel.
+ * 
+ * @author agent
+ */
+public class ExportTablePartitionsAction extends AbstractAction {
+
+	private static final long serialVersionUID = 1L;
+	public ExportTablePartitionsAction() {
+	}
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
+	 */
+	public void actionPerformed(ActionEvent e) {
+		DefaultMutableTreeNode node = (DefaultMutableTreeNode) ViewManage
+				.getInstance().getBookmarkView().getConnectTree()
+				.getLastSelectedPathComponent();
+		Identifier userOb = (Identifier) (node.getUserObject());
+		if (userOb.getType() == BookMarkPubInfo.NODE_TABLE) {
+			try {
+				TablePartitionExportDialog dialog = new TablePartitionExportDialog(
+						(Entity) userOb.getDataObject());
+				dialog.setVisible(true);
+			} catch (UnifyException e1) {
+				LogProxy.errorReport(e1);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.action.bookmarkmenu;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import com.cattsoft.coolsql.importdata.ImportDataDialog;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.view.ViewManage;
+import com.cattsoft.coolsql.view.bookmarkview.BookMarkPubInfo;
+import com.cattsoft.coolsql.view.bookmarkview.model.Identifier;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Imports the rows of a CSV, TSV or Excel file into the table selected in the
+ * bookmark tree.
+ * 
+ * @author agent
+ */
+public class ImportEntityDataAction extends AbstractAction {
+
+	private static final long serialVersionUID = 1L;
+	public ImportEntityDataAction() {
+	}
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
+	 */
+	public void actionPerformed(ActionEvent e) {
+		DefaultMutableTreeNode node = (DefaultMutableTreeNode) ViewManage
+				.getInstance().getBookmarkView().getConnectTree()
+				.getLastSelectedPathComponent();
+		Identifier userOb = (Identifier) (node.getUserObject());
+		if (userOb.getType() == BookMarkPubInfo.NODE_TABLE
+				|| userOb.getType() == BookMarkPubInfo.NODE_VIEW) {
+			try {
+				ImportDataDialog dialog = new ImportDataDialog((Entity) userOb
+						.getDataObject());
+				dialog.setVisible(true);
+			} catch (Exception e1) {
+				LogProxy.errorReport("initing import dialog errors:" + e1.getMessage(), e1);
+			}
+		}
+	}
+
+}
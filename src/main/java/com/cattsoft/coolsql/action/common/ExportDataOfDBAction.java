@@ -6,6 +6,9 @@ package com.cattsoft.coolsql.action.common;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.sql.SQLException;
+import java.util.List;
+
+import javax.swing.JOptionPane;
 
 import com.cattsoft.coolsql.action.common.ExportExcelOfTableAction.CloseWaitDialog;
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
@@ -13,16 +16,19 @@ import com.cattsoft.coolsql.bookmarkBean.BookmarkManage;
 import com.cattsoft.coolsql.exportdata.Actionable;
 import com.cattsoft.coolsql.exportdata.ExportDBData;
 import com.cattsoft.coolsql.exportdata.ExportData;
+import com.cattsoft.coolsql.exportdata.ExportDataFromSql;
 import com.cattsoft.coolsql.exportdata.ExportFactory;
 import com.cattsoft.coolsql.exportdata.ExportThread;
-import com.cattsoft.coolsql.exportdata.excel.ExcelUtil;
 import com.cattsoft.coolsql.pub.component.WaitDialog;
 import com.cattsoft.coolsql.pub.component.WaitDialogManage;
 import com.cattsoft.coolsql.pub.display.GUIUtil;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
+import com.cattsoft.coolsql.pub.util.SqlUtil;
 import com.cattsoft.coolsql.pub.util.StringUtil;
 import com.cattsoft.coolsql.sql.ConnectionUtil;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
 import com.cattsoft.coolsql.view.SqlEditorView;
 import com.cattsoft.coolsql.view.ViewManage;
 import com.cattsoft.coolsql.view.log.LogProxy;
@@ -35,17 +41,11 @@ public class ExportDataOfDBAction extends PublicAction {
 	private static final long serialVersionUID = 1L;
 
 	/**
-     * ��ݵ�����
-     */
-    private ExportDBData export = null;
-
-    /**
      * ��������
      */
     private int processType = -1;
 
     public ExportDataOfDBAction(int processType) {
-        export = (ExportDBData) ExportFactory.createExportForSql(null, null);
         this.processType = processType;
     }
 
@@ -55,7 +55,12 @@ public class ExportDataOfDBAction extends PublicAction {
      * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
      */
     public void actionPerformed(ActionEvent e) {
-        if (!updateData())
+        //Each export has its own instance, so several exports can run at the same time
+        final ExportDBData export = (ExportDBData) ExportFactory.createExportForSql(null, null);
+        if (!updateData(export))
+            return;
+        if (processType == ExportData.EXPORT_SQL
+                && !selectTableName((ExportDataFromSql) export))
             return;
 
         try {
@@ -72,24 +77,23 @@ public class ExportDataOfDBAction extends PublicAction {
 
         //������ݵ����߳�
         final ExportThread thread = new ExportThread(export, processType);
+        final ManagedTask task = TaskExecutor.getInstance().createTask(thread,
+                "export", TaskExecutor.PRIORITY_BATCH,
+                export.getSource() instanceof Bookmark ? (Bookmark) export
+                        .getSource() : null);
         final WaitDialog waiter = WaitDialogManage.getInstance().register(
-                thread, GUIUtil.getMainFrame());
+                task.getThread(), GUIUtil.getMainFrame());
         waiter.addQuitAction(new Actionable() //��Ӷ�excel��ɵ�ȡ��
                 {
 
                     public void action() {
-                        if (processType == ExportData.EXPORT_EXCEL) {
-                            ExcelUtil util = ExcelUtil.getInstance();
-                            if (util.isRunning()) //�������ִ��,ȡ��excel�ĵ���
-                                util.setRun(false);
-                        } 
                         export.stopExport();
 
                         waiter.setPrompt(PublicResource
                                 .getString("waitdialog.prompt.quit"));
                         
                         try {
-                            ConnectionUtil.quitLongTimeStatement(thread);
+                            ConnectionUtil.quitLongTimeStatement(task.getThread());
                         } catch (SQLException e) {
                             LogProxy.errorReport(e);
                         }
@@ -99,7 +103,7 @@ public class ExportDataOfDBAction extends PublicAction {
         thread.addAction(new CloseWaitDialog(waiter));
 
         waiter.setPrompt(getWaitPrompt());
-        thread.start();       
+        task.start();
         waiter.setVisible(true);
 
     }
@@ -111,6 +115,8 @@ public class ExportDataOfDBAction extends PublicAction {
             return PublicResource.getString("waitdialog.prompt.excel");
         } else if (processType == ExportData.EXPORT_HTML) {
             return PublicResource.getString("waitdialog.prompt.html");
+        } else if (processType == ExportData.EXPORT_SQL) {
+            return PublicResource.getString("waitdialog.prompt.sql");
         } else
             return "";
     }
@@ -120,7 +126,7 @@ public class ExportDataOfDBAction extends PublicAction {
      * 
      * @return
      */
-    private boolean updateData() {
+    private boolean updateData(ExportDBData export) {
         SqlEditorView view = ViewManage.getInstance().getSqlEditor();
         Bookmark bookmark = BookmarkManage.getInstance().getDefaultBookmark();
         if (bookmark == null) {
@@ -185,4 +191,27 @@ public class ExportDataOfDBAction extends PublicAction {
         } else
             return false;
     }
+
+    /**
+     * Ask the table the rows are inserted into, the first table of the query is
+     * proposed.
+     * 
+     * @return false if the user cancelled.
+     */
+    private boolean selectTableName(ExportDataFromSql export) {
+        List<String> tables = SqlUtil.getTables(export.getSql());
+        Object value = JOptionPane.showInputDialog(GUIUtil.getMainFrame(), PublicResource
+                .getSQLString("export.sql.tablename"), PublicResource
+                .getString("table.popup.exportSql"), JOptionPane.QUESTION_MESSAGE, null, null,
+                tables.size() > 0 ? tables.get(0) : "");
+        if (value == null)
+            return false;
+        String tableName = StringUtil.trim(value.toString());
+        if (tableName.equals("")) {
+            LogProxy.infoMessage(PublicResource.getSQLString("export.sql.notable"));
+            return false;
+        }
+        export.setTableName(tableName);
+        return true;
+    }
 }
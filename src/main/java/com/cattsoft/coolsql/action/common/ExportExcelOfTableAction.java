@@ -12,12 +12,13 @@ import com.cattsoft.coolsql.exportdata.Actionable;
 import com.cattsoft.coolsql.exportdata.ExportData;
 import com.cattsoft.coolsql.exportdata.ExportFactory;
 import com.cattsoft.coolsql.exportdata.ExportThread;
-import com.cattsoft.coolsql.exportdata.excel.ExcelUtil;
 import com.cattsoft.coolsql.pub.component.CommonFrame;
 import com.cattsoft.coolsql.pub.component.WaitDialog;
 import com.cattsoft.coolsql.pub.component.WaitDialogManage;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
 import com.cattsoft.coolsql.view.log.LogProxy;
 
 /**
@@ -27,18 +28,17 @@ import com.cattsoft.coolsql.view.log.LogProxy;
 public class ExportExcelOfTableAction extends PublicAction {
 
     private JTable table=null;
-    private ExportData export=null;
     public ExportExcelOfTableAction(JTable table)
     {
        super(null);
        this.table=table;
-       export=ExportFactory.createExportForTable(table);
     }
     /* ���� Javadoc��
      * @see java.awt.event.ActionListener#actionPerformed(java.awt.event.ActionEvent)
      */
     public void actionPerformed(ActionEvent e) {
-
+        //Each export has its own instance, so several exports can run at the same time
+        final ExportData export=ExportFactory.createExportForTable(table);
         try {
             File tmpFile=export.selectFile(ExportData.getFileType(ExportData.EXPORT_EXCEL));
             if(tmpFile==null)
@@ -50,15 +50,14 @@ public class ExportExcelOfTableAction extends PublicAction {
         }
         //������ݵ����߳�
         ExportThread thread=new ExportThread(export,ExportData.EXPORT_EXCEL);
+        ManagedTask task=TaskExecutor.getInstance().createTask(thread,"export",TaskExecutor.PRIORITY_BATCH,null);
         final WaitDialog waiter = WaitDialogManage.getInstance().register(
-                thread, CommonFrame.getTopOwner(table));
+                task.getThread(), CommonFrame.getTopOwner(table));
         waiter.addQuitAction(new Actionable()   //��Ӷ�excel��ɵ�ȡ��
                 {
 
                     public void action() {
-                        ExcelUtil util=ExcelUtil.getInstance();
-                        if(util.isRunning()) //�������ִ��,ȡ��excel�ĵ���
-                            util.setRun(false);
+                        export.stopExport();
                         waiter.setPrompt(PublicResource.getString("waitdialog.prompt.quit"));
                     }
             
@@ -66,7 +65,7 @@ public class ExportExcelOfTableAction extends PublicAction {
         );
         thread.addAction(new CloseWaitDialog(waiter));
         waiter.setPrompt(PublicResource.getString("waitdialog.prompt.excel"));
-        thread.start();        
+        task.start();        
         waiter.setVisible(true);
     }
     /**
@@ -97,6 +96,5 @@ public class ExportExcelOfTableAction extends PublicAction {
      */
     public void setTable(JTable table) {
         this.table = table;
-        export.setSource(table);
     }
 }
@@ -18,6 +18,8 @@ import com.cattsoft.coolsql.pub.component.WaitDialog;
 import com.cattsoft.coolsql.pub.component.WaitDialogManage;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
 import com.cattsoft.coolsql.view.log.LogProxy;
 
 /**
@@ -55,8 +57,9 @@ public class ExportTextOfTableAction extends PublicAction {
         
         //������ݵ����߳�
         ExportThread thread=new ExportThread(export,ExportData.EXPORT_TEXT);
+        ManagedTask task=TaskExecutor.getInstance().createTask(thread,"export",TaskExecutor.PRIORITY_BATCH,null);
         final WaitDialog waiter = WaitDialogManage.getInstance().register(
-                thread, CommonFrame.getTopOwner(table));
+                task.getThread(), CommonFrame.getTopOwner(table));
         waiter.addQuitAction(new Actionable()   //��Ӷ�excel��ɵ�ȡ��
                 {
 
@@ -70,7 +73,7 @@ public class ExportTextOfTableAction extends PublicAction {
         thread.addAction(new CloseWaitDialog(waiter));
         
         waiter.setPrompt(PublicResource.getString("waitdialog.prompt.txt"));       
-        thread.start();
+        task.start();
         waiter.setVisible(true);
     }
 
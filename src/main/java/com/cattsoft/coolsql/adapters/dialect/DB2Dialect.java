@@ -507,5 +507,52 @@ public class DB2Dialect extends org.hibernate.dialect.DB2Dialect
     {
         return DialectUtils.getCreateTableSQL(tables, md, this, prefs, isJdbcOdbc);
     }
-    
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect can limit
+     * a query to one page of its result.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQuery() {
+        return true;
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not the paged query skips
+     * the rows before the page in the server.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQueryOffset() {
+        return true;
+    }
+
+    /**
+     * Returns the SQL that returns one page of the specified query:
+     * 
+     * select * from (select row_.*, ROW_NUMBER() OVER(ORDER BY ORDER OF row_) 
+     * AS coolsql_rownum_ from (query) AS row_) AS page_ 
+     * where coolsql_rownum_ > offset order by coolsql_rownum_ 
+     * FETCH FIRST limit ROWS ONLY
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     */
+    public String getPagedQuerySQL(String query, int offset, int limit) {
+        return DialectUtils.getRowNumberPagedSQL(query, offset, limit);
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect accepts 
+     * several rows in the VALUES clause of one INSERT statement.
+     * 
+     * @return true
+     */
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
 }
@@ -432,5 +432,53 @@ public class DaffodilDialect extends Dialect
     {
         return DialectUtils.getCreateTableSQL(tables, md, this, prefs, isJdbcOdbc);
     }
-    
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect can limit
+     * a query to one page of its result.
+     * 
+     * @return false
+     */
+    public boolean supportsPagedQuery() {
+        return false;
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not the paged query skips
+     * the rows before the page in the server.
+     * 
+     * @return false
+     */
+    public boolean supportsPagedQueryOffset() {
+        return false;
+    }
+
+    /**
+     * Returns the SQL that returns one page of the specified query.  
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     * @throw UnsupportedOperationException if the database doesn't support 
+     *         paged queries. 
+     */
+    public String getPagedQuerySQL(String query, int offset, int limit) 
+        throws UnsupportedOperationException
+    {
+        int featureId = DialectUtils.PAGED_QUERY_TYPE;
+        String msg = DialectUtils.getUnsupportedMessage(this, featureId);
+        throw new UnsupportedOperationException(msg);
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect accepts 
+     * several rows in the VALUES clause of one INSERT statement.
+     * 
+     * @return false
+     */
+    public boolean supportsMultiRowInsert() {
+        return false;
+    }
+
 }
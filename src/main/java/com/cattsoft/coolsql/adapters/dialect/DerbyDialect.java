@@ -418,5 +418,21 @@ public class DerbyDialect extends DB2Dialect
     public String getDropForeignKeySQL(String fkName, String tableName) {
         return DialectUtils.getDropForeignKeySQL(fkName, tableName);
     }
-    
+
+    /**
+     * Returns the SQL that returns one page of the specified query:
+     * 
+     * query OFFSET offset ROWS FETCH NEXT limit ROWS ONLY 
+     * 
+     * This syntax requires Derby 10.5 or later.
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     */
+    public String getPagedQuerySQL(String query, int offset, int limit) {
+        return DialectUtils.getOffsetFetchPagedSQL(query, offset, limit);
+    }
+
 }
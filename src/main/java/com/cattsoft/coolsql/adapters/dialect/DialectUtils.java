@@ -3,12 +3,15 @@ package com.cattsoft.coolsql.adapters.dialect;
 
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Vector;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 import org.hibernate.HibernateException;
@@ -16,6 +19,7 @@ import org.hibernate.HibernateException;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.StringManager;
 import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.pub.util.SqlUtil;
 import com.cattsoft.coolsql.sql.ISQLDatabaseMetaData;
 import com.cattsoft.coolsql.sql.model.Column;
 import com.cattsoft.coolsql.sql.model.ColumnImpl;
@@ -102,6 +106,13 @@ public class DialectUtils {
     public static final int COLUMN_TYPE_ALTER_TYPE = 5;
     public static final int ADD_PRIMARY_KEY_TYPE = 6;
     public static final int DROP_PRIMARY_KEY_TYPE = 7;
+    public static final int PAGED_QUERY_TYPE = 8;
+    
+    /**
+     * Alias of the row number column that some dialects have to add to a paged 
+     * query. The column is the last one of the result and should be hidden.
+     */
+    public static final String PAGED_QUERY_ROWNUM_COLUMN = "coolsql_rownum_";
     
     
     
@@ -652,12 +663,327 @@ public class DialectUtils {
                 msg = s_stringMgr.getString("DialectUtils.dropPrimaryKeyUnsupported",
                                             dialect.getDisplayName());
                 break;
+            case PAGED_QUERY_TYPE:
+                //i18n[DialectUtils.pagedQueryUnsupported={0} doesn''t 
+                //support paged queries]
+                msg = s_stringMgr.getString("DialectUtils.pagedQueryUnsupported",
+                                            dialect.getDisplayName());
+                break;
             default:
                 throw new IllegalArgumentException("Unknown featureId: "+featureId);
         }
         return msg;
     }
     
+    /**
+     * Returns the query followed by a LIMIT/OFFSET clause, e.g.:
+     * 
+     * select * from t LIMIT 100 OFFSET 200
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows to return
+     * @return the paged query
+     */
+    public static String getLimitOffsetPagedSQL(String query, 
+                                                int offset, 
+                                                int limit) 
+    {
+        StringBuffer result = new StringBuffer(trimQuery(query));
+        result.append(" LIMIT ");
+        result.append(limit);
+        if (offset > 0) {
+            result.append(" OFFSET ");
+            result.append(offset);
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Returns the query followed by the SQL:2008 OFFSET/FETCH clause, e.g.:
+     * 
+     * select * from t OFFSET 200 ROWS FETCH NEXT 100 ROWS ONLY
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows to return
+     * @return the paged query
+     */
+    public static String getOffsetFetchPagedSQL(String query, 
+                                                int offset, 
+                                                int limit) 
+    {
+        StringBuffer result = new StringBuffer(trimQuery(query));
+        if (offset > 0) {
+            result.append(" OFFSET ");
+            result.append(offset);
+            result.append(" ROWS");
+        }
+        result.append(" FETCH NEXT ");
+        result.append(limit);
+        result.append(" ROWS ONLY");
+        return result.toString();
+    }
+    
+    /**
+     * Returns the query wrapped by Oracle's ROWNUM pseudo column.  If offset is
+     * greater than zero, the row number is added as the last column of the 
+     * result with the alias PAGED_QUERY_ROWNUM_COLUMN, e.g.:
+     * 
+     * select * from (select row_.*, ROWNUM coolsql_rownum_ from (query) row_ 
+     * where ROWNUM <= 300) where coolsql_rownum_ > 200 
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows to return
+     * @return the paged query
+     */
+    public static String getRowNumPagedSQL(String query, 
+                                           int offset, 
+                                           int limit) 
+    {
+        StringBuffer result = new StringBuffer();
+        if (offset > 0) {
+            result.append("SELECT * FROM (SELECT row_.*, ROWNUM ");
+            result.append(PAGED_QUERY_ROWNUM_COLUMN);
+            result.append(" FROM (");
+            result.append(trimQuery(query));
+            result.append(") row_ WHERE ROWNUM <= ");
+            result.append(offset + limit);
+            result.append(") WHERE ");
+            result.append(PAGED_QUERY_ROWNUM_COLUMN);
+            result.append(" > ");
+            result.append(offset);
+        } else {
+            result.append("SELECT * FROM (");
+            result.append(trimQuery(query));
+            result.append(") WHERE ROWNUM <= ");
+            result.append(limit);
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Returns the query limited by a FETCH FIRST clause.  If offset is greater 
+     * than zero, the rows are numbered with ROW_NUMBER() in the order of the 
+     * query (ORDER OF) and the row number is added as the last column of the 
+     * result with the alias PAGED_QUERY_ROWNUM_COLUMN, e.g.:
+     * 
+     * select * from (select row_.*, ROW_NUMBER() OVER(ORDER BY ORDER OF row_) 
+     * AS coolsql_rownum_ from (query) AS row_) AS page_ 
+     * where coolsql_rownum_ > 200 order by coolsql_rownum_ 
+     * FETCH FIRST 100 ROWS ONLY
+     * 
+     * The pages are only disjoint if the query has an ORDER BY clause which 
+     * orders its rows completely, such as by a key.
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows to return
+     * @return the paged query
+     */
+    public static String getRowNumberPagedSQL(String query, 
+                                              int offset, 
+                                              int limit) 
+    {
+        StringBuffer result = new StringBuffer();
+        if (offset > 0) {
+            result.append("SELECT * FROM (SELECT row_.*, ");
+            result.append("ROW_NUMBER() OVER(ORDER BY ORDER OF row_) AS ");
+            result.append(PAGED_QUERY_ROWNUM_COLUMN);
+            result.append(" FROM (");
+            result.append(trimQuery(query));
+            result.append(") AS row_) AS page_ WHERE ");
+            result.append(PAGED_QUERY_ROWNUM_COLUMN);
+            result.append(" > ");
+            result.append(offset);
+            result.append(" ORDER BY ");
+            result.append(PAGED_QUERY_ROWNUM_COLUMN);
+        } else {
+            result.append(trimQuery(query));
+        }
+        result.append(" FETCH FIRST ");
+        result.append(limit);
+        result.append(" ROWS ONLY");
+        return result.toString();
+    }
+    
+    /**
+     * Returns the query with a TOP clause after its SELECT (and DISTINCT) 
+     * keyword. TOP can't skip rows, so the query returns the first 
+     * offset + limit rows and the rows before the page have to be skipped by the
+     * caller.
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows to return
+     * @return the paged query
+     * @throws UnsupportedOperationException if the query doesn't start with 
+     *         SELECT.
+     */
+    public static String getTopPagedSQL(String query, int offset, int limit) 
+        throws UnsupportedOperationException
+    {
+        String trimmed = trimQuery(query);
+        Matcher m = TOP_INSERT_PATTERN.matcher(trimmed);
+        if (!m.lookingAt()) {
+            throw new UnsupportedOperationException(
+                "TOP can only be added to a SELECT statement");
+        }
+        StringBuffer result = new StringBuffer();
+        result.append(trimmed.substring(0, m.end()));
+        result.append(" TOP ");
+        result.append(offset + limit);
+        result.append(trimmed.substring(m.end()));
+        return result.toString();
+    }
+    
+    /** Matches the leading SELECT keyword and the optional DISTINCT or ALL */
+    private static final Pattern TOP_INSERT_PATTERN = 
+        Pattern.compile("\\s*select\\b(\\s+(distinct|all)\\b)?",
+                        Pattern.CASE_INSENSITIVE);
+    
+    /**
+     * Removes the trailing whitespace and statement separator of the query, so 
+     * that a clause can be appended to it.
+     */
+    private static String trimQuery(String query) {
+        String result = query.trim();
+        while (result.endsWith(";")) {
+            result = result.substring(0, result.length() - 1).trim();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the SQL literal of a value which isn't null or binary for the 
+     * dialect: the literal of the dialect if it's a LiteralDialect, otherwise 
+     * the literal of standard SQL.
+     * 
+     * @param dialect the dialect of the database, null for standard SQL
+     * @param dataType the type of the value, see java.sql.Types
+     * @param value the value as text, see LiteralDialect.getLiteral
+     * @return the literal
+     */
+    public static String getLiteral(HibernateDialect dialect, 
+                                    int dataType, 
+                                    String value) 
+    {
+        if (dialect instanceof LiteralDialect) {
+            return ((LiteralDialect) dialect).getLiteral(dataType, value);
+        }
+        return getStandardLiteral(dataType, value);
+    }
+    
+    /**
+     * Returns the SQL literal of a binary value for the dialect: the literal of
+     * the dialect if it's a LiteralDialect, otherwise X'CAFE'.
+     * 
+     * @param dialect the dialect of the database, null for standard SQL
+     * @param data the bytes of the value
+     * @return the literal
+     */
+    public static String getBinaryLiteral(HibernateDialect dialect, byte[] data) {
+        if (dialect instanceof LiteralDialect) {
+            return ((LiteralDialect) dialect).getBinaryLiteral(data);
+        }
+        return getHexBinaryLiteral(data, "X'", "'");
+    }
+    
+    /**
+     * Returns the literal of a value in standard SQL: numbers as they are, 
+     * booleans as TRUE or FALSE, dates and times as DATE '...', TIME '...' and 
+     * TIMESTAMP '...', and other values as quoted strings, e.g. 'It''s'.
+     * 
+     * @param dataType the type of the value, see java.sql.Types
+     * @param value the value as text, see LiteralDialect.getLiteral
+     * @return the literal
+     */
+    public static String getStandardLiteral(int dataType, String value) {
+        switch (dataType) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return Boolean.valueOf(value.trim()).booleanValue() ? "TRUE" : "FALSE";
+            case Types.DATE:
+                return "DATE " + getQuotedString(value);
+            case Types.TIME:
+                return "TIME " + getQuotedString(value);
+            case Types.TIMESTAMP:
+                return "TIMESTAMP " + getQuotedString(value);
+            default:
+                return getQuotedLiteral(dataType, value);
+        }
+    }
+    
+    /**
+     * Returns the literal of a value for databases without boolean and 
+     * datetime literals: numbers as they are, booleans as 1 or 0, and other 
+     * values as quoted strings which are converted to the type of the column by 
+     * the database, e.g. '2008-04-29 10:30:00.0'.
+     * 
+     * @param dataType the type of the value, see java.sql.Types
+     * @param value the value as text, see LiteralDialect.getLiteral
+     * @return the literal
+     */
+    public static String getQuotedLiteral(int dataType, String value) {
+        if (dataType == Types.BIT || dataType == Types.BOOLEAN) {
+            return Boolean.valueOf(value.trim()).booleanValue() ? "1" : "0";
+        }
+        if (SqlUtil.isNumberType(dataType)) {
+            String number = value.trim();
+            //NaN and Infinity aren't numeric literals
+            if (number.length() > 0 && 
+                    (Character.isDigit(number.charAt(number.length() - 1))
+                            || number.endsWith("."))) {
+                return number;
+            }
+        }
+        return getQuotedString(value);
+    }
+    
+    /**
+     * Returns the value between single quotes, the quotes in it are doubled.
+     */
+    public static String getQuotedString(String value) {
+        StringBuilder result = new StringBuilder(value.length() + 2);
+        result.append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\'') {
+                result.append('\'');
+            }
+            result.append(c);
+        }
+        result.append('\'');
+        return result.toString();
+    }
+    
+    /**
+     * Returns the bytes as hexadecimal digits between the prefix and the 
+     * suffix, e.g. X'CAFE' for the prefix X' and the suffix '.
+     * 
+     * @param data the bytes of the value
+     * @param prefix the text before the digits
+     * @param suffix the text after the digits
+     * @return the literal
+     */
+    public static String getHexBinaryLiteral(byte[] data, 
+                                             String prefix, 
+                                             String suffix) 
+    {
+        StringBuilder result = 
+            new StringBuilder(data.length * 2 + prefix.length() + suffix.length());
+        result.append(prefix);
+        for (int i = 0; i < data.length; i++) {
+            result.append(HEX_DIGITS[(data[i] >> 4) & 0x0f]);
+            result.append(HEX_DIGITS[data[i] & 0x0f]);
+        }
+        result.append(suffix);
+        return result.toString();
+    }
+    
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    
     /**
      * Returns the SQL command to drop the specified table's primary key.
      * 
@@ -680,6 +680,49 @@ public class H2Dialect extends Dialect implements HibernateDialect {
     {
         return DialectUtils.getCreateTableSQL(tables, md, this, prefs, isJdbcOdbc);
     }
-    
-}
 
+    /**
+     * Returns a boolean value indicating whether or not this dialect can limit
+     * a query to one page of its result.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQuery() {
+        return true;
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not the paged query skips
+     * the rows before the page in the server.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQueryOffset() {
+        return true;
+    }
+
+    /**
+     * Returns the SQL that returns one page of the specified query:
+     * 
+     * query LIMIT limit OFFSET offset
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     */
+    public String getPagedQuerySQL(String query, int offset, int limit) {
+        return DialectUtils.getLimitOffsetPagedSQL(query, offset, limit);
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect accepts 
+     * several rows in the VALUES clause of one INSERT statement.
+     * 
+     * @return true
+     */
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
+}
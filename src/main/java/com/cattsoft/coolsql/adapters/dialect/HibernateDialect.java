@@ -350,6 +350,49 @@ public interface HibernateDialect {
                                    ISQLDatabaseMetaData md,
                                    CreateScriptPreferences prefs,
                                    boolean isJdbcOdbc) throws SQLException,UnifyException;    
+    
+    /**
+     * Returns a boolean value indicating whether or not this dialect can limit
+     * a query to one page of its result, so that only the rows of the page are 
+     * sent by the server.
+     * 
+     * @return true if the dialect supports paged queries; false otherwise.
+     */
+    boolean supportsPagedQuery();
+    
+    /**
+     * Returns a boolean value indicating whether or not the paged query skips
+     * the rows before the page in the server.  If not, the paged query returns
+     * the rows before the page too, and they have to be skipped by the client.
+     * 
+     * @return true if the paged query skips the rows itself; false otherwise.
+     */
+    boolean supportsPagedQueryOffset();
+    
+    /**
+     * Returns the SQL that returns at most limit rows of the specified query, 
+     * starting after the first offset rows.  Some dialects have to add the row 
+     * number as the last column of the result, it is aliased with 
+     * DialectUtils.PAGED_QUERY_ROWNUM_COLUMN.
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     * @throw UnsupportedOperationException if the database doesn't support 
+     *         paged queries, or the query can't be paged. 
+     */
+    String getPagedQuerySQL(String query, int offset, int limit)
+        throws UnsupportedOperationException;
+    
+    /**
+     * Returns a boolean value indicating whether or not this dialect accepts
+     * several rows in the VALUES clause of one INSERT statement, e.g.:
+     * 
+     * INSERT INTO t (a, b) VALUES (1, 'x'), (2, 'y')
+     * 
+     * @return true if the dialect supports multi-row inserts; false otherwise.
+     */
+    boolean supportsMultiRowInsert();
 
 }
-
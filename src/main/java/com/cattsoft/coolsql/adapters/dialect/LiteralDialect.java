@@ -0,0 +1,33 @@
+package com.cattsoft.coolsql.adapters.dialect;
+
+/**
+ * Implemented by the dialects whose literals differ from the literals of 
+ * standard SQL, which are written by 
+ * DialectUtils.getLiteral(HibernateDialect, int, String) for the other 
+ * dialects.
+ * 
+ * @author agent
+ */
+public interface LiteralDialect {
+
+    /**
+     * Returns the SQL literal of a value which isn't null or binary, such as 
+     * 12.5, 'It''s' or DATE '2008-04-29'.
+     * 
+     * @param dataType the type of the value, see java.sql.Types
+     * @param value the value as text: dates and times in the JDBC escape format
+     *              (yyyy-mm-dd, hh:mm:ss and yyyy-mm-dd hh:mm:ss.f), booleans
+     *              as "true" or "false".
+     * @return the literal
+     */
+    String getLiteral(int dataType, String value);
+    
+    /**
+     * Returns the SQL literal of a binary value, such as X'CAFE'.
+     * 
+     * @param data the bytes of the value
+     * @return the literal
+     */
+    String getBinaryLiteral(byte[] data);
+
+}
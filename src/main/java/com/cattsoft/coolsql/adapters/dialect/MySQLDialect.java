@@ -15,7 +15,7 @@ import com.cattsoft.coolsql.sql.model.Table;
  */
 
 public class MySQLDialect extends org.hibernate.dialect.MySQLDialect 
-                          implements HibernateDialect {
+                          implements HibernateDialect, LiteralDialect {
     
     public MySQLDialect() {
         super();
@@ -491,5 +491,71 @@ public class MySQLDialect extends org.hibernate.dialect.MySQLDialect
     {
         return DialectUtils.getCreateTableSQL(tables, md, this, prefs, isJdbcOdbc);
     }
-    
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect can limit
+     * a query to one page of its result.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQuery() {
+        return true;
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not the paged query skips
+     * the rows before the page in the server.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQueryOffset() {
+        return true;
+    }
+
+    /**
+     * Returns the SQL that returns one page of the specified query:
+     * 
+     * query LIMIT limit OFFSET offset
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     */
+    public String getPagedQuerySQL(String query, int offset, int limit) {
+        return DialectUtils.getLimitOffsetPagedSQL(query, offset, limit);
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect accepts 
+     * several rows in the VALUES clause of one INSERT statement.
+     * 
+     * @return true
+     */
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
+    /**
+     * Returns the SQL literal of a value in standard SQL.  Backslashes are 
+     * doubled, since MySQL reads them as escape characters in strings.
+     * 
+     * @param dataType the type of the value, see java.sql.Types
+     * @param value the value as text
+     * @return the literal
+     */
+    public String getLiteral(int dataType, String value) {
+        return DialectUtils.getStandardLiteral(dataType, value.replace("\\", "\\\\"));
+    }
+
+    /**
+     * Returns the SQL literal of a binary value, e.g. X'CAFE'.
+     * 
+     * @param data the bytes of the value
+     * @return the literal
+     */
+    public String getBinaryLiteral(byte[] data) {
+        return DialectUtils.getHexBinaryLiteral(data, "X'", "'");
+    }
+
 }
@@ -18,7 +18,7 @@ import com.cattsoft.coolsql.sql.util.TypesHelper;
  */
 
 public class Oracle9iDialect extends Oracle9Dialect 
-                             implements HibernateDialect {
+                             implements HibernateDialect, LiteralDialect {
 
     public Oracle9iDialect() {
         super();
@@ -498,5 +498,75 @@ public class Oracle9iDialect extends Oracle9Dialect
     {
         return DialectUtils.getCreateTableSQL(tables, md, this, prefs, isJdbcOdbc);
     }
-    
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect can limit
+     * a query to one page of its result.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQuery() {
+        return true;
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not the paged query skips
+     * the rows before the page in the server.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQueryOffset() {
+        return true;
+    }
+
+    /**
+     * Returns the SQL that returns one page of the specified query:
+     * 
+     * select * from (select row_.*, ROWNUM coolsql_rownum_ from (query) row_ 
+     * where ROWNUM <= offset + limit) where coolsql_rownum_ > offset
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     */
+    public String getPagedQuerySQL(String query, int offset, int limit) {
+        return DialectUtils.getRowNumPagedSQL(query, offset, limit);
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect accepts 
+     * several rows in the VALUES clause of one INSERT statement.
+     * 
+     * @return false
+     */
+    public boolean supportsMultiRowInsert() {
+        return false;
+    }
+
+    /**
+     * Returns the SQL literal of a value in standard SQL, except booleans which
+     * are written as 1 or 0 since Oracle has no boolean type.
+     * 
+     * @param dataType the type of the value, see java.sql.Types
+     * @param value the value as text
+     * @return the literal
+     */
+    public String getLiteral(int dataType, String value) {
+        if (dataType == Types.BIT || dataType == Types.BOOLEAN) {
+            return DialectUtils.getQuotedLiteral(dataType, value);
+        }
+        return DialectUtils.getStandardLiteral(dataType, value);
+    }
+
+    /**
+     * Returns the SQL literal of a binary value, e.g. HEXTORAW('CAFE').
+     * 
+     * @param data the bytes of the value
+     * @return the literal
+     */
+    public String getBinaryLiteral(byte[] data) {
+        return DialectUtils.getHexBinaryLiteral(data, "HEXTORAW('", "')");
+    }
+
 }
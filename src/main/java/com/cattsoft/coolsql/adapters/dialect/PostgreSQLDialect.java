@@ -17,7 +17,7 @@ import com.cattsoft.coolsql.sql.util.TypesHelper;
 
 public class PostgreSQLDialect 
     extends org.hibernate.dialect.PostgreSQLDialect 
-    implements HibernateDialect {
+    implements HibernateDialect, LiteralDialect {
 
     public PostgreSQLDialect() {
         super();
@@ -447,6 +447,72 @@ public class PostgreSQLDialect
     {
         return DialectUtils.getCreateTableSQL(tables, md, this, prefs, isJdbcOdbc);
     }
-    
-}
 
+    /**
+     * Returns a boolean value indicating whether or not this dialect can limit
+     * a query to one page of its result.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQuery() {
+        return true;
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not the paged query skips
+     * the rows before the page in the server.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQueryOffset() {
+        return true;
+    }
+
+    /**
+     * Returns the SQL that returns one page of the specified query:
+     * 
+     * query LIMIT limit OFFSET offset
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     */
+    public String getPagedQuerySQL(String query, int offset, int limit) {
+        return DialectUtils.getLimitOffsetPagedSQL(query, offset, limit);
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect accepts 
+     * several rows in the VALUES clause of one INSERT statement.
+     * 
+     * @return true
+     */
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
+    /**
+     * Returns the SQL literal of a value in standard SQL: numbers as they are,
+     * booleans as TRUE or FALSE, and dates and times as DATE '...', TIME '...'
+     * or TIMESTAMP '...'.
+     * 
+     * @param dataType the type of the value, see java.sql.Types
+     * @param value the value as text
+     * @return the literal
+     */
+    public String getLiteral(int dataType, String value) {
+        return DialectUtils.getStandardLiteral(dataType, value);
+    }
+
+    /**
+     * Returns the SQL literal of a binary value, e.g. decode('CAFE', 'hex').
+     * 
+     * @param data the bytes of the value
+     * @return the literal
+     */
+    public String getBinaryLiteral(byte[] data) {
+        return DialectUtils.getHexBinaryLiteral(data, "decode('", "', 'hex')");
+    }
+
+}
@@ -16,7 +16,7 @@ import com.cattsoft.coolsql.sql.util.TypesHelper;
  */
 
 public class SQLServerDialect extends org.hibernate.dialect.SQLServerDialect 
-                              implements HibernateDialect {    
+                              implements HibernateDialect, LiteralDialect {    
         
     public SQLServerDialect() {
         super();
@@ -434,6 +434,76 @@ public class SQLServerDialect extends org.hibernate.dialect.SQLServerDialect
     {
         return DialectUtils.getCreateTableSQL(tables, md, this, prefs, isJdbcOdbc);
     }
-    
-}
 
+    /**
+     * Returns a boolean value indicating whether or not this dialect can limit
+     * a query to one page of its result.
+     * 
+     * @return true
+     */
+    public boolean supportsPagedQuery() {
+        return true;
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not the paged query skips
+     * the rows before the page in the server.
+     * 
+     * @return false
+     */
+    public boolean supportsPagedQueryOffset() {
+        return false;
+    }
+
+    /**
+     * Returns the SQL that returns one page of the specified query:
+     * 
+     * SELECT TOP offset + limit ... 
+     * 
+     * The rows before the page are returned too and have to be skipped.
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     */
+    public String getPagedQuerySQL(String query, int offset, int limit) 
+        throws UnsupportedOperationException
+    {
+        return DialectUtils.getTopPagedSQL(query, offset, limit);
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect accepts 
+     * several rows in the VALUES clause of one INSERT statement.
+     * 
+     * @return true
+     */
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
+    /**
+     * Returns the SQL literal of a value: numbers as they are, booleans as 1 or
+     * 0, and other values as quoted strings which are converted to the type of
+     * the column by the database.
+     * 
+     * @param dataType the type of the value, see java.sql.Types
+     * @param value the value as text
+     * @return the literal
+     */
+    public String getLiteral(int dataType, String value) {
+        return DialectUtils.getQuotedLiteral(dataType, value);
+    }
+
+    /**
+     * Returns the SQL literal of a binary value, e.g. 0xCAFE.
+     * 
+     * @param data the bytes of the value
+     * @return the literal
+     */
+    public String getBinaryLiteral(byte[] data) {
+        return DialectUtils.getHexBinaryLiteral(data, "0x", "");
+    }
+
+}
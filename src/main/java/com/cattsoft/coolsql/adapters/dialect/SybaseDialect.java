@@ -15,7 +15,7 @@ import com.cattsoft.coolsql.sql.model.Table;
  * An extension to the standard Hibernate Sybase dialect
  */
 public class SybaseDialect extends org.hibernate.dialect.SybaseDialect 
-                           implements HibernateDialect {    
+                           implements HibernateDialect, LiteralDialect {    
         
     public SybaseDialect() {
         super();
@@ -437,7 +437,76 @@ public class SybaseDialect extends org.hibernate.dialect.SybaseDialect
     {
         return DialectUtils.getCreateTableSQL(tables, md, this, prefs, isJdbcOdbc);
     }
-    
-}
 
+    /**
+     * Returns a boolean value indicating whether or not this dialect can limit
+     * a query to one page of its result.
+     * 
+     * @return false
+     */
+    public boolean supportsPagedQuery() {
+        return false;
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not the paged query skips
+     * the rows before the page in the server.
+     * 
+     * @return false
+     */
+    public boolean supportsPagedQueryOffset() {
+        return false;
+    }
 
+    /**
+     * Returns the SQL that returns one page of the specified query.  
+     * 
+     * @param query the query to page
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page
+     * @return the paged query
+     * @throw UnsupportedOperationException if the database doesn't support 
+     *         paged queries. 
+     */
+    public String getPagedQuerySQL(String query, int offset, int limit) 
+        throws UnsupportedOperationException
+    {
+        int featureId = DialectUtils.PAGED_QUERY_TYPE;
+        String msg = DialectUtils.getUnsupportedMessage(this, featureId);
+        throw new UnsupportedOperationException(msg);
+    }
+
+    /**
+     * Returns a boolean value indicating whether or not this dialect accepts 
+     * several rows in the VALUES clause of one INSERT statement.
+     * 
+     * @return false
+     */
+    public boolean supportsMultiRowInsert() {
+        return false;
+    }
+
+    /**
+     * Returns the SQL literal of a value: numbers as they are, booleans as 1 or
+     * 0, and other values as quoted strings which are converted to the type of
+     * the column by the database.
+     * 
+     * @param dataType the type of the value, see java.sql.Types
+     * @param value the value as text
+     * @return the literal
+     */
+    public String getLiteral(int dataType, String value) {
+        return DialectUtils.getQuotedLiteral(dataType, value);
+    }
+
+    /**
+     * Returns the SQL literal of a binary value, e.g. 0xCAFE.
+     * 
+     * @param data the bytes of the value
+     * @return the literal
+     */
+    public String getBinaryLiteral(byte[] data) {
+        return DialectUtils.getHexBinaryLiteral(data, "0x", "");
+    }
+
+}
@@ -15,9 +15,11 @@ import com.cattsoft.coolsql.main.frame.Launcher;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
 import com.cattsoft.coolsql.sql.ConnectionException;
+import com.cattsoft.coolsql.sql.ConnectionPool;
 import com.cattsoft.coolsql.sql.ConnectionUtil;
 import com.cattsoft.coolsql.sql.Database;
 import com.cattsoft.coolsql.sql.ISQLDatabaseMetaData;
+import com.cattsoft.coolsql.sql.PreparedStatementCache;
 import com.cattsoft.coolsql.sql.commonoperator.BookMarkPropertyOperator;
 import com.cattsoft.coolsql.sql.commonoperator.Operatable;
 import com.cattsoft.coolsql.sql.commonoperator.OperatorFactory;
@@ -75,6 +77,23 @@ public class Bookmark extends Identifier implements Serializable{
 	 */
 	private Connection connection = null;
 
+	/**
+	 * The connection used to read metadata, so browsing the database isn't blocked by
+	 * statements running in the editor connection. It's null if metadata is read
+	 * through the editor connection.
+	 */
+	private Connection metaConnection = null;
+
+	/**
+	 * The pool of connections used by work which doesn't need the editor connection.
+	 */
+	private ConnectionPool connectionPool = null;
+
+	/**
+	 * The cache of prepared statements of the editor connection.
+	 */
+	private PreparedStatementCache statementCache = null;
+
 	/**
 	 * The flag indicates whether database should be committed automatically when saving modification.
 	 */
@@ -121,6 +140,86 @@ public class Bookmark extends Identifier implements Serializable{
 	public void setConnection(Connection connection) {
 		this.connection = connection;
 	}
+	/**
+	 * Return the connection used to read metadata, it's the editor connection if no
+	 * connection has been opened for metadata.
+	 */
+	public Connection getMetaConnection() throws UnifyException {
+		if (metaConnection == null)
+			return getConnection();
+		return metaConnection;
+	}
+
+	public void setMetaConnection(Connection metaConnection) {
+		this.metaConnection = metaConnection;
+	}
+
+	/**
+	 * Return the connection pool of bookmark, null if it's not connected.
+	 */
+	public ConnectionPool getConnectionPool() {
+		return connectionPool;
+	}
+
+	public void setConnectionPool(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+
+	/**
+	 * Return the cache of prepared statements of the connection, null if statements
+	 * of the connection aren't cached. Only the statements of the editor connection
+	 * are cached, since it lives as long as the bookmark is connected.
+	 */
+	public synchronized PreparedStatementCache getStatementCache(Connection con) {
+		if (con == null || con != connection)
+			return null;
+		if (statementCache != null && statementCache.getConnection() == con)
+			return statementCache;
+		if (statementCache != null)
+			statementCache.close();
+		int size = Setting.getInstance().getIntProperty(
+				PropertyConstant.PROPERTY_VIEW_BOOKMARK_STATEMENTCACHE_SIZE, 32);
+		statementCache = size > 0 ? new PreparedStatementCache(con, size) : null;
+		return statementCache;
+	}
+
+	/**
+	 * Return the figures of the statement cache of the bookmark, null if no
+	 * statement has been cached since it was connected.
+	 */
+	public synchronized PreparedStatementCache.Statistics getStatementCacheStatistics() {
+		return statementCache == null ? null : statementCache.getStatistics();
+	}
+
+	/**
+	 * Borrow a connection to execute statements, it must be given back by
+	 * {@link #releaseConnection(Connection)}. If the bookmark doesn't commit
+	 * automatically, the editor connection is returned so the statements see the
+	 * changes of the current transaction and take part in it.
+	 */
+	public Connection borrowConnection() throws UnifyException, SQLException {
+		Connection con = getConnection();
+		if (!isAutoCommit || connectionPool == null)
+			return con;
+		return connectionPool.borrow();
+	}
+
+	/**
+	 * Give back a connection returned by {@link #borrowConnection()}.
+	 */
+	public void releaseConnection(Connection con) {
+		if (con == null || con == connection)
+			return;
+		if (connectionPool != null) {
+			connectionPool.release(con);
+			return;
+		}
+		try {
+			con.close();
+		} catch (SQLException e) {
+			LogProxy.errorLog("closing connection failed", e);
+		}
+	}
 	/**
 	 * Connect to database.
 	 */
@@ -149,6 +248,24 @@ public class Bookmark extends Identifier implements Serializable{
         boolean isConnect=this.isConnected();
         try
         {
+            if(connectionPool!=null)
+                connectionPool.close();
+            synchronized(this)
+            {
+                if(statementCache!=null)
+                    statementCache.close();
+                statementCache=null;
+            }
+            if(metaConnection!=null)
+            {
+                try
+                {
+                    metaConnection.close();
+                }catch(SQLException e)
+                {
+                    LogProxy.errorLog("closing metadata connection failed", e);
+                }
+            }
             if(connection!=null)
            ConnectionUtil.disconnect(connection);
            database.dispose();
@@ -156,6 +273,8 @@ public class Bookmark extends Identifier implements Serializable{
         }finally
         {
             connection=null;
+            metaConnection=null;
+            connectionPool=null;
             if(isConnect!=isConnected())
                 pcs.firePropertyChange(PROPERTY_CONNECTED,isConnect,isConnected());
         }
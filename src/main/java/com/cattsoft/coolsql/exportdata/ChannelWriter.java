@@ -0,0 +1,190 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.zip.GZIPOutputStream;
+
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.PublicResource;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+
+/**
+ * Writes characters to a channel in an explicit charset. The characters are
+ * collected in a buffer and encoded by blocks into a direct byte buffer, which is
+ * written to the channel when it's full, so a large export costs one encoding pass
+ * and few system calls. Characters which can't be encoded are replaced.
+ *
+ * @author agent
+ */
+public class ChannelWriter extends Writer {
+
+	/**
+	 * Default number of characters buffered.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Size of the buffer of the compressor of gzip files.
+	 */
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+	private final WritableByteChannel channel;
+
+	private final CharsetEncoder encoder;
+
+	private final CharBuffer chars;
+
+	private final ByteBuffer bytes;
+
+	private boolean isClosed = false;
+
+	public ChannelWriter(WritableByteChannel channel, Charset charset) {
+		this(channel, charset, DEFAULT_BUFFER_SIZE);
+	}
+
+	public ChannelWriter(WritableByteChannel channel, Charset charset, int bufferSize) {
+		this.channel = channel;
+		encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		chars = CharBuffer.allocate(bufferSize);
+		bytes = ByteBuffer.allocateDirect((int) Math.ceil(bufferSize
+				* encoder.maxBytesPerChar()) + 16);
+	}
+
+	/**
+	 * Open the file for writing in the charset of the exports, the file is created
+	 * or truncated.
+	 */
+	public static ChannelWriter open(File file) throws IOException, UnifyException {
+		Charset charset = getExportCharset();
+		return new ChannelWriter(new FileOutputStream(file).getChannel(), charset);
+	}
+
+	/**
+	 * Open the file for writing in the charset of the exports, the file is created
+	 * or truncated. If the file is compressed, the characters are encoded into a gzip
+	 * stream, which is written to the file by blocks.
+	 */
+	public static ChannelWriter open(File file, boolean isCompressed) throws IOException,
+			UnifyException {
+		if (!isCompressed)
+			return open(file);
+		Charset charset = getExportCharset();
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(file), GZIP_BUFFER_SIZE);
+		return new ChannelWriter(Channels.newChannel(out), charset);
+	}
+
+	/**
+	 * Return the charset of the exported files, see
+	 * {@link PropertyConstant#PROPERTY_SYSTEM_EXPORT_CHARSET}.
+	 */
+	public static Charset getExportCharset() throws UnifyException {
+		String name = Setting.getInstance().getProperty(
+				PropertyConstant.PROPERTY_SYSTEM_EXPORT_CHARSET, "UTF-8");
+		try {
+			return Charset.forName(name.trim());
+		} catch (IllegalCharsetNameException e) {
+			throw new UnifyException(PublicResource.getSQLString("export.charset.invalid", name));
+		} catch (UnsupportedCharsetException e) {
+			throw new UnifyException(PublicResource.getSQLString("export.charset.invalid", name));
+		}
+	}
+
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		checkOpen();
+		while (len > 0) {
+			int n = Math.min(len, chars.remaining());
+			chars.put(cbuf, off, n);
+			off += n;
+			len -= n;
+			if (!chars.hasRemaining())
+				encode(false);
+		}
+	}
+
+	public void write(String str, int off, int len) throws IOException {
+		checkOpen();
+		while (len > 0) {
+			int n = Math.min(len, chars.remaining());
+			chars.put(str, off, off + n);
+			off += n;
+			len -= n;
+			if (!chars.hasRemaining())
+				encode(false);
+		}
+	}
+
+	public void write(int c) throws IOException {
+		checkOpen();
+		chars.put((char) c);
+		if (!chars.hasRemaining())
+			encode(false);
+	}
+
+	/**
+	 * Encode the buffered characters and write the bytes to the channel. A surrogate
+	 * character at the end of the buffer is kept until its pair is written.
+	 */
+	public void flush() throws IOException {
+		checkOpen();
+		encode(false);
+	}
+
+	public void close() throws IOException {
+		if (isClosed)
+			return;
+		try {
+			encode(true);
+			CoderResult result;
+			do {
+				result = encoder.flush(bytes);
+				writeBytes();
+			} while (result.isOverflow());
+		} finally {
+			isClosed = true;
+			channel.close();
+		}
+	}
+
+	private void encode(boolean endOfInput) throws IOException {
+		chars.flip();
+		CoderResult result;
+		do {
+			result = encoder.encode(chars, bytes, endOfInput);
+			if (result.isError())
+				throw new CharacterCodingException();
+			writeBytes();
+		} while (result.isOverflow());
+		chars.compact();
+	}
+
+	private void writeBytes() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining())
+			channel.write(bytes);
+		bytes.clear();
+	}
+
+	private void checkOpen() throws IOException {
+		if (isClosed)
+			throw new IOException("writer has been closed");
+	}
+}
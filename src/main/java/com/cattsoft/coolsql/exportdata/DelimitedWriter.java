@@ -0,0 +1,101 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes records of delimited text following RFC 4180: the records end with CRLF,
+ * and a field is enclosed in double quotes, its quotes doubled, if it contains the
+ * delimiter, a quote or a line break. A null field is written as an empty field,
+ * and an empty text as <code>""</code> so it's read back as a text, not a null.
+ * Closing the writer closes the underlying writer.
+ *
+ * @author agent
+ */
+public class DelimitedWriter implements RowWriter {
+
+	private static final String RECORD_END = "\r\n";
+
+	private final Writer out;
+
+	private final String delimiter;
+
+	/**
+	 * Whether current record has a field.
+	 */
+	private boolean hasField = false;
+
+	/**
+	 * @param delimiter --the delimiter of fields, such as "," or a tab.
+	 */
+	public DelimitedWriter(Writer out, String delimiter) {
+		if (delimiter == null || delimiter.length() == 0)
+			throw new IllegalArgumentException("delimiter must be a non-empty value");
+		this.out = out;
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Write the next field of current record.
+	 */
+	public void writeField(String value) throws IOException {
+		if (hasField)
+			out.write(delimiter);
+		hasField = true;
+		if (value == null)
+			return;
+		if (value.length() > 0 && !needsQuotes(value)) {
+			out.write(value);
+			return;
+		}
+		out.write('"');
+		int start = 0;
+		int index;
+		while ((index = value.indexOf('"', start)) >= 0) {
+			out.write(value, start, index + 1 - start);
+			out.write('"');
+			start = index + 1;
+		}
+		out.write(value, start, value.length() - start);
+		out.write('"');
+	}
+
+	/**
+	 * Write all fields of a record and end it.
+	 */
+	public void writeRecord(String[] values) throws IOException {
+		for (int i = 0; i < values.length; i++)
+			writeField(values[i]);
+		endRecord();
+	}
+
+	public void writeRow(String[] values) throws IOException {
+		writeRecord(values);
+	}
+
+	/**
+	 * End current record, the next field begins a new record.
+	 */
+	public void endRecord() throws IOException {
+		out.write(RECORD_END);
+		hasField = false;
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private boolean needsQuotes(String value) {
+		if (value.indexOf(delimiter) >= 0)
+			return true;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\r' || c == '\n')
+				return true;
+		}
+		return false;
+	}
+}
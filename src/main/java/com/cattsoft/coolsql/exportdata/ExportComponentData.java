@@ -30,4 +30,7 @@ public class ExportComponentData extends ExportData {
 
     public void exportToHtml() throws UnifyException {
     };
+
+    public void exportToSql() throws UnifyException {
+    }
 }
@@ -24,6 +24,8 @@ public abstract class ExportData implements Exportable {
 
     public final static int EXPORT_HTML = 2;
 
+    public final static int EXPORT_SQL = 3;
+
     /**
      * The data source object. Currently may be database or table component.
      */
@@ -37,7 +39,7 @@ public abstract class ExportData implements Exportable {
     /**
      * The flag indicates whether exporting should be stopped.
      */
-    private boolean isTextRun;
+    private volatile boolean isTextRun;
     
     /**
      * The prompting dialog.
@@ -145,10 +147,13 @@ public abstract class ExportData implements Exportable {
            return null;
        }else if(processType==EXPORT_EXCEL)
        {
-           return "xls";
+           return "xlsx";
        }else if(processType==EXPORT_HTML)
        {
            return "html";
+       }else if(processType==EXPORT_SQL)
+       {
+           return "sql";
        }else
            return null;
    }
@@ -1,24 +1,30 @@
 package com.cattsoft.coolsql.exportdata;
 
+import java.awt.Color;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Reader;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.List;
 
+import com.cattsoft.coolsql.adapters.dialect.DialectFactory;
+import com.cattsoft.coolsql.adapters.dialect.HibernateDialect;
+import com.cattsoft.coolsql.adapters.dialect.UnknownDialectException;
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.exportdata.excel.ExcelComponentSet;
 import com.cattsoft.coolsql.exportdata.excel.ExcelProcessException;
-import com.cattsoft.coolsql.exportdata.excel.ExcelUtil;
+import com.cattsoft.coolsql.exportdata.excel.ExcelRowWriter;
 import com.cattsoft.coolsql.exportdata.excel.ResultUtil;
+import com.cattsoft.coolsql.exportdata.html.HtmlPageWriter;
 import com.cattsoft.coolsql.pub.component.WaitDialog;
 import com.cattsoft.coolsql.pub.display.GUIUtil;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
-import com.cattsoft.coolsql.sql.ConnectionUtil;
+import com.cattsoft.coolsql.pub.util.SqlUtil;
+import com.cattsoft.coolsql.pub.util.StringUtil;
+import com.cattsoft.coolsql.sql.StreamingQuery;
 import com.cattsoft.coolsql.system.PropertyConstant;
 import com.cattsoft.coolsql.system.Setting;
 import com.cattsoft.coolsql.view.log.LogProxy;
@@ -34,6 +40,16 @@ public class ExportDataFromSql extends ExportDBData {
      */
     private String sql;
 
+    /**
+     * The table the rows are inserted into when they are exported as INSERT statements.
+     */
+    private String tableName;
+
+    /**
+     * Number of rows written between two updates of the progress.
+     */
+    private static final int PROGRESS_INTERVAL = 1000;
+
     /**
      * @param source
      */
@@ -52,56 +68,124 @@ public class ExportDataFromSql extends ExportDBData {
         waiter.setProgressValue(value);
     }
 
-    /*
+    /**
+     * Write the rows to a delimited text file.
+     * 
      * @see com.coolsql.exportdata.Exportable#exportToTxt()
      */
     public void exportToTxt() throws UnifyException {
+        exportRows(EXPORT_TEXT);
+    }
+
+    /**
+     * Write the rows to an Excel (.xlsx) file.
+     * 
+     * @see com.coolsql.exportdata.Exportable#exportToExcel()
+     */
+    public void exportToExcel() throws UnifyException {
+        exportRows(EXPORT_EXCEL);
+    }
+
+    /**
+     * Write the rows to HTML pages.
+     * 
+     * @see com.coolsql.exportdata.Exportable#exportToHtml()
+     */
+    public void exportToHtml() throws UnifyException {
+        exportRows(EXPORT_HTML);
+    }
+
+    /**
+     * Write the rows as INSERT statements of a SQL script, which is compressed by gzip
+     * if the settings require it.
+     * 
+     * @see com.coolsql.exportdata.Exportable#exportToSql()
+     */
+    public void exportToSql() throws UnifyException {
+        exportRows(EXPORT_SQL);
+    }
+
+    /**
+     * Write the rows of the query to the file in the format of the export type. The
+     * rows are read by a forward-only cursor and written while they are fetched, so
+     * the memory used doesn't depend on the number of rows; the progress is given by
+     * a separate COUNT(*) query.
+     * 
+     * @param processType --EXPORT_TEXT, EXPORT_EXCEL, EXPORT_HTML or EXPORT_SQL.
+     */
+    private void exportRows(int processType) throws UnifyException {
 
         File file = this.getFile();
         if (file != null) {
-            FileOutputStream out = null;
-            ResultSet set = null;
+            Bookmark bookmark = (Bookmark) this.getSource();
+            Setting setting = Setting.getInstance();
+            RowWriter writer = null;
+            InsertScriptWriter inserts = null;
+            StreamingQuery query = new StreamingQuery(bookmark, sql);
+            query.setFetchSize(setting.getIntProperty(
+                    PropertyConstant.PROPERTY_SYSTEM_EXPORT_FETCHSIZE, 5000));
             try {
                 GUIUtil.createDir(file.getAbsolutePath(),false, false);
-                out = new FileOutputStream(file);
-                set = ConnectionUtil.executeQuery((Bookmark) this.getSource(),
-                        sql, true);
-                ResultSetMetaData metaData = set.getMetaData(); 
-
-                String delimiter=Setting.getInstance().getProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_TEXT_DELIMITER, "\t");
-                /**
-                 * Write the header information to local file.
-                 */
-                int i = 0;
-                StringBuffer buffer = new StringBuffer();
-                for (; i < metaData.getColumnCount() - 1 && isRunning(); i++) {
-                    buffer.append(metaData.getColumnName(i + 1) + delimiter);
 
+                long max = -1;
+                if (setting.getBoolProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_COUNTROWS, true)) {
+                    max = StreamingQuery.count(bookmark, sql);
+                    if (max > 0)
+                        getWaiter().setTaskLength((int) Math.min(max, Integer.MAX_VALUE));
                 }
-                buffer.append(metaData.getColumnName(i + 1) + "\r\n");
-                out.write(buffer.toString().getBytes());
-
-                int count = 0;
-                if (isRunning()) {
-                    int max = ResultUtil.countResultRow(set);
-                    if (max > 0) {
-                        getWaiter().setTaskLength(max);
-                    }
+                ResultSet set = query.open();
+                ResultSetMetaData metaData = set.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                int[] types = new int[columnCount];
+                String[] names = new String[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    types[i] = metaData.getColumnType(i + 1);
+                    names[i] = metaData.getColumnLabel(i + 1);
                 }
+                if (processType == EXPORT_SQL)
+                    inserts = createInsertWriter(file, bookmark, names, types);
+                else
+                    writer = createRowWriter(processType, file, set, names, max);
+
                 /**
                  * Retrieve the row data.
                  */
-                while (set.next() && isRunning()) {
-                    out.write((getRowData(set,delimiter) + "\r\n").getBytes());
+                StringBuilder buffer = new StringBuilder();
+                String[] values = new String[columnCount];
+                int count = 0;
+                while (isRunning() && set.next()) {
+                    if (inserts != null) {
+                        inserts.writeRow(set);
+                    } else {
+                        for (int i = 0; i < columnCount; i++)
+                            values[i] = StreamingQuery.getText(set, i + 1, types[i], buffer);
+                        writer.writeRow(values);
+                    }
                     count++;
-                    updateProgress(count);
+                    if (count % PROGRESS_INTERVAL == 0) {
+                        query.setRowCount(count);
+                        updateProgress(count);
+                    }
+                }
+                if (!isRunning())
+                    query.stop();
+                if (inserts != null) {
+                    inserts.close();
+                    inserts = null;
+                } else {
+                    writer.close();
+                    writer = null;
                 }
+                query.setRowCount(count);
+                updateProgress(count);
             } catch (SQLException e) {
                 LogProxy.SQLErrorReport(e);
             } catch (FileNotFoundException e) {
                 throw new UnifyException(PublicResource
                         .getSQLString("export.filenotfound")
                         + e.getMessage());
+            } catch (ExcelProcessException e) {
+                LogProxy.errorReport(e);
             } catch (IOException e) {
                 throw new UnifyException(PublicResource
                         .getSQLString("export.filewriteerror"));
@@ -117,120 +201,102 @@ public class ExportDataFromSql extends ExportDBData {
                             .getSQLString("export.error.outofmemory"));
                 }
             } finally {
-                if (set != null) {
+                query.close();
+                if (writer != null) {
                     try {
-                        set.close();
-                        ConnectionUtil.closeStatement(set);
+                        writer.close();
                     } catch (Exception e) {
                     	LogProxy.errorReport(e);
                     }
                 }
-                if (out != null) {
+                if (inserts != null) {
                     try {
-                        out.close();
+                        inserts.close();
                     } catch (Exception e) {
-                    	LogProxy.errorReport(e);
+                        LogProxy.errorReport(e);
                     }
                 }
             }
         }
-
     }
 
-    /*
+    /**
+     * Create the writer of the rows for the export type, the header is written by
+     * the writer if the settings display it.
      * 
-     * @see com.coolsql.exportdata.Exportable#exportToExcel()
+     * @param names --the labels of the columns.
+     * @param rowCount --number of rows of the query, -1 if it isn't known.
      */
-    public void exportToExcel() throws UnifyException {
-        File file = this.getFile();
-        if (file != null) {
-            ResultSet set = null;
-            try {
-                set = ConnectionUtil.executeQuery((Bookmark) this.getSource(),
-                        sql,true);
-                ExcelComponentSet setting = ResultUtil.getExcelSet(set);
-                ExcelUtil util = ExcelUtil.getInstance();
-                util.setWaitDialog(getWaiter());
-                if(isRunning())
-                    util.buildExcel(file, setting, set);
-            } catch (FileNotFoundException e) {
-                throw new UnifyException(PublicResource
-                        .getSQLString("export.filenotfound")
-                        + e.getMessage());
-            } catch (SQLException e) {
-                LogProxy.SQLErrorReport(e);
-            } catch (ExcelProcessException e) {
-                LogProxy.errorReport(e);
-            } catch (IOException e) {
-                throw new UnifyException(PublicResource
-                        .getSQLString("export.filewriteerror"));
-            } catch (UnifyException e) {
-                throw e;
-            } catch (Throwable e) {
-                if (e instanceof Exception)
-                    LogProxy.errorReport((Exception) e);
-                else {
-                    LogProxy.outputErrorLog(e);
-                    LogProxy.errorMessage(PublicResource
-                            .getSQLString("export.error.outofmemory"));
-                }
-            } finally {
-                if (set != null) {
-                    try {
-                        set.close();
-                        ConnectionUtil.closeStatement(set);
-                    } catch (Exception e) {
-                    	LogProxy.errorReport(e);
-                    }
-                }
-            }
+    private RowWriter createRowWriter(int processType, File file, ResultSet set,
+            String[] names, long rowCount) throws IOException, ExcelProcessException,
+            UnifyException {
+        Setting setting = Setting.getInstance();
+        if (processType == EXPORT_EXCEL) {
+            ExcelComponentSet excelSet = ResultUtil.getExcelSet(set);
+            excelSet.setDisplayHead(setting.getBoolProperty(
+                    PropertyConstant.PROPERTY_SYSTEM_EXPORT_EXCEL_ISDISPLAYHEAD, true));
+            excelSet.setHeadColumnColor(setting.getColorProperty(
+                    PropertyConstant.PROPERTY_SYSTEM_EXPORT_EXCEL_HEADCOLOR, Color.RED));
+            return new ExcelRowWriter(file, excelSet);
+        } else if (processType == EXPORT_HTML) {
+            return new HtmlPageWriter(file, names, setting.getIntProperty(
+                    PropertyConstant.PROPERTY_SYSTEM_EXPORT_HTML_PAGESIZE, 50), rowCount);
         }
-    }
-
-    /*
-     * 
-     * @see com.coolsql.exportdata.Exportable#exportToHtml()
-     */
-    public void exportToHtml() throws UnifyException {
-
+        DelimitedWriter writer = new DelimitedWriter(ChannelWriter.open(file), setting.getProperty(
+                PropertyConstant.PROPERTY_SYSTEM_EXPORT_TEXT_DELIMITER, "\t"));
+        /**
+         * Write the header information to local file.
+         */
+        if (setting.getBoolProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_TEXT_ISDISPLAYHEAD, true))
+            writer.writeRecord(names);
+        return writer;
     }
 
     /**
-     * Parse one row to columns. 
+     * Create the writer of the INSERT statements. The literals are those of the
+     * dialect of the database, or of standard SQL if the database is unknown. The
+     * script is compressed if the settings require it or the name of the file ends
+     * with .gz, the suffix is added to the file if it's compressed.
+     * 
+     * @param names --the labels of the columns, they are the columns of the INSERT.
+     * @param types --the types of the columns.
      */
-    private String getRowData(ResultSet set,String delimiter) throws SQLException, IOException {
-        StringBuffer buffer = new StringBuffer();
-
-        int cols = set.getMetaData().getColumnCount();
-        int i = 0;
-        for (; i < cols - 1; i++) {
-            buffer.append(getColumValue(i + 1, set) + delimiter);
+    private InsertScriptWriter createInsertWriter(File file, Bookmark bookmark,
+            String[] names, int[] types) throws IOException, UnifyException {
+        Setting setting = Setting.getInstance();
+        boolean isCompressed = file.getName().toLowerCase().endsWith(".gz");
+        if (!isCompressed
+                && setting.getBoolProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_SQL_GZIP, false)) {
+            isCompressed = true;
+            file = new File(file.getAbsolutePath() + ".gz");
         }
-        buffer.append(getColumValue(i + 1, set));
-        return buffer.toString();
-    }
-
-    /**
-     * Return the value of specified column.
-     */
-    private String getColumValue(int columnNumber, ResultSet set)
-            throws SQLException, IOException {
-        Reader reader = set.getCharacterStream(columnNumber);
-        if (reader != null) {
-            StringBuffer buffer = new StringBuffer();
-            int retVal = reader.read();
-            while (retVal >= 0) {
-                buffer.append((char) retVal);
-                retVal = reader.read();
-            }
-            reader.close();
-            return buffer.toString();
-        } else {
-            return null;
+        HibernateDialect dialect = null;
+        try {
+            dialect = DialectFactory.getDialect(bookmark.getDbInfoProvider()
+                    .getDatabaseMetaData());
+        } catch (UnknownDialectException e) {
+            LogProxy.getProxy().debug("no dialect for INSERT export, standard literals are used");
+        }
+        String table = StringUtil.trim(tableName);
+        if (table.equals("")) {
+            List<String> tables = SqlUtil.getTables(sql);
+            table = tables.size() > 0 ? tables.get(0) : "TABLE_NAME";
         }
+        int rowsPerInsert = setting.getIntProperty(
+                PropertyConstant.PROPERTY_SYSTEM_EXPORT_SQL_ROWSPERINSERT, 100);
+        return new InsertScriptWriter(ChannelWriter.open(file, isCompressed), dialect, table,
+                names, types, rowsPerInsert);
     }
 
     public void setSql(String sql) {
         this.sql = sql;
     }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
 }
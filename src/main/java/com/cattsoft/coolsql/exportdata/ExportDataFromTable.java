@@ -6,8 +6,8 @@ package com.cattsoft.coolsql.exportdata;
 import java.awt.Color;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.Vector;
 
 import javax.swing.JTable;
@@ -20,8 +20,7 @@ import com.cattsoft.coolsql.exportdata.excel.CellDefined;
 import com.cattsoft.coolsql.exportdata.excel.ExcelComponentSet;
 import com.cattsoft.coolsql.exportdata.excel.ExcelProcessException;
 import com.cattsoft.coolsql.exportdata.excel.ExcelUtil;
-import com.cattsoft.coolsql.exportdata.html.HtmlExportException;
-import com.cattsoft.coolsql.exportdata.html.PageListData;
+import com.cattsoft.coolsql.exportdata.html.HtmlPageWriter;
 import com.cattsoft.coolsql.pub.display.GUIUtil;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
@@ -53,44 +52,34 @@ public class ExportDataFromTable extends ExportComponentData {
         File file = this.getFile();
         if (file == null)
             return;
-        FileOutputStream out = null;
+        Writer out = null;
         try {
             GUIUtil.createDir(file.getAbsolutePath(),false, false);
-            out = new FileOutputStream(file);
+            out = ChannelWriter.open(file);
 
             JTable table = (JTable) this.getSource();
-            //��ȡѡ�е��к���
             int cols = table.getColumnCount();
             int rows = table.getRowCount();
 
-            String delimiter=Setting.getInstance().getProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_TEXT_DELIMITER, "\t");
+            Setting setting=Setting.getInstance();
+            DelimitedWriter writer=new DelimitedWriter(out,setting.getProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_TEXT_DELIMITER, "\t"));
             
-            StringBuffer buffer = new StringBuffer();
-            for (int n = 0; n < cols && isRunning(); n++) {
-                buffer.append(table.getColumnName(n) + delimiter);
-            }
-            if (buffer.length() > 0) {
-                buffer.deleteCharAt(buffer.length() - 1); //ɾ�������ַ�'\t'
-                buffer.append("\r\n"); //��ӻس�����
-                out.write(buffer.toString().getBytes());
+            if (cols > 0 && setting.getBoolProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_TEXT_ISDISPLAYHEAD, true)) {
+                for (int n = 0; n < cols; n++)
+                    writer.writeField(table.getColumnName(n));
+                writer.endRecord();
             }
 
-            buffer.delete(0, buffer.length());
             for (int i = 0; i < rows && isRunning(); i++) {
-                buffer.delete(0, buffer.length());
-                int j = 0;
-                for (; j < cols; j++) {
+                for (int j = 0; j < cols; j++) {
                     Object tmpOb = null;
-                    if (table instanceof DataSetTable) //�ô��ж϶�������DataSetTable�ؼ���Ҫ���⴦��
+                    if (table instanceof DataSetTable) //DataSetTable displays its values in a special way
                         tmpOb = ((DataSetTable) table).getDisplayData(i, j);
                     else
                         tmpOb = table.getValueAt(i, j);
-                    buffer.append((tmpOb != null ? tmpOb.toString() : "")
-                            + delimiter);
+                    writer.writeField(tmpOb != null ? tmpOb.toString() : null);
                 }
-                buffer.deleteCharAt(buffer.length() - 1); //ɾ�������ַ�'\t'
-                buffer.append("\r\n"); //��ӻس�����
-                out.write(buffer.toString().getBytes());
+                writer.endRecord();
             }
 
         } catch (FileNotFoundException e) {
@@ -129,7 +118,7 @@ public class ExportDataFromTable extends ExportComponentData {
         File file = this.getFile();
         if (file == null)
             return;
-        ExcelUtil util = ExcelUtil.getInstance();
+        ExcelUtil util = new ExcelUtil(this);
         JTable table = (JTable) this.getSource();
 
         CellDefined[] colsDefine = getExcelHeadDefine(table); //��ȡexcel��ͷ����
@@ -177,39 +166,42 @@ public class ExportDataFromTable extends ExportComponentData {
         if (file == null)
             return;
 
-        FileOutputStream out = null;
+        HtmlPageWriter writer = null;
 
         try {
             JTable table = (JTable) this.getSource();
-            Vector header = new Vector(table.getColumnCount());
-            for (int i = 0; i < table.getColumnCount(); i++) {
-                header.add(table.getColumnName(i));
+            int cols = table.getColumnCount();
+            int rows = table.getRowCount();
+            String[] header = new String[cols];
+            for (int i = 0; i < cols; i++) {
+                header[i] = table.getColumnName(i);
             }
 
-            Vector data = getExcelData(table);
-            PageListData list = new PageListData(header, data, file.getName(),
-                    "information!");
-            list.setPageSize(Setting.getInstance().getIntProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_HTML_PAGESIZE, 50));
-
-            String name = PageListData.filterFileName(file.getName());
-
-            while (list.hasNext()) {
-                String seqNo=list.getPage()==0?"":(list.getPage()+"");
-                GUIUtil.createDir(file.getAbsolutePath(),false, false);
-                out = new FileOutputStream(new File(file.getParent(), name
-                        + seqNo + ".html"));
-                out.write(list.getNextPageCode().getBytes());
-                out.close();
+            writer = new HtmlPageWriter(file, header, Setting.getInstance().getIntProperty(
+                    PropertyConstant.PROPERTY_SYSTEM_EXPORT_HTML_PAGESIZE, 50), rows);
+            String[] values = new String[cols];
+            for (int i = 0; i < rows && isRunning(); i++) {
+                for (int j = 0; j < cols; j++) {
+                    Object tmpOb = null;
+                    if (table instanceof DataSetTable) //DataSetTable displays its values in a special way
+                        tmpOb = ((DataSetTable) table).getDisplayData(i, j);
+                    else
+                        tmpOb = table.getValueAt(i, j);
+                    values[j] = tmpOb != null ? tmpOb.toString() : null;
+                }
+                writer.writeRow(values);
             }
+            writer.close();
+            writer = null;
         } catch (FileNotFoundException e) {
             throw new UnifyException(PublicResource
                     .getSQLString("export.filenotfound")
                     + e.getMessage());
-        } catch (HtmlExportException e) {
-            throw new UnifyException(e.getMessage());
         } catch (IOException e) {
             throw new UnifyException(PublicResource
                     .getSQLString("export.filewriteerror"));
+        } catch (UnifyException e) {
+            throw e;
         } catch (Exception e) {
             LogProxy.internalError(e);
         } catch (Throwable e) {
@@ -219,9 +211,9 @@ public class ExportDataFromTable extends ExportComponentData {
                 LogProxy.errorMessage(PublicResource
                         .getSQLString("export.error.outofmemory"));
         } finally {
-            if (out != null) {
+            if (writer != null) {
                 try {
-                    out.close();
+                    writer.close();
                 } catch (Exception e) {
                 }
             }
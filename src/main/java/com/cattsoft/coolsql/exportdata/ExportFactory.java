@@ -42,4 +42,17 @@ public class ExportFactory {
     {
         return new ExportDataFromSql(sql,bookmark);
     }
+    /**
+     * Create the export which writes the result of the sql as INSERT statements.
+     * @param bookmark the bookmark of the database
+     * @param sql the query
+     * @param tableName the table the rows are inserted into
+     * @return
+     */
+    public static ExportData createInsertExportForSql(Bookmark bookmark,String sql,String tableName)
+    {
+        ExportDataFromSql export=new ExportDataFromSql(sql,bookmark);
+        export.setTableName(tableName);
+        return export;
+    }
 }
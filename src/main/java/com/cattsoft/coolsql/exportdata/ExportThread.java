@@ -13,7 +13,7 @@ import com.cattsoft.coolsql.view.log.LogProxy;
 /**
  * @author liu_xlin ��ݵ���ʱ��Ϊ�˱��ⷢ��swing����̲߳���ȫ���¼�����д���������������
  */
-public class ExportThread extends Thread {
+public class ExportThread implements Runnable {
     private ExportData export = null;
 
     /**
@@ -27,13 +27,13 @@ public class ExportThread extends Thread {
     private Vector actions = new Vector();
 
     public ExportThread(ExportData export, int processType) {
-        super("exportData");
         if (export == null) {
             throw new IllegalArgumentException("exporter is null");
         }
         if (processType != ExportData.EXPORT_TEXT
                 && processType != ExportData.EXPORT_EXCEL
-                && processType != ExportData.EXPORT_HTML)
+                && processType != ExportData.EXPORT_HTML
+                && processType != ExportData.EXPORT_SQL)
             throw new IllegalArgumentException("export type is unknown:"
                     + processType);
 
@@ -53,6 +53,8 @@ public class ExportThread extends Thread {
                 export.exportToExcel();
             } else if (processType == ExportData.EXPORT_HTML) {
                 export.exportToHtml();
+            } else if (processType == ExportData.EXPORT_SQL) {
+                export.exportToSql();
             }
         } catch (UnifyException e) {
             LogProxy.errorReport(e);
@@ -61,7 +63,7 @@ public class ExportThread extends Thread {
         } catch (NotRegisterException e) {
             LogProxy.errorReport(e);
         } finally {
-            WaitDialogManage.getInstance().disposeRegister(this);
+            WaitDialogManage.getInstance().disposeRegister(Thread.currentThread());
             runActions();
         }
     }
@@ -25,4 +25,9 @@ public interface Exportable {
      *  
      */
     public abstract void exportToHtml() throws UnifyException;
+
+    /**
+     * Export as a SQL script of INSERT statements.
+     */
+    public abstract void exportToSql() throws UnifyException;
 }
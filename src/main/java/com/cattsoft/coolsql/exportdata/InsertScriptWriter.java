@@ -0,0 +1,219 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.cattsoft.coolsql.adapters.dialect.DialectUtils;
+import com.cattsoft.coolsql.adapters.dialect.HibernateDialect;
+import com.cattsoft.coolsql.sql.StreamingQuery;
+
+/**
+ * Writes the rows of a query as INSERT statements of a SQL script. The values are
+ * written as literals of the dialect of the target database. If the dialect
+ * accepts several rows in the VALUES clause, the rows are grouped into one
+ * statement up to the number of rows per statement, or until the statement is
+ * longer than {@link #MAX_STATEMENT_LENGTH}, so the script can be run by servers
+ * which limit the size of a statement.
+ * <p>
+ * Each row is written when it's read, so only the row being written is held in
+ * memory.
+ *
+ * @author agent
+ */
+public class InsertScriptWriter {
+
+	/**
+	 * Number of characters after which a multi-row statement is ended, even if it
+	 * hasn't the number of rows per statement.
+	 */
+	public static final int MAX_STATEMENT_LENGTH = 512 * 1024;
+
+	private static final String LINE_SEPARATOR = "\n";
+
+	private final Writer out;
+
+	private final HibernateDialect dialect;
+
+	private final int[] types;
+
+	/**
+	 * INSERT INTO table (columns) VALUES
+	 */
+	private final String prefix;
+
+	private final int rowsPerStatement;
+
+	private final StringBuilder row = new StringBuilder();
+
+	private final StringBuilder textBuffer = new StringBuilder();
+
+	private int rowsOfStatement = 0;
+
+	private long statementLength = 0;
+
+	private long rowCount = 0;
+
+	/**
+	 * @param out --the writer of the script.
+	 * @param dialect --the dialect of the target database, the literals of standard
+	 *            SQL are written if it's null.
+	 * @param tableName --the table the rows are inserted into.
+	 * @param columns --the names of the columns.
+	 * @param types --the types of the columns, see {@link Types}.
+	 * @param rowsPerStatement --number of rows of a statement, it's 1 if the dialect
+	 *            doesn't support multi-row inserts.
+	 */
+	public InsertScriptWriter(Writer out, HibernateDialect dialect, String tableName,
+			String[] columns, int[] types, int rowsPerStatement) {
+		this.out = out;
+		this.dialect = dialect;
+		this.types = types;
+		if (dialect == null || !dialect.supportsMultiRowInsert())
+			rowsPerStatement = 1;
+		this.rowsPerStatement = Math.max(1, rowsPerStatement);
+
+		StringBuilder sb = new StringBuilder("INSERT INTO ");
+		sb.append(tableName).append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(columns[i]);
+		}
+		sb.append(") VALUES");
+		prefix = sb.toString();
+	}
+
+	/**
+	 * Write current row of the result.
+	 */
+	public void writeRow(ResultSet set) throws SQLException, IOException {
+		row.setLength(0);
+		row.append('(');
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0)
+				row.append(", ");
+			appendValue(set, i + 1, types[i]);
+		}
+		row.append(')');
+
+		if (rowsOfStatement > 0
+				&& (rowsOfStatement >= rowsPerStatement
+						|| statementLength + row.length() > MAX_STATEMENT_LENGTH))
+			endStatement();
+		if (rowsOfStatement == 0) {
+			out.write(prefix);
+			//A statement of one row is written on one line
+			out.write(rowsPerStatement == 1 ? " " : LINE_SEPARATOR);
+			statementLength = prefix.length();
+		} else {
+			out.write(',');
+			out.write(LINE_SEPARATOR);
+		}
+		out.append(row);
+		statementLength += row.length();
+		rowsOfStatement++;
+		rowCount++;
+	}
+
+	/**
+	 * End the last statement and close the writer.
+	 */
+	public void close() throws IOException {
+		try {
+			if (rowsOfStatement > 0)
+				endStatement();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Return the number of rows written.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	private void endStatement() throws IOException {
+		out.write(';');
+		out.write(LINE_SEPARATOR);
+		rowsOfStatement = 0;
+		statementLength = 0;
+	}
+
+	/**
+	 * Append the literal of a value to the row. Dates are read as timestamps, the
+	 * time is kept if it isn't midnight since the DATE type of some databases, such
+	 * as Oracle, has a time.
+	 */
+	private void appendValue(ResultSet set, int column, int type) throws SQLException,
+			IOException {
+		switch (type) {
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				byte[] data = set.getBytes(column);
+				if (data == null)
+					row.append("NULL");
+				else
+					row.append(DialectUtils.getBinaryLiteral(dialect, data));
+				return;
+			case Types.DATE:
+				Timestamp date = set.getTimestamp(column);
+				if (date == null) {
+					row.append("NULL");
+				} else if (isMidnight(date)) {
+					appendLiteral(Types.DATE, new Date(date.getTime()).toString());
+				} else {
+					appendLiteral(Types.TIMESTAMP, date.toString());
+				}
+				return;
+			case Types.TIME:
+				Time time = set.getTime(column);
+				if (time == null)
+					row.append("NULL");
+				else
+					appendLiteral(type, time.toString());
+				return;
+			case Types.TIMESTAMP:
+				Timestamp timestamp = set.getTimestamp(column);
+				if (timestamp == null)
+					row.append("NULL");
+				else
+					appendLiteral(type, timestamp.toString());
+				return;
+			case Types.BIT:
+			case Types.BOOLEAN:
+				boolean value = set.getBoolean(column);
+				if (set.wasNull())
+					row.append("NULL");
+				else
+					appendLiteral(type, String.valueOf(value));
+				return;
+			default:
+				String text = StreamingQuery.getText(set, column, type, textBuffer);
+				if (text == null)
+					row.append("NULL");
+				else
+					appendLiteral(type, text);
+		}
+	}
+
+	private void appendLiteral(int type, String value) {
+		row.append(DialectUtils.getLiteral(dialect, type, value));
+	}
+
+	private static boolean isMidnight(Timestamp value) {
+		return value.toString().endsWith(" 00:00:00.0");
+	}
+}
@@ -0,0 +1,29 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata;
+
+import java.io.IOException;
+
+/**
+ * Writes the rows of an export to a file in a format such as delimited text, Excel
+ * or HTML. The rows are written as they are read from the source, so a writer only
+ * holds the row being written or a bounded part of the file.
+ *
+ * @author agent
+ */
+public interface RowWriter {
+
+	/**
+	 * Write a row.
+	 *
+	 * @param values --the values of the columns as text, a value is null if it's
+	 *            null in the source. The array may be reused by the next row.
+	 */
+	public void writeRow(String[] values) throws IOException;
+
+	/**
+	 * End the file and close it.
+	 */
+	public void close() throws IOException;
+}
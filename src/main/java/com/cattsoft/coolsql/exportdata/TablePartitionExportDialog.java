@@ -0,0 +1,388 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.List;
+
+import javax.swing.ButtonGroup;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JRadioButton;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.modifydatabase.insert.ProcessThread;
+import com.cattsoft.coolsql.pub.component.BaseDialog;
+import com.cattsoft.coolsql.pub.component.RenderButton;
+import com.cattsoft.coolsql.pub.display.BaseTable;
+import com.cattsoft.coolsql.pub.display.GUIUtil;
+import com.cattsoft.coolsql.pub.display.TableScrollPane;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.PublicResource;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.sql.model.Column;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.PropertyManage;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Exports a table by partitions read in parallel. The options are chosen first, then
+ * the dialog shows the throughput of the export and the progress of each partition
+ * while {@link TablePartitionExporter} runs in a thread of its own. The partitions
+ * which failed can be exported again with the resume button.
+ *
+ * @author agent
+ */
+public class TablePartitionExportDialog extends BaseDialog {
+
+	private static final long serialVersionUID = 1L;
+	private static final StringManager stringMgr=StringManagerFactory.getStringManager(TablePartitionExportDialog.class);
+
+	private final Bookmark bookmark;
+	private final Entity table;
+
+	private JComboBox columnBox;
+	private JSpinner partitionSpinner;
+	private JSpinner parallelSpinner;
+	private JSpinner fetchSpinner;
+	private JRadioButton mergeButton;
+
+	private TablePartitionExporter exporter;
+	private PartitionTableModel progressModel;
+	private JLabel meterLabel;
+	private Timer timer;
+	private JButton cancelButton;
+	private JButton resumeButton;
+	private JButton closeButton;
+
+	/**
+	 * @throws UnifyException if the table has no column which can split it.
+	 */
+	public TablePartitionExportDialog(Entity table) throws UnifyException
+	{
+		super(GUIUtil.getMainFrame(),false);
+		this.table=table;
+		this.bookmark=table.getBookmark();
+		setTitle(stringMgr.getString("partition.dialog.title",table.getQualifiedName()));
+		setContentPane(createOptionPane());
+		setSize(450,300);
+		toCenter();
+	}
+	private JPanel createOptionPane() throws UnifyException
+	{
+		JPanel main=new JPanel(new BorderLayout());
+		main.add(new JLabel(stringMgr.getString("partition.dialog.info",table.getQualifiedName())),BorderLayout.NORTH);
+
+		JPanel pane=new JPanel(new GridBagLayout());
+		GridBagConstraints gbc=new GridBagConstraints();
+		gbc.insets=new Insets(4,4,4,4);
+		gbc.anchor=GridBagConstraints.WEST;
+		gbc.fill=GridBagConstraints.HORIZONTAL;
+
+		/**
+		 * The key columns are split by sampled ranges, the other numeric columns by
+		 * equal ranges.
+		 */
+		columnBox=new JComboBox();
+		Column[] columns=table.getColumns();
+		for(int i=0;i<columns.length;i++)
+		{
+			if(columns[i].isPrimaryKey())
+				columnBox.addItem(new ColumnItem(columns[i],true));
+		}
+		for(int i=0;i<columns.length;i++)
+		{
+			if(!columns[i].isPrimaryKey()&&columns[i].isNumeric())
+				columnBox.addItem(new ColumnItem(columns[i],false));
+		}
+		if(columnBox.getItemCount()==0)
+			throw new UnifyException(stringMgr.getString("partition.dialog.nocolumn",table.getQualifiedName()));
+		addRow(pane,gbc,0,stringMgr.getString("partition.dialog.column"),columnBox);
+
+		Setting setting=Setting.getInstance();
+		partitionSpinner=new JSpinner(new SpinnerNumberModel(Math.max(1,setting.getIntProperty(
+				PropertyConstant.PROPERTY_SYSTEM_EXPORT_PARTITIONS,8)),1,1024,1));
+		addRow(pane,gbc,1,stringMgr.getString("partition.dialog.partitions"),partitionSpinner);
+		parallelSpinner=new JSpinner(new SpinnerNumberModel(Math.max(1,setting.getIntProperty(
+				PropertyConstant.PROPERTY_SYSTEM_EXPORT_PARALLEL,4)),1,32,1));
+		addRow(pane,gbc,2,stringMgr.getString("partition.dialog.parallel"),parallelSpinner);
+		fetchSpinner=new JSpinner(new SpinnerNumberModel(Math.max(1,setting.getIntProperty(
+				PropertyConstant.PROPERTY_SYSTEM_EXPORT_FETCHSIZE,5000)),1,100000,100));
+		addRow(pane,gbc,3,stringMgr.getString("partition.dialog.fetchsize"),fetchSpinner);
+
+		mergeButton=new JRadioButton(stringMgr.getString("partition.dialog.merge"),true);
+		JRadioButton filesButton=new JRadioButton(stringMgr.getString("partition.dialog.files"));
+		ButtonGroup group=new ButtonGroup();
+		group.add(mergeButton);
+		group.add(filesButton);
+		gbc.gridx=1;
+		gbc.gridy=4;
+		pane.add(mergeButton,gbc);
+		gbc.gridy=5;
+		pane.add(filesButton,gbc);
+		main.add(pane,BorderLayout.CENTER);
+
+		/**button area */
+		JPanel buttonPane=new JPanel(new FlowLayout(FlowLayout.CENTER));
+		JButton okButton=new RenderButton(PublicResource.getOkButtonLabel());
+		okButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				startExport();
+			}
+		}
+		);
+		buttonPane.add(okButton);
+		JButton quitButton=new RenderButton(PublicResource.getCancelButtonLabel());
+		quitButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		}
+		);
+		buttonPane.add(quitButton);
+		main.add(buttonPane,BorderLayout.SOUTH);
+		getRootPane().setDefaultButton(okButton);
+		return main;
+	}
+	private static void addRow(JPanel pane,GridBagConstraints gbc,int row,String label,java.awt.Component field)
+	{
+		gbc.gridx=0;
+		gbc.gridy=row;
+		gbc.weightx=0;
+		pane.add(new JLabel(label),gbc);
+		gbc.gridx=1;
+		gbc.weightx=1;
+		pane.add(field,gbc);
+	}
+	/**
+	 * Select the output file, then start exporting and show the progress of the
+	 * partitions.
+	 */
+	private void startExport()
+	{
+		File file=GUIUtil.selectFileNoFilter(this,PropertyManage.getSystemProperty().getSelectFile_exportData());
+		if(file==null)
+			return;
+		PropertyManage.getSystemProperty().setSelectFile_exportData(file.getAbsolutePath());
+		if(file.exists()&&!file.canWrite())
+		{
+			JOptionPane.showMessageDialog(this,PublicResource.getSQLString("export.filediabledwrite"),"warning",JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+
+		ColumnItem item=(ColumnItem)columnBox.getSelectedItem();
+		Setting setting=Setting.getInstance();
+		exporter=new TablePartitionExporter(bookmark,table,item.column,file);
+		exporter.setSampled(item.isSampled);
+		exporter.setMerge(mergeButton.isSelected());
+		exporter.setPartitionCount(((Number)partitionSpinner.getValue()).intValue());
+		exporter.setParallelCount(((Number)parallelSpinner.getValue()).intValue());
+		exporter.setFetchSize(((Number)fetchSpinner.getValue()).intValue());
+		exporter.setDelimiter(setting.getProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_TEXT_DELIMITER,"\t"));
+		exporter.setDisplayHead(setting.getBoolProperty(PropertyConstant.PROPERTY_SYSTEM_EXPORT_TEXT_ISDISPLAYHEAD,true));
+
+		setContentPane(createProgressPane());
+		setTitle(stringMgr.getString("partition.progress.title",table.getQualifiedName(),file.getAbsolutePath()));
+		setSize(650,350);
+		toCenter();
+		validate();
+
+		timer=new Timer(1000,new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				updateProgress();
+			}
+		});
+		runExporter();
+	}
+	/**
+	 * Run the exporter in a task, for the first time or to resume the partitions
+	 * which aren't finished.
+	 */
+	private void runExporter()
+	{
+		cancelButton.setEnabled(true);
+		resumeButton.setEnabled(false);
+		closeButton.setEnabled(false);
+		ManagedTask task=TaskExecutor.getInstance().createTask(new ProcessThread(new Actionable()
+		{
+			public void action() {
+				try
+				{
+					exporter.execute();
+				}catch(UnifyException e)
+				{
+					LogProxy.errorReport(e);
+				}finally
+				{
+					SwingUtilities.invokeLater(new Runnable()
+					{
+						public void run() {
+							finishExport();
+						}
+					});
+				}
+			}
+		}),"export partitions",TaskExecutor.PRIORITY_BATCH,null);
+		timer.start();
+		task.start();
+	}
+	private JPanel createProgressPane()
+	{
+		JPanel main=new JPanel(new BorderLayout());
+		meterLabel=new JLabel(" ");
+		main.add(meterLabel,BorderLayout.NORTH);
+		progressModel=new PartitionTableModel();
+		JTable partitionTable=new BaseTable();
+		partitionTable.setModel(progressModel);
+		main.add(new TableScrollPane(partitionTable),BorderLayout.CENTER);
+
+		JPanel buttonPane=new JPanel(new FlowLayout(FlowLayout.CENTER));
+		cancelButton=new RenderButton(PublicResource.getCancelButtonLabel());
+		cancelButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				cancelButton.setEnabled(false);
+				exporter.cancel();
+			}
+		}
+		);
+		buttonPane.add(cancelButton);
+		resumeButton=new RenderButton(stringMgr.getString("partition.progress.resume"));
+		resumeButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				runExporter();
+			}
+		}
+		);
+		buttonPane.add(resumeButton);
+		closeButton=new RenderButton(stringMgr.getString("partition.progress.close"));
+		closeButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		}
+		);
+		buttonPane.add(closeButton);
+		main.add(buttonPane,BorderLayout.SOUTH);
+		return main;
+	}
+	private void updateProgress()
+	{
+		meterLabel.setText(stringMgr.getString("partition.progress.meter",exporter.getRowCount(),
+				exporter.getRowsPerSecond(),formatSeconds(exporter.getElapsedMillis()/1000)));
+		progressModel.fireTableDataChanged();
+	}
+	private void finishExport()
+	{
+		timer.stop();
+		updateProgress();
+		cancelButton.setEnabled(false);
+		closeButton.setEnabled(true);
+		//The partitions can be computed again if computing them failed
+		resumeButton.setEnabled(!exporter.isFinished()||(!exporter.isMerged()&&mergeButton.isSelected()));
+		List<String> errors=exporter.getErrors();
+		if(errors.size()>0)
+		{
+			StringBuilder message=new StringBuilder();
+			for(int i=0;i<errors.size()&&i<5;i++)
+				message.append(errors.get(i)).append("\n");
+			JOptionPane.showMessageDialog(this,message.toString(),"error",JOptionPane.ERROR_MESSAGE);
+		}
+	}
+	@Override
+	public void dispose()
+	{
+		if(exporter!=null&&timer!=null&&timer.isRunning())
+		{
+			//Closing the window stops the export
+			exporter.cancel();
+		}
+		super.dispose();
+	}
+	private static String formatSeconds(long seconds)
+	{
+		return String.format("%d:%02d:%02d",seconds/3600,seconds/60%60,seconds%60);
+	}
+	/**
+	 * A column which can split the table.
+	 */
+	private static class ColumnItem
+	{
+		private final Column column;
+		private final boolean isSampled;
+		ColumnItem(Column column,boolean isSampled)
+		{
+			this.column=column;
+			this.isSampled=isSampled;
+		}
+		public String toString()
+		{
+			return stringMgr.getString(isSampled?"partition.dialog.column.key":"partition.dialog.column.range",column.getName());
+		}
+	}
+	/**
+	 * A row for each partition.
+	 */
+	private class PartitionTableModel extends AbstractTableModel
+	{
+		private static final long serialVersionUID = 1L;
+
+		public int getColumnCount()
+		{
+			return 5;
+		}
+		public int getRowCount()
+		{
+			return exporter.getPartitions().size();
+		}
+		public String getColumnName(int column)
+		{
+			return stringMgr.getString("partition.progress.column"+column);
+		}
+		public Object getValueAt(int row, int column)
+		{
+			TablePartitionExporter.Partition partition=exporter.getPartitions().get(row);
+			switch(column)
+			{
+				case 0:
+					return String.valueOf(partition.getIndex()+1);
+				case 1:
+					return partition.getRange();
+				case 2:
+					String state=stringMgr.getString("partition.progress.state"+partition.getState());
+					return partition.getMessage()==null?state:state+": "+partition.getMessage();
+				case 3:
+					return String.valueOf(partition.getRowCount());
+				default:
+					return partition.getFile().getName();
+			}
+		}
+	}
+}
@@ -0,0 +1,688 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.display.GUIUtil;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.pub.util.ExceptionUtil;
+import com.cattsoft.coolsql.pub.util.StringUtil;
+import com.cattsoft.coolsql.sql.StreamingQuery;
+import com.cattsoft.coolsql.sql.model.Column;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.system.task.TaskGroup;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Exports a large table to delimited text by key ranges read in parallel. The
+ * table is split into partitions by the values of a column:
+ * <ul>
+ * <li>for a key column the boundaries are the lowest values of the tiles of the
+ * ordered values of the column, computed by the database with NTILE, so the
+ * partitions have about the same number of rows whatever the distribution of the
+ * keys,</li>
+ * <li>for another numeric column the range between its minimum and maximum is
+ * divided into equal ranges.</li>
+ * </ul>
+ * Each partition is read by a {@link StreamingQuery} on a connection of the pool of
+ * the bookmark, as a part of a {@link TaskGroup}, and written to a file of its own. The files are kept, or merged in
+ * the order of the ranges into the output file when all partitions are finished.
+ * <p>
+ * A partition which failed or was cancelled can be exported again by invoking
+ * {@link #execute()} once more, the finished partitions are kept.
+ *
+ * @author agent
+ */
+public class TablePartitionExporter {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(TablePartitionExporter.class);
+
+	public static final int STATE_WAITING = 0;
+
+	public static final int STATE_RUNNING = 1;
+
+	public static final int STATE_FINISHED = 2;
+
+	public static final int STATE_FAILED = 3;
+
+	public static final int STATE_CANCELLED = 4;
+
+	private final Bookmark bookmark;
+
+	private final Entity table;
+
+	private final Column column;
+
+	private final File file;
+
+	private boolean isSampled = true;
+
+	private boolean isMerge = true;
+
+	private int partitionCount = 8;
+
+	private int parallelCount = 4;
+
+	private int fetchSize = 5000;
+
+	private String delimiter = "\t";
+
+	private boolean isDisplayHead = true;
+
+	private List<Partition> partitions = null;
+
+	private volatile boolean isCancelled = false;
+
+	private volatile boolean isMerged = false;
+
+	private volatile long runStartTime = 0;
+
+	private volatile long runEndTime = 0;
+
+	private volatile long rowsAtStart = 0;
+
+	private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * @param column --the column whose values split the table.
+	 * @param file --the output file, the partition files are named after it.
+	 */
+	public TablePartitionExporter(Bookmark bookmark, Entity table, Column column, File file) {
+		this.bookmark = bookmark;
+		this.table = table;
+		this.column = column;
+		this.file = file;
+	}
+
+	/**
+	 * Export the partitions which aren't finished yet, it returns when they have
+	 * been exported or the export has been cancelled. The partitions are computed by
+	 * the first invocation.
+	 *
+	 * @throws UnifyException if the bookmark isn't connected or the boundaries of the
+	 *             partitions can't be computed.
+	 */
+	public void execute() throws UnifyException {
+		if (!bookmark.isConnected())
+			throw new UnifyException(stringMgr.getString("partition.error.notconnected"));
+		isCancelled = false;
+		runStartTime = System.currentTimeMillis();
+		runEndTime = 0;
+		try {
+			if (partitions == null) {
+				List<Partition> list = createPartitions();
+				//Boundaries sampled partly would give wrong partitions
+				if (isCancelled)
+					return;
+				partitions = Collections.unmodifiableList(list);
+			}
+			rowsAtStart = getRowCount();
+			List<Partition> todo = new ArrayList<Partition>();
+			for (Partition partition : partitions) {
+				if (partition.state != STATE_FINISHED) {
+					partition.state = STATE_WAITING;
+					partition.message = null;
+					todo.add(partition);
+				}
+			}
+			//Without a pool, the partitions would share the connection of the bookmark
+			int threads = bookmark.getConnectionPool() == null ? 1 : Math.max(1, Math.min(
+					parallelCount, todo.size()));
+			TaskGroup group = TaskExecutor.getInstance().createGroup("export "
+					+ table.getQualifiedName(), TaskExecutor.PRIORITY_BATCH, bookmark, threads);
+			try {
+				List<Future<?>> futures = new ArrayList<Future<?>>();
+				for (Partition partition : todo)
+					futures.add(group.submit(partition));
+				for (Future<?> future : futures) {
+					try {
+						future.get();
+					} catch (Exception e) {
+						LogProxy.errorLog("exporting partition failed", e);
+					}
+				}
+			} finally {
+				group.cancel();
+			}
+			if (isMerge && !isMerged && !isCancelled && isFinished())
+				merge();
+		} finally {
+			runEndTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Compute the boundaries of the partitions. The first partition also takes the
+	 * rows whose value is null.
+	 */
+	private List<Partition> createPartitions() throws UnifyException {
+		List<Object> boundaries = partitionCount <= 1 ? new ArrayList<Object>()
+				: isSampled ? sampleBoundaries() : rangeBoundaries();
+		List<Partition> list = new ArrayList<Partition>();
+		for (int i = 0; i <= boundaries.size(); i++) {
+			Object lower = i == 0 ? null : boundaries.get(i - 1);
+			Object upper = i == boundaries.size() ? null : boundaries.get(i);
+			list.add(new Partition(i, lower, upper, i == 0));
+		}
+		return list;
+	}
+
+	/**
+	 * Split the ordered values of the column into tiles of about the same number of
+	 * rows and take the lowest value of each tile but the first. The tiles are
+	 * computed by the database, so only the boundaries are fetched. If the database
+	 * has no window functions, the boundaries are read from the ordered values of
+	 * the column.
+	 */
+	private List<Object> sampleBoundaries() throws UnifyException {
+		String name = column.getName();
+		StreamingQuery query = new StreamingQuery(bookmark, "SELECT MIN(" + name
+				+ ") FROM (SELECT " + name + ", NTILE(" + partitionCount + ") OVER (ORDER BY "
+				+ name + ") tile FROM " + table.getQualifiedName() + " WHERE " + name
+				+ " IS NOT NULL) tiles GROUP BY tile ORDER BY tile");
+		List<Object> boundaries = new ArrayList<Object>();
+		try {
+			ResultSet set = query.open();
+			//The first tile has no lower bound
+			if (!set.next())
+				return boundaries;
+			while (set.next()) {
+				Object value = set.getObject(1);
+				//Equal values must belong to the same partition
+				if (value != null
+						&& (boundaries.size() == 0 || !value.equals(boundaries.get(boundaries
+								.size() - 1))))
+					boundaries.add(value);
+			}
+			return boundaries;
+		} catch (SQLException e) {
+			LogProxy.errorLog("tiles of " + name
+					+ " can't be computed by the database, read its ordered values", e);
+		} catch (Exception e) {
+			throw new UnifyException(stringMgr.getString("partition.error.boundaries",
+					name, ExceptionUtil.getAllExceptions(e)), e);
+		} finally {
+			query.close();
+		}
+		return scanBoundaries();
+	}
+
+	/**
+	 * Read the ordered values of the column and take a value every
+	 * rows/partitionCount rows. Only the column is read, which is mostly a scan of
+	 * its index.
+	 */
+	private List<Object> scanBoundaries() throws UnifyException {
+		long rows = countRows();
+		List<Object> boundaries = new ArrayList<Object>();
+		if (rows <= 0)
+			return boundaries;
+		long stride = Math.max(1, rows / partitionCount);
+		StreamingQuery query = new StreamingQuery(bookmark, "SELECT " + column.getName()
+				+ " FROM " + table.getQualifiedName() + " WHERE " + column.getName()
+				+ " IS NOT NULL ORDER BY " + column.getName());
+		query.setFetchSize(fetchSize);
+		try {
+			ResultSet set = query.open();
+			long count = 0;
+			Object last = null;
+			while (!isCancelled && boundaries.size() < partitionCount - 1 && set.next()) {
+				count++;
+				if (count % stride != 0)
+					continue;
+				Object value = set.getObject(1);
+				//Equal values must belong to the same partition
+				if (value != null && !value.equals(last)) {
+					boundaries.add(value);
+					last = value;
+				}
+			}
+			if (isCancelled || boundaries.size() == partitionCount - 1)
+				query.stop();
+			return boundaries;
+		} catch (Exception e) {
+			throw new UnifyException(stringMgr.getString("partition.error.boundaries",
+					column.getName(), ExceptionUtil.getAllExceptions(e)), e);
+		} finally {
+			query.close();
+		}
+	}
+
+	/**
+	 * Divide the range between the minimum and the maximum of the column into equal
+	 * ranges.
+	 */
+	private List<Object> rangeBoundaries() throws UnifyException {
+		List<Object> boundaries = new ArrayList<Object>();
+		StreamingQuery query = new StreamingQuery(bookmark, "SELECT MIN(" + column.getName()
+				+ "),MAX(" + column.getName() + ") FROM " + table.getQualifiedName());
+		try {
+			ResultSet set = query.open();
+			if (!set.next() || set.getBigDecimal(1) == null || set.getBigDecimal(2) == null)
+				return boundaries;
+			BigDecimal min = set.getBigDecimal(1);
+			BigDecimal max = set.getBigDecimal(2);
+			BigDecimal step = max.subtract(min).divide(BigDecimal.valueOf(partitionCount), 10,
+					RoundingMode.HALF_UP);
+			boolean isInteger = column.getNumberOfFractionalDigits() <= 0 && !column.isReal();
+			for (int i = 1; i < partitionCount; i++) {
+				BigDecimal value = min.add(step.multiply(BigDecimal.valueOf(i)));
+				if (isInteger)
+					value = value.setScale(0, RoundingMode.CEILING);
+				if (value.compareTo(max) > 0)
+					break;
+				if (boundaries.size() == 0
+						|| value.compareTo((BigDecimal) boundaries.get(boundaries.size() - 1)) > 0)
+					boundaries.add(value);
+			}
+			return boundaries;
+		} catch (Exception e) {
+			throw new UnifyException(stringMgr.getString("partition.error.boundaries",
+					column.getName(), ExceptionUtil.getAllExceptions(e)), e);
+		} finally {
+			query.close();
+		}
+	}
+
+	private long countRows() {
+		return StreamingQuery.count(bookmark, "SELECT " + column.getName() + " FROM "
+				+ table.getQualifiedName());
+	}
+
+	/**
+	 * Write the header and the partition files in order into the output file, then
+	 * delete the partition files.
+	 */
+	private void merge() {
+		FileOutputStream out = null;
+		try {
+			GUIUtil.createDir(file.getAbsolutePath(), false, false);
+			out = new FileOutputStream(file);
+			FileChannel channel = out.getChannel();
+			if (isDisplayHead) {
+				StringWriter header = new StringWriter();
+				writeHeader(new DelimitedWriter(header, delimiter));
+				channel.write(ByteBuffer.wrap(header.toString().getBytes(
+						ChannelWriter.getExportCharset().name())));
+			}
+			for (Partition partition : partitions) {
+				FileInputStream in = new FileInputStream(partition.file);
+				try {
+					FileChannel source = in.getChannel();
+					long position = 0;
+					long size = source.size();
+					while (position < size)
+						position += source.transferTo(position, size - position, channel);
+				} finally {
+					in.close();
+				}
+			}
+			out.close();
+			out = null;
+			for (Partition partition : partitions)
+				partition.file.delete();
+			isMerged = true;
+		} catch (Exception e) {
+			addError(stringMgr.getString("partition.error.merge", file.getAbsolutePath(),
+					ExceptionUtil.getAllExceptions(e)));
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	private void writeHeader(DelimitedWriter writer) throws IOException {
+		for (Column col : table.getColumns())
+			writer.writeField(col.getName());
+		writer.endRecord();
+	}
+
+	/**
+	 * Return the file of a partition: a temporary file next to the output file when
+	 * the partitions are merged, the output file with the number of the partition
+	 * otherwise.
+	 */
+	private File getPartitionFile(int index) {
+		String path = file.getAbsolutePath();
+		if (isMerge)
+			return new File(path + ".part" + (index + 1));
+		String type = StringUtil.getFileType(file.getName());
+		if (type == null)
+			return new File(path + "_" + (index + 1));
+		return new File(StringUtil.getNoTypeFileStr(path) + "_" + (index + 1) + "." + type);
+	}
+
+	private void addError(String message) {
+		errors.add(message);
+		LogProxy.getProxy().debug(message);
+	}
+
+	/**
+	 * Stop exporting, the partitions not started yet are skipped.
+	 */
+	public void cancel() {
+		isCancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+
+	/**
+	 * Return whether all partitions have been exported.
+	 */
+	public boolean isFinished() {
+		if (partitions == null)
+			return false;
+		for (Partition partition : partitions) {
+			if (partition.state != STATE_FINISHED)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return whether the partition files have been merged into the output file.
+	 */
+	public boolean isMerged() {
+		return isMerged;
+	}
+
+	/**
+	 * Return the partitions, an empty list before they have been computed.
+	 */
+	public List<Partition> getPartitions() {
+		List<Partition> list = partitions;
+		return list == null ? Collections.<Partition> emptyList() : list;
+	}
+
+	/**
+	 * Return the errors which don't belong to a partition, such as a failed merge.
+	 */
+	public List<String> getErrors() {
+		synchronized (errors) {
+			return new ArrayList<String>(errors);
+		}
+	}
+
+	/**
+	 * Return the number of rows written by all partitions.
+	 */
+	public long getRowCount() {
+		long count = 0;
+		for (Partition partition : getPartitions())
+			count += partition.rowCount;
+		return count;
+	}
+
+	/**
+	 * Return the number of rows written per second by all partitions since the
+	 * export was started or resumed.
+	 */
+	public long getRowsPerSecond() {
+		long millis = getElapsedMillis();
+		if (millis <= 0)
+			return 0;
+		return (getRowCount() - rowsAtStart) * 1000 / millis;
+	}
+
+	/**
+	 * Return the milliseconds since the export was started or resumed.
+	 */
+	public long getElapsedMillis() {
+		if (runStartTime == 0)
+			return 0;
+		return (runEndTime == 0 ? System.currentTimeMillis() : runEndTime) - runStartTime;
+	}
+
+	public Entity getTable() {
+		return table;
+	}
+
+	public Column getColumn() {
+		return column;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @param isSampled --true to sample the boundaries from the values of the
+	 *            column, false to divide the range of the numeric column into equal
+	 *            ranges.
+	 */
+	public void setSampled(boolean isSampled) {
+		this.isSampled = isSampled;
+	}
+
+	/**
+	 * @param isMerge --true to merge the partitions into the output file, false to
+	 *            keep a file for each partition.
+	 */
+	public void setMerge(boolean isMerge) {
+		this.isMerge = isMerge;
+	}
+
+	/**
+	 * @param partitionCount --number of partitions the table is split into.
+	 */
+	public void setPartitionCount(int partitionCount) {
+		this.partitionCount = Math.max(1, partitionCount);
+	}
+
+	/**
+	 * @param parallelCount --number of partitions read at the same time.
+	 */
+	public void setParallelCount(int parallelCount) {
+		this.parallelCount = Math.max(1, parallelCount);
+	}
+
+	/**
+	 * @param fetchSize --number of rows fetched from the server at a time.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = Math.max(1, fetchSize);
+	}
+
+	/**
+	 * @param delimiter --delimiter of the fields of the rows.
+	 */
+	public void setDelimiter(String delimiter) {
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * @param isDisplayHead --true to write the names of the columns first.
+	 */
+	public void setDisplayHead(boolean isDisplayHead) {
+		this.isDisplayHead = isDisplayHead;
+	}
+
+	/**
+	 * The rows of a range of values of the column and their export.
+	 */
+	public class Partition implements Runnable {
+
+		private final int index;
+
+		/**
+		 * The lowest value of the range, null for no lower bound.
+		 */
+		private final Object lower;
+
+		/**
+		 * The value above the range, null for no upper bound.
+		 */
+		private final Object upper;
+
+		private final boolean isWithNulls;
+
+		private final File file;
+
+		private volatile int state = STATE_WAITING;
+
+		private volatile String message = null;
+
+		private volatile long rowCount = 0;
+
+		Partition(int index, Object lower, Object upper, boolean isWithNulls) {
+			this.index = index;
+			this.lower = lower;
+			this.upper = upper;
+			this.isWithNulls = isWithNulls;
+			file = getPartitionFile(index);
+		}
+
+		public void run() {
+			if (isCancelled) {
+				state = STATE_CANCELLED;
+				return;
+			}
+			state = STATE_RUNNING;
+			rowCount = 0;
+			List<Object> parameters = new ArrayList<Object>();
+			StreamingQuery query = new StreamingQuery(bookmark, getSQL(parameters));
+			query.setFetchSize(fetchSize);
+			query.setParameters(parameters.toArray());
+			Writer out = null;
+			try {
+				GUIUtil.createDir(file.getAbsolutePath(), false, false);
+				out = ChannelWriter.open(file);
+				DelimitedWriter writer = new DelimitedWriter(out, delimiter);
+				if (isDisplayHead && !isMerge)
+					writeHeader(writer);
+
+				ResultSet set = query.open();
+				ResultSetMetaData metaData = set.getMetaData();
+				int columnCount = metaData.getColumnCount();
+				int[] types = new int[columnCount];
+				for (int i = 0; i < columnCount; i++)
+					types[i] = metaData.getColumnType(i + 1);
+				StringBuilder buffer = new StringBuilder();
+				long count = 0;
+				while (!isCancelled && set.next()) {
+					for (int i = 0; i < columnCount; i++)
+						writer.writeField(StreamingQuery.getText(set, i + 1, types[i], buffer));
+					writer.endRecord();
+					count++;
+					if (count % 1000 == 0) {
+						rowCount = count;
+						query.setRowCount(count);
+					}
+				}
+				rowCount = count;
+				if (isCancelled) {
+					query.stop();
+					state = STATE_CANCELLED;
+				} else {
+					out.close();
+					out = null;
+					state = STATE_FINISHED;
+				}
+			} catch (Exception e) {
+				state = STATE_FAILED;
+				message = ExceptionUtil.getAllExceptions(e).toString();
+				LogProxy.errorLog("exporting partition " + getRange() + " of "
+						+ table.getQualifiedName() + " failed", e);
+			} finally {
+				query.close();
+				if (out != null) {
+					try {
+						out.close();
+					} catch (IOException e) {
+					}
+				}
+			}
+		}
+
+		/**
+		 * Return the query of the partition, the boundaries are added to the
+		 * parameters.
+		 */
+		private String getSQL(List<Object> parameters) {
+			Column[] columns = table.getColumns();
+			StringBuilder sql = new StringBuilder("SELECT ");
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0)
+					sql.append(",");
+				sql.append(columns[i].getName());
+			}
+			sql.append(" FROM ").append(table.getQualifiedName());
+			String name = column.getName();
+			if (lower != null && upper != null) {
+				sql.append(" WHERE ").append(name).append(">=? AND ").append(name).append("<?");
+				parameters.add(lower);
+				parameters.add(upper);
+			} else if (lower != null) {
+				sql.append(" WHERE ").append(name).append(">=?");
+				parameters.add(lower);
+			} else if (upper != null) {
+				sql.append(" WHERE (").append(name).append("<?");
+				if (isWithNulls)
+					sql.append(" OR ").append(name).append(" IS NULL");
+				sql.append(")");
+				parameters.add(upper);
+			}
+			return sql.toString();
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Return the range of the partition, such as "[10, 20)".
+		 */
+		public String getRange() {
+			return "[" + (lower == null ? "" : lower.toString()) + ", "
+					+ (upper == null ? "" : upper.toString()) + ")";
+		}
+
+		public int getState() {
+			return state;
+		}
+
+		/**
+		 * Return the error of the partition, null if it has none.
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		public long getRowCount() {
+			return rowCount;
+		}
+
+		public File getFile() {
+			return file;
+		}
+	}
+}
@@ -11,7 +11,11 @@ import java.awt.Color;
  *         ����excel����ʱ�Ļ������Ϣ������������Ϣ��ÿ���ĵ��������������ÿ������������������Ƿ���������������������?��������������
  */
 public class ExcelComponentSet {
-    public static final int MAXROWS_ONESHEET = 60000; //�ļ�ֻ��һ���?ʱ�����Ƶ��������
+    /**
+     * Maximum rows of a sheet when the rows aren't divided into sheets, the limit of
+     * the .xlsx format.
+     */
+    public static final int MAXROWS_ONESHEET = XlsxWriter.MAX_ROWS;
 
     public static final int maxSheet = 6; //���?��
 
@@ -0,0 +1,80 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata.excel;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.cattsoft.coolsql.exportdata.RowWriter;
+import com.cattsoft.coolsql.pub.display.GUIUtil;
+
+/**
+ * Writes the rows of an export to an Excel (.xlsx) file through {@link XlsxWriter}.
+ * A new sheet is begun when current sheet has the maximum rows of the setting, the
+ * header is written at the top of each sheet if the setting displays it.
+ *
+ * @author agent
+ */
+public class ExcelRowWriter implements RowWriter {
+
+	/**
+	 * Text written for null values.
+	 */
+	public static final String NULL_TEXT = "<NULL>";
+
+	private final ExcelComponentSet setting;
+
+	private final XlsxWriter writer;
+
+	private final int maxRows;
+
+	private final String[] values;
+
+	private boolean isSheetStarted = false;
+
+	public ExcelRowWriter(File file, ExcelComponentSet setting) throws ExcelProcessException,
+			IOException {
+		checkExcelSet(setting);
+		this.setting = setting;
+		maxRows = setting.isSheets() ? setting.getRowsOfSheet()
+				: ExcelComponentSet.MAXROWS_ONESHEET;
+		values = new String[setting.getHeadDefined().length];
+		GUIUtil.createDir(file.getAbsolutePath(), false, false);
+		writer = new XlsxWriter(file, setting.getHeadColumnColor());
+	}
+
+	public void writeRow(String[] row) throws IOException {
+		if (!isSheetStarted || writer.getRowCount() >= maxRows || writer.isSheetFull()) {
+			writer.startSheet(null);
+			if (setting.isDisplayHead())
+				writer.writeHeader(setting.getHeadDefined());
+			isSheetStarted = true;
+		}
+		for (int i = 0; i < values.length; i++) {
+			String value = i < row.length ? row[i] : null;
+			values[i] = value == null ? NULL_TEXT : value;
+		}
+		writer.writeRow(setting.getHeadDefined(), values);
+	}
+
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	/**
+	 * Check setting of excel exporter.
+	 *
+	 * @param setting
+	 * @throws ExcelProcessException
+	 */
+	private static void checkExcelSet(ExcelComponentSet setting)
+			throws ExcelProcessException {
+		if (setting == null)
+			throw new ExcelProcessException("Can't get Excel setting information,setting=null");
+		CellDefined[] tmpDefined = setting.getHeadDefined();
+		if (tmpDefined == null || tmpDefined.length == 0) {
+			throw new ExcelProcessException("No define for columns");
+		}
+	}
+}
@@ -0,0 +1,439 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata.excel;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+
+/**
+ * Writes an Excel 2007 (.xlsx) workbook row by row. Each row is written to the
+ * compressed sheet entry of the file as soon as it's complete, so only the current
+ * row is held in memory and a sheet can have up to {@link #MAX_ROWS} rows. The
+ * parts which refer to all sheets, such as the shared strings and the styles, are
+ * written when the workbook is closed.
+ * <p>
+ * Repeated short strings are written once in the shared strings table; when the
+ * table reaches {@link #MAX_SHARED_STRINGS} entries, new strings are written inline
+ * in the cells so the memory used stays bounded. The style of a column is computed
+ * once for its {@link CellDefined}.
+ * <p>
+ * The POI version used by CoolSQL only writes .xls files, so the package is written
+ * directly; a writer isn't thread-safe, but several writers can run at the same
+ * time.
+ *
+ * @author agent
+ */
+public class XlsxWriter {
+
+	/**
+	 * Maximum number of rows of a sheet.
+	 */
+	public static final int MAX_ROWS = 1048576;
+
+	/**
+	 * Maximum number of entries of the shared strings table.
+	 */
+	public static final int MAX_SHARED_STRINGS = 100000;
+
+	/**
+	 * Strings longer than this are always written inline, they are seldom repeated.
+	 */
+	private static final int MAX_SHARED_LENGTH = 100;
+
+	/**
+	 * Numbers with more digits lose precision in Excel, they are written as text.
+	 */
+	private static final int MAX_NUMBER_DIGITS = 15;
+
+	private static final String XML_HEAD = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+	private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+	private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+	private static final int STYLE_DEFAULT = 0;
+
+	private static final int STYLE_HEADER = 1;
+
+	private static final int STYLE_TEXT = 2;
+
+	private final ZipOutputStream zip;
+
+	private final Writer out;
+
+	private final Color headColor;
+
+	private final List<String> sheetNames = new ArrayList<String>();
+
+	private final Map<String, Integer> sharedIndexes = new HashMap<String, Integer>();
+
+	private final List<String> sharedStrings = new ArrayList<String>();
+
+	private long sharedCount = 0;
+
+	private final Map<CellDefined, Integer> styles = new IdentityHashMap<CellDefined, Integer>();
+
+	/**
+	 * Column references A, B, ... computed once.
+	 */
+	private final List<String> columnNames = new ArrayList<String>();
+
+	private boolean isSheetOpen = false;
+
+	private int rowCount = 0;
+
+	private boolean isClosed = false;
+
+	/**
+	 * @param headColor --color of the font of header cells, null for the default
+	 *            color.
+	 */
+	public XlsxWriter(File file, Color headColor) throws IOException {
+		this.headColor = headColor;
+		zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+		//Exports are limited by the disk or the database, not by compression
+		zip.setLevel(Deflater.BEST_SPEED);
+		out = new OutputStreamWriter(zip, "UTF-8");
+	}
+
+	/**
+	 * Begin a new sheet, the current sheet is ended.
+	 *
+	 * @param name --name of the sheet, null for "sheet" and its number.
+	 */
+	public void startSheet(String name) throws IOException {
+		checkOpen();
+		endSheet();
+		sheetNames.add(name == null ? "sheet" + (sheetNames.size() + 1) : name);
+		zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetNames.size() + ".xml"));
+		out.write(XML_HEAD);
+		out.write("<worksheet xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\"><sheetData>");
+		isSheetOpen = true;
+		rowCount = 0;
+	}
+
+	/**
+	 * Return the number of rows written to current sheet.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Return whether current sheet can't take another row.
+	 */
+	public boolean isSheetFull() {
+		return rowCount >= MAX_ROWS;
+	}
+
+	/**
+	 * Write a row of header cells with the names of the columns.
+	 */
+	public void writeHeader(CellDefined[] columns) throws IOException {
+		startRow();
+		for (int i = 0; i < columns.length; i++)
+			writeString(i, columns[i].getHeaderName(), STYLE_HEADER);
+		endRow();
+	}
+
+	/**
+	 * Write a row of values, the type of a value is given by the column.
+	 *
+	 * @param values --text of the values, a null value gives an empty cell.
+	 */
+	public void writeRow(CellDefined[] columns, String[] values) throws IOException {
+		startRow();
+		for (int i = 0; i < values.length; i++) {
+			String value = values[i];
+			if (value == null)
+				continue;
+			CellDefined column = i < columns.length ? columns[i] : null;
+			int style = getStyle(column);
+			int type = column == null ? HSSFCell.CELL_TYPE_STRING : column.getType();
+			if (type == HSSFCell.CELL_TYPE_NUMERIC && isNumber(value)) {
+				out.write("<c r=\"");
+				out.write(getCellName(i));
+				out.write("\" s=\"" + style + "\"><v>");
+				out.write(value);
+				out.write("</v></c>");
+			} else if (type == HSSFCell.CELL_TYPE_BOOLEAN
+					&& ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value))) {
+				out.write("<c r=\"");
+				out.write(getCellName(i));
+				out.write("\" s=\"" + style + "\" t=\"b\"><v>");
+				out.write("true".equalsIgnoreCase(value) ? "1" : "0");
+				out.write("</v></c>");
+			} else
+				writeString(i, value, style);
+		}
+		endRow();
+	}
+
+	/**
+	 * End the workbook and close the file.
+	 */
+	public void close() throws IOException {
+		if (isClosed)
+			return;
+		isClosed = true;
+		try {
+			if (sheetNames.size() == 0)
+				startSheet(null);
+			endSheet();
+			writeSharedStrings();
+			writeStyles();
+			writeWorkbook();
+			writeEntry("[Content_Types].xml", getContentTypes());
+			writeEntry("_rels/.rels", XML_HEAD
+					+ "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+					+ "<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+					+ "</Relationships>");
+			out.flush();
+			zip.finish();
+		} finally {
+			zip.close();
+		}
+	}
+
+	private void startRow() throws IOException {
+		if (!isSheetOpen)
+			startSheet(null);
+		if (isSheetFull())
+			throw new IllegalStateException("sheet can't have more than " + MAX_ROWS + " rows");
+		rowCount++;
+		out.write("<row r=\"");
+		out.write(String.valueOf(rowCount));
+		out.write("\">");
+	}
+
+	private void endRow() throws IOException {
+		out.write("</row>");
+	}
+
+	private void endSheet() throws IOException {
+		if (!isSheetOpen)
+			return;
+		out.write("</sheetData></worksheet>");
+		out.flush();
+		zip.closeEntry();
+		isSheetOpen = false;
+	}
+
+	private void writeString(int column, String value, int style) throws IOException {
+		out.write("<c r=\"");
+		out.write(getCellName(column));
+		out.write("\" s=\"" + style + "\"");
+		int index = getSharedIndex(value);
+		if (index >= 0) {
+			out.write(" t=\"s\"><v>");
+			out.write(String.valueOf(index));
+			out.write("</v></c>");
+		} else {
+			out.write(" t=\"inlineStr\"><is>");
+			writeText(value);
+			out.write("</is></c>");
+		}
+	}
+
+	/**
+	 * Return the index of the string in the shared strings table, -1 if it should be
+	 * written inline.
+	 */
+	private int getSharedIndex(String value) {
+		if (value.length() > MAX_SHARED_LENGTH)
+			return -1;
+		Integer index = sharedIndexes.get(value);
+		if (index == null) {
+			if (sharedStrings.size() >= MAX_SHARED_STRINGS)
+				return -1;
+			index = sharedStrings.size();
+			sharedIndexes.put(value, index);
+			sharedStrings.add(value);
+		}
+		sharedCount++;
+		return index;
+	}
+
+	private int getStyle(CellDefined column) {
+		if (column == null)
+			return STYLE_DEFAULT;
+		Integer style = styles.get(column);
+		if (style == null) {
+			//Text columns keep their leading zeros and aren't converted by Excel
+			style = column.getType() == HSSFCell.CELL_TYPE_STRING ? STYLE_TEXT
+					: STYLE_DEFAULT;
+			styles.put(column, style);
+		}
+		return style;
+	}
+
+	private String getCellName(int column) {
+		while (columnNames.size() <= column) {
+			int n = columnNames.size() + 1;
+			StringBuilder name = new StringBuilder();
+			while (n > 0) {
+				name.insert(0, (char) ('A' + (n - 1) % 26));
+				n = (n - 1) / 26;
+			}
+			columnNames.add(name.toString());
+		}
+		return columnNames.get(column) + rowCount;
+	}
+
+	/**
+	 * Write a &lt;t&gt; element with the escaped text.
+	 */
+	private void writeText(String value) throws IOException {
+		if (value.length() > 0
+				&& (Character.isWhitespace(value.charAt(0)) || Character
+						.isWhitespace(value.charAt(value.length() - 1))))
+			out.write("<t xml:space=\"preserve\">");
+		else
+			out.write("<t>");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '<':
+					out.write("&lt;");
+					break;
+				case '>':
+					out.write("&gt;");
+					break;
+				case '&':
+					out.write("&amp;");
+					break;
+				case '"':
+					out.write("&quot;");
+					break;
+				default:
+					//Control characters aren't allowed in XML 1.0
+					if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r')
+						out.write(c);
+			}
+		}
+		out.write("</t>");
+	}
+
+	private static boolean isNumber(String value) {
+		int digits = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c >= '0' && c <= '9')
+				digits++;
+			else if (c == 'e' || c == 'E')
+				break;
+			else if (c != '-' && c != '+' && c != '.')
+				return false;
+		}
+		if (digits == 0 || digits > MAX_NUMBER_DIGITS)
+			return false;
+		try {
+			double d = Double.parseDouble(value);
+			return !Double.isNaN(d) && !Double.isInfinite(d);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private void writeSharedStrings() throws IOException {
+		zip.putNextEntry(new ZipEntry("xl/sharedStrings.xml"));
+		out.write(XML_HEAD);
+		out.write("<sst xmlns=\"" + NS_MAIN + "\" count=\"" + sharedCount
+				+ "\" uniqueCount=\"" + sharedStrings.size() + "\">");
+		for (String value : sharedStrings) {
+			out.write("<si>");
+			writeText(value);
+			out.write("</si>");
+		}
+		out.write("</sst>");
+		out.flush();
+		zip.closeEntry();
+	}
+
+	private void writeStyles() throws IOException {
+		String color = "";
+		if (headColor != null)
+			color = "<color rgb=\"FF"
+					+ String.format("%02X%02X%02X", headColor.getRed(), headColor
+							.getGreen(), headColor.getBlue()) + "\"/>";
+		writeEntry("xl/styles.xml", XML_HEAD
+				+ "<styleSheet xmlns=\"" + NS_MAIN + "\">"
+				+ "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+				+ "<font><b/><sz val=\"11\"/>" + color + "<name val=\"Calibri\"/></font></fonts>"
+				+ "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+				+ "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+				+ "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+				+ "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+				+ "<cellXfs count=\"3\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+				+ "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\" applyAlignment=\"1\">"
+				+ "<alignment horizontal=\"center\"/></xf>"
+				+ "<xf numFmtId=\"49\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/></cellXfs>"
+				+ "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+				+ "</styleSheet>");
+	}
+
+	private void writeWorkbook() throws IOException {
+		StringBuilder workbook = new StringBuilder(XML_HEAD);
+		workbook.append("<workbook xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\"><sheets>");
+		StringBuilder rels = new StringBuilder(XML_HEAD);
+		rels.append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+		for (int i = 1; i <= sheetNames.size(); i++) {
+			workbook.append("<sheet name=\"").append(sheetNames.get(i - 1)).append(
+					"\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+			rels.append("<Relationship Id=\"rId").append(i).append("\" Type=\"").append(NS_REL)
+					.append("/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+		}
+		workbook.append("</sheets></workbook>");
+		int n = sheetNames.size();
+		rels.append("<Relationship Id=\"rId").append(n + 1).append("\" Type=\"").append(NS_REL)
+				.append("/sharedStrings\" Target=\"sharedStrings.xml\"/>");
+		rels.append("<Relationship Id=\"rId").append(n + 2).append("\" Type=\"").append(NS_REL)
+				.append("/styles\" Target=\"styles.xml\"/>");
+		rels.append("</Relationships>");
+		writeEntry("xl/workbook.xml", workbook.toString());
+		writeEntry("xl/_rels/workbook.xml.rels", rels.toString());
+	}
+
+	private String getContentTypes() {
+		String type = "application/vnd.openxmlformats-officedocument.spreadsheetml.";
+		StringBuilder types = new StringBuilder(XML_HEAD);
+		types.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+		types.append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+		types.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+		types.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"" + type + "sheet.main+xml\"/>");
+		for (int i = 1; i <= sheetNames.size(); i++)
+			types.append("<Override PartName=\"/xl/worksheets/sheet" + i + ".xml\" ContentType=\"" + type + "worksheet+xml\"/>");
+		types.append("<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"" + type + "sharedStrings+xml\"/>");
+		types.append("<Override PartName=\"/xl/styles.xml\" ContentType=\"" + type + "styles+xml\"/>");
+		types.append("</Types>");
+		return types.toString();
+	}
+
+	private void writeEntry(String name, String content) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		out.write(content);
+		out.flush();
+		zip.closeEntry();
+	}
+
+	private void checkOpen() throws IOException {
+		if (isClosed)
+			throw new IOException("workbook has been closed");
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata.html;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes text into HTML: the characters written are escaped, so values from the
+ * database can't break the markup, while {@link #writeMarkup(String)} writes tags
+ * unchanged. The runs of characters which needn't be escaped are written by
+ * blocks.
+ *
+ * @author agent
+ */
+public class HtmlEscapeWriter extends FilterWriter {
+
+	public HtmlEscapeWriter(Writer out) {
+		super(out);
+	}
+
+	/**
+	 * Write markup, it isn't escaped.
+	 */
+	public void writeMarkup(String markup) throws IOException {
+		out.write(markup);
+	}
+
+	public void write(int c) throws IOException {
+		String entity = getEntity((char) c);
+		if (entity != null)
+			out.write(entity);
+		else
+			out.write(c);
+	}
+
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		int start = off;
+		int end = off + len;
+		for (int i = off; i < end; i++) {
+			String entity = getEntity(cbuf[i]);
+			if (entity == null)
+				continue;
+			out.write(cbuf, start, i - start);
+			out.write(entity);
+			start = i + 1;
+		}
+		out.write(cbuf, start, end - start);
+	}
+
+	public void write(String str, int off, int len) throws IOException {
+		int start = off;
+		int end = off + len;
+		for (int i = off; i < end; i++) {
+			String entity = getEntity(str.charAt(i));
+			if (entity == null)
+				continue;
+			out.write(str, start, i - start);
+			out.write(entity);
+			start = i + 1;
+		}
+		out.write(str, start, end - start);
+	}
+
+	/**
+	 * Return the entity which replaces the character, null if the character is
+	 * written as it is.
+	 */
+	private static String getEntity(char c) {
+		switch (c) {
+			case '<':
+				return "&lt;";
+			case '>':
+				return "&gt;";
+			case '&':
+				return "&amp;";
+			case '"':
+				return "&quot;";
+			case '\'':
+				return "&#39;";
+			default:
+				return null;
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.exportdata.html;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+
+import com.cattsoft.coolsql.exportdata.ChannelWriter;
+import com.cattsoft.coolsql.exportdata.RowWriter;
+import com.cattsoft.coolsql.pub.display.GUIUtil;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+
+/**
+ * Writes the rows of an export to HTML pages of a fixed number of rows. The first
+ * page is the selected file, such as data.html, the next pages are data1.html,
+ * data2.html and so on. Each page is written as its rows come and closed when it's
+ * full, so only the current row is held in memory.
+ * <p>
+ * The links at the bottom of a page are exact, since the next page is only known to
+ * exist when its first row comes. The links at the top of a page need the number of
+ * rows, without it they only lead to the previous pages.
+ *
+ * @author agent
+ */
+public class HtmlPageWriter implements RowWriter {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(HtmlPageWriter.class);
+
+	/**
+	 * Text written for null values.
+	 */
+	public static final String NULL_TEXT = "<NULL>";
+
+	private final File dir;
+
+	private final String baseName;
+
+	private final String[] header;
+
+	private final int pageSize;
+
+	/**
+	 * Number of pages, -1 if the number of rows isn't known.
+	 */
+	private final int pageCount;
+
+	private final Charset charset;
+
+	private HtmlEscapeWriter out = null;
+
+	private int page = -1;
+
+	private int rowsOfPage = 0;
+
+	private long rowCount = 0;
+
+	/**
+	 * @param file --the file of the first page.
+	 * @param header --the names of the columns.
+	 * @param pageSize --number of rows of a page.
+	 * @param totalRows --number of rows to write, -1 if it isn't known.
+	 */
+	public HtmlPageWriter(File file, String[] header, int pageSize, long totalRows)
+			throws UnifyException {
+		dir = file.getAbsoluteFile().getParentFile();
+		baseName = getBaseName(file.getName());
+		this.header = header;
+		this.pageSize = Math.max(1, pageSize);
+		pageCount = totalRows < 0 ? -1 : (int) Math.max(1, (totalRows + this.pageSize - 1)
+				/ this.pageSize);
+		charset = ChannelWriter.getExportCharset();
+		GUIUtil.createDir(file.getAbsolutePath(), false, false);
+	}
+
+	/**
+	 * Return the name of the file without its .html or .htm suffix.
+	 */
+	public static String getBaseName(String fileName) {
+		String lower = fileName.toLowerCase();
+		if (lower.endsWith(".html"))
+			return fileName.substring(0, fileName.length() - 5);
+		if (lower.endsWith(".htm"))
+			return fileName.substring(0, fileName.length() - 4);
+		return fileName;
+	}
+
+	/**
+	 * Return the name of the file of a page.
+	 *
+	 * @param index --index of the page, from 0.
+	 */
+	public String getPageName(int index) {
+		return baseName + (index == 0 ? "" : String.valueOf(index)) + ".html";
+	}
+
+	public void writeRow(String[] values) throws IOException {
+		if (out == null) {
+			startPage(0);
+		} else if (rowsOfPage >= pageSize) {
+			endPage(true);
+			startPage(page + 1);
+		}
+		out.writeMarkup("<tr>");
+		for (int i = 0; i < values.length; i++) {
+			out.writeMarkup("<td>");
+			out.write(values[i] == null ? NULL_TEXT : values[i]);
+			out.writeMarkup("</td>");
+		}
+		out.writeMarkup("</tr>\r\n");
+		rowsOfPage++;
+		rowCount++;
+	}
+
+	public void close() throws IOException {
+		//A query without rows gives a page with the header only
+		if (out == null)
+			startPage(0);
+		endPage(false);
+	}
+
+	/**
+	 * Return the number of rows written.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Return the number of pages written so far.
+	 */
+	public int getPageCount() {
+		return page + 1;
+	}
+
+	private void startPage(int index) throws IOException {
+		page = index;
+		rowsOfPage = 0;
+		File file = new File(dir, getPageName(index));
+		out = new HtmlEscapeWriter(new ChannelWriter(new FileOutputStream(file).getChannel(),
+				charset));
+		out.writeMarkup("<!DOCTYPE html>\r\n<html>\r\n<head>\r\n<meta http-equiv=\"Content-Type\" content=\"text/html; charset=");
+		out.write(charset.name());
+		out.writeMarkup("\">\r\n<title>");
+		out.write(baseName);
+		out.writeMarkup("</title>\r\n");
+		out.writeMarkup(getCss());
+		out.writeMarkup("</head>\r\n<body>\r\n");
+		writeNavigation(pageCount < 0 ? false : page < pageCount - 1);
+		out.writeMarkup("<table>\r\n<tr>");
+		for (int i = 0; i < header.length; i++) {
+			out.writeMarkup("<th>");
+			out.write(header[i] == null ? "" : header[i]);
+			out.writeMarkup("</th>");
+		}
+		out.writeMarkup("</tr>\r\n");
+	}
+
+	private void endPage(boolean hasNext) throws IOException {
+		try {
+			out.writeMarkup("</table>\r\n");
+			writeNavigation(hasNext);
+			out.writeMarkup("</body>\r\n</html>\r\n");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write the links to the first, previous, next and last pages, and the rows of
+	 * the page.
+	 */
+	private void writeNavigation(boolean hasNext) throws IOException {
+		out.writeMarkup("<p class=\"nav\">");
+		writeLink(stringMgr.getString("html.page.first"), 0, page > 0);
+		writeLink(stringMgr.getString("html.page.previous"), page - 1, page > 0);
+		writeLink(stringMgr.getString("html.page.next"), page + 1, hasNext);
+		if (pageCount > 0)
+			writeLink(stringMgr.getString("html.page.last"), pageCount - 1, page < pageCount - 1);
+		if (pageCount > 0)
+			out.write(stringMgr.getString("html.page.info", page + 1, pageCount));
+		else
+			out.write(stringMgr.getString("html.page.infounknown", page + 1));
+		out.writeMarkup("</p>\r\n");
+	}
+
+	private void writeLink(String label, int index, boolean isEnabled) throws IOException {
+		if (isEnabled) {
+			out.writeMarkup("<a href=\"");
+			out.write(encodeFileName(getPageName(index)));
+			out.writeMarkup("\">");
+			out.write(label);
+			out.writeMarkup("</a> ");
+		} else {
+			out.writeMarkup("<span>");
+			out.write(label);
+			out.writeMarkup("</span> ");
+		}
+	}
+
+	/**
+	 * Percent-encode the name of a page file for a link, the characters other than
+	 * the unreserved ones of RFC 3986 are written as the UTF-8 bytes, so a name with
+	 * spaces, '#' or '%' leads to the file.
+	 */
+	static String encodeFileName(String name) throws UnsupportedEncodingException {
+		StringBuilder sb = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+					|| c == '-' || c == '.' || c == '_' || c == '~') {
+				sb.append(c);
+				continue;
+			}
+			//A surrogate pair is encoded as one character
+			int end = Character.isHighSurrogate(c) && i + 1 < name.length() ? i + 2 : i + 1;
+			byte[] bytes = name.substring(i, end).getBytes("UTF-8");
+			for (byte b : bytes) {
+				sb.append('%');
+				sb.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)));
+				sb.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+			}
+			i = end - 1;
+		}
+		return sb.toString();
+	}
+
+	private static String getCss() {
+		return "<style type=\"text/css\">\r\n"
+				+ "body {font-size: 12px;color: #000033;background-color: #E7E7E8;}\r\n"
+				+ "table {border-collapse: collapse;}\r\n"
+				+ "th {font-weight: normal;background-color: #B2B7CC;border: 1px solid #000000;padding: 2px 4px;}\r\n"
+				+ "td {border: 1px solid #000000;padding: 2px 4px;white-space: pre-wrap;}\r\n"
+				+ "p.nav a, p.nav span {margin-right: 8px;}\r\n"
+				+ "p.nav span {color: #999999;}\r\n</style>\r\n";
+	}
+}
@@ -0,0 +1,276 @@
+package com.cattsoft.coolsql.gui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import com.cattsoft.coolsql.pub.component.BaseDialog;
+import com.cattsoft.coolsql.pub.component.RenderButton;
+import com.cattsoft.coolsql.pub.display.BaseTable;
+import com.cattsoft.coolsql.pub.display.TableScrollPane;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.pub.util.StringUtil;
+import com.cattsoft.coolsql.sql.QueryRegistry;
+import com.cattsoft.coolsql.sql.RunningQuery;
+import com.cattsoft.coolsql.sql.execute.IMultiStatementExecute;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.view.ResultSetView;
+import com.cattsoft.coolsql.view.ViewManage;
+
+/**
+ * Lists the statements being executed in all bookmarks and the number of background
+ * tasks, refreshed every second while the dialog is shown. A statement can be cancelled, or killed if its driver
+ * ignores the cancellation, and the time limit of its bookmark can be changed.
+ *
+ * @author agent
+ */
+public class RunningQueriesDialog extends BaseDialog {
+
+	private static final long serialVersionUID = 1L;
+	private static final StringManager stringMgr=StringManagerFactory.getStringManager(RunningQueriesDialog.class);
+
+	private static RunningQueriesDialog dialog=null;
+
+	private QueryTableModel model;
+	private JTable table;
+	private JLabel taskLabel;
+	private Timer timer;
+
+	/**
+	 * Show the dialog, there is only one of them.
+	 */
+	public static void showDialog(JFrame frame)
+	{
+		if(dialog==null)
+			dialog=new RunningQueriesDialog(frame);
+		dialog.refresh();
+		dialog.timer.start();
+		dialog.setVisible(true);
+		dialog.toFront();
+	}
+	private RunningQueriesDialog(JFrame frame)
+	{
+		super(frame,false);
+		setTitle(stringMgr.getString("gui.runningqueries.title"));
+		initDialog();
+		setSize(750,300);
+		toCenter();
+	}
+	private void initDialog()
+	{
+		JPanel main=new JPanel(new BorderLayout());
+		model=new QueryTableModel();
+		table=new BaseTable();
+		table.setModel(model);
+		table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		table.getColumnModel().getColumn(3).setPreferredWidth(300);
+		main.add(new TableScrollPane(table),BorderLayout.CENTER);
+		taskLabel=new JLabel();
+		main.add(taskLabel,BorderLayout.NORTH);
+
+		/**button area */
+		JPanel buttonPane=new JPanel(new FlowLayout(FlowLayout.CENTER));
+		JButton cancelButton=new RenderButton(stringMgr.getString("gui.runningqueries.cancel"));
+		cancelButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				RunningQuery query=getSelectedQuery();
+				if(query!=null)
+					query.cancel();
+			}
+		}
+		);
+		buttonPane.add(cancelButton);
+		JButton killButton=new RenderButton(stringMgr.getString("gui.runningqueries.kill"));
+		killButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				RunningQuery query=getSelectedQuery();
+				if(query!=null&&JOptionPane.showConfirmDialog(RunningQueriesDialog.this,
+						stringMgr.getString("gui.runningqueries.kill.confirm"),"confirm",
+						JOptionPane.YES_NO_OPTION)==JOptionPane.YES_OPTION)
+					query.kill();
+			}
+		}
+		);
+		buttonPane.add(killButton);
+		JButton limitButton=new RenderButton(stringMgr.getString("gui.runningqueries.timelimit"));
+		limitButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				editTimeLimit();
+			}
+		}
+		);
+		buttonPane.add(limitButton);
+		JButton closeButton=new RenderButton(stringMgr.getString("gui.runningqueries.close"));
+		closeButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		}
+		);
+		buttonPane.add(closeButton);
+		main.add(buttonPane,BorderLayout.SOUTH);
+		setContentPane(main);
+
+		timer=new Timer(1000,new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				refresh();
+			}
+		});
+	}
+	/**
+	 * Read the registered queries again, keeping the selected one selected.
+	 */
+	private void refresh()
+	{
+		RunningQuery selected=getSelectedQuery();
+		model.setQueries(QueryRegistry.getInstance().getQueries());
+		TaskExecutor executor=TaskExecutor.getInstance();
+		taskLabel.setText(stringMgr.getString("gui.runningqueries.tasks",
+				executor.getRunningCount(),executor.getWaitingCount()));
+		if(selected!=null)
+		{
+			int row=model.indexOf(selected);
+			if(row>=0)
+				table.getSelectionModel().setSelectionInterval(row,row);
+		}
+	}
+	private RunningQuery getSelectedQuery()
+	{
+		int row=table.getSelectedRow();
+		if(row<0||row>=model.getRowCount())
+			return null;
+		return model.getQuery(row);
+	}
+	private void editTimeLimit()
+	{
+		RunningQuery query=getSelectedQuery();
+		if(query==null||query.getBookmark()==null)
+		{
+			JOptionPane.showMessageDialog(this,stringMgr.getString("gui.runningqueries.noselection"),"warning",JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+		String alias=query.getBookmark().getAliasName();
+		Object value=JOptionPane.showInputDialog(this,stringMgr.getString("gui.runningqueries.timelimit.prompt",alias),
+				"input",JOptionPane.QUESTION_MESSAGE,null,null,String.valueOf(QueryRegistry.getTimeLimit(query.getBookmark())));
+		if(value==null)
+			return;
+		int seconds;
+		try
+		{
+			seconds=Integer.parseInt(value.toString().trim());
+		}catch(NumberFormatException e)
+		{
+			JOptionPane.showMessageDialog(this,stringMgr.getString("gui.runningqueries.timelimit.invalid",value),"error",JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		Setting.getInstance().getDatabaseSetting(alias).setQueryTimeLimit(seconds);
+	}
+	@Override
+	public void dispose()
+	{
+		timer.stop();
+		super.dispose();
+	}
+	/**
+	 * Return the text describing what the statement is executed for.
+	 */
+	private static String getOwnerText(RunningQuery query)
+	{
+		Object owner=query.getOwner();
+		if(owner instanceof JComponent)
+		{
+			ResultSetView view=ViewManage.getInstance().getResultView();
+			int index=view.getPositionByComponent((JComponent)owner);
+			if(index>=0)
+				return stringMgr.getString("gui.runningqueries.owner.tab",view.getResultTab().getTitleAt(index));
+			return stringMgr.getString("gui.runningqueries.owner.closedtab");
+		}
+		if(owner instanceof IMultiStatementExecute)
+			return stringMgr.getString("gui.runningqueries.owner.script");
+		if(owner!=null)
+			return owner.toString();
+		return query.getThread().getName();
+	}
+	private static String formatTime(long millis)
+	{
+		long seconds=millis/1000;
+		return String.format("%d:%02d:%02d",seconds/3600,seconds/60%60,seconds%60);
+	}
+	/**
+	 * A row for each registered query.
+	 */
+	private static class QueryTableModel extends AbstractTableModel
+	{
+		private static final long serialVersionUID = 1L;
+
+		private List<RunningQuery> queries=new ArrayList<RunningQuery>();
+
+		public void setQueries(List<RunningQuery> queries)
+		{
+			this.queries=queries;
+			fireTableDataChanged();
+		}
+		public RunningQuery getQuery(int row)
+		{
+			return queries.get(row);
+		}
+		public int indexOf(RunningQuery query)
+		{
+			return queries.indexOf(query);
+		}
+		public int getColumnCount()
+		{
+			return 7;
+		}
+		public int getRowCount()
+		{
+			return queries.size();
+		}
+		public String getColumnName(int column)
+		{
+			return stringMgr.getString("gui.runningqueries.column"+column);
+		}
+		public Object getValueAt(int row, int column)
+		{
+			RunningQuery query=queries.get(row);
+			switch(column)
+			{
+				case 0:
+					return String.valueOf(query.getId());
+				case 1:
+					return query.getBookmark()==null?"":query.getBookmark().getAliasName();
+				case 2:
+					return getOwnerText(query);
+				case 3:
+					return StringUtil.getMaxSubstring(String.valueOf(query.getSql()).replaceAll("\\s+"," "),200);
+				case 4:
+					return formatTime(query.getElapsedTime());
+				case 5:
+					return stringMgr.getString("gui.runningqueries.phase"+query.getPhase());
+				default:
+					return String.valueOf(query.getRowCount());
+			}
+		}
+	}
+}
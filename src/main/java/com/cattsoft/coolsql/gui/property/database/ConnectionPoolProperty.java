@@ -0,0 +1,106 @@
+package com.cattsoft.coolsql.gui.property.database;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.JLabel;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.gui.property.BasePropertyPane;
+import com.cattsoft.coolsql.pub.display.CommonDataTable;
+import com.cattsoft.coolsql.pub.display.TableScrollPane;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.sql.ConnectionPool;
+import com.cattsoft.coolsql.sql.PreparedStatementCache;
+
+/**
+ * Displays the figures of the connection pool of a bookmark: lent and idle
+ * connections, and how long borrowing has waited for a connection. The hits of the
+ * cache of prepared statements of the editor connection are displayed too.
+ *
+ * @author agent
+ */
+public class ConnectionPoolProperty extends BasePropertyPane {
+	private static final long serialVersionUID = 1L;
+	private static final StringManager stringMgr=StringManagerFactory.getStringManager(ConnectionPoolProperty.class);
+
+	public ConnectionPoolProperty() {
+		super();
+	}
+	/* (non-Javadoc)
+	 * @see com.coolsql.gui.property.PropertyInterface#isNeedApply()
+	 */
+	public boolean isNeedApply() {
+		return false;
+	}
+	/* (non-Javadoc)
+	 * @see com.coolsql.gui.property.PropertyInterface#setData(java.lang.Object)
+	 */
+	public void setData(Object ob) {
+		Bookmark bookmark=(Bookmark)ob;
+		ConnectionPool pool=bookmark.getConnectionPool();
+		panel.removeAll();
+		if(pool==null)
+		{
+			panel.setLayout(new FlowLayout());
+			panel.add(new JLabel(stringMgr.getString("property.database.connectionpool.noconnection")));
+			return;
+		}
+		panel.setLayout(new BorderLayout());
+
+		ConnectionPool.Statistics stat=pool.getStatistics();
+		String[] header=new String[]{stringMgr.getString("property.database.connectionpool.name"),
+				stringMgr.getString("property.database.connectionpool.value")};
+		List<String[]> data=new ArrayList<String[]>();
+		String[][] poolData=new String[][]{
+				{stringMgr.getString("property.database.connectionpool.active"),String.valueOf(stat.getActiveCount())},
+				{stringMgr.getString("property.database.connectionpool.idle"),String.valueOf(stat.getIdleCount())},
+				{stringMgr.getString("property.database.connectionpool.minsize"),String.valueOf(stat.getMinSize())},
+				{stringMgr.getString("property.database.connectionpool.maxsize"),String.valueOf(stat.getMaxSize())},
+				{stringMgr.getString("property.database.connectionpool.borrowcount"),String.valueOf(stat.getBorrowCount())},
+				{stringMgr.getString("property.database.connectionpool.waitcount"),String.valueOf(stat.getWaitCount())},
+				{stringMgr.getString("property.database.connectionpool.averagewait"),String.valueOf(stat.getAverageWaitTime())},
+				{stringMgr.getString("property.database.connectionpool.maxwait"),String.valueOf(stat.getMaxWaitTime())}
+		};
+		data.addAll(Arrays.asList(poolData));
+		PreparedStatementCache.Statistics cacheStat=bookmark.getStatementCacheStatistics();
+		if(cacheStat!=null)
+		{
+			String[][] cacheData=new String[][]{
+					{stringMgr.getString("property.database.statementcache.size"),cacheStat.getIdleCount()+"/"+cacheStat.getMaxSize()},
+					{stringMgr.getString("property.database.statementcache.hitcount"),String.valueOf(cacheStat.getHitCount())},
+					{stringMgr.getString("property.database.statementcache.misscount"),String.valueOf(cacheStat.getMissCount())},
+					{stringMgr.getString("property.database.statementcache.hitrate"),String.valueOf(cacheStat.getHitRate())},
+					{stringMgr.getString("property.database.statementcache.evictioncount"),String.valueOf(cacheStat.getEvictionCount())}
+			};
+			data.addAll(Arrays.asList(cacheData));
+		}
+		CommonDataTable table=new CommonDataTable(data.toArray(new String[data.size()][]),header)
+		{
+			private static final long serialVersionUID = 1L;
+
+			public boolean isCellEditable(int row, int column)
+			{
+				return false;
+			}
+		};
+		panel.add(new TableScrollPane(table),BorderLayout.CENTER);
+		table.adjustPerfectWidth();
+	}
+	/* (non-Javadoc)
+	 * @see com.coolsql.gui.property.PropertyInterface#apply()
+	 */
+	public void apply() {
+
+	}
+	/* (non-Javadoc)
+	 * @see com.coolsql.gui.property.PropertyInterface#set()
+	 */
+	public boolean set() {
+		return true;
+	}
+}
@@ -0,0 +1,325 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.importdata;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.bookmarkBean.BookmarkManage;
+import com.cattsoft.coolsql.exportdata.Actionable;
+import com.cattsoft.coolsql.modifydatabase.insert.ProcessThread;
+import com.cattsoft.coolsql.pub.component.BaseDialog;
+import com.cattsoft.coolsql.pub.component.RenderButton;
+import com.cattsoft.coolsql.pub.display.BaseTable;
+import com.cattsoft.coolsql.pub.display.GUIUtil;
+import com.cattsoft.coolsql.pub.display.TableScrollPane;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.PublicResource;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Copies tables of a bookmark to another connected bookmark. The options are chosen
+ * first, then the dialog shows the progress of each table while
+ * {@link TableCopier} runs in a thread of its own. The dialog isn't modal, so other
+ * work can go on during the copy.
+ *
+ * @author agent
+ */
+public class CopyTablesDialog extends BaseDialog {
+
+	private static final long serialVersionUID = 1L;
+	private static final StringManager stringMgr=StringManagerFactory.getStringManager(CopyTablesDialog.class);
+
+	private final Bookmark source;
+	private final List<Entity> entities;
+
+	private JComboBox targetBox;
+	private JCheckBox createTablesBox;
+	private JCheckBox deferIndexesBox;
+	private JSpinner parallelSpinner;
+	private JSpinner batchSpinner;
+	private JSpinner fetchSpinner;
+
+	private TableCopier copier;
+	private ProgressTableModel progressModel;
+	private Timer timer;
+	private JButton cancelButton;
+	private JButton closeButton;
+
+	public CopyTablesDialog(Bookmark source,List<Entity> entities)
+	{
+		super(GUIUtil.getMainFrame(),false);
+		this.source=source;
+		this.entities=entities;
+		setTitle(stringMgr.getString("copy.dialog.title",source.getAliasName()));
+		setContentPane(createOptionPane());
+		setSize(450,300);
+		toCenter();
+	}
+	private JPanel createOptionPane()
+	{
+		JPanel main=new JPanel(new BorderLayout());
+		main.add(new JLabel(stringMgr.getString("copy.dialog.info",entities.size(),source.getAliasName())),BorderLayout.NORTH);
+
+		JPanel pane=new JPanel(new GridBagLayout());
+		GridBagConstraints gbc=new GridBagConstraints();
+		gbc.insets=new Insets(4,4,4,4);
+		gbc.anchor=GridBagConstraints.WEST;
+		gbc.fill=GridBagConstraints.HORIZONTAL;
+
+		targetBox=new JComboBox();
+		for(Bookmark bookmark:BookmarkManage.getInstance().getBookmarks())
+		{
+			if(bookmark!=source&&bookmark.isConnected())
+				targetBox.addItem(bookmark);
+		}
+		addRow(pane,gbc,0,stringMgr.getString("copy.dialog.target"),targetBox);
+
+		createTablesBox=new JCheckBox(stringMgr.getString("copy.dialog.createtables"),true);
+		gbc.gridx=1;
+		gbc.gridy=1;
+		pane.add(createTablesBox,gbc);
+		deferIndexesBox=new JCheckBox(stringMgr.getString("copy.dialog.deferindexes"),true);
+		gbc.gridy=2;
+		pane.add(deferIndexesBox,gbc);
+		createTablesBox.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				deferIndexesBox.setEnabled(createTablesBox.isSelected());
+			}
+		}
+		);
+
+		Setting setting=Setting.getInstance();
+		parallelSpinner=new JSpinner(new SpinnerNumberModel(Math.max(1,setting.getIntProperty(
+				PropertyConstant.PROPERTY_SYSTEM_COPY_PARALLELTABLES,2)),1,16,1));
+		addRow(pane,gbc,3,stringMgr.getString("copy.dialog.parallel"),parallelSpinner);
+		batchSpinner=new JSpinner(new SpinnerNumberModel(Math.max(1,setting.getIntProperty(
+				PropertyConstant.PROPERTY_SYSTEM_IMPORT_BATCHSIZE,500)),1,100000,100));
+		addRow(pane,gbc,4,stringMgr.getString("copy.dialog.batchsize"),batchSpinner);
+		fetchSpinner=new JSpinner(new SpinnerNumberModel(Math.max(1,setting.getIntProperty(
+				PropertyConstant.PROPERTY_SYSTEM_COPY_FETCHSIZE,1000)),1,100000,100));
+		addRow(pane,gbc,5,stringMgr.getString("copy.dialog.fetchsize"),fetchSpinner);
+		main.add(pane,BorderLayout.CENTER);
+
+		/**button area */
+		JPanel buttonPane=new JPanel(new FlowLayout(FlowLayout.CENTER));
+		JButton okButton=new RenderButton(PublicResource.getOkButtonLabel());
+		okButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				startCopy();
+			}
+		}
+		);
+		buttonPane.add(okButton);
+		JButton quitButton=new RenderButton(PublicResource.getCancelButtonLabel());
+		quitButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		}
+		);
+		buttonPane.add(quitButton);
+		main.add(buttonPane,BorderLayout.SOUTH);
+		getRootPane().setDefaultButton(okButton);
+		return main;
+	}
+	private static void addRow(JPanel pane,GridBagConstraints gbc,int row,String label,java.awt.Component field)
+	{
+		gbc.gridx=0;
+		gbc.gridy=row;
+		gbc.weightx=0;
+		pane.add(new JLabel(label),gbc);
+		gbc.gridx=1;
+		gbc.weightx=1;
+		pane.add(field,gbc);
+	}
+	/**
+	 * Start copying and show the progress of the tables.
+	 */
+	private void startCopy()
+	{
+		Bookmark target=(Bookmark)targetBox.getSelectedItem();
+		if(target==null)
+		{
+			JOptionPane.showMessageDialog(this,stringMgr.getString("copy.dialog.notarget"),"warning",JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+		copier=new TableCopier(source,target,entities);
+		copier.setCreateTables(createTablesBox.isSelected());
+		copier.setDeferIndexes(deferIndexesBox.isSelected());
+		copier.setParallelCount(((Number)parallelSpinner.getValue()).intValue());
+		copier.setBatchSize(((Number)batchSpinner.getValue()).intValue());
+		copier.setFetchSize(((Number)fetchSpinner.getValue()).intValue());
+
+		setContentPane(createProgressPane());
+		setTitle(stringMgr.getString("copy.progress.title",source.getAliasName(),target.getAliasName()));
+		setSize(650,350);
+		toCenter();
+		validate();
+
+		timer=new Timer(1000,new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				progressModel.fireTableRowsUpdated(0,progressModel.getRowCount()-1);
+			}
+		});
+		ManagedTask task=TaskExecutor.getInstance().createTask(new ProcessThread(new Actionable()
+		{
+			public void action() {
+				try
+				{
+					copier.execute();
+				}catch(UnifyException e)
+				{
+					LogProxy.errorReport(e);
+				}finally
+				{
+					SwingUtilities.invokeLater(new Runnable()
+					{
+						public void run() {
+							finishCopy();
+						}
+					});
+				}
+			}
+		}),"copy tables",TaskExecutor.PRIORITY_BATCH,null);
+		timer.start();
+		task.start();
+	}
+	private JPanel createProgressPane()
+	{
+		JPanel main=new JPanel(new BorderLayout());
+		progressModel=new ProgressTableModel();
+		JTable table=new BaseTable();
+		table.setModel(progressModel);
+		main.add(new TableScrollPane(table),BorderLayout.CENTER);
+
+		JPanel buttonPane=new JPanel(new FlowLayout(FlowLayout.CENTER));
+		cancelButton=new RenderButton(PublicResource.getCancelButtonLabel());
+		cancelButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				cancelButton.setEnabled(false);
+				copier.cancel();
+			}
+		}
+		);
+		buttonPane.add(cancelButton);
+		closeButton=new RenderButton(stringMgr.getString("copy.progress.close"));
+		closeButton.setEnabled(false);
+		closeButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		}
+		);
+		buttonPane.add(closeButton);
+		main.add(buttonPane,BorderLayout.SOUTH);
+		return main;
+	}
+	private void finishCopy()
+	{
+		timer.stop();
+		progressModel.fireTableDataChanged();
+		cancelButton.setEnabled(false);
+		closeButton.setEnabled(true);
+		List<String> errors=copier.getErrors();
+		if(errors.size()>0)
+		{
+			StringBuilder message=new StringBuilder();
+			for(int i=0;i<errors.size()&&i<5;i++)
+				message.append(errors.get(i)).append("\n");
+			JOptionPane.showMessageDialog(this,message.toString(),"error",JOptionPane.ERROR_MESSAGE);
+		}
+	}
+	@Override
+	public void dispose()
+	{
+		if(copier!=null&&timer!=null&&timer.isRunning())
+		{
+			//Closing the window stops the copy
+			copier.cancel();
+		}
+		super.dispose();
+	}
+	private static String formatSeconds(long seconds)
+	{
+		if(seconds<0)
+			return "";
+		return String.format("%d:%02d:%02d",seconds/3600,seconds/60%60,seconds%60);
+	}
+	/**
+	 * A row for each table copied.
+	 */
+	private class ProgressTableModel extends AbstractTableModel
+	{
+		private static final long serialVersionUID = 1L;
+
+		public int getColumnCount()
+		{
+			return 7;
+		}
+		public int getRowCount()
+		{
+			return copier.getTasks().size();
+		}
+		public String getColumnName(int column)
+		{
+			return stringMgr.getString("copy.progress.column"+column);
+		}
+		public Object getValueAt(int row, int column)
+		{
+			TableCopier.CopyTask task=copier.getTasks().get(row);
+			switch(column)
+			{
+				case 0:
+					return task.getEntity().getQualifiedName();
+				case 1:
+					String state=stringMgr.getString("copy.progress.state"+task.getState());
+					return task.getMessage()==null?state:state+": "+task.getMessage();
+				case 2:
+					return task.getRowCount()>0?String.valueOf(task.getRowCount()):"";
+				case 3:
+					return String.valueOf(task.getReadCount());
+				case 4:
+					return String.valueOf(task.getWrittenCount());
+				case 5:
+					return String.valueOf(task.getRowsPerSecond());
+				default:
+					return formatSeconds(task.getSecondsLeft());
+			}
+		}
+	}
+}
@@ -0,0 +1,634 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.importdata;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.pub.util.ExceptionUtil;
+import com.cattsoft.coolsql.pub.util.SqlUtil;
+import com.cattsoft.coolsql.sql.ConnectionPool;
+import com.cattsoft.coolsql.sql.QueryRegistry;
+import com.cattsoft.coolsql.sql.RunningQuery;
+import com.cattsoft.coolsql.sql.model.Column;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.system.task.TaskGroup;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Imports the rows of a file into a table. The file is read by the calling thread,
+ * which fills chunks of rows and puts them in a bounded queue; writer threads take
+ * the chunks, insert them by batches of prepared statements on connections of the
+ * pool of the bookmark, and commit each chunk. Since the queue is bounded, the
+ * reader waits for the writers and the memory used doesn't depend on the size of
+ * the file.
+ * <p>
+ * If a partition column is set, each row is written by the writer chosen by the
+ * value of the column, so the rows of a partition of the table are inserted by a
+ * single connection. Otherwise, the writers share one queue.
+ * <p>
+ * The rows are only written by connections of the pool, never by the editor
+ * connection, since each chunk is committed and that would commit the changes of
+ * the editor too.
+ * 
+ * @author agent
+ */
+public class DataImporter {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(DataImporter.class);
+
+	/**
+	 * Maximum number of error messages kept.
+	 */
+	private static final int MAX_ERRORS = 100;
+
+	/**
+	 * Put in a queue after the last chunk, once for each writer taking from it.
+	 */
+	private static final Chunk END = new Chunk(0);
+
+	private final Bookmark bookmark;
+
+	/**
+	 * Qualified name of the table the rows are inserted into.
+	 */
+	private final String tableName;
+
+	private final ImportSource source;
+
+	/**
+	 * Index of the file column of each target column.
+	 */
+	private final int[] sourceIndexes;
+
+	private final Column[] targets;
+
+	private int batchSize = 500;
+
+	private int writerCount = 1;
+
+	/**
+	 * Index of the target column which chooses the writer of a row, -1 if rows aren't
+	 * partitioned.
+	 */
+	private int partitionColumn = -1;
+
+	private boolean isSkipFirstRow = false;
+
+	private boolean isStopOnError = true;
+
+	private volatile boolean isCancelled = false;
+
+	private final AtomicLong readCount = new AtomicLong();
+
+	private final AtomicLong writtenCount = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private volatile long startTime = 0;
+
+	private volatile long endTime = 0;
+
+	private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * @param sourceIndexes --index of the file column of each target column.
+	 * @param targets --columns of the entity which are inserted.
+	 */
+	public DataImporter(Bookmark bookmark, Entity entity, ImportSource source,
+			int[] sourceIndexes, Column[] targets) {
+		this(bookmark, entity.getQualifiedName(), source, sourceIndexes, targets);
+	}
+
+	/**
+	 * @param tableName --name of the table in the bookmark, it may not be loaded in
+	 *            the bookmark tree yet, such as a table just created.
+	 */
+	public DataImporter(Bookmark bookmark, String tableName, ImportSource source,
+			int[] sourceIndexes, Column[] targets) {
+		if (sourceIndexes.length != targets.length || targets.length == 0)
+			throw new IllegalArgumentException("a source column must be mapped to each target column");
+		this.bookmark = bookmark;
+		this.tableName = tableName;
+		this.source = source;
+		this.sourceIndexes = sourceIndexes;
+		this.targets = targets;
+	}
+
+	/**
+	 * Import the file, it returns when all rows have been written or the import has
+	 * been cancelled or has failed.
+	 * 
+	 * @throws UnifyException if the file can't be read, the bookmark isn't connected
+	 *             or no connection can be obtained.
+	 */
+	public void execute() throws UnifyException {
+		String sql = getInsertSQL();
+		LogProxy.getProxy().debug("The import SQL (" + bookmark.getAliasName() + "): " + sql);
+		ConnectionPool pool = bookmark.getConnectionPool();
+		if (pool == null)
+			throw new UnifyException(stringMgr.getString("import.error.notconnected",
+					bookmark.getAliasName()));
+		int workers = Math.max(1, writerCount);
+		boolean isPartitioned = partitionColumn > -1 && workers > 1;
+
+		List<BlockingQueue<Chunk>> queues = new ArrayList<BlockingQueue<Chunk>>();
+		for (int i = 0; i < (isPartitioned ? workers : 1); i++)
+			queues.add(new ArrayBlockingQueue<Chunk>(isPartitioned ? 2 : workers * 2));
+
+		startTime = System.currentTimeMillis();
+		endTime = 0;
+		TaskGroup group = TaskExecutor.getInstance().createGroup("import " + tableName,
+				TaskExecutor.PRIORITY_BATCH, bookmark, workers);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		try {
+			for (int i = 0; i < workers; i++)
+				futures.add(group.submit(new Writer(queues.get(isPartitioned ? i : 0), sql,
+						pool)));
+
+			Reader reader = new Reader(queues, isPartitioned);
+			UnifyException failure = null;
+			try {
+				source.read(reader);
+				reader.flush();
+			} catch (IOException e) {
+				isCancelled = true;
+				failure = new UnifyException(stringMgr.getString("import.error.read", e
+						.getMessage()), e);
+			} catch (UnifyException e) {
+				isCancelled = true;
+				failure = e;
+			} catch (InterruptedException e) {
+				isCancelled = true;
+			} finally {
+				reader.end(workers);
+			}
+			//The writers finish the chunks they are writing
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (Exception e) {
+					LogProxy.errorLog("import writer failed", e);
+				}
+			}
+			if (failure != null)
+				throw failure;
+		} finally {
+			group.cancel();
+			endTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Build the INSERT statement with a '?' for each target column.
+	 */
+	private String getInsertSQL() {
+		StringBuilder sb = new StringBuilder("INSERT INTO ").append(tableName)
+				.append(" (");
+		StringBuilder values = new StringBuilder();
+		for (int i = 0; i < targets.length; i++) {
+			if (i > 0) {
+				sb.append(",");
+				values.append(",");
+			}
+			sb.append(targets[i].getName());
+			values.append("?");
+		}
+		return sb.append(") VALUES (").append(values).append(")").toString();
+	}
+
+	/**
+	 * Convert a value of the file to the type of the column. Texts are converted by
+	 * {@link SqlUtil#bindColumnValue(PreparedStatement, int, Object, int)}, numbers
+	 * of Excel are converted to dates or texts.
+	 */
+	static Object convert(Object value, int sqlType) {
+		if (!(value instanceof Double))
+			return value;
+		double number = ((Double) value).doubleValue();
+		switch (sqlType) {
+			case Types.DATE:
+				return new java.sql.Date(ExcelEventSource.getJavaDate(number).getTime());
+			case Types.TIME:
+				return new java.sql.Time(ExcelEventSource.getJavaDate(number).getTime());
+			case Types.TIMESTAMP:
+				return new Timestamp(ExcelEventSource.getJavaDate(number).getTime());
+		}
+		if (Double.isNaN(number) || Double.isInfinite(number))
+			return value;
+		BigDecimal decimal = new BigDecimal(String.valueOf(number));
+		if (SqlUtil.isNumberType(sqlType))
+			return decimal;
+		//A text column, 12.0 is written as 12
+		decimal = decimal.stripTrailingZeros();
+		return decimal.scale() < 0 ? decimal.setScale(0).toPlainString() : decimal
+				.toPlainString();
+	}
+
+	private void addError(String message) {
+		if (errors.size() < MAX_ERRORS)
+			errors.add(message);
+		LogProxy.getProxy().debug(message);
+	}
+
+	/**
+	 * Stop reading the file, the chunks read are discarded by the writers.
+	 */
+	public void cancel() {
+		isCancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+
+	/**
+	 * Return the number of rows read from the file.
+	 */
+	public long getReadCount() {
+		return readCount.get();
+	}
+
+	/**
+	 * Return the number of rows inserted and committed.
+	 */
+	public long getWrittenCount() {
+		return writtenCount.get();
+	}
+
+	/**
+	 * Return the number of rows which have been rejected by the database, they are
+	 * only counted if the import doesn't stop on error.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Return the number of rows written per second since the import started.
+	 */
+	public long getRowsPerSecond() {
+		if (startTime == 0)
+			return 0;
+		long elapsed = (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+		return elapsed <= 0 ? 0 : writtenCount.get() * 1000 / elapsed;
+	}
+
+	/**
+	 * Return the percentage of the file which has been read.
+	 */
+	public int getReadPercent() {
+		long length = source.getLength();
+		return length <= 0 ? 0 : (int) (Math.min(source.getReadLength(), length) * 100 / length);
+	}
+
+	/**
+	 * Return the messages of the errors, at most {@value #MAX_ERRORS} messages are
+	 * kept.
+	 */
+	public List<String> getErrors() {
+		synchronized (errors) {
+			return new ArrayList<String>(errors);
+		}
+	}
+
+	/**
+	 * @param batchSize --number of rows in a chunk, a chunk is inserted as a batch
+	 *            and committed.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * @param writerCount --number of connections which insert rows.
+	 */
+	public void setWriterCount(int writerCount) {
+		this.writerCount = Math.max(1, writerCount);
+	}
+
+	/**
+	 * @param partitionColumn --index of the target column whose value chooses the
+	 *            writer of a row, -1 to share the rows between the writers.
+	 */
+	public void setPartitionColumn(int partitionColumn) {
+		this.partitionColumn = partitionColumn;
+	}
+
+	/**
+	 * @param isSkipFirstRow --true if the first row of the file holds the column
+	 *            names.
+	 */
+	public void setSkipFirstRow(boolean isSkipFirstRow) {
+		this.isSkipFirstRow = isSkipFirstRow;
+	}
+
+	/**
+	 * @param isStopOnError --true to stop at the first failed batch, otherwise the
+	 *            rows of a failed batch are inserted one by one and the failed rows are
+	 *            rejected.
+	 */
+	public void setStopOnError(boolean isStopOnError) {
+		this.isStopOnError = isStopOnError;
+	}
+
+	/**
+	 * Rows of the file which are written together, with their numbers in the file.
+	 */
+	private static class Chunk {
+
+		final List<Object[]> rows;
+
+		final long[] numbers;
+
+		Chunk(int capacity) {
+			rows = new ArrayList<Object[]>(capacity);
+			numbers = new long[capacity];
+		}
+
+		void add(Object[] row, long number) {
+			numbers[rows.size()] = number;
+			rows.add(row);
+		}
+
+		boolean isFull() {
+			return rows.size() == numbers.length;
+		}
+	}
+
+	/**
+	 * Maps the rows of the file to the target columns and puts them in the queues.
+	 */
+	private class Reader implements RowHandler {
+
+		private final List<BlockingQueue<Chunk>> queues;
+
+		private final boolean isPartitioned;
+
+		/**
+		 * Chunk being filled for each queue.
+		 */
+		private final Chunk[] chunks;
+
+		private long rowNumber = 0;
+
+		Reader(List<BlockingQueue<Chunk>> queues, boolean isPartitioned) {
+			this.queues = queues;
+			this.isPartitioned = isPartitioned;
+			chunks = new Chunk[queues.size()];
+		}
+
+		public boolean handleRow(Object[] values) {
+			if (isCancelled)
+				return false;
+			rowNumber++;
+			if (rowNumber == 1 && isSkipFirstRow)
+				return true;
+			Object[] row = new Object[targets.length];
+			for (int i = 0; i < row.length; i++) {
+				int index = sourceIndexes[i];
+				row[i] = index < values.length ? values[index] : null;
+			}
+			readCount.incrementAndGet();
+
+			int queue = 0;
+			if (isPartitioned) {
+				Object key = row[partitionColumn];
+				queue = key == null ? 0 : (key.hashCode() & 0x7fffffff) % queues.size();
+			}
+			if (chunks[queue] == null)
+				chunks[queue] = new Chunk(batchSize);
+			chunks[queue].add(row, rowNumber);
+			if (chunks[queue].isFull()) {
+				try {
+					queues.get(queue).put(chunks[queue]);
+				} catch (InterruptedException e) {
+					isCancelled = true;
+					return false;
+				}
+				chunks[queue] = null;
+			}
+			return true;
+		}
+
+		/**
+		 * Put the chunks which aren't full.
+		 */
+		void flush() throws InterruptedException {
+			for (int i = 0; i < chunks.length; i++) {
+				if (chunks[i] != null && !isCancelled)
+					queues.get(i).put(chunks[i]);
+				chunks[i] = null;
+			}
+		}
+
+		/**
+		 * Tell each writer there is no more chunk. The writers always take chunks until
+		 * the end, so the queues can't stay full.
+		 */
+		void end(int workers) {
+			try {
+				if (isPartitioned) {
+					for (BlockingQueue<Chunk> queue : queues)
+						queue.put(END);
+				} else {
+					for (int i = 0; i < workers; i++)
+						queues.get(0).put(END);
+				}
+			} catch (InterruptedException e) {
+				isCancelled = true;
+			}
+		}
+	}
+
+	/**
+	 * Inserts the chunks of a queue on a connection of its own.
+	 */
+	private class Writer implements Runnable {
+
+		private final BlockingQueue<Chunk> queue;
+
+		private final String sql;
+
+		private final ConnectionPool pool;
+
+		/**
+		 * Whether the rows inserted one by one are protected by savepoints, otherwise
+		 * each row is committed.
+		 */
+		private boolean isSavepointSupported = false;
+
+		Writer(BlockingQueue<Chunk> queue, String sql, ConnectionPool pool) {
+			this.queue = queue;
+			this.sql = sql;
+			this.pool = pool;
+		}
+
+		public void run() {
+			Connection con = null;
+			PreparedStatement ps = null;
+			boolean oldAutoCommit = true;
+			boolean isEnd = false;
+			try {
+				con = pool.borrow();
+				oldAutoCommit = con.getAutoCommit();
+				con.setAutoCommit(false);
+				isSavepointSupported = supportsSavepoints(con);
+				ps = con.prepareStatement(sql);
+				while (true) {
+					Chunk chunk = queue.take();
+					if (chunk == END) {
+						isEnd = true;
+						break;
+					}
+					if (isCancelled)
+						continue;
+					RunningQuery query = QueryRegistry.getInstance().begin(bookmark, sql, ps);
+					try {
+						write(con, ps, chunk);
+					} finally {
+						QueryRegistry.getInstance().end(query);
+					}
+				}
+			} catch (InterruptedException e) {
+				isCancelled = true;
+			} catch (Throwable e) {
+				isCancelled = true;
+				addError(stringMgr.getString("import.error.writer", ExceptionUtil
+						.getAllExceptions(e)));
+			} finally {
+				//Take the chunks left, the reader may wait for room in the queue
+				try {
+					while (!isEnd)
+						isEnd = queue.take() == END;
+				} catch (InterruptedException e) {
+				}
+				if (ps != null) {
+					try {
+						ps.close();
+					} catch (SQLException e) {
+					}
+				}
+				if (con != null) {
+					try {
+						con.setAutoCommit(oldAutoCommit);
+					} catch (SQLException e) {
+						LogProxy.sqlErrorLog("restoring auto commit failed", e);
+					}
+					pool.release(con);
+				}
+			}
+		}
+
+		/**
+		 * Insert the rows of the chunk as a batch and commit them. If the batch fails
+		 * and the import goes on, the rows are inserted one by one. A failed row is
+		 * rolled back to the savepoint set before it, since some databases, such as
+		 * PostgreSQL, refuse any statement of a transaction after an error; the rows
+		 * are committed one by one if the database has no savepoints.
+		 */
+		private void write(Connection con, PreparedStatement ps, Chunk chunk)
+				throws SQLException {
+			try {
+				for (Object[] row : chunk.rows) {
+					bind(ps, row);
+					ps.addBatch();
+				}
+				ps.executeBatch();
+				con.commit();
+				writtenCount.addAndGet(chunk.rows.size());
+				return;
+			} catch (SQLException e) {
+				rollback(con);
+				ps.clearBatch();
+				if (isStopOnError) {
+					isCancelled = true;
+					addError(stringMgr.getString("import.error.batch", chunk.numbers[0],
+							chunk.numbers[chunk.rows.size() - 1], ExceptionUtil
+									.getAllExceptions(e)));
+					return;
+				}
+			}
+			int written = 0;
+			for (int i = 0; i < chunk.rows.size() && !isCancelled; i++) {
+				Savepoint savepoint = isSavepointSupported ? con.setSavepoint() : null;
+				try {
+					bind(ps, chunk.rows.get(i));
+					ps.executeUpdate();
+					if (savepoint == null) {
+						con.commit();
+						writtenCount.incrementAndGet();
+					} else {
+						written++;
+					}
+				} catch (SQLException e) {
+					if (savepoint == null)
+						rollback(con);
+					else
+						con.rollback(savepoint);
+					rejectedCount.incrementAndGet();
+					addError(stringMgr.getString("import.error.row", chunk.numbers[i],
+							ExceptionUtil.getAllExceptions(e)));
+				}
+				if (savepoint != null)
+					releaseSavepoint(con, savepoint);
+			}
+			con.commit();
+			writtenCount.addAndGet(written);
+		}
+
+		private void bind(PreparedStatement ps, Object[] row) throws SQLException {
+			for (int i = 0; i < row.length; i++) {
+				int type = targets[i].getType();
+				SqlUtil.bindColumnValue(ps, i + 1, convert(row[i], type), type);
+			}
+		}
+
+		private void rollback(Connection con) {
+			try {
+				con.rollback();
+			} catch (SQLException e) {
+				LogProxy.sqlErrorLog("rolling back import batch failed", e);
+			}
+		}
+
+		/**
+		 * Release the savepoint, some drivers, such as Oracle, don't support it and
+		 * keep the savepoints until the commit.
+		 */
+		private void releaseSavepoint(Connection con, Savepoint savepoint) {
+			try {
+				con.releaseSavepoint(savepoint);
+			} catch (SQLException e) {
+			}
+		}
+
+		private boolean supportsSavepoints(Connection con) {
+			try {
+				return con.getMetaData().supportsSavepoints();
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+	}
+}
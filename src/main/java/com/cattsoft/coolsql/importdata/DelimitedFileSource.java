@@ -0,0 +1,162 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.importdata;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a text file whose fields are separated by a delimiter, such as a CSV or a
+ * TSV file. Quoted fields follow RFC 4180: a field enclosed in quotes can hold
+ * delimiters and line breaks, and a quote in it is doubled. An empty field which
+ * isn't quoted is read as null, blank lines are skipped.
+ * 
+ * @author agent
+ */
+public class DelimitedFileSource implements ImportSource {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+
+	private final String encoding;
+
+	private final char delimiter;
+
+	private final char quote;
+
+	private volatile long readLength = 0;
+
+	/**
+	 * @param encoding --charset of the file, null means the default charset.
+	 */
+	public DelimitedFileSource(File file, String encoding, char delimiter, char quote) {
+		this.file = file;
+		this.encoding = encoding;
+		this.delimiter = delimiter;
+		this.quote = quote;
+	}
+
+	public void read(RowHandler handler) throws IOException {
+		readLength = 0;
+		InputStream in = new CountingInputStream(new FileInputStream(file));
+		BufferedReader reader = new BufferedReader(encoding == null ? new InputStreamReader(in)
+				: new InputStreamReader(in, encoding), BUFFER_SIZE);
+		try {
+			List<Object> fields = new ArrayList<Object>();
+			StringBuilder field = new StringBuilder();
+			boolean isInQuotes = false;
+			boolean isQuoted = false; //Whether current field starts with a quote
+			boolean isFirst = true;
+			int c;
+			while ((c = reader.read()) != -1) {
+				char ch = (char) c;
+				if (isFirst) {
+					isFirst = false;
+					if (ch == '\uFEFF') //Byte order mark
+						continue;
+				}
+				if (isInQuotes) {
+					if (ch != quote) {
+						field.append(ch);
+						continue;
+					}
+					reader.mark(1);
+					int next = reader.read();
+					if (next == quote) {
+						field.append(quote);
+					} else {
+						isInQuotes = false;
+						if (next != -1)
+							reader.reset();
+					}
+				} else if (ch == quote && field.length() == 0 && !isQuoted) {
+					isInQuotes = true;
+					isQuoted = true;
+				} else if (ch == delimiter) {
+					fields.add(toValue(field, isQuoted));
+					field.setLength(0);
+					isQuoted = false;
+				} else if (ch == '\r' || ch == '\n') {
+					if (ch == '\r') {
+						reader.mark(1);
+						int next = reader.read();
+						if (next != '\n' && next != -1)
+							reader.reset();
+					}
+					if (fields.size() == 0 && field.length() == 0 && !isQuoted)
+						continue; //Blank line
+					fields.add(toValue(field, isQuoted));
+					field.setLength(0);
+					isQuoted = false;
+					if (!handler.handleRow(fields.toArray()))
+						return;
+					fields.clear();
+				} else {
+					field.append(ch);
+				}
+			}
+			if (fields.size() > 0 || field.length() > 0 || isQuoted) {
+				fields.add(toValue(field, isQuoted));
+				handler.handleRow(fields.toArray());
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static Object toValue(StringBuilder field, boolean isQuoted) {
+		if (field.length() == 0 && !isQuoted)
+			return null;
+		return field.toString();
+	}
+
+	public long getLength() {
+		return file.length();
+	}
+
+	public long getReadLength() {
+		return readLength;
+	}
+
+	/**
+	 * Counts the bytes read from the file.
+	 */
+	private class CountingInputStream extends FilterInputStream {
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1)
+				readLength++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = super.read(b, off, len);
+			if (count > 0)
+				readLength += count;
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long count = super.skip(n);
+			readLength += count;
+			return count;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.importdata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFDateUtil;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+
+/**
+ * Reads a sheet of an Excel (.xls) file through the event API of POI: the records
+ * of the sheet are handled as they are parsed, and no cell object is created for
+ * the workbook. Only the cells of the current row are held, the shared strings and
+ * the file blocks are held by POI.
+ * <p>
+ * Texts are read as strings, numbers and formula results as doubles, a date is a
+ * number which is converted when the target column is a date column.
+ * 
+ * @author agent
+ */
+public class ExcelEventSource implements ImportSource {
+
+	private final File file;
+
+	/**
+	 * Index of the sheet to read, it starts with 0.
+	 */
+	private final int sheetIndex;
+
+	private volatile long readLength = 0;
+
+	public ExcelEventSource(File file, int sheetIndex) {
+		this.file = file;
+		this.sheetIndex = sheetIndex;
+	}
+
+	public void read(RowHandler handler) throws IOException, UnifyException {
+		readLength = 0;
+		InputStream in = new FileInputStream(file);
+		try {
+			POIFSFileSystem fs = new POIFSFileSystem(in);
+			readLength = file.length();
+			HSSFRequest request = new HSSFRequest();
+			SheetListener listener = new SheetListener(handler);
+			request.addListenerForAllRecords(listener);
+			new HSSFEventFactory().abortableProcessWorkbookEvents(request, fs);
+			listener.endRow();
+		} catch (HSSFUserException e) {
+			throw new UnifyException(e.getMessage(), e);
+		} finally {
+			in.close();
+		}
+	}
+
+	public long getLength() {
+		return file.length();
+	}
+
+	public long getReadLength() {
+		return readLength;
+	}
+
+	/**
+	 * Convert the number of a date cell to a date.
+	 */
+	public static Date getJavaDate(double value) {
+		return HSSFDateUtil.getJavaDate(value);
+	}
+
+	/**
+	 * Collects the cells of each row of the sheet and passes the row on when the
+	 * next row begins.
+	 */
+	private class SheetListener extends AbortableHSSFListener {
+
+		private final RowHandler handler;
+
+		private SSTRecord sst;
+
+		/**
+		 * Index of current worksheet, -1 while the workbook records are read.
+		 */
+		private int currentSheet = -1;
+
+		private int currentRow = -1;
+
+		private final List<Object> cells = new ArrayList<Object>();
+
+		/**
+		 * Cell of the formula whose result is a string, it's in the next record.
+		 */
+		private int formulaRow = -1;
+
+		private int formulaColumn = -1;
+
+		private boolean isStopped = false;
+
+		SheetListener(RowHandler handler) {
+			this.handler = handler;
+		}
+
+		@Override
+		public short abortableProcessRecord(Record record) throws HSSFUserException {
+			switch (record.getSid()) {
+				case BOFRecord.sid:
+					if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET)
+						currentSheet++;
+					break;
+				case EOFRecord.sid:
+					if (currentSheet == sheetIndex) {
+						endRow();
+						return 1; //The sheet has been read
+					}
+					break;
+				case SSTRecord.sid:
+					sst = (SSTRecord) record;
+					break;
+				case LabelSSTRecord.sid:
+					if (currentSheet == sheetIndex) {
+						LabelSSTRecord label = (LabelSSTRecord) record;
+						setCell(label, sst.getString(label.getSSTIndex()).toString());
+					}
+					break;
+				case LabelRecord.sid:
+					if (currentSheet == sheetIndex)
+						setCell((LabelRecord) record, ((LabelRecord) record).getValue());
+					break;
+				case NumberRecord.sid:
+					if (currentSheet == sheetIndex)
+						setCell((NumberRecord) record, new Double(((NumberRecord) record)
+								.getValue()));
+					break;
+				case BoolErrRecord.sid:
+					if (currentSheet == sheetIndex) {
+						BoolErrRecord bool = (BoolErrRecord) record;
+						setCell(bool, bool.isBoolean() ? Boolean.valueOf(bool.getBooleanValue())
+								: null);
+					}
+					break;
+				case FormulaRecord.sid:
+					if (currentSheet == sheetIndex) {
+						FormulaRecord formula = (FormulaRecord) record;
+						setCell(formula, new Double(formula.getValue()));
+						formulaRow = formula.getRow();
+						formulaColumn = formula.getColumn();
+						return isStopped ? (short) 1 : 0;
+					}
+					break;
+				case StringRecord.sid:
+					if (currentSheet == sheetIndex && formulaRow == currentRow
+							&& formulaColumn > -1)
+						cells.set(formulaColumn, ((StringRecord) record).getString());
+					break;
+			}
+			formulaRow = -1;
+			formulaColumn = -1;
+			return isStopped ? (short) 1 : 0;
+		}
+
+		private void setCell(CellValueRecordInterface record, Object value) {
+			if (record.getRow() != currentRow) {
+				endRow();
+				currentRow = record.getRow();
+			}
+			int column = record.getColumn();
+			while (cells.size() <= column)
+				cells.add(null);
+			cells.set(column, value);
+		}
+
+		/**
+		 * Pass current row on, if it has a cell.
+		 */
+		void endRow() {
+			if (cells.size() > 0 && !isStopped) {
+				isStopped = !handler.handleRow(cells.toArray());
+			}
+			cells.clear();
+		}
+	}
+}
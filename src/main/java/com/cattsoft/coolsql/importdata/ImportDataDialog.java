@@ -0,0 +1,570 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.importdata;
+
+import java.awt.BorderLayout;
+import java.awt.CardLayout;
+import java.awt.FlowLayout;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.DefaultCellEditor;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import com.cattsoft.coolsql.exportdata.Actionable;
+import com.cattsoft.coolsql.modifydatabase.insert.ProcessThread;
+import com.cattsoft.coolsql.pub.component.BaseDialog;
+import com.cattsoft.coolsql.pub.component.RenderButton;
+import com.cattsoft.coolsql.pub.component.WaitDialog;
+import com.cattsoft.coolsql.pub.component.WaitDialogManage;
+import com.cattsoft.coolsql.pub.display.BaseTable;
+import com.cattsoft.coolsql.pub.display.GUIUtil;
+import com.cattsoft.coolsql.pub.display.TableScrollPane;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.PublicResource;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.sql.model.Column;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Wizard which imports a CSV, TSV or Excel file into a table. The first page
+ * selects the file and its format, the second one maps the columns of the file to
+ * the columns of the table and sets how the rows are written. The import is
+ * executed by {@link DataImporter} in a thread of its own.
+ *
+ * @author agent
+ */
+public class ImportDataDialog extends BaseDialog {
+
+	private static final long serialVersionUID = 1L;
+	private static final StringManager stringMgr=StringManagerFactory.getStringManager(ImportDataDialog.class);
+
+	private static final String PAGE_SOURCE="source";
+	private static final String PAGE_MAPPING="mapping";
+
+	private static final int FORMAT_CSV=0;
+	private static final int FORMAT_TSV=1;
+	private static final int FORMAT_SEMICOLON=2;
+	private static final int FORMAT_EXCEL=3;
+
+	/**
+	 * Number of rows read to find the columns of the file.
+	 */
+	private static final int PREVIEW_ROWS=20;
+
+	private final Entity entity;
+	private Column[] columns;
+
+	private CardLayout cards;
+	private JPanel pages;
+	private boolean isMappingPage=false;
+
+	/** source page */
+	private JTextField fileField;
+	private JComboBox formatBox;
+	private JComboBox encodingBox;
+	private JSpinner sheetSpinner;
+	private JCheckBox headerBox;
+
+	/** mapping page */
+	private MappingTableModel mappingModel;
+	private JTable mappingTable;
+	private JComboBox sourceColumnBox;
+	private JSpinner batchSpinner;
+	private JSpinner writerSpinner;
+	private JComboBox partitionBox;
+	private JCheckBox stopOnErrorBox;
+
+	private JButton backButton;
+	private JButton nextButton;
+	private JButton finishButton;
+
+	public ImportDataDialog(Entity entity) throws UnifyException, SQLException
+	{
+		super(GUIUtil.getMainFrame(),true);
+		this.entity=entity;
+		this.columns=entity.getColumns();
+		setTitle(stringMgr.getString("import.dialog.title",entity.getQualifiedName()));
+
+		JPanel main=(JPanel)getContentPane();
+		main.setLayout(new BorderLayout());
+
+		cards=new CardLayout();
+		pages=new JPanel(cards);
+		pages.add(createSourcePage(),PAGE_SOURCE);
+		pages.add(createMappingPage(),PAGE_MAPPING);
+		main.add(pages,BorderLayout.CENTER);
+
+		/**button area */
+		JPanel buttonPane=new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		backButton=new RenderButton(stringMgr.getString("import.dialog.back"));
+		backButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				showPage(false);
+			}
+		}
+		);
+		buttonPane.add(backButton);
+
+		nextButton=new RenderButton(stringMgr.getString("import.dialog.next"));
+		nextButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				if(loadSourceColumns())
+					showPage(true);
+			}
+		}
+		);
+		buttonPane.add(nextButton);
+
+		finishButton=new RenderButton(stringMgr.getString("import.dialog.finish"));
+		finishButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				if(mappingTable.isEditing())
+					mappingTable.getCellEditor().stopCellEditing();
+				DataImporter importer=createImporter();
+				if(importer!=null)
+				{
+					dispose();
+					startImport(importer);
+				}
+			}
+		}
+		);
+		buttonPane.add(finishButton);
+
+		JButton quitButton=new RenderButton(PublicResource.getCancelButtonLabel());
+		quitButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		}
+		);
+		buttonPane.add(quitButton);
+		main.add(buttonPane,BorderLayout.SOUTH);
+
+		showPage(false);
+		setSize(560,420);
+		toCenter();
+	}
+	private JPanel createSourcePage()
+	{
+		JPanel pane=new JPanel(new GridBagLayout());
+		GridBagConstraints gbc=new GridBagConstraints();
+		gbc.insets=new Insets(4,4,4,4);
+		gbc.anchor=GridBagConstraints.WEST;
+		gbc.fill=GridBagConstraints.HORIZONTAL;
+
+		fileField=new JTextField(30);
+		JButton browseButton=new RenderButton("...");
+		browseButton.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				File file=GUIUtil.selectFileNoFilter(ImportDataDialog.this,null,true);
+				if(file==null)
+					return;
+				fileField.setText(file.getAbsolutePath());
+				String name=file.getName().toLowerCase();
+				if(name.endsWith(".xls"))
+					formatBox.setSelectedIndex(FORMAT_EXCEL);
+				else if(name.endsWith(".tsv")||name.endsWith(".tab"))
+					formatBox.setSelectedIndex(FORMAT_TSV);
+				else if(name.endsWith(".csv"))
+					formatBox.setSelectedIndex(FORMAT_CSV);
+			}
+		}
+		);
+		addRow(pane,gbc,0,stringMgr.getString("import.dialog.file"),fileField);
+		gbc.gridx=2;
+		gbc.weightx=0;
+		pane.add(browseButton,gbc);
+
+		formatBox=new JComboBox(new String[]{stringMgr.getString("import.dialog.format.csv"),
+				stringMgr.getString("import.dialog.format.tsv"),
+				stringMgr.getString("import.dialog.format.semicolon"),
+				stringMgr.getString("import.dialog.format.excel")});
+		addRow(pane,gbc,1,stringMgr.getString("import.dialog.format"),formatBox);
+
+		encodingBox=new JComboBox(new String[]{Charset.defaultCharset().name(),"UTF-8","GBK","ISO-8859-1"});
+		encodingBox.setEditable(true);
+		addRow(pane,gbc,2,stringMgr.getString("import.dialog.encoding"),encodingBox);
+
+		sheetSpinner=new JSpinner(new SpinnerNumberModel(1,1,256,1));
+		addRow(pane,gbc,3,stringMgr.getString("import.dialog.sheet"),sheetSpinner);
+
+		headerBox=new JCheckBox(stringMgr.getString("import.dialog.header"),true);
+		gbc.gridx=1;
+		gbc.gridy=4;
+		gbc.weightx=1;
+		pane.add(headerBox,gbc);
+
+		//Push the fields to the top
+		gbc.gridy=5;
+		gbc.weighty=1;
+		pane.add(new JLabel(),gbc);
+		return pane;
+	}
+	private JPanel createMappingPage()
+	{
+		JPanel pane=new JPanel(new BorderLayout());
+		mappingModel=new MappingTableModel();
+		mappingTable=new BaseTable();
+		mappingTable.setModel(mappingModel);
+		sourceColumnBox=new JComboBox();
+		mappingTable.getColumnModel().getColumn(2).setCellEditor(new DefaultCellEditor(sourceColumnBox));
+		pane.add(new TableScrollPane(mappingTable),BorderLayout.CENTER);
+
+		JPanel options=new JPanel(new GridBagLayout());
+		GridBagConstraints gbc=new GridBagConstraints();
+		gbc.insets=new Insets(2,4,2,4);
+		gbc.anchor=GridBagConstraints.WEST;
+		gbc.fill=GridBagConstraints.HORIZONTAL;
+
+		Setting setting=Setting.getInstance();
+		batchSpinner=new JSpinner(new SpinnerNumberModel(Math.max(1,setting.getIntProperty(
+				PropertyConstant.PROPERTY_SYSTEM_IMPORT_BATCHSIZE,1000)),1,100000,100));
+		addRow(options,gbc,0,stringMgr.getString("import.dialog.batchsize"),batchSpinner);
+
+		writerSpinner=new JSpinner(new SpinnerNumberModel(Math.max(1,setting.getIntProperty(
+				PropertyConstant.PROPERTY_SYSTEM_IMPORT_WRITERS,1)),1,32,1));
+		addRow(options,gbc,1,stringMgr.getString("import.dialog.writers"),writerSpinner);
+
+		partitionBox=new JComboBox();
+		partitionBox.addItem(stringMgr.getString("import.dialog.nopartition"));
+		for(Column column:columns)
+			partitionBox.addItem(column.getName());
+		addRow(options,gbc,2,stringMgr.getString("import.dialog.partition"),partitionBox);
+
+		stopOnErrorBox=new JCheckBox(stringMgr.getString("import.dialog.stoponerror"),true);
+		gbc.gridx=1;
+		gbc.gridy=3;
+		options.add(stopOnErrorBox,gbc);
+
+		pane.add(options,BorderLayout.SOUTH);
+		return pane;
+	}
+	private static void addRow(JPanel pane,GridBagConstraints gbc,int row,String label,java.awt.Component field)
+	{
+		gbc.gridx=0;
+		gbc.gridy=row;
+		gbc.weightx=0;
+		pane.add(new JLabel(label),gbc);
+		gbc.gridx=1;
+		gbc.weightx=1;
+		pane.add(field,gbc);
+	}
+	private void showPage(boolean isMapping)
+	{
+		isMappingPage=isMapping;
+		cards.show(pages,isMapping?PAGE_MAPPING:PAGE_SOURCE);
+		backButton.setEnabled(isMappingPage);
+		nextButton.setEnabled(!isMappingPage);
+		finishButton.setEnabled(isMappingPage);
+		getRootPane().setDefaultButton(isMappingPage?finishButton:nextButton);
+	}
+	/**
+	 * Create the source of the selected file, null if no file is selected.
+	 */
+	private ImportSource createSource()
+	{
+		String path=fileField.getText().trim();
+		if(path.length()==0||!new File(path).isFile())
+		{
+			JOptionPane.showMessageDialog(this,stringMgr.getString("import.dialog.nofile"),"warning",JOptionPane.WARNING_MESSAGE);
+			return null;
+		}
+		File file=new File(path);
+		int format=formatBox.getSelectedIndex();
+		if(format==FORMAT_EXCEL)
+			return new ExcelEventSource(file,((Number)sheetSpinner.getValue()).intValue()-1);
+		String encoding=(String)encodingBox.getSelectedItem();
+		if(encoding!=null&&(encoding.trim().length()==0||!Charset.isSupported(encoding.trim())))
+		{
+			JOptionPane.showMessageDialog(this,stringMgr.getString("import.dialog.invalidencoding",encoding),"warning",JOptionPane.WARNING_MESSAGE);
+			return null;
+		}
+		char delimiter=format==FORMAT_TSV?'\t':(format==FORMAT_SEMICOLON?';':',');
+		return new DelimitedFileSource(file,encoding==null?null:encoding.trim(),delimiter,'"');
+	}
+	/**
+	 * Read the first rows of the file to find its columns, and map each column of the
+	 * table to the file column of the same name, or at the same position if the file
+	 * has no header.
+	 *
+	 * @return false if the file can't be read.
+	 */
+	private boolean loadSourceColumns()
+	{
+		ImportSource source=createSource();
+		if(source==null)
+			return false;
+		final List<Object[]> rows=new ArrayList<Object[]>();
+		try
+		{
+			source.read(new RowHandler()
+			{
+				public boolean handleRow(Object[] values) {
+					rows.add(values);
+					return rows.size()<PREVIEW_ROWS;
+				}
+			});
+		}catch(IOException e)
+		{
+			LogProxy.errorReport(this,stringMgr.getString("import.error.read",e.getMessage()),e);
+			return false;
+		}catch(UnifyException e)
+		{
+			LogProxy.errorReport(this,e);
+			return false;
+		}catch(RuntimeException e)
+		{
+			LogProxy.errorReport(this,stringMgr.getString("import.error.read",e.getMessage()),e);
+			return false;
+		}
+		if(rows.size()==0)
+		{
+			JOptionPane.showMessageDialog(this,stringMgr.getString("import.dialog.emptyfile"),"warning",JOptionPane.WARNING_MESSAGE);
+			return false;
+		}
+		int count=0;
+		for(Object[] row:rows)
+			count=Math.max(count,row.length);
+		Object[] header=rows.get(0);
+		boolean hasHeader=headerBox.isSelected();
+
+		List<String> names=new ArrayList<String>();
+		for(int i=0;i<count;i++)
+		{
+			Object name=hasHeader&&i<header.length?header[i]:null;
+			names.add((i+1)+(name==null?"":": "+name));
+		}
+		sourceColumnBox.removeAllItems();
+		sourceColumnBox.addItem("");
+		for(String name:names)
+			sourceColumnBox.addItem(name);
+
+		String[] mapping=new String[columns.length];
+		for(int i=0;i<columns.length;i++)
+		{
+			int index=-1;
+			if(hasHeader)
+			{
+				for(int j=0;j<header.length&&index<0;j++)
+				{
+					if(header[j]!=null&&header[j].toString().trim().equalsIgnoreCase(columns[i].getName()))
+						index=j;
+				}
+			}else if(i<count)
+			{
+				index=i;
+			}
+			mapping[i]=index<0?"":names.get(index);
+		}
+		mappingModel.setMapping(mapping);
+		return true;
+	}
+	/**
+	 * Create the importer of the mapped columns, null if no column is mapped.
+	 */
+	private DataImporter createImporter()
+	{
+		ImportSource source=createSource();
+		if(source==null)
+			return null;
+		List<Integer> sourceIndexes=new ArrayList<Integer>();
+		List<Column> targets=new ArrayList<Column>();
+		int partitionColumn=-1;
+		String partitionName=partitionBox.getSelectedIndex()>0?(String)partitionBox.getSelectedItem():null;
+		for(int i=0;i<columns.length;i++)
+		{
+			int index=-1;
+			String mapped=mappingModel.mapping[i];
+			if(mapped==null||mapped.length()==0)
+				continue;
+			for(int j=1;j<sourceColumnBox.getItemCount();j++)
+			{
+				if(mapped.equals(sourceColumnBox.getItemAt(j)))
+				{
+					index=j-1;
+					break;
+				}
+			}
+			if(columns[i].getName().equals(partitionName))
+				partitionColumn=targets.size();
+			sourceIndexes.add(index);
+			targets.add(columns[i]);
+		}
+		if(targets.size()==0)
+		{
+			JOptionPane.showMessageDialog(this,stringMgr.getString("import.dialog.nomapping"),"warning",JOptionPane.WARNING_MESSAGE);
+			return null;
+		}
+		int[] indexes=new int[sourceIndexes.size()];
+		for(int i=0;i<indexes.length;i++)
+			indexes[i]=sourceIndexes.get(i);
+
+		DataImporter importer=new DataImporter(entity.getBookmark(),entity,source,indexes,
+				targets.toArray(new Column[targets.size()]));
+		importer.setSkipFirstRow(headerBox.isSelected());
+		importer.setBatchSize(((Number)batchSpinner.getValue()).intValue());
+		importer.setWriterCount(((Number)writerSpinner.getValue()).intValue());
+		importer.setPartitionColumn(partitionColumn);
+		importer.setStopOnError(stopOnErrorBox.isSelected());
+		return importer;
+	}
+	/**
+	 * Execute the import in a thread and show its progress in a wait dialog.
+	 */
+	private static void startImport(final DataImporter importer)
+	{
+		final ManagedTask task=TaskExecutor.getInstance().createTask(new ProcessThread(new Actionable()
+		{
+			public void action() {
+				try
+				{
+					importer.execute();
+				}catch(UnifyException e)
+				{
+					LogProxy.errorReport(e);
+				}finally
+				{
+					final WaitDialog waiter=WaitDialogManage.getInstance().disposeRegister(Thread.currentThread());
+					//Queued after the modal wait dialog is shown
+					SwingUtilities.invokeLater(new Runnable()
+					{
+						public void run() {
+							if(waiter!=null)
+								waiter.dispose();
+							showSummary(importer);
+						}
+					});
+				}
+			}
+		}),"import",TaskExecutor.PRIORITY_BATCH,null);
+		final WaitDialog waiter=WaitDialogManage.getInstance().register(task.getThread(),GUIUtil.getMainFrame());
+		waiter.setTitle(stringMgr.getString("import.waitdialog.title"));
+		waiter.setTaskLength(100);
+		waiter.setPrompt(stringMgr.getString("import.waitdialog.prompt",0,0,0));
+
+		//The progress is polled, so the writers never wait for the dialog
+		final Timer timer=new Timer(500,null);
+		timer.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e) {
+				if(task.getState()==ManagedTask.STATE_DONE)
+				{
+					timer.stop();
+					return;
+				}
+				waiter.setProgressValue(importer.getReadPercent());
+				waiter.setPrompt(stringMgr.getString("import.waitdialog.prompt",importer.getReadCount(),
+						importer.getWrittenCount(),importer.getRowsPerSecond()));
+			}
+		});
+		waiter.addQuitAction(new Actionable()
+		{
+			public void action() {
+				importer.cancel();
+				waiter.setPrompt(PublicResource.getString("waitdialog.prompt.quit"));
+			}
+		});
+		timer.start();
+		task.start();
+		waiter.setVisible(true);
+	}
+	private static void showSummary(DataImporter importer)
+	{
+		StringBuilder message=new StringBuilder(stringMgr.getString("import.summary",
+				importer.getReadCount(),importer.getWrittenCount(),importer.getRejectedCount(),
+				importer.getRowsPerSecond()));
+		List<String> errors=importer.getErrors();
+		for(int i=0;i<errors.size()&&i<5;i++)
+			message.append("\n").append(errors.get(i));
+		if(errors.size()>0)
+		{
+			for(String error:errors)
+				LogProxy.getProxy().info(error);
+			JOptionPane.showMessageDialog(GUIUtil.getMainFrame(),message.toString(),"error",JOptionPane.ERROR_MESSAGE);
+		}else
+		{
+			JOptionPane.showMessageDialog(GUIUtil.getMainFrame(),message.toString(),"finished!",JOptionPane.INFORMATION_MESSAGE);
+		}
+	}
+	/**
+	 * Rows are the columns of the table, the file column mapped to each one is edited
+	 * in the last column.
+	 */
+	private class MappingTableModel extends AbstractTableModel
+	{
+		private static final long serialVersionUID = 1L;
+
+		String[] mapping=new String[columns.length];
+
+		void setMapping(String[] mapping)
+		{
+			this.mapping=mapping;
+			fireTableDataChanged();
+		}
+		public int getColumnCount()
+		{
+			return 3;
+		}
+		public int getRowCount()
+		{
+			return columns.length;
+		}
+		public String getColumnName(int column)
+		{
+			return stringMgr.getString("import.dialog.mapping.column"+column);
+		}
+		public Object getValueAt(int row, int column)
+		{
+			if(column==0)
+				return columns[row].getName();
+			else if(column==1)
+				return columns[row].getTypeName();
+			else
+				return mapping[row];
+		}
+		public boolean isCellEditable(int row, int column)
+		{
+			return column==2;
+		}
+		public void setValueAt(Object value, int row, int column)
+		{
+			mapping[row]=value==null?"":value.toString();
+			fireTableCellUpdated(row,column);
+		}
+	}
+}
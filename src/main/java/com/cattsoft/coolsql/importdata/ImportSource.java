@@ -0,0 +1,35 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.importdata;
+
+import java.io.IOException;
+
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+
+/**
+ * A file or a query whose rows are imported into a table. The rows are read one
+ * after another and passed on, so the whole source is never held in memory.
+ * 
+ * @author agent
+ */
+public interface ImportSource {
+
+	/**
+	 * Read the rows of the file in order and pass them to the handler. It returns
+	 * when the file ends or the handler stops reading.
+	 */
+	public void read(RowHandler handler) throws IOException, UnifyException;
+
+	/**
+	 * Return the length of the source, such as the bytes of a file, 0 if it isn't
+	 * known.
+	 */
+	public long getLength();
+
+	/**
+	 * Return how much of the source has been read, in the unit of
+	 * {@link #getLength()}.
+	 */
+	public long getReadLength();
+}
@@ -0,0 +1,91 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.importdata;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.util.ExceptionUtil;
+import com.cattsoft.coolsql.sql.StreamingQuery;
+
+/**
+ * Reads the rows of a query of a bookmark. The query is a {@link StreamingQuery}, so
+ * the rows are fetched from the server by blocks while they are imported. Its length is the
+ * number of rows expected, if it has been set.
+ * 
+ * @author agent
+ */
+public class QuerySource implements ImportSource {
+
+	private final Bookmark bookmark;
+
+	private final String sql;
+
+	private int fetchSize = 1000;
+
+	private volatile long rowCount = 0;
+
+	private volatile long readCount = 0;
+
+	public QuerySource(Bookmark bookmark, String sql) {
+		this.bookmark = bookmark;
+		this.sql = sql;
+	}
+
+	public void read(RowHandler handler) throws UnifyException {
+		readCount = 0;
+		StreamingQuery query = new StreamingQuery(bookmark, sql);
+		query.setFetchSize(fetchSize);
+		try {
+			ResultSet rs = query.open();
+			int count = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				Object[] values = new Object[count];
+				for (int i = 0; i < count; i++)
+					values[i] = rs.getObject(i + 1);
+				readCount++;
+				query.setRowCount(readCount);
+				if (!handler.handleRow(values)) {
+					query.stop();
+					break;
+				}
+			}
+		} catch (SQLException e) {
+			throw new UnifyException(ExceptionUtil.getAllExceptions(e).toString(), e);
+		} finally {
+			query.close();
+		}
+	}
+
+	/**
+	 * Return the number of rows expected, 0 if it isn't known.
+	 */
+	public long getLength() {
+		return rowCount;
+	}
+
+	/**
+	 * Return the number of rows read.
+	 */
+	public long getReadLength() {
+		return readCount;
+	}
+
+	/**
+	 * @param rowCount --number of rows the query is expected to return, such as the
+	 *            count of the table.
+	 */
+	public void setRowCount(long rowCount) {
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * @param fetchSize --number of rows fetched from the server at a time.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = Math.max(1, fetchSize);
+	}
+}
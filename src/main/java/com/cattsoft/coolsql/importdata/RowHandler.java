@@ -0,0 +1,21 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.importdata;
+
+/**
+ * Receives the rows read from a source file one after another.
+ * 
+ * @author agent
+ */
+public interface RowHandler {
+
+	/**
+	 * Handle a row of the file.
+	 * 
+	 * @param values --a String, Double or Boolean for each cell of the row, null for
+	 *            an empty cell.
+	 * @return false to stop reading the file.
+	 */
+	public boolean handleRow(Object[] values);
+}
@@ -0,0 +1,438 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.importdata;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import com.cattsoft.coolsql.adapters.dialect.CreateScriptPreferences;
+import com.cattsoft.coolsql.adapters.dialect.DialectFactory;
+import com.cattsoft.coolsql.adapters.dialect.HibernateDialect;
+import com.cattsoft.coolsql.adapters.dialect.UnknownDialectException;
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.pub.util.ExceptionUtil;
+import com.cattsoft.coolsql.sql.ConnectionPool;
+import com.cattsoft.coolsql.sql.ISQLDatabaseMetaData;
+import com.cattsoft.coolsql.sql.model.Column;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.sql.model.Table;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.system.task.TaskGroup;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Copies the rows of tables of a bookmark to the tables of the same names in another
+ * bookmark. Each table is copied by a {@link DataImporter} reading a
+ * {@link QuerySource}: the rows are fetched with a forward-only cursor, passed
+ * through a bounded queue and inserted in batches, so a table is never held in
+ * memory. Several tables are copied at the same time.
+ * <p>
+ * The target tables can be created first with the types of the dialect of the
+ * target database. Their indexes and constraints are then created after all rows
+ * have been copied, since maintaining them while loading slows the inserts and the
+ * foreign keys may refer to rows not copied yet.
+ *
+ * @author agent
+ */
+public class TableCopier {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(TableCopier.class);
+
+	public static final int STATE_WAITING = 0;
+
+	public static final int STATE_RUNNING = 1;
+
+	public static final int STATE_FINISHED = 2;
+
+	public static final int STATE_FAILED = 3;
+
+	public static final int STATE_CANCELLED = 4;
+
+	private final Bookmark source;
+
+	private final Bookmark target;
+
+	private final List<CopyTask> tasks;
+
+	private boolean isCreateTables = false;
+
+	private boolean isDeferIndexes = true;
+
+	private int parallelCount = 1;
+
+	private int batchSize = 500;
+
+	private int fetchSize = 1000;
+
+	private volatile boolean isCancelled = false;
+
+	private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * @param entities --tables or views of the source bookmark.
+	 */
+	public TableCopier(Bookmark source, Bookmark target, List<Entity> entities) {
+		this.source = source;
+		this.target = target;
+		List<CopyTask> list = new ArrayList<CopyTask>();
+		for (Entity entity : entities)
+			list.add(new CopyTask(entity));
+		tasks = Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Copy the tables, it returns when all tables have been copied or the copy has
+	 * been cancelled.
+	 *
+	 * @throws UnifyException if a bookmark isn't connected or the statements creating
+	 *             the tables can't be built.
+	 */
+	public void execute() throws UnifyException {
+		if (!source.isConnected() || !target.isConnected())
+			throw new UnifyException(stringMgr.getString("copy.error.notconnected"));
+		List<String> deferred = new ArrayList<String>();
+		if (isCreateTables)
+			createTables(deferred);
+
+		//Without pools, the tables would share the connection of a bookmark
+		int threads = source.getConnectionPool() == null || target.getConnectionPool() == null ? 1
+				: Math.max(1, Math.min(parallelCount, tasks.size()));
+		TaskGroup group = TaskExecutor.getInstance().createGroup("copy tables",
+				TaskExecutor.PRIORITY_BATCH, target, threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final CopyTask task : tasks) {
+				if (task.state == STATE_WAITING)
+					futures.add(group.submit(task));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (Exception e) {
+					LogProxy.errorLog("copying table failed", e);
+				}
+			}
+		} finally {
+			group.cancel();
+		}
+
+		if (isCancelled) {
+			if (deferred.size() > 0)
+				addError(stringMgr.getString("copy.error.indexskipped", deferred.size()));
+			return;
+		}
+		for (String sql : deferred)
+			executeTargetSQL(sql);
+	}
+
+	/**
+	 * Create the target tables of the source tables. The CREATE TABLE statements are
+	 * executed at once, the other statements are executed at once or added to
+	 * deferred statements.
+	 */
+	private void createTables(List<String> deferred) throws UnifyException {
+		List<Table> tables = new ArrayList<Table>();
+		List<CopyTask> created = new ArrayList<CopyTask>();
+		for (CopyTask task : tasks) {
+			//Views are copied into existing tables
+			if (task.entity instanceof Table) {
+				tables.add((Table) task.entity);
+				created.add(task);
+			}
+		}
+		if (tables.size() == 0)
+			return;
+		List<String> sqls;
+		try {
+			ISQLDatabaseMetaData sourceMd = source.getDbInfoProvider().getDatabaseMetaData();
+			HibernateDialect dialect = DialectFactory.getDialect(target.getDbInfoProvider()
+					.getDatabaseMetaData());
+			CreateScriptPreferences prefs = new CreateScriptPreferences();
+			//Tables are created in the default schema of the target
+			prefs.setQualifyTableNames(false);
+			prefs.setConstraintsAtEnd(true);
+			prefs.setIncludeExternalReferences(false);
+			sqls = dialect.getCreateTableSQL(tables, sourceMd, prefs, sourceMd.getURL()
+					.startsWith("jdbc:odbc:"));
+		} catch (UnknownDialectException e) {
+			throw new UnifyException(stringMgr.getString("copy.error.nodialect", target
+					.getAliasName()), e);
+		} catch (SQLException e) {
+			throw new UnifyException(ExceptionUtil.getAllExceptions(e).toString(), e);
+		}
+		//The CREATE TABLE statements come first in the order of the tables
+		for (int i = 0; i < sqls.size(); i++) {
+			String sql = sqls.get(i);
+			if (i < created.size()) {
+				CopyTask task = created.get(i);
+				String error = executeTargetSQL(sql);
+				if (error != null) {
+					task.state = STATE_FAILED;
+					task.message = error;
+				}
+			} else if (isDeferIndexes) {
+				deferred.add(sql);
+			} else {
+				executeTargetSQL(sql);
+			}
+		}
+	}
+
+	/**
+	 * Execute a statement on the target bookmark.
+	 *
+	 * @return the error message, null if the statement succeeded.
+	 */
+	private String executeTargetSQL(String sql) {
+		ConnectionPool pool = target.getConnectionPool();
+		Connection con = null;
+		Statement st = null;
+		try {
+			con = pool != null ? pool.borrow() : target.getConnection();
+			LogProxy.getProxy().debug("The copy SQL (" + target.getAliasName() + "): " + sql);
+			st = con.createStatement();
+			st.execute(sql);
+			if (!con.getAutoCommit())
+				con.commit();
+			return null;
+		} catch (Exception e) {
+			String error = stringMgr.getString("copy.error.statement", sql, ExceptionUtil
+					.getAllExceptions(e));
+			addError(error);
+			return error;
+		} finally {
+			if (st != null) {
+				try {
+					st.close();
+				} catch (SQLException e) {
+				}
+			}
+			if (con != null && pool != null)
+				pool.release(con);
+		}
+	}
+
+	private void addError(String message) {
+		errors.add(message);
+		LogProxy.getProxy().debug(message);
+	}
+
+	/**
+	 * Stop copying, the tables not started yet are skipped.
+	 */
+	public void cancel() {
+		isCancelled = true;
+		for (CopyTask task : tasks) {
+			DataImporter importer = task.importer;
+			if (importer != null)
+				importer.cancel();
+		}
+	}
+
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+
+	public List<CopyTask> getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * Return the errors which don't belong to a table, such as failed indexes.
+	 */
+	public List<String> getErrors() {
+		synchronized (errors) {
+			return new ArrayList<String>(errors);
+		}
+	}
+
+	public Bookmark getSource() {
+		return source;
+	}
+
+	public Bookmark getTarget() {
+		return target;
+	}
+
+	/**
+	 * @param isCreateTables --true to create the target tables before copying.
+	 */
+	public void setCreateTables(boolean isCreateTables) {
+		this.isCreateTables = isCreateTables;
+	}
+
+	/**
+	 * @param isDeferIndexes --true to create the indexes and constraints of created
+	 *            tables after all rows have been copied.
+	 */
+	public void setDeferIndexes(boolean isDeferIndexes) {
+		this.isDeferIndexes = isDeferIndexes;
+	}
+
+	/**
+	 * @param parallelCount --number of tables copied at the same time.
+	 */
+	public void setParallelCount(int parallelCount) {
+		this.parallelCount = Math.max(1, parallelCount);
+	}
+
+	/**
+	 * @param batchSize --number of rows inserted as a batch and committed.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * @param fetchSize --number of rows fetched from the source at a time.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = Math.max(1, fetchSize);
+	}
+
+	/**
+	 * The copy of a table and its progress.
+	 */
+	public class CopyTask implements Runnable {
+
+		private final Entity entity;
+
+		private volatile int state = STATE_WAITING;
+
+		private volatile String message = null;
+
+		private volatile DataImporter importer = null;
+
+		private volatile QuerySource querySource = null;
+
+		CopyTask(Entity entity) {
+			this.entity = entity;
+		}
+
+		public void run() {
+			if (isCancelled) {
+				state = STATE_CANCELLED;
+				return;
+			}
+			state = STATE_RUNNING;
+			try {
+				Column[] columns = entity.getColumns();
+				int[] indexes = new int[columns.length];
+				StringBuilder sql = new StringBuilder("SELECT ");
+				for (int i = 0; i < columns.length; i++) {
+					if (i > 0)
+						sql.append(",");
+					sql.append(columns[i].getName());
+					indexes[i] = i;
+				}
+				sql.append(" FROM ").append(entity.getQualifiedName());
+
+				QuerySource query = new QuerySource(source, sql.toString());
+				query.setFetchSize(fetchSize);
+				query.setRowCount(countRows());
+				DataImporter dataImporter = new DataImporter(target, entity.getName(), query,
+						indexes, columns);
+				dataImporter.setBatchSize(batchSize);
+				dataImporter.setStopOnError(true);
+				querySource = query;
+				importer = dataImporter;
+				if (isCancelled)
+					dataImporter.cancel();
+				dataImporter.execute();
+
+				List<String> importErrors = dataImporter.getErrors();
+				if (importErrors.size() > 0) {
+					state = STATE_FAILED;
+					message = importErrors.get(0);
+				} else {
+					state = isCancelled ? STATE_CANCELLED : STATE_FINISHED;
+				}
+			} catch (Exception e) {
+				state = STATE_FAILED;
+				message = ExceptionUtil.getAllExceptions(e).toString();
+				LogProxy.errorLog("copying table " + entity.getQualifiedName() + " failed", e);
+			}
+		}
+
+		/**
+		 * Count the rows of the source table, so the time left can be estimated.
+		 *
+		 * @return 0 if the rows can't be counted.
+		 */
+		private long countRows() {
+			ConnectionPool pool = source.getConnectionPool();
+			Connection con = null;
+			try {
+				con = pool != null ? pool.borrow() : source.getConnection();
+				return Math.max(0, source.getDbInfoProvider().getSize(source, con,
+						entity.getQualifiedName(), source.getAdapter()));
+			} catch (Exception e) {
+				LogProxy.errorLog("counting rows of " + entity.getQualifiedName() + " failed", e);
+				return 0;
+			} finally {
+				if (con != null && pool != null)
+					pool.release(con);
+			}
+		}
+
+		public Entity getEntity() {
+			return entity;
+		}
+
+		public int getState() {
+			return state;
+		}
+
+		/**
+		 * Return the first error of the table, null if it has none.
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * Return the number of rows of the source table, 0 if it isn't known.
+		 */
+		public long getRowCount() {
+			QuerySource query = querySource;
+			return query == null ? 0 : query.getLength();
+		}
+
+		public long getReadCount() {
+			DataImporter dataImporter = importer;
+			return dataImporter == null ? 0 : dataImporter.getReadCount();
+		}
+
+		public long getWrittenCount() {
+			DataImporter dataImporter = importer;
+			return dataImporter == null ? 0 : dataImporter.getWrittenCount();
+		}
+
+		public long getRowsPerSecond() {
+			DataImporter dataImporter = importer;
+			return dataImporter == null ? 0 : dataImporter.getRowsPerSecond();
+		}
+
+		/**
+		 * Return the estimated number of seconds until the table is copied, -1 if it
+		 * can't be estimated.
+		 */
+		public long getSecondsLeft() {
+			long rowsPerSecond = getRowsPerSecond();
+			long rowCount = getRowCount();
+			if (state != STATE_RUNNING || rowsPerSecond <= 0 || rowCount <= 0)
+				return -1;
+			return Math.max(0, rowCount - getWrittenCount()) / rowsPerSecond;
+		}
+	}
+}
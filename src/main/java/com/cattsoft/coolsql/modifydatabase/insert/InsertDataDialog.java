@@ -17,9 +17,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.AbstractAction;
@@ -61,12 +64,18 @@ import com.cattsoft.coolsql.pub.parse.PublicResource;
 import com.cattsoft.coolsql.pub.util.SqlUtil;
 import com.cattsoft.coolsql.pub.util.StringUtil;
 import com.cattsoft.coolsql.sql.Database;
+import com.cattsoft.coolsql.sql.QueryRegistry;
+import com.cattsoft.coolsql.sql.RunningQuery;
 import com.cattsoft.coolsql.sql.commonoperator.ColumnPropertyOperator;
 import com.cattsoft.coolsql.sql.commonoperator.Operatable;
 import com.cattsoft.coolsql.sql.commonoperator.OperatorFactory;
 import com.cattsoft.coolsql.sql.model.Column;
 import com.cattsoft.coolsql.sql.model.DataType;
 import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
 import com.cattsoft.coolsql.view.log.LogProxy;
 import com.cattsoft.coolsql.view.resultset.ColumnDisplayDefinition;
 
@@ -698,9 +707,12 @@ public class InsertDataDialog extends BaseDialog {
                         previewIndex[i] = i;
                     }
                     final ExecuteAction exe = new ExecuteAction(previewIndex);
-                    final ProcessThread pt = new ProcessThread(exe);
+                    final ManagedTask pt = TaskExecutor.getInstance().createTask(
+                            new ProcessThread(exe), "insert data",
+                            TaskExecutor.PRIORITY_INTERACTIVE, entityInfoPane
+                                    .getEntity().getBookmark());
                     final WaitDialog waitDialog = WaitDialogManage
-                            .getInstance().register(pt, InsertDataDialog.this);
+                            .getInstance().register(pt.getThread(), InsertDataDialog.this);
                     waitDialog.setTitle("add data to database");
                     waitDialog.setPrompt(PublicResource
                             .getSQLString("rowinsert.waitdialog.prompt"));
@@ -709,7 +721,7 @@ public class InsertDataDialog extends BaseDialog {
 
                         public void action() {
 
-                            WaitDialogManage.getInstance().disposeRegister(pt);
+                            WaitDialogManage.getInstance().disposeRegister(pt.getThread());
                             waitDialog.dispose();
                             exe.stopExecute();
                         }
@@ -825,8 +837,9 @@ public class InsertDataDialog extends BaseDialog {
 
         //updateConstantOfSQL(entityInfoPane.getEntity());//�ȸ��²���sql�������
         PreviewSQLDialog previewDialog = new PreviewSQLDialog(null, this, true);
-        ProcessThread pt = new ProcessThread(new PreviewAction(previewDialog,
-                rowIndex));
+        ManagedTask pt = TaskExecutor.getInstance().createTask(new ProcessThread(
+                new PreviewAction(previewDialog, rowIndex)), "preview sql",
+                TaskExecutor.PRIORITY_INTERACTIVE, null);
 
         /**
          * �������߳�,Ȼ������ʾԤ���Ի���
@@ -894,6 +907,35 @@ public class InsertDataDialog extends BaseDialog {
         return buffer.toString();
     }
 
+    /**
+     * Return the INSERT statement of the selected columns with a '?' for the value
+     * of each column, {@link #updateConstantOfSQL(Entity, boolean)} must be called
+     * first.
+     * 
+     * @param modelColumns
+     *            --receives the model index of each selected column
+     * @param types
+     *            --receives the JDBC type of each selected column
+     */
+    private String getInsertSQL(List<Integer> modelColumns, List<Integer> types) {
+        StringBuilder buffer = new StringBuilder(constantOfEntity + "(");
+        TableColumnModel columnModel = editTable.getColumnModel();
+        for (int i = 0; i < editTable.getColumnCount(); i++) {
+            TableHeaderCell cell = (TableHeaderCell) columnModel.getColumn(i)
+                    .getHeaderValue();
+            if (!cell.getState())
+                continue;
+
+            Column col = (Column) cell.getHeaderValue();
+            modelColumns.add(editTable.convertColumnIndexToModel(i));
+            types.add(col.getType());
+            buffer.append(modelColumns.size() > 1 ? ",?" : "?");
+        }
+        buffer.append(")");
+
+        return buffer.toString();
+    }
+
     /**
      * 
      * @author liu_xlin Ԥ��sql�����߼�������
@@ -939,6 +981,11 @@ public class InsertDataDialog extends BaseDialog {
      * @author liu_xlin ִ�б���������ɵ�sql
      */
     private class ExecuteAction implements Actionable {
+        /**
+         * Minimum milliseconds between two updates of the progress.
+         */
+        private static final long PROGRESS_INTERVAL = 200;
+
         private int[] rowIndex; //��Ҫִ�е���
 
         private boolean isRun; //����ִ�д������ֹ
@@ -999,10 +1046,17 @@ public class InsertDataDialog extends BaseDialog {
                 return;
             }
             Connection con = null;
-            Statement sm = null;
+            PreparedStatement ps = null;
+            String sql;
+            List<Integer> modelColumns = new ArrayList<Integer>();
+            List<Integer> types = new ArrayList<Integer>();
             try {
                 con = bookmark.getConnection();
-                sm = con.createStatement();
+                updateConstantOfSQL(entityInfoPane.getEntity(), true);
+                sql = getInsertSQL(modelColumns, types);
+                LogProxy.getProxy().debug(
+                        "The INSERT SQL (" + bookmark.getAliasName() + "): " + sql);
+                ps = con.prepareStatement(sql);
             } catch (UnifyException e) {
                 LogProxy.errorReport(InsertDataDialog.this, e);
                 return;
@@ -1010,72 +1064,88 @@ public class InsertDataDialog extends BaseDialog {
                 LogProxy.SQLErrorReport(InsertDataDialog.this, e);
                 return;
             }
+            int batchSize = Math.max(1, Setting.getInstance().getIntProperty(
+                    PropertyConstant.PROPERTY_EDITORTABLE_INSERT_BATCHSIZE, 500));
+            int next = 0; //Position of the first row which hasn't been processed.
             try {
-            	updateConstantOfSQL(entityInfoPane.getEntity(), true);
             	int successCount = 0;//The row count of row data has been saved into database successfully.
-                for (int i = 0; i < rowIndex.length; i++) {
-                    if (!isRun) { //�����ֹ����
-                        int result = JOptionPane
-                                .showConfirmDialog(
-                                        InsertDataDialog.this,
-                                        PublicResource
-                                                .getSQLString("rowinsert.dialog.confirmstop"),
-                                        "confirm stop",
-                                        JOptionPane.YES_NO_OPTION);
-                        if (result == JOptionPane.YES_OPTION) //���ѡ����
-                        {
-                            if (successCount == 0) {//���û�в�������,ֱ�����ѭ��
-                                break;
-                            }
-
-                            result = JOptionPane
-                                    .showConfirmDialog(
-                                            InsertDataDialog.this,
-                                            PublicResource
-                                                    .getSQLString("rowinsert.dialog.confirmrollback")
-                                                    + successCount, "confirm rollback",
-                                            JOptionPane.YES_NO_CANCEL_OPTION);
-
-                            if (result == JOptionPane.NO_OPTION) {
-                                break;
-                            } else if (result == JOptionPane.YES_OPTION) {
-                                try {
-                                    con.rollback();
-                                } catch (SQLException e1) {
-                                    LogProxy.SQLErrorReport(
-                                            InsertDataDialog.this, e1);
-                                }
-                                break;
-                            } else {
-                                isRun = true; //������ִ��
-                            }
-
-                        } else {
-                            isRun = true; //������ִ��
+            	long lastProgressTime = 0;
+                while (next < rowIndex.length) {
+                    if (!isRun) { //Stopping is confirmed between two batches
+                        if (confirmStop(successCount, con))
+                            break;
+                        isRun = true;
+                    }
+                    int end = Math.min(next + batchSize, rowIndex.length);
+                    int failed = -1; //Position of the row which failed.
+                    SQLException error = null;
+                    boolean isDriverStopped = true; //Whether the rows after the failed row haven't been executed.
+                    int bound = next;
+                    for (; bound < end; bound++) {
+                        try {
+                            bindRow(ps, rowIndex[bound], modelColumns, types);
+                            ps.addBatch();
+                        } catch (SQLException e) {
+                            failed = bound;
+                            error = e;
+                            break;
                         }
-                    } else //���sqlִ��
-                    {
+                    }
+                    if (bound > next) {
+                        RunningQuery query = QueryRegistry.getInstance().begin(bookmark,
+                                sql, ps);
                         try {
-                            processRowInsert(rowIndex[i], sm, bookmark);
-                            successCount ++;
-                        } catch (UnifyException e1) {
-                            LogProxy.errorReport(InsertDataDialog.this,"current row number:"+rowIndex[i], e1);
-                            isRun = false; //�����쳣��,���û�ȷ���Ƿ��˳�ִ��
-                        } catch (SQLException e1) {
-                            LogProxy.SQLErrorReport(InsertDataDialog.this, e1);
-                            isRun = false;//�����쳣��,���û�ȷ���Ƿ��˳�ִ��
+                            ps.executeBatch();
+                            successCount += bound - next;
+                        } catch (BatchUpdateException e) {
+                            int[] counts = e.getUpdateCounts();
+                            int firstFailed = counts == null ? 0 : counts.length;
+                            for (int i = 0; counts != null && i < counts.length; i++) {
+                                if (counts[i] == Statement.EXECUTE_FAILED) {
+                                    firstFailed = Math.min(firstFailed, i);
+                                } else {
+                                    successCount++;
+                                }
+                            }
+                            isDriverStopped = counts == null || counts.length < bound - next;
+                            if (!isDriverStopped && firstFailed == counts.length)
+                                firstFailed = 0; //No row is marked, blame the first one
+                            failed = next + firstFailed;
+                            error = e;
+                        } catch (SQLException e) {
+                            failed = next;
+                            error = e;
                         } finally {
-                        	dialog.setProgressValue(i+1); //���ý��
+                            QueryRegistry.getInstance().end(query);
+                            try {
+                                ps.clearBatch();
+                            } catch (SQLException e) {
+                                LogProxy.sqlErrorLog("clearing batch failed", e);
+                            }
                         }
                     }
+                    if (failed > -1) {
+                        next = isDriverStopped ? failed + 1 : bound;
+                        LogProxy.SQLErrorReport(InsertDataDialog.this,
+                                "current row number:" + rowIndex[failed], error);
+                        isRun = false; //�����쳣��,���û�ȷ���Ƿ��˳�ִ��
+                    } else {
+                        next = bound;
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastProgressTime >= PROGRESS_INTERVAL) {
+                        dialog.setProgressValue(next); //���ý��
+                        lastProgressTime = now;
+                    }
                 }
             } finally {
+                dialog.setProgressValue(next);
                 /**
                  * �ύ����ͬʱ�ָ���ݿ����ӵ��ύ���ԣ��ر�Statement����
                  */
                 try {
                     con.commit();
-                    sm.close();
+                    ps.close();
                     bookmark.setAutoCommit(oldIsAutoCommit);
                 } catch (SQLException e1) {
                     LogProxy.SQLErrorReport(InsertDataDialog.this, e1);
@@ -1108,21 +1178,69 @@ public class InsertDataDialog extends BaseDialog {
         }
 
         /**
-         * ִ�в����sql���
+         * Ask the user whether to stop inserting and whether to rollback the rows
+         * inserted.
+         * 
+         * @return true if inserting is stopped.
+         */
+        private boolean confirmStop(int successCount, Connection con) {
+            int result = JOptionPane
+                    .showConfirmDialog(
+                            InsertDataDialog.this,
+                            PublicResource
+                                    .getSQLString("rowinsert.dialog.confirmstop"),
+                            "confirm stop",
+                            JOptionPane.YES_NO_OPTION);
+            if (result != JOptionPane.YES_OPTION) //������ִ��
+                return false;
+            if (successCount == 0) {//���û�в�������,ֱ�����ѭ��
+                return true;
+            }
+
+            result = JOptionPane
+                    .showConfirmDialog(
+                            InsertDataDialog.this,
+                            PublicResource
+                                    .getSQLString("rowinsert.dialog.confirmrollback")
+                                    + successCount, "confirm rollback",
+                            JOptionPane.YES_NO_CANCEL_OPTION);
+
+            if (result == JOptionPane.NO_OPTION) {
+                return true;
+            } else if (result == JOptionPane.YES_OPTION) {
+                try {
+                    con.rollback();
+                } catch (SQLException e1) {
+                    LogProxy.SQLErrorReport(
+                            InsertDataDialog.this, e1);
+                }
+                return true;
+            } else {
+                return false; //������ִ��
+            }
+        }
+
+        /**
+         * Bind the values of the row to the INSERT statement.
          * 
          * @param index
          *            --ָ��������
-         * @param sm
-         *            --Statement����
-         * @throws UnifyException
+         * @param modelColumns
+         *            --model index of each inserted column
+         * @param types
+         *            --JDBC type of each inserted column
          * @throws SQLException
          */
-        private void processRowInsert(int index, Statement sm, Bookmark bookmark)
-                throws UnifyException, SQLException {
-            String sql = getSQLToRow(index);
-            LogProxy.getProxy().debug(
-                    "The INSERT SQL (" + bookmark.getAliasName() + "): " + sql);
-            sm.execute(sql);
+        private void bindRow(PreparedStatement ps, int index,
+                List<Integer> modelColumns, List<Integer> types)
+                throws SQLException {
+            TableModel model = editTable.getModel();
+            for (int i = 0; i < modelColumns.size(); i++) {
+                EditeTableCell value = (EditeTableCell) model.getValueAt(index,
+                        modelColumns.get(i));
+                SqlUtil.bindColumnValue(ps, i + 1, value.isNull() ? null : value
+                        .getDisplayLabel(), types.get(i));
+            }
         }
     }
 
@@ -4,13 +4,12 @@
 package com.cattsoft.coolsql.modifydatabase.insert;
 
 import com.cattsoft.coolsql.exportdata.Actionable;
-import com.cattsoft.coolsql.pub.util.StringUtil;
 import com.cattsoft.coolsql.view.log.LogProxy;
 
 /**
  * @author kenny liu
  */
-public class ProcessThread extends Thread {
+public class ProcessThread implements Runnable {
 
     /**
      * ����ӿڶ���
@@ -18,7 +17,6 @@ public class ProcessThread extends Thread {
     private Actionable action;
     public ProcessThread(Actionable action)
     {
-        super(StringUtil.getHashNameOfObject(action));
         if(action==null)
             throw new IllegalArgumentException("action must be a non-null value");
         this.action=action;
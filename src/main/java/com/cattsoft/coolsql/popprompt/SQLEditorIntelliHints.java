@@ -405,7 +405,7 @@ public class SQLEditorIntelliHints extends AbstractEditorIntelliHints {
             
 			String[] promptTypes = getPromptTypes();
 			List<Entity> entities = db.queryEntities(bookmark, bookmark
-					.getConnection(), catalog, schema, entity == null
+					.getMetaConnection(), catalog, schema, entity == null
 					? null
 					: (entity + "%"), promptTypes);
 
@@ -1,10 +1,14 @@
 package com.cattsoft.coolsql.pub.util;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Collections;
 import java.util.HashSet;
@@ -1474,4 +1478,63 @@ public class SqlUtil
         		return "'"+value+"'";
         }
     }
+    /**
+     * Bind a value of a column to a prepared statement. A text entered by the user
+     * is converted to the type of the column first, the way
+     * {@link #qualifyColumnValue(String, int)} quotes it, and the driver is left to
+     * convert it if the type doesn't accept it.
+     */
+    public static void bindColumnValue(PreparedStatement ps,int index,Object value,int dataType) throws SQLException
+    {
+        if(value==null)
+        {
+            try
+            {
+                ps.setNull(index,dataType);
+            }catch(SQLException e)
+            {
+                ps.setNull(index,Types.VARCHAR);
+            }
+            return;
+        }
+        Object realValue=convertColumnText(value,dataType);
+        try
+        {
+            ps.setObject(index,realValue,dataType);
+        }catch(SQLException e)
+        {
+            ps.setObject(index,realValue);
+        }
+    }
+    /**
+     * Convert the text to a number, a date or a timestamp according to the type of
+     * the column, an empty number is 0. The text is returned if it can't be converted.
+     */
+    public static Object convertColumnText(Object value,int dataType)
+    {
+        if(!(value instanceof String))
+            return value;
+        String text=(String)value;
+        try
+        {
+            if(isNumberType(dataType))
+            {
+                text=text.trim();
+                return text.length()==0?BigDecimal.ZERO:new BigDecimal(text);
+            }
+            switch(dataType)
+            {
+                case Types.DATE:
+                    return java.sql.Date.valueOf(text.trim());
+                case Types.TIME:
+                    return Time.valueOf(text.trim());
+                case Types.TIMESTAMP:
+                    return Timestamp.valueOf(text.trim());
+            }
+        }catch(IllegalArgumentException e)
+        {
+            //Let the driver parse the text
+        }
+        return text;
+    }
 }
@@ -182,7 +182,7 @@ public class QueryDBInfo {
             SQLException {
 
         List list = bookmark.getDbInfoProvider().queryEntities(bookmark,
-                bookmark.getConnection(),catalog, schemaName, entityName, null);
+                bookmark.getMetaConnection(),catalog, schemaName, entityName, null);
         return (Entity[]) list.toArray(new Entity[list.size()]);
     }
 
@@ -227,7 +227,7 @@ public class QueryDBInfo {
             String schemaName, String entityName, String columnName)
             throws SQLException, UnifyException {
         List list = bookmark.getDbInfoProvider().queryColumns(bookmark,
-                bookmark.getConnection(),catalogName, schemaName, entityName, columnName);
+                bookmark.getMetaConnection(),catalogName, schemaName, entityName, columnName);
         return (Column[]) list.toArray(new Column[list.size()]); //ת��Ϊ����������
 
     }
@@ -247,7 +247,7 @@ public class QueryDBInfo {
             String schemaName, String entityName, String columnName)
             throws SQLException, UnifyException {
         Column column = bookmark.getDbInfoProvider().queryColumnDetail(bookmark,
-                bookmark.getConnection(),catalogName, schemaName, entityName, columnName);
+                bookmark.getMetaConnection(),catalogName, schemaName, entityName, columnName);
         return column;
     }
 }
@@ -0,0 +1,428 @@
+package com.cattsoft.coolsql.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * A bounded pool of connections to the database of a bookmark, used by work which
+ * doesn't need to see the uncommitted changes of the editor connection, such as
+ * exporting data. Connections are opened when they are needed until the maximum
+ * size is reached, then borrowing waits for a connection to be released.
+ * <p>
+ * An idle connection is validated before it is lent, and idle connections over the
+ * minimum size are closed when they have been idle longer than the configured timeout.
+ * Connections of the pool are always in auto-commit mode.
+ *
+ * @author agent
+ */
+public class ConnectionPool {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(ConnectionPool.class);
+
+	/**
+	 * Shared timer used to close idle connections. It runs as a daemon so it never
+	 * keeps the application alive.
+	 */
+	private static final Timer evictTimer = new Timer("ConnectionPool-evict", true);
+
+	/**
+	 * Seconds waited for a connection to answer when it's validated.
+	 */
+	private static final int VALIDATE_TIMEOUT = 5;
+
+	private final Bookmark bookmark;
+
+	private final int minSize;
+
+	private final int maxSize;
+
+	/**
+	 * Milliseconds after which an idle connection may be closed.
+	 */
+	private final long idleTimeout;
+
+	/**
+	 * Milliseconds waited for a connection when the pool is exhausted.
+	 */
+	private final long borrowTimeout;
+
+	/**
+	 * Idle connections, the most recently released first.
+	 */
+	private final LinkedList<IdleConnection> idle = new LinkedList<IdleConnection>();
+
+	/**
+	 * Connections which have been lent.
+	 */
+	private final List<Connection> active = new ArrayList<Connection>();
+
+	/**
+	 * Number of connections being opened, they count in the size of the pool.
+	 */
+	private int opening = 0;
+
+	private boolean isClosed = false;
+
+	private long borrowCount = 0;
+
+	private long waitCount = 0;
+
+	private long totalWaitTime = 0;
+
+	private long maxWaitTime = 0;
+
+	private final TimerTask evictTask;
+
+	public ConnectionPool(Bookmark bookmark) {
+		this(bookmark, Setting.getInstance().getIntProperty(
+				PropertyConstant.PROPERTY_VIEW_BOOKMARK_POOL_MINSIZE, 0), Setting
+				.getInstance().getIntProperty(
+						PropertyConstant.PROPERTY_VIEW_BOOKMARK_POOL_MAXSIZE, 4), Setting
+				.getInstance().getIntProperty(
+						PropertyConstant.PROPERTY_VIEW_BOOKMARK_POOL_IDLETIMEOUT, 300) * 1000L);
+	}
+
+	/**
+	 * @param minSize --number of idle connections which are never evicted.
+	 * @param maxSize --maximum number of connections opened by the pool.
+	 * @param idleTimeout --milliseconds after which an idle connection may be closed.
+	 */
+	public ConnectionPool(Bookmark bookmark, int minSize, int maxSize, long idleTimeout) {
+		this.bookmark = bookmark;
+		this.maxSize = Math.max(1, maxSize);
+		this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+		this.idleTimeout = idleTimeout;
+		this.borrowTimeout = Setting.getInstance().getIntProperty(
+				PropertyConstant.PROPERTY_VIEW_BOOKMARK_CONNECT_TIMEOUT, 60) * 1000L;
+		if (idleTimeout > 0) {
+			evictTask = new TimerTask() {
+				public void run() {
+					evictIdle();
+				}
+			};
+			long period = Math.max(1000L, idleTimeout / 2);
+			evictTimer.schedule(evictTask, period, period);
+		} else
+			evictTask = null;
+	}
+
+	/**
+	 * Borrow a connection, it must be given back by {@link #release(Connection)}.
+	 *
+	 * @throws UnifyException if the pool has been closed or no connection has been
+	 *             released before the timeout.
+	 */
+	public Connection borrow() throws UnifyException, SQLException {
+		long start = System.currentTimeMillis();
+		boolean isWaited = false;
+		while (true) {
+			IdleConnection candidate = null;
+			synchronized (this) {
+				checkOpen();
+				if (!idle.isEmpty()) {
+					candidate = idle.removeFirst();
+					active.add(candidate.connection);
+				} else if (active.size() + opening < maxSize) {
+					opening++;
+				} else {
+					long remain = borrowTimeout - (System.currentTimeMillis() - start);
+					if (remain <= 0)
+						throw new UnifyException(stringMgr.getString(
+								"ConnectionPool.error.timeout", maxSize));
+					isWaited = true;
+					try {
+						wait(remain);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new UnifyException(stringMgr
+								.getString("ConnectionPool.error.interrupted"), e);
+					}
+					continue;
+				}
+			}
+			if (candidate != null) {
+				if (isValid(candidate.connection)) {
+					lent(start, isWaited);
+					return candidate.connection;
+				}
+				//The broken connection is replaced by a new one
+				synchronized (this) {
+					active.remove(candidate.connection);
+					opening++;
+				}
+				closeQuietly(candidate.connection);
+			}
+			Connection con = null;
+			try {
+				con = ConnectionUtil.connect(bookmark);
+				con.setAutoCommit(true);
+			} catch (ConnectionException e) {
+				closeQuietly(con);
+				opened(null);
+				throw new UnifyException(e.getMessage(), e);
+			} catch (ClassNotFoundException e) {
+				opened(null);
+				throw new UnifyException(e.getMessage(), e);
+			} catch (SQLException e) {
+				closeQuietly(con);
+				opened(null);
+				throw e;
+			}
+			if (!opened(con)) {
+				closeQuietly(con);
+				checkOpen();
+			}
+			lent(start, isWaited);
+			return con;
+		}
+	}
+
+	/**
+	 * Give back a borrowed connection. A connection left in a transaction is rolled
+	 * back, a connection which fails is closed.
+	 */
+	public void release(Connection con) {
+		if (con == null)
+			return;
+		boolean isReusable = true;
+		try {
+			if (con.isClosed())
+				isReusable = false;
+			else if (!con.getAutoCommit()) {
+				con.rollback();
+				con.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			LogProxy.errorLog("resetting pooled connection failed", e);
+			isReusable = false;
+		}
+		synchronized (this) {
+			if (!active.remove(con)) {
+				isReusable = false;
+			} else if (isReusable && !isClosed) {
+				idle.addFirst(new IdleConnection(con));
+				notify();
+				return;
+			}
+			notify();
+		}
+		closeQuietly(con);
+	}
+
+	/**
+	 * Close the idle connections and the connections which are released afterward.
+	 */
+	public void close() {
+		List<IdleConnection> toClose;
+		synchronized (this) {
+			if (isClosed)
+				return;
+			isClosed = true;
+			toClose = new ArrayList<IdleConnection>(idle);
+			idle.clear();
+			notifyAll();
+		}
+		if (evictTask != null)
+			evictTask.cancel();
+		for (IdleConnection c : toClose)
+			closeQuietly(c.connection);
+	}
+
+	/**
+	 * Close the connections which have been idle longer than the timeout, keeping at
+	 * least the minimum number of idle connections.
+	 */
+	void evictIdle() {
+		List<IdleConnection> toClose = new ArrayList<IdleConnection>();
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			//The least recently released are at the end
+			while (idle.size() > minSize && now - idle.getLast().releaseTime >= idleTimeout)
+				toClose.add(idle.removeLast());
+		}
+		for (IdleConnection c : toClose)
+			closeQuietly(c.connection);
+		if (toClose.size() > 0)
+			LogProxy.getProxy().debug(
+					"closed " + toClose.size() + " idle connection(s) of "
+							+ bookmark.getAliasName());
+	}
+
+	/**
+	 * Record a connection opened by the pool.
+	 *
+	 * @return false if the pool has been closed while the connection was opened.
+	 */
+	private synchronized boolean opened(Connection con) {
+		opening--;
+		if (con == null || isClosed) {
+			notify();
+			return false;
+		}
+		active.add(con);
+		return true;
+	}
+
+	private synchronized void lent(long start, boolean isWaited) {
+		borrowCount++;
+		if (isWaited) {
+			long time = System.currentTimeMillis() - start;
+			waitCount++;
+			totalWaitTime += time;
+			if (time > maxWaitTime)
+				maxWaitTime = time;
+		}
+	}
+
+	private void checkOpen() throws UnifyException {
+		if (isClosed)
+			throw new UnifyException(stringMgr.getString("ConnectionPool.error.closed",
+					bookmark.getAliasName()));
+	}
+
+	/**
+	 * Return whether the connection can still be used. Drivers which don't implement
+	 * {@link Connection#isValid(int)} are only checked for being closed.
+	 */
+	static boolean isValid(Connection con) {
+		try {
+			return con.isValid(VALIDATE_TIMEOUT);
+		} catch (AbstractMethodError e) {
+		} catch (SQLException e) {
+		}
+		try {
+			return !con.isClosed();
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private static void closeQuietly(Connection con) {
+		if (con == null)
+			return;
+		try {
+			con.close();
+		} catch (Throwable t) {
+			LogProxy.errorLog("closing pooled connection failed", t);
+		}
+	}
+
+	/**
+	 * Return the current figures of the pool.
+	 */
+	public synchronized Statistics getStatistics() {
+		return new Statistics(minSize, maxSize, active.size(), idle.size(), borrowCount,
+				waitCount, totalWaitTime, maxWaitTime);
+	}
+
+	/**
+	 * An idle connection and the time it was released.
+	 */
+	private static class IdleConnection {
+
+		final Connection connection;
+
+		final long releaseTime;
+
+		IdleConnection(Connection connection) {
+			this.connection = connection;
+			this.releaseTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Figures of a pool at a time.
+	 */
+	public static class Statistics {
+
+		private final int minSize;
+
+		private final int maxSize;
+
+		private final int activeCount;
+
+		private final int idleCount;
+
+		private final long borrowCount;
+
+		private final long waitCount;
+
+		private final long totalWaitTime;
+
+		private final long maxWaitTime;
+
+		Statistics(int minSize, int maxSize, int activeCount, int idleCount,
+				long borrowCount, long waitCount, long totalWaitTime, long maxWaitTime) {
+			this.minSize = minSize;
+			this.maxSize = maxSize;
+			this.activeCount = activeCount;
+			this.idleCount = idleCount;
+			this.borrowCount = borrowCount;
+			this.waitCount = waitCount;
+			this.totalWaitTime = totalWaitTime;
+			this.maxWaitTime = maxWaitTime;
+		}
+
+		public int getMinSize() {
+			return minSize;
+		}
+
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		/**
+		 * Return the number of lent connections.
+		 */
+		public int getActiveCount() {
+			return activeCount;
+		}
+
+		public int getIdleCount() {
+			return idleCount;
+		}
+
+		public long getBorrowCount() {
+			return borrowCount;
+		}
+
+		/**
+		 * Return the number of borrowings which waited for a connection to be released.
+		 */
+		public long getWaitCount() {
+			return waitCount;
+		}
+
+		/**
+		 * Return the milliseconds spent waiting for a connection in all borrowings.
+		 */
+		public long getTotalWaitTime() {
+			return totalWaitTime;
+		}
+
+		public long getMaxWaitTime() {
+			return maxWaitTime;
+		}
+
+		/**
+		 * Return the average milliseconds waited by a borrowing which had to wait.
+		 */
+		public long getAverageWaitTime() {
+			return waitCount == 0 ? 0 : totalWaitTime / waitCount;
+		}
+	}
+}
@@ -9,6 +9,7 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.Driver;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -29,6 +30,8 @@ import com.cattsoft.coolsql.sql.model.Entity;
 import com.cattsoft.coolsql.sql.model.Schema;
 import com.cattsoft.coolsql.system.PropertyConstant;
 import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
 import com.cattsoft.coolsql.view.log.LogProxy;
 
 /**
@@ -37,17 +40,18 @@ import com.cattsoft.coolsql.view.log.LogProxy;
 public class ConnectionUtil {
 
     /**
-     * key:current execute thread value:current statement
+     * �����ѯ���,�Լ���Ӧ��Statement����
      */
-    private static Map longTimeStatement = null;
+    private static Map st = null;
 
     /**
-     * �����ѯ���,�Լ���Ӧ��Statement����
+     * Connections borrowed from bookmarks by queries, they are released when the
+     * statement of the result set is closed.
      */
-    private static Map st = null;
+    private static Map<ResultSet, BorrowedConnection> borrowedConnections = Collections
+            .synchronizedMap(new HashMap<ResultSet, BorrowedConnection>());
     static {
         st = Collections.synchronizedMap(new HashMap());
-        longTimeStatement = Collections.synchronizedMap(new HashMap());
     }
 
     private ConnectionUtil() {
@@ -61,6 +65,18 @@ public class ConnectionUtil {
         Connection con = connect(bookmark);
         bookmark.setConnection(con);
         bookmark.setAutoCommit(bookmark.isAutoCommit());
+        bookmark.setConnectionPool(new ConnectionPool(bookmark));
+        if (Setting.getInstance().getBoolProperty(
+                PropertyConstant.PROPERTY_VIEW_BOOKMARK_METACONNECTION, true)) {
+            try {
+                Connection metaConnection = connect(bookmark);
+                metaConnection.setAutoCommit(true);
+                bookmark.setMetaConnection(metaConnection);
+            } catch (Exception e) {
+                //Metadata is read through the editor connection
+                LogProxy.errorLog("opening metadata connection failed", e);
+            }
+        }
         try {
             bookmark.setDatabase(new Database(bookmark));
         } catch (Exception e) {
@@ -269,33 +285,99 @@ public class ConnectionUtil {
     public static SQLResults execute(Bookmark bookmark, Connection con,
             Entity entity[], String sql, int numberOfRowsPerPage)
             throws SQLException {
+        return execute(bookmark, con, entity, sql, numberOfRowsPerPage, false);
+    }
+    /**
+     * Execute the SQL statement. If <code>isHoldCursor</code> is true and cursor paging is
+     * enabled, the cursor of a query is kept open by the result to read following pages.
+     * 
+     * @param isHoldCursor --whether the cursor of query should be held by the result.
+     */
+    public static SQLResults execute(Bookmark bookmark, Connection con,
+            Entity entity[], String sql, int numberOfRowsPerPage, boolean isHoldCursor)
+            throws SQLException {
+        return execute(bookmark, con, entity, sql, numberOfRowsPerPage, isHoldCursor, null);
+    }
+    /**
+     * Execute the SQL statement, the fetch listener is notified while the rows of the
+     * first page are read if the statement is a query.
+     * 
+     * @param fetchListener --listener of the rows, it may be null.
+     */
+    public static SQLResults execute(Bookmark bookmark, Connection con,
+            Entity entity[], String sql, int numberOfRowsPerPage, boolean isHoldCursor,
+            ResultFetchListener fetchListener) throws SQLException {
+        return execute(bookmark, con, entity, sql, null, numberOfRowsPerPage,
+                isHoldCursor, fetchListener);
+    }
+    /**
+     * Execute the SQL statement with the values of its '?'. Queries and statements
+     * with parameters are prepared through the statement cache of the connection, so
+     * executing them again, refreshing or paging their result doesn't parse them
+     * again.
+     * 
+     * @param parameters --values bound to the '?' of the statement in order, null if
+     *            it has no parameter.
+     */
+    public static SQLResults execute(Bookmark bookmark, Connection con,
+            Entity entity[], String sql, Object[] parameters, int numberOfRowsPerPage,
+            boolean isHoldCursor, ResultFetchListener fetchListener) throws SQLException {
         long startTime = System.currentTimeMillis();
 
         LogProxy log = LogProxy.getProxy();
         log.debug("SQL (" + bookmark.getAliasName() + ") [" + sql + "]");
-        Statement statement = con.createStatement();
-        //���浱ǰִ�е��߳����Ӧ��Statement����
-        longTimeStatement.put(Thread.currentThread(), statement);
+        boolean isPaging = numberOfRowsPerPage > 0
+                && numberOfRowsPerPage != Integer.MAX_VALUE;
+        isHoldCursor = isHoldCursor && isPaging
+                && ResultSetCursor.isCursorPagingEnabled(bookmark);
+        //Other statements, such as DDL, are executed once and aren't prepared
+        boolean isPrepared = parameters != null || isQuery(sql);
+        PreparedStatementCache cache = isPrepared ? bookmark.getStatementCache(con) : null;
+        Statement statement;
+        if (isPrepared)
+            statement = PreparedStatementCache.prepare(cache, con, sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        else
+            statement = isHoldCursor ? con.createStatement(
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY) : con
+                    .createStatement();
+        //The statement is closed by the cursor of result if it's held.
+        boolean isOwnedByResult = false;
+        RunningQuery query = QueryRegistry.getInstance().begin(bookmark, sql, statement);
         try {
         	long costTime;
             SQLResults results;
-            if(numberOfRowsPerPage>0&&numberOfRowsPerPage!=Integer.MAX_VALUE)
+            if (isHoldCursor)
+                ResultSetCursor.setFetchSize(statement, numberOfRowsPerPage + 1);
+            else if (isPaging)
             	statement.setMaxRows(numberOfRowsPerPage+1); //max rows was setted as the value of numberOfRowsPerPage first
-            if (statement.execute(sql)) {
+            boolean isResultSet;
+            if (isPrepared) {
+                ParameterizedSql.bindAll((PreparedStatement) statement, parameters);
+                isResultSet = ((PreparedStatement) statement).execute();
+            } else
+                isResultSet = statement.execute(sql);
+            if (isResultSet) {
             	costTime=System.currentTimeMillis() - startTime;
                 //ִ����Ϻ󣬽���ǰ�̶߳�Ӧ�ļ�ֵ��ɾ��
 
                 ResultSet set = statement.getResultSet();
-                try {
-                    results = SQLStandardResultSetResults.create(set, bookmark,
-                            sql, entity, numberOfRowsPerPage);
-                } finally {
-                    set.close();
+                query.setPhase(RunningQuery.PHASE_FETCHING);
+                if (isHoldCursor) {
+                    results = SQLStandardResultSetResults.create(statement,
+                            set, bookmark, sql, parameters, entity, numberOfRowsPerPage,
+                            fetchListener, cache);
+                    isOwnedByResult = true;
+                } else {
+                    try {
+                        results = SQLStandardResultSetResults.create(set, bookmark,
+                                sql, parameters, entity, numberOfRowsPerPage, fetchListener);
+                    } finally {
+                        set.close();
+                    }
                 }
             } else {
             	costTime=System.currentTimeMillis() - startTime;
-                //ִ����Ϻ󣬽���ǰ�̶߳�Ӧ�ļ�ֵ��ɾ��
-                longTimeStatement.remove(Thread.currentThread());
 
                 int updates = statement.getUpdateCount();
                 results = new SQLUpdateResults(updates);
@@ -308,10 +390,26 @@ public class ConnectionUtil {
             }
             return results;
         } finally {
-            longTimeStatement.remove(Thread.currentThread());
-            statement.close();           
+            QueryRegistry.getInstance().end(query);
+            if (!isOwnedByResult) {
+                if (isPrepared)
+                    PreparedStatementCache.release(cache, (PreparedStatement) statement);
+                else
+                    statement.close();
+            }
         }
     }
+    /**
+     * Return true if the statement is a query, only its first word is checked.
+     */
+    private static boolean isQuery(String sql) {
+        String text = sql.trim();
+        int end = 0;
+        while (end < text.length() && Character.isLetter(text.charAt(end)))
+            end++;
+        String verb = text.substring(0, end);
+        return verb.equalsIgnoreCase("SELECT") || verb.equalsIgnoreCase("WITH");
+    }
     public static ResultSet executeQuery(Bookmark bookmark, String sql) throws UnifyException, SQLException
     {
     	return executeQuery(bookmark,sql,false);
@@ -330,30 +428,43 @@ public class ConnectionUtil {
         LogProxy log = LogProxy.getProxy();
         log.debug("SQL (" + bookmark.getAliasName() + ") [" + sql + "]");
 
-        Connection con = bookmark.getConnection();
-        Statement statement = con.createStatement(
-                ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-
-        longTimeStatement.put(Thread.currentThread(), statement);
-        int numberOfRowsPerPage=bookmark.getDbInfoProvider().getNumberOfRowsPerPage();
-        if(!isQueryAll)
-        {
-	        if(numberOfRowsPerPage>0&&numberOfRowsPerPage!=Integer.MAX_VALUE)
-	        	statement.setMaxRows(numberOfRowsPerPage+1);
-        }
-        if (statement.execute(sql)) { //sqlΪ��ѯ����
-            longTimeStatement.remove(Thread.currentThread());
-
-            ResultSet set = statement.getResultSet();
-            log.debug("execute successfully!");
-            regStatement(set, statement);
-            return set;
-        } else { //sqlΪ�޸ĸ�������
-            longTimeStatement.remove(Thread.currentThread());
+        //The query runs in a pooled connection unless it must see the uncommitted changes
+        Connection con = bookmark.borrowConnection();
+        Statement statement = null;
+        RunningQuery query = null;
+        boolean isSucceed = false;
+        try {
+            statement = con.createStatement(
+                    ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
 
-            statement.close();
-            throw new UnifyException(PublicResource
-                    .getSQLString("sql.execute.sqltype.queryonly"));
+            query = QueryRegistry.getInstance().begin(bookmark, sql, statement);
+            int numberOfRowsPerPage=bookmark.getDbInfoProvider().getNumberOfRowsPerPage();
+            if(!isQueryAll)
+            {
+    	        if(numberOfRowsPerPage>0&&numberOfRowsPerPage!=Integer.MAX_VALUE)
+    	        	statement.setMaxRows(numberOfRowsPerPage+1);
+            }
+            if (statement.execute(sql)) { //sqlΪ��ѯ����
+                ResultSet set = statement.getResultSet();
+                log.debug("execute successfully!");
+                regStatement(set, statement);
+                borrowedConnections.put(set, new BorrowedConnection(bookmark, con));
+                isSucceed = true;
+                return set;
+            } else { //sqlΪ�޸ĸ�������
+                throw new UnifyException(PublicResource
+                        .getSQLString("sql.execute.sqltype.queryonly"));
+            }
+        } finally {
+            QueryRegistry.getInstance().end(query);
+            if (!isSucceed) {
+                try {
+                    if (statement != null)
+                        statement.close();
+                } finally {
+                    bookmark.releaseConnection(con);
+                }
+            }
         }
     }
     
@@ -367,8 +478,14 @@ public class ConnectionUtil {
      */
     public static void closeStatement(ResultSet set) throws SQLException {
         Statement statement = (Statement) st.remove(set);
-        if (statement != null) {
-            statement.close();
+        BorrowedConnection borrowed = borrowedConnections.remove(set);
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } finally {
+            if (borrowed != null)
+                borrowed.bookmark.releaseConnection(borrowed.connection);
         }
     }
 
@@ -379,7 +496,6 @@ public class ConnectionUtil {
      * @param statement
      */
     public static void regStatement(ResultSet set, Statement statement) {
-        System.out.println(":" + longTimeStatement.size());
         st.put(set, statement);
     }
 
@@ -398,57 +514,35 @@ public class ConnectionUtil {
     }
 
     /**
-     * ����Statement�������ִ��֮ǰ���ö��󱣴�
+     * Cancel and close the statement being executed by the thread, see
+     * {@link QueryRegistry}. If the thread belongs to a background task, the task
+     * is cancelled as well, see {@link ManagedTask#cancel()}.
      * 
      * @param th
-     *            --ִ�г�ʱ�䴦����߳�
-     * @param st
-     *            --Statement����
+     *            --the thread executing the statement
      */
-    public static void addLongTimeStatement(Thread th, Statement st) {
-        if (longTimeStatement.size() > 0) {
-            LogProxy.message("���ֳ�ʱ��δ�رյ�Statement����", 1);
+    public static void quitLongTimeStatement(Thread th) throws SQLException {
+        ManagedTask task = TaskExecutor.getInstance().getTask(th);
+        if (task != null) {
+            task.cancel();
+            return;
         }
-        System.out.println("longTimeStatement:" + longTimeStatement.size());
-        longTimeStatement.put(th, st);
+        RunningQuery query = QueryRegistry.getInstance().getQuery(th);
+        if (query != null)
+            query.kill();
     }
 
     /**
-     * ִ����ɺ���ø÷���
-     * 
-     * @param th
-     *            --ִ�г�ʱ�䴦����߳�
+     * A connection borrowed from a bookmark.
      */
-    public static void removeLongTimeStatement(Thread th) {
-        longTimeStatement.remove(th);
-    }
+    private static class BorrowedConnection {
+        final Bookmark bookmark;
 
-    /**
-     * ��ִ�ж���ȡ��
-     * 
-     * @param th
-     *            --ִ�г�ʱ�䴦����߳�
-     * @throws SQLException
-     */
-    public static void quitLongTimeStatement(Thread th) throws SQLException {
-        Statement st = (Statement) longTimeStatement.get(th);
-        if (st != null)
-        {
-        	try
-        	{
-            	st.cancel();
-        	}catch(Throwable t)
-        	{
-        		LogProxy.errorLog("cancel statement failed", t);
-        	}
-        	try
-        	{
-        		st.close();
-        	}catch(Throwable t)
-        	{
-        		LogProxy.errorLog("closing statement is not successful", t);
-        	}
+        final Connection connection;
+
+        BorrowedConnection(Bookmark bookmark, Connection connection) {
+            this.bookmark = bookmark;
+            this.connection = connection;
         }
-        removeLongTimeStatement(th);
     }
 }
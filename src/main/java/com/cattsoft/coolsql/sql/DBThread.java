@@ -14,7 +14,7 @@ import com.cattsoft.coolsql.view.log.LogProxy;
 /**
  * @author liu_xlin ��ݿ�����ִ�в���ʱʹ�ø��̣߳�������Ϊ������ݿ����ִ��sqlʱ�����½�����ˢ�¡�
  */
-public class DBThread extends Thread {
+public class DBThread implements Runnable {
     private Bookmark bookmark = null;
 
     /**
@@ -243,13 +243,13 @@ public class Database {
      */
     public Entity[] getEntities(Bookmark bookmark, Schema schema, String[] type)
             throws SQLException, UnifyException {
-        Connection connection = bookmark.getConnection();
+        Connection connection = bookmark.getMetaConnection();
         Entity result[] = getEntities(bookmark, connection, schema, type);
         return result != null ? result : new Entity[0];
     }
     public Entity[] getEntities(Bookmark bookmark, String catalog, String schema, String[] type)
     	throws SQLException, UnifyException {
-		Connection connection = bookmark.getConnection();
+		Connection connection = bookmark.getMetaConnection();
 		Schema sch = new Schema(catalog, schema);
 		Entity result[] = getEntities(bookmark, connection, sch, type);
 		return result != null ? result : new Entity[0];
@@ -608,7 +608,7 @@ public class Database {
      * @throws SQLException
      */
     private DatabaseMetaData getMetaData() throws UnifyException, SQLException {
-        Connection connection = bookmark.getConnection();
+        Connection connection = bookmark.getMetaConnection();
         DatabaseMetaData metaData = connection.getMetaData();
         return metaData;
     }
@@ -783,6 +783,36 @@ public class Database {
         return ConnectionUtil.execute(bookmark, con, null, sql, numberOfRowsPerPage);
     }
 
+    /**
+     * Execute the SQL statement whose result is displayed page by page. The cursor of
+     * a query is held by the result to read the following pages.
+     */
+    public SQLResults executeWithCursor(Connection con, String sql) throws SQLException {
+        return executeWithCursor(con, sql, null);
+    }
+
+    /**
+     * Execute the SQL statement like {@link #executeWithCursor(Connection, String)},
+     * the listener is notified while the rows of the first page are read.
+     */
+    public SQLResults executeWithCursor(Connection con, String sql,
+            ResultFetchListener fetchListener) throws SQLException {
+        return ConnectionUtil.execute(bookmark, con, null, sql, numberOfRowsPerPage,
+                true, fetchListener);
+    }
+
+    /**
+     * Execute the SQL statement like {@link #executeWithCursor(Connection, String,
+     * ResultFetchListener)}, the values are bound to the '?' of the statement.
+     *
+     * @param parameters --values of the '?' in order, null if it has no parameter.
+     */
+    public SQLResults executeWithCursor(Connection con, String sql, Object[] parameters,
+            ResultFetchListener fetchListener) throws SQLException {
+        return ConnectionUtil.execute(bookmark, con, null, sql, parameters,
+                numberOfRowsPerPage, true, fetchListener);
+    }
+
     public SQLResultSetResults getMetaData(Entity entity, Connection connection)
             throws SQLException {
         String query = SqlUtil.buildSelectAllColumnsNoRowsSql(entity);
@@ -0,0 +1,87 @@
+package com.cattsoft.coolsql.sql;
+
+import com.cattsoft.coolsql.sql.store.ResultStore;
+
+/**
+ * Sink which writes the rows into a store and notifies the fetch listener of the
+ * progress every {@link #CHUNK_ROWS} rows or every {@link #CHUNK_INTERVAL}
+ * milliseconds, whichever comes first.
+ *
+ * @author agent
+ */
+class FetchProgressSink implements RowSink {
+
+	/**
+	 * Max number of rows between two notifications.
+	 */
+	static final int CHUNK_ROWS = 500;
+
+	/**
+	 * Max milliseconds between two notifications.
+	 */
+	static final long CHUNK_INTERVAL = 100;
+
+	private final ResultStore store;
+
+	private final ResultFetchListener listener;
+
+	/**
+	 * The query whose rows are read, the rows read are counted in it.
+	 */
+	private final RunningQuery query;
+
+	private final long startTime;
+
+	private long lastNotifyTime;
+
+	private int rowCount = 0;
+
+	private int notifiedRowCount = 0;
+
+	FetchProgressSink(SQLResultSetResults results, ResultStore store,
+			ResultFetchListener listener) {
+		this.store = store;
+		this.listener = listener;
+		query = QueryRegistry.getInstance().getQuery(Thread.currentThread());
+		listener.fetchStarted(results, store);
+		startTime = System.currentTimeMillis();
+		lastNotifyTime = startTime;
+	}
+
+	public void addInt(int column, int value) {
+		store.addInt(column, value);
+	}
+
+	public void addLong(int column, long value) {
+		store.addLong(column, value);
+	}
+
+	public void addDouble(int column, double value) {
+		store.addDouble(column, value);
+	}
+
+	public void addObject(int column, Object value) {
+		store.addObject(column, value);
+	}
+
+	public void endRow() {
+		store.endRow();
+		rowCount++;
+		long time = System.currentTimeMillis();
+		if (rowCount - notifiedRowCount >= CHUNK_ROWS
+				|| time - lastNotifyTime >= CHUNK_INTERVAL) {
+			notifiedRowCount = rowCount;
+			lastNotifyTime = time;
+			listener.rowsFetched(rowCount, time - startTime);
+			if (query != null)
+				query.setRowCount(rowCount);
+		}
+	}
+
+	/**
+	 * Notify the listener that all rows have been read.
+	 */
+	void finish() {
+		listener.fetchFinished(rowCount, System.currentTimeMillis() - startTime);
+	}
+}
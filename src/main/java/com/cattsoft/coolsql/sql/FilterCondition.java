@@ -0,0 +1,577 @@
+package com.cattsoft.coolsql.sql;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+
+/**
+ * A condition on the rows of a query result: comparisons, LIKE, regular expression,
+ * IN, BETWEEN and IS NULL on a column, combined with AND, OR and NOT. A condition is
+ * either compiled by {@link RowFilter} to filter the rows which have been loaded, or
+ * converted to the WHERE clause of a query by {@link #toSQL()} to filter in the
+ * database.
+ * <p>
+ * Values are kept as they were written. They're converted to the type of the
+ * column once when the condition is compiled.
+ *
+ * @author agent
+ */
+public abstract class FilterCondition {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(FilterCondition.class);
+
+	public static final int EQUAL = 0;
+
+	public static final int NOT_EQUAL = 1;
+
+	public static final int LESS = 2;
+
+	public static final int LESS_EQUAL = 3;
+
+	public static final int GREATER = 4;
+
+	public static final int GREATER_EQUAL = 5;
+
+	private static final String[] OPERATORS = { "=", "<>", "<", "<=", ">", ">=" };
+
+	FilterCondition() {
+	}
+
+	/**
+	 * Compile the condition into an evaluator of the rows of the filter.
+	 */
+	abstract RowFilter.Node compile(RowFilter filter) throws UnifyException;
+
+	/**
+	 * Append the condition in the syntax which is parsed by {@link FilterParser}, it's
+	 * SQL syntax unless the condition contains REGEXP.
+	 */
+	abstract void appendSQL(StringBuilder sql);
+
+	/**
+	 * Return true if the condition can be executed by database.
+	 */
+	boolean isSQL() {
+		return true;
+	}
+
+	/**
+	 * Return the condition in SQL syntax, it can be used as a WHERE clause.
+	 *
+	 * @throws UnifyException if the condition can't be expressed in SQL.
+	 */
+	public String toSQL() throws UnifyException {
+		if (!isSQL())
+			throw new UnifyException(stringMgr.getString("FilterCondition.error.regexsql"));
+		return toString();
+	}
+
+	public String toString() {
+		StringBuilder sql = new StringBuilder();
+		appendSQL(sql);
+		return sql.toString();
+	}
+
+	/**
+	 * @param operator --one of the comparison constants.
+	 */
+	public static FilterCondition compare(String column, int operator, Literal value) {
+		if (operator < EQUAL || operator > GREATER_EQUAL)
+			throw new IllegalArgumentException("unknown operator: " + operator);
+		return new Comparison(column, operator, value);
+	}
+
+	/**
+	 * @param pattern --pattern of LIKE, % matches any characters and _ matches one
+	 *            character.
+	 */
+	public static FilterCondition like(String column, Literal pattern, boolean isNot) {
+		return new Like(column, pattern, isNot);
+	}
+
+	/**
+	 * The condition is true if the regular expression is found in the value. It
+	 * can't be executed by database.
+	 */
+	public static FilterCondition regex(String column, Literal pattern) {
+		return new Regex(column, pattern);
+	}
+
+	public static FilterCondition in(String column, List<Literal> values, boolean isNot) {
+		return new In(column, values, isNot);
+	}
+
+	public static FilterCondition between(String column, Literal low, Literal high,
+			boolean isNot) {
+		return new Between(column, low, high, isNot);
+	}
+
+	public static FilterCondition isNull(String column, boolean isNot) {
+		return new IsNull(column, isNot);
+	}
+
+	public static FilterCondition and(FilterCondition left, FilterCondition right) {
+		return new Junction(left, right, true);
+	}
+
+	public static FilterCondition or(FilterCondition left, FilterCondition right) {
+		return new Junction(left, right, false);
+	}
+
+	public static FilterCondition not(FilterCondition condition) {
+		return new Not(condition);
+	}
+
+	/**
+	 * A value of a condition as it was written.
+	 */
+	public static class Literal {
+
+		private final String text;
+
+		private final boolean isString;
+
+		/**
+		 * @param isString --true if the value was quoted, it's quoted in SQL too.
+		 */
+		public Literal(String text, boolean isString) {
+			this.text = text;
+			this.isString = isString;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public boolean isString() {
+			return isString;
+		}
+
+		void appendSQL(StringBuilder sql) {
+			if (isString)
+				sql.append('\'').append(text.replace("'", "''")).append('\'');
+			else
+				sql.append(text);
+		}
+	}
+
+	/**
+	 * A condition on the value of one column.
+	 */
+	private static abstract class ColumnCondition extends FilterCondition {
+
+		final String column;
+
+		ColumnCondition(String column) {
+			this.column = column;
+		}
+
+		RowFilter.Node compile(final RowFilter filter) throws UnifyException {
+			final int slot = filter.getSlot(column);
+			final RowFilter.ValueTest test = compileTest(filter, filter.getSlotType(slot));
+			return new RowFilter.Node() {
+				public boolean matches(Object[][] block, int row) {
+					Object value = block[slot][row];
+					if (RowFilter.isNull(value))
+						return test.acceptsNull();
+					return test.accept(value);
+				}
+			};
+		}
+
+		/**
+		 * Compile the test of the values of the column.
+		 *
+		 * @param sqlType --JDBC type of the column.
+		 */
+		abstract RowFilter.ValueTest compileTest(RowFilter filter, int sqlType)
+				throws UnifyException;
+	}
+
+	private static class Comparison extends ColumnCondition {
+
+		private final int operator;
+
+		private final Literal value;
+
+		Comparison(String column, int operator, Literal value) {
+			super(column);
+			this.operator = operator;
+			this.value = value;
+		}
+
+		RowFilter.ValueTest compileTest(RowFilter filter, int sqlType)
+				throws UnifyException {
+			final RowFilter.Operand operand = RowFilter.createOperand(column, value, sqlType);
+			switch (operator) {
+			case EQUAL:
+				return new RowFilter.ValueTest() {
+					public boolean accept(Object v) {
+						return operand.compareValue(v) == 0;
+					}
+				};
+			case NOT_EQUAL:
+				return new RowFilter.ValueTest() {
+					public boolean accept(Object v) {
+						return operand.compareValue(v) != 0;
+					}
+				};
+			case LESS:
+				return new RowFilter.ValueTest() {
+					public boolean accept(Object v) {
+						return operand.compareValue(v) < 0;
+					}
+				};
+			case LESS_EQUAL:
+				return new RowFilter.ValueTest() {
+					public boolean accept(Object v) {
+						return operand.compareValue(v) <= 0;
+					}
+				};
+			case GREATER:
+				return new RowFilter.ValueTest() {
+					public boolean accept(Object v) {
+						return operand.compareValue(v) > 0;
+					}
+				};
+			default:
+				return new RowFilter.ValueTest() {
+					public boolean accept(Object v) {
+						return operand.compareValue(v) >= 0;
+					}
+				};
+			}
+		}
+
+		void appendSQL(StringBuilder sql) {
+			sql.append(column).append(' ').append(OPERATORS[operator]).append(' ');
+			value.appendSQL(sql);
+		}
+	}
+
+	private static class Like extends ColumnCondition {
+
+		private final Literal pattern;
+
+		private final boolean isNot;
+
+		Like(String column, Literal pattern, boolean isNot) {
+			super(column);
+			this.pattern = pattern;
+			this.isNot = isNot;
+		}
+
+		RowFilter.ValueTest compileTest(RowFilter filter, int sqlType) {
+			final RowFilter.ValueTest test = compileLike(pattern.getText());
+			if (!isNot)
+				return test;
+			return new RowFilter.ValueTest() {
+				public boolean accept(Object v) {
+					return !test.accept(v);
+				}
+			};
+		}
+
+		/**
+		 * Patterns which are a prefix, a suffix or a part of the value are matched
+		 * without regular expression.
+		 */
+		private static RowFilter.ValueTest compileLike(String text) {
+			String inner = text;
+			boolean isStart = false;
+			boolean isEnd = false;
+			if (inner.length() > 0 && inner.charAt(inner.length() - 1) == '%') {
+				inner = inner.substring(0, inner.length() - 1);
+				isStart = true;
+			}
+			if (inner.length() > 0 && inner.charAt(0) == '%') {
+				inner = inner.substring(1);
+				isEnd = true;
+			}
+			final String part = inner;
+			if (part.indexOf('%') < 0 && part.indexOf('_') < 0) {
+				if (isStart && isEnd)
+					return new RowFilter.ValueTest() {
+						public boolean accept(Object v) {
+							return v.toString().indexOf(part) > -1;
+						}
+					};
+				if (isStart)
+					return new RowFilter.ValueTest() {
+						public boolean accept(Object v) {
+							return v.toString().startsWith(part);
+						}
+					};
+				if (isEnd)
+					return new RowFilter.ValueTest() {
+						public boolean accept(Object v) {
+							return v.toString().endsWith(part);
+						}
+					};
+				return new RowFilter.ValueTest() {
+					public boolean accept(Object v) {
+						return v.toString().equals(part);
+					}
+				};
+			}
+			StringBuilder regex = new StringBuilder();
+			int start = 0;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c != '%' && c != '_')
+					continue;
+				if (i > start)
+					regex.append(Pattern.quote(text.substring(start, i)));
+				regex.append(c == '%' ? ".*" : ".");
+				start = i + 1;
+			}
+			if (start < text.length())
+				regex.append(Pattern.quote(text.substring(start)));
+			final Pattern p = Pattern.compile(regex.toString(), Pattern.DOTALL);
+			return new RowFilter.ValueTest() {
+				public boolean accept(Object v) {
+					return p.matcher(v.toString()).matches();
+				}
+			};
+		}
+
+		void appendSQL(StringBuilder sql) {
+			sql.append(column).append(isNot ? " NOT LIKE " : " LIKE ");
+			pattern.appendSQL(sql);
+		}
+	}
+
+	private static class Regex extends ColumnCondition {
+
+		private final Literal pattern;
+
+		Regex(String column, Literal pattern) {
+			super(column);
+			this.pattern = pattern;
+		}
+
+		RowFilter.ValueTest compileTest(RowFilter filter, int sqlType)
+				throws UnifyException {
+			final Pattern p;
+			try {
+				p = Pattern.compile(pattern.getText());
+			} catch (PatternSyntaxException e) {
+				throw new UnifyException(stringMgr.getString(
+						"FilterCondition.error.regex", pattern.getText()), e);
+			}
+			return new RowFilter.ValueTest() {
+				public boolean accept(Object v) {
+					return p.matcher(v.toString()).find();
+				}
+			};
+		}
+
+		boolean isSQL() {
+			return false;
+		}
+
+		void appendSQL(StringBuilder sql) {
+			sql.append(column).append(" REGEXP ");
+			pattern.appendSQL(sql);
+		}
+	}
+
+	private static class In extends ColumnCondition {
+
+		private final List<Literal> values;
+
+		private final boolean isNot;
+
+		In(String column, List<Literal> values, boolean isNot) {
+			super(column);
+			this.values = new ArrayList<Literal>(values);
+			this.isNot = isNot;
+		}
+
+		RowFilter.ValueTest compileTest(RowFilter filter, int sqlType)
+				throws UnifyException {
+			final RowFilter.ValueTest test;
+			if (RowFilter.isStringType(sqlType)) {
+				final Set<String> set = new HashSet<String>();
+				for (Literal value : values)
+					set.add(value.getText());
+				test = new RowFilter.ValueTest() {
+					public boolean accept(Object v) {
+						return set.contains(v.toString());
+					}
+				};
+			} else {
+				final RowFilter.Operand[] operands = new RowFilter.Operand[values.size()];
+				for (int i = 0; i < operands.length; i++)
+					operands[i] = RowFilter.createOperand(column, values.get(i), sqlType);
+				test = new RowFilter.ValueTest() {
+					public boolean accept(Object v) {
+						for (int i = 0; i < operands.length; i++) {
+							if (operands[i].compareValue(v) == 0)
+								return true;
+						}
+						return false;
+					}
+				};
+			}
+			if (!isNot)
+				return test;
+			return new RowFilter.ValueTest() {
+				public boolean accept(Object v) {
+					return !test.accept(v);
+				}
+			};
+		}
+
+		void appendSQL(StringBuilder sql) {
+			sql.append(column).append(isNot ? " NOT IN (" : " IN (");
+			for (int i = 0; i < values.size(); i++) {
+				if (i > 0)
+					sql.append(", ");
+				values.get(i).appendSQL(sql);
+			}
+			sql.append(')');
+		}
+	}
+
+	private static class Between extends ColumnCondition {
+
+		private final Literal low;
+
+		private final Literal high;
+
+		private final boolean isNot;
+
+		Between(String column, Literal low, Literal high, boolean isNot) {
+			super(column);
+			this.low = low;
+			this.high = high;
+			this.isNot = isNot;
+		}
+
+		RowFilter.ValueTest compileTest(RowFilter filter, int sqlType)
+				throws UnifyException {
+			final RowFilter.Operand lowOperand = RowFilter.createOperand(column, low, sqlType);
+			final RowFilter.Operand highOperand = RowFilter.createOperand(column, high, sqlType);
+			return new RowFilter.ValueTest() {
+				public boolean accept(Object v) {
+					boolean isIn = lowOperand.compareValue(v) >= 0
+							&& highOperand.compareValue(v) <= 0;
+					return isIn != isNot;
+				}
+			};
+		}
+
+		void appendSQL(StringBuilder sql) {
+			sql.append(column).append(isNot ? " NOT BETWEEN " : " BETWEEN ");
+			low.appendSQL(sql);
+			sql.append(" AND ");
+			high.appendSQL(sql);
+		}
+	}
+
+	private static class IsNull extends ColumnCondition {
+
+		private final boolean isNot;
+
+		IsNull(String column, boolean isNot) {
+			super(column);
+			this.isNot = isNot;
+		}
+
+		RowFilter.ValueTest compileTest(RowFilter filter, int sqlType) {
+			return new RowFilter.ValueTest() {
+				public boolean accept(Object v) {
+					return isNot;
+				}
+
+				public boolean acceptsNull() {
+					return !isNot;
+				}
+			};
+		}
+
+		void appendSQL(StringBuilder sql) {
+			sql.append(column).append(isNot ? " IS NOT NULL" : " IS NULL");
+		}
+	}
+
+	private static class Junction extends FilterCondition {
+
+		private final FilterCondition left;
+
+		private final FilterCondition right;
+
+		private final boolean isAnd;
+
+		Junction(FilterCondition left, FilterCondition right, boolean isAnd) {
+			this.left = left;
+			this.right = right;
+			this.isAnd = isAnd;
+		}
+
+		RowFilter.Node compile(RowFilter filter) throws UnifyException {
+			final RowFilter.Node l = left.compile(filter);
+			final RowFilter.Node r = right.compile(filter);
+			if (isAnd)
+				return new RowFilter.Node() {
+					public boolean matches(Object[][] block, int row) {
+						return l.matches(block, row) && r.matches(block, row);
+					}
+				};
+			return new RowFilter.Node() {
+				public boolean matches(Object[][] block, int row) {
+					return l.matches(block, row) || r.matches(block, row);
+				}
+			};
+		}
+
+		boolean isSQL() {
+			return left.isSQL() && right.isSQL();
+		}
+
+		void appendSQL(StringBuilder sql) {
+			sql.append('(');
+			left.appendSQL(sql);
+			sql.append(isAnd ? " AND " : " OR ");
+			right.appendSQL(sql);
+			sql.append(')');
+		}
+	}
+
+	private static class Not extends FilterCondition {
+
+		private final FilterCondition condition;
+
+		Not(FilterCondition condition) {
+			this.condition = condition;
+		}
+
+		RowFilter.Node compile(RowFilter filter) throws UnifyException {
+			final RowFilter.Node node = condition.compile(filter);
+			return new RowFilter.Node() {
+				public boolean matches(Object[][] block, int row) {
+					return !node.matches(block, row);
+				}
+			};
+		}
+
+		boolean isSQL() {
+			return condition.isSQL();
+		}
+
+		void appendSQL(StringBuilder sql) {
+			sql.append("NOT (");
+			condition.appendSQL(sql);
+			sql.append(')');
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package com.cattsoft.coolsql.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+
+/**
+ * Parses a filter condition written like a WHERE clause, for example:
+ * <pre>
+ * NAME LIKE 'A%' AND (ID BETWEEN 1 AND 10 OR REMARK IS NULL)
+ * </pre>
+ * Supported predicates are =, &lt;&gt;, !=, &lt;, &lt;=, &gt;, &gt;=, [NOT] LIKE, REGEXP,
+ * [NOT] IN, [NOT] BETWEEN and IS [NOT] NULL, combined with AND, OR, NOT and
+ * parentheses. Keywords are case insensitive, strings are quoted with ' and column
+ * names may be quoted with ".
+ *
+ * @author agent
+ */
+public class FilterParser {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(FilterParser.class);
+
+	private static final int WORD = 0;
+
+	private static final int QUOTED_NAME = 1;
+
+	private static final int STRING = 2;
+
+	private static final int NUMBER = 3;
+
+	private static final int SYMBOL = 4;
+
+	private static final int END = 5;
+
+	private final String text;
+
+	private int position = 0;
+
+	private int tokenType;
+
+	private String token;
+
+	/**
+	 * Start position of the current token in the text.
+	 */
+	private int tokenStart;
+
+	private FilterParser(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Parse the condition.
+	 *
+	 * @throws UnifyException if the text isn't a valid condition.
+	 */
+	public static FilterCondition parse(String text) throws UnifyException {
+		FilterParser parser = new FilterParser(text);
+		parser.next();
+		FilterCondition condition = parser.parseOr();
+		if (parser.tokenType != END)
+			throw parser.error();
+		return condition;
+	}
+
+	private FilterCondition parseOr() throws UnifyException {
+		FilterCondition condition = parseAnd();
+		while (isKeyword("OR")) {
+			next();
+			condition = FilterCondition.or(condition, parseAnd());
+		}
+		return condition;
+	}
+
+	private FilterCondition parseAnd() throws UnifyException {
+		FilterCondition condition = parseNot();
+		while (isKeyword("AND")) {
+			next();
+			condition = FilterCondition.and(condition, parseNot());
+		}
+		return condition;
+	}
+
+	private FilterCondition parseNot() throws UnifyException {
+		if (isKeyword("NOT")) {
+			next();
+			return FilterCondition.not(parseNot());
+		}
+		if (isSymbol("(")) {
+			next();
+			FilterCondition condition = parseOr();
+			expectSymbol(")");
+			return condition;
+		}
+		return parsePredicate();
+	}
+
+	private FilterCondition parsePredicate() throws UnifyException {
+		if (tokenType != WORD && tokenType != QUOTED_NAME)
+			throw error();
+		String column = tokenType == QUOTED_NAME ? '"' + token + '"' : token;
+		next();
+
+		if (tokenType == SYMBOL) {
+			int operator = getOperator(token);
+			if (operator < 0)
+				throw error();
+			next();
+			return FilterCondition.compare(column, operator, parseLiteral());
+		}
+		if (isKeyword("IS")) {
+			next();
+			boolean isNot = false;
+			if (isKeyword("NOT")) {
+				next();
+				isNot = true;
+			}
+			expectKeyword("NULL");
+			return FilterCondition.isNull(column, isNot);
+		}
+		if (isKeyword("REGEXP")) {
+			next();
+			return FilterCondition.regex(column, parseLiteral());
+		}
+		boolean isNot = false;
+		if (isKeyword("NOT")) {
+			next();
+			isNot = true;
+		}
+		if (isKeyword("LIKE")) {
+			next();
+			return FilterCondition.like(column, parseLiteral(), isNot);
+		}
+		if (isKeyword("BETWEEN")) {
+			next();
+			FilterCondition.Literal low = parseLiteral();
+			expectKeyword("AND");
+			return FilterCondition.between(column, low, parseLiteral(), isNot);
+		}
+		if (isKeyword("IN")) {
+			next();
+			expectSymbol("(");
+			List<FilterCondition.Literal> values = new ArrayList<FilterCondition.Literal>();
+			values.add(parseLiteral());
+			while (isSymbol(",")) {
+				next();
+				values.add(parseLiteral());
+			}
+			expectSymbol(")");
+			return FilterCondition.in(column, values, isNot);
+		}
+		throw error();
+	}
+
+	private FilterCondition.Literal parseLiteral() throws UnifyException {
+		FilterCondition.Literal literal;
+		if (tokenType == STRING)
+			literal = new FilterCondition.Literal(token, true);
+		else if (tokenType == NUMBER || (tokenType == WORD && !isReserved(token)))
+			literal = new FilterCondition.Literal(token, false);
+		else
+			throw error();
+		next();
+		return literal;
+	}
+
+	private static int getOperator(String symbol) {
+		if (symbol.equals("="))
+			return FilterCondition.EQUAL;
+		if (symbol.equals("<>") || symbol.equals("!="))
+			return FilterCondition.NOT_EQUAL;
+		if (symbol.equals("<"))
+			return FilterCondition.LESS;
+		if (symbol.equals("<="))
+			return FilterCondition.LESS_EQUAL;
+		if (symbol.equals(">"))
+			return FilterCondition.GREATER;
+		if (symbol.equals(">="))
+			return FilterCondition.GREATER_EQUAL;
+		return -1;
+	}
+
+	private static boolean isReserved(String word) {
+		String[] keywords = { "AND", "OR", "NOT", "IS", "NULL", "LIKE", "REGEXP", "IN",
+				"BETWEEN" };
+		for (int i = 0; i < keywords.length; i++) {
+			if (keywords[i].equalsIgnoreCase(word))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean isKeyword(String keyword) {
+		return tokenType == WORD && keyword.equalsIgnoreCase(token);
+	}
+
+	private boolean isSymbol(String symbol) {
+		return tokenType == SYMBOL && symbol.equals(token);
+	}
+
+	private void expectKeyword(String keyword) throws UnifyException {
+		if (!isKeyword(keyword))
+			throw error();
+		next();
+	}
+
+	private void expectSymbol(String symbol) throws UnifyException {
+		if (!isSymbol(symbol))
+			throw error();
+		next();
+	}
+
+	private UnifyException error() {
+		if (tokenType == END)
+			return new UnifyException(stringMgr.getString("FilterParser.error.end"));
+		return new UnifyException(stringMgr.getString("FilterParser.error.token", token,
+				tokenStart + 1));
+	}
+
+	/**
+	 * Move to the next token.
+	 */
+	private void next() throws UnifyException {
+		while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+			position++;
+		tokenStart = position;
+		if (position >= text.length()) {
+			tokenType = END;
+			token = null;
+			return;
+		}
+		char c = text.charAt(position);
+		if (c == '\'' || c == '"') {
+			tokenType = c == '\'' ? STRING : QUOTED_NAME;
+			StringBuilder value = new StringBuilder();
+			position++;
+			while (true) {
+				if (position >= text.length())
+					throw new UnifyException(stringMgr.getString("FilterParser.error.quote",
+							tokenStart + 1));
+				char ch = text.charAt(position++);
+				if (ch == c) {
+					if (position < text.length() && text.charAt(position) == c) {
+						value.append(c);
+						position++;
+						continue;
+					}
+					break;
+				}
+				value.append(ch);
+			}
+			token = value.toString();
+		} else if (Character.isDigit(c) || ((c == '-' || c == '.') && position + 1 < text.length()
+				&& Character.isDigit(text.charAt(position + 1)))) {
+			tokenType = NUMBER;
+			position++;
+			while (position < text.length()) {
+				char ch = text.charAt(position);
+				if (Character.isDigit(ch) || ch == '.')
+					position++;
+				else if ((ch == 'e' || ch == 'E') && position + 1 < text.length()) {
+					position++;
+					if (text.charAt(position) == '-' || text.charAt(position) == '+')
+						position++;
+				} else
+					break;
+			}
+			token = text.substring(tokenStart, position);
+		} else if (Character.isLetter(c) || c == '_' || c == '$') {
+			tokenType = WORD;
+			position++;
+			while (position < text.length()) {
+				char ch = text.charAt(position);
+				if (Character.isLetterOrDigit(ch) || ch == '_' || ch == '$' || ch == '.'
+						|| ch == '#')
+					position++;
+				else
+					break;
+			}
+			token = text.substring(tokenStart, position);
+		} else {
+			tokenType = SYMBOL;
+			position++;
+			if (position < text.length()) {
+				String pair = text.substring(tokenStart, position + 1);
+				if (pair.equals("<>") || pair.equals("<=") || pair.equals(">=")
+						|| pair.equals("!="))
+					position++;
+			}
+			token = text.substring(tokenStart, position);
+		}
+	}
+}
@@ -1,11 +1,18 @@
 package com.cattsoft.coolsql.sql;
 
 import java.util.ArrayList;
+import java.util.regex.Matcher;
+
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
 /**
  * @author liu_xlin
  */
 public class FilterSort
 {
+    private static final StringManager stringMgr = StringManagerFactory
+            .getStringManager(FilterSort.class);
 
     public FilterSort()
     {
@@ -29,6 +36,19 @@ public class FilterSort
     public void clearFilters()
     {
         filterList.clear();
+        condition = null;
+    }
+    /**
+     * Set a condition which is combined with the filters by AND, null to remove it.
+     */
+    public void setCondition(FilterCondition condition)
+    {
+        this.condition = condition;
+    }
+
+    public FilterCondition getCondition()
+    {
+        return condition;
     }
 
     public void addSort(String column, String ascDesc)
@@ -100,6 +120,103 @@ public class FilterSort
         }
         return text.toString();
     }
+    /**
+     * Return the query filtered and sorted in the database. The query is wrapped as
+     * a subquery, so the WHERE and ORDER BY clauses don't conflict with the clauses
+     * of the query itself.
+     * <p>
+     * Some databases, such as SQL Server, refuse an ORDER BY clause in a subquery
+     * which isn't limited by TOP. A trailing ORDER BY of the query is moved out of the
+     * subquery if its items are columns of the result, unless the query limits its
+     * rows: then the order selects the rows and it's kept.
+     * @param sql the original query.
+     * @param columnNames the columns of the query result.
+     * @throws UnifyException if the condition can't be expressed in SQL, or the
+     * result has two columns of the same name, which the outer query can't tell apart.
+     */
+    public String apply(String sql, String[] columnNames) throws UnifyException
+    {
+        StringBuffer where = new StringBuffer();
+        for(int i = 0; i < filterList.size(); i++)
+        {
+            FilterRow row = (FilterRow)filterList.get(i);
+            if(i > 0)
+                where.append(" AND ");
+            where.append(row.column).append(" ").append(row.operator).append(" ");
+            where.append(row.isString ? escape(row.value) : row.value);
+        }
+        if(condition != null)
+        {
+            if(where.length() > 0)
+                where.append(" AND ");
+            where.append(condition.toSQL());
+        }
+        if(where.length() == 0 && sortList.size() == 0)
+            return sql;
+
+        for(int i = 0; i < columnNames.length; i++)
+        {
+            if(ResultPager.indexOf(columnNames, columnNames[i]) != i + 1)
+                throw new UnifyException(stringMgr.getString(
+                        "FilterSort.error.duplicatecolumn", columnNames[i]));
+        }
+
+        String query = sql.trim();
+        while(query.endsWith(";"))
+            query = query.substring(0, query.length() - 1).trim();
+        String order = null;
+        Matcher m = ResultPager.ORDER_BY_PATTERN.matcher(query);
+        if(m.find() && !ResultPager.ROW_LIMIT_PATTERN.matcher(query).find())
+        {
+            order = getOuterOrder(m.group(1), columnNames);
+            if(order != null)
+                query = query.substring(0, m.start()).trim();
+        }
+        StringBuffer text = new StringBuffer("SELECT * FROM (");
+        text.append(query).append(") coolsql_filter");
+        if(where.length() > 0)
+            text.append(" WHERE ").append(where);
+        if(sortList.size() > 0)
+        {
+            text.append(" ORDER BY ");
+            for(int i = 0; i < sortList.size(); i++)
+            {
+                if(i > 0)
+                    text.append(", ");
+                text.append(sortList.get(i)).append(" ").append(ascDescList.get(i));
+            }
+        } else if(order != null)
+        {
+            text.append(" ORDER BY ").append(order);
+        }
+        return text.toString();
+    }
+    /**
+     * Return the ORDER BY items of the query written against the columns of the
+     * subquery, null if an item isn't a column of the result or a column number.
+     */
+    private static String getOuterOrder(String items, String[] columnNames)
+    {
+        String[] orderItems = items.trim().split("\\s*,\\s*");
+        StringBuffer order = new StringBuffer();
+        for(int i = 0; i < orderItems.length; i++)
+        {
+            String[] parts = orderItems[i].split("\\s+");
+            if(parts.length > 2 || (parts.length == 2
+                    && !parts[1].equalsIgnoreCase("asc") && !parts[1].equalsIgnoreCase("desc")))
+                return null;
+            if(!parts[0].matches("\\d+")
+                    && ResultPager.indexOf(columnNames, ResultPager.unquote(parts[0])) < 1)
+                return null;
+            if(i > 0)
+                order.append(", ");
+            //The table of the column isn't visible out of the subquery
+            order.append(parts[0].substring(parts[0].lastIndexOf('.') + 1));
+            if(parts.length == 2)
+                order.append(" ").append(parts[1]);
+        }
+        return order.toString();
+    }
     /**
      * �����ı��ֶΣ��ֶε�ֵǰ����ϴ����
      * @param original
@@ -122,4 +239,8 @@ public class FilterSort
      * ��������ʽ ���������
      */
     private ArrayList ascDescList;
+    /**
+     * Condition which is combined with the filters
+     */
+    private FilterCondition condition;
 }
@@ -50,6 +50,10 @@ public class IteratingScriptParser
 	private boolean returnStartingWhitespace = false;
 	//private boolean checkHashComment = false;
 	private String alternateLineComment = "--";
+
+	// position and line number reached by getLineNumber(), so lines are counted once
+	private int lineCountPos = 0;
+	private int lineCount = 1;
 	
 	// These patterns cover the statements that
 	// can be used in a single line without a delimiter
@@ -184,6 +188,28 @@ public class IteratingScriptParser
 		startOfLine = true;
 		lastNewLineStart = 0;
 		lastQuote = 0;
+		lineCountPos = 0;
+		lineCount = 1;
+	}
+
+	/**
+	 * Return the line number (starting with 1) of the given position in the script.
+	 * Lines are counted from the previous position passed, so positions should be
+	 * passed in ascending order.
+	 */
+	public int getLineNumber(int pos)
+	{
+		if (pos < lineCountPos)
+		{
+			lineCountPos = 0;
+			lineCount = 1;
+		}
+		for (int i = lineCountPos; i < pos && i < this.scriptLength; i++)
+		{
+			if (this.script.charAt(i) == '\n') lineCount ++;
+		}
+		lineCountPos = pos;
+		return lineCount;
 	}
 
 	public void setDelimiter(DelimiterDefinition delim)
@@ -0,0 +1,196 @@
+package com.cattsoft.coolsql.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A SQL statement with named (<code>:id</code>) or positional (<code>?</code>)
+ * parameters. Named parameters are replaced by '?' in the statement sent to the
+ * driver, a name used several times is bound once for each place.
+ * <p>
+ * Quotes and comments are skipped, and so are casts (<code>::</code>) and
+ * assignments (<code>:=</code>). Blocks of procedural code, which use
+ * <code>:new</code> and bind variables of their own, aren't parsed.
+ *
+ * @author agent
+ */
+public class ParameterizedSql {
+
+	/**
+	 * Name of the positional parameter at the index, it starts with 1.
+	 */
+	private static final String POSITIONAL_PREFIX = "?";
+
+	private final String originalSql;
+
+	private final String sql;
+
+	/**
+	 * Name of the parameter at each place of the statement.
+	 */
+	private final List<String> placeNames;
+
+	/**
+	 * Names of the parameters in the order they appear first.
+	 */
+	private final List<String> names;
+
+	private ParameterizedSql(String originalSql, String sql, List<String> placeNames) {
+		this.originalSql = originalSql;
+		this.sql = sql;
+		this.placeNames = placeNames;
+		List<String> distinct = new ArrayList<String>();
+		for (String name : placeNames) {
+			if (!distinct.contains(name))
+				distinct.add(name);
+		}
+		this.names = distinct;
+	}
+
+	/**
+	 * Find the parameters of the statement.
+	 */
+	public static ParameterizedSql parse(String sql) {
+		if (sql == null || isProceduralBlock(sql))
+			return new ParameterizedSql(sql, sql, Collections.<String> emptyList());
+		StringBuilder buffer = new StringBuilder(sql.length());
+		List<String> placeNames = new ArrayList<String>();
+		int positionalCount = 0;
+		int length = sql.length();
+		int pos = 0;
+		while (pos < length) {
+			char c = sql.charAt(pos);
+			char next = pos + 1 < length ? sql.charAt(pos + 1) : 0;
+			int end;
+			if (c == '\'' || c == '"' || c == '`') {
+				end = skipQuoted(sql, pos, c);
+			} else if (c == '-' && next == '-') {
+				end = sql.indexOf('\n', pos);
+				end = end < 0 ? length : end;
+			} else if (c == '/' && next == '*') {
+				end = sql.indexOf("*/", pos + 2);
+				end = end < 0 ? length : end + 2;
+			} else if (c == '?') {
+				placeNames.add(POSITIONAL_PREFIX + (++positionalCount));
+				buffer.append(c);
+				pos++;
+				continue;
+			} else if (c == ':' && (next == ':' || next == '=')) {
+				end = pos + 2;
+			} else if (c == ':' && Character.isJavaIdentifierStart(next)
+					&& (pos == 0 || sql.charAt(pos - 1) != ':')) {
+				end = pos + 2;
+				while (end < length && Character.isJavaIdentifierPart(sql.charAt(end)))
+					end++;
+				placeNames.add(sql.substring(pos + 1, end));
+				buffer.append('?');
+				pos = end;
+				continue;
+			} else {
+				end = pos + 1;
+			}
+			buffer.append(sql, pos, end);
+			pos = end;
+		}
+		return new ParameterizedSql(sql, buffer.toString(), placeNames);
+	}
+
+	/**
+	 * Return the position after the closing quote, a doubled quote is part of the
+	 * text.
+	 */
+	private static int skipQuoted(String sql, int start, char quote) {
+		int pos = start + 1;
+		while (pos < sql.length()) {
+			if (sql.charAt(pos) == quote) {
+				if (pos + 1 < sql.length() && sql.charAt(pos + 1) == quote) {
+					pos += 2;
+					continue;
+				}
+				return pos + 1;
+			}
+			pos++;
+		}
+		return sql.length();
+	}
+
+	private static boolean isProceduralBlock(String sql) {
+		String text = sql.trim().toUpperCase();
+		return text.startsWith("CREATE") || text.startsWith("DECLARE")
+				|| text.startsWith("BEGIN") || text.startsWith("ALTER");
+	}
+
+	/**
+	 * Bind the values to the places of a statement in order, a null value is bound
+	 * as SQL NULL.
+	 */
+	public static void bindAll(PreparedStatement statement, Object[] values)
+			throws SQLException {
+		if (values == null)
+			return;
+		for (int i = 0; i < values.length; i++)
+			bind(statement, i + 1, values[i]);
+	}
+
+	private static void bind(PreparedStatement statement, int index, Object value)
+			throws SQLException {
+		if (value != null) {
+			statement.setObject(index, value);
+			return;
+		}
+		try {
+			statement.setNull(index, Types.NULL);
+		} catch (SQLException e) {
+			//Some drivers don't accept the NULL type
+			statement.setNull(index, Types.VARCHAR);
+		}
+	}
+
+	/**
+	 * Return the values of the places of the statement, the statement is bound by
+	 * {@link #bindAll(PreparedStatement, Object[])} with them.
+	 *
+	 * @param values --values of the parameters, in the order of {@link #getNames()}.
+	 */
+	public Object[] getPlaceValues(Object[] values) {
+		Object[] placeValues = new Object[placeNames.size()];
+		for (int i = 0; i < placeValues.length; i++)
+			placeValues[i] = values[names.indexOf(placeNames.get(i))];
+		return placeValues;
+	}
+
+	public boolean hasParameters() {
+		return placeNames.size() > 0;
+	}
+
+	/**
+	 * Return the names of the parameters in the order they appear first, positional
+	 * parameters are named <code>?1</code>, <code>?2</code>...
+	 */
+	public List<String> getNames() {
+		return Collections.unmodifiableList(names);
+	}
+
+	/**
+	 * Return true if the parameter is a '?' of the statement.
+	 */
+	public static boolean isPositional(String name) {
+		return name.startsWith(POSITIONAL_PREFIX);
+	}
+
+	/**
+	 * Return the statement sent to the driver, the named parameters are replaced by
+	 * '?'.
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	public String getOriginalSql() {
+		return originalSql;
+	}
+}
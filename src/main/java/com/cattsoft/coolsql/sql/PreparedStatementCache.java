@@ -0,0 +1,313 @@
+package com.cattsoft.coolsql.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * A least recently used cache of the prepared statements of a connection, so a
+ * statement executed again, such as refreshing a result or reading another page,
+ * is parsed only once by the server.
+ * <p>
+ * Statements are keyed by their normalized text and result set type. A statement
+ * is removed from the cache while it's lent, so two executions never share an open
+ * result set; an execution which finds its statement lent prepares a new one. When
+ * the cache is full, the least recently released statement is closed.
+ *
+ * @author agent
+ */
+public class PreparedStatementCache {
+
+	private final Connection connection;
+
+	private final int maxSize;
+
+	/**
+	 * Idle statements, the least recently released first.
+	 */
+	private final LinkedHashMap<String, PreparedStatement> idle = new LinkedHashMap<String, PreparedStatement>(
+			16, 0.75f, true);
+
+	/**
+	 * Keys of the lent statements.
+	 */
+	private final Map<PreparedStatement, String> lent = new IdentityHashMap<PreparedStatement, String>();
+
+	private boolean isClosed = false;
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+	private long evictionCount = 0;
+
+	/**
+	 * @param maxSize --maximum number of idle statements.
+	 */
+	public PreparedStatementCache(Connection connection, int maxSize) {
+		this.connection = connection;
+		this.maxSize = Math.max(1, maxSize);
+	}
+
+	/**
+	 * Return the connection which statements are prepared in.
+	 */
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Borrow a read-only forward-only statement, it must be given back by
+	 * {@link #release(PreparedStatement)}.
+	 */
+	public PreparedStatement borrow(String sql) throws SQLException {
+		return borrow(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+	}
+
+	/**
+	 * Borrow the prepared statement of the SQL, it's prepared if no idle statement of
+	 * the SQL is cached.
+	 */
+	public PreparedStatement borrow(String sql, int resultSetType,
+			int resultSetConcurrency) throws SQLException {
+		String key = resultSetType + ":" + resultSetConcurrency + ":" + normalize(sql);
+		synchronized (this) {
+			PreparedStatement statement = isClosed ? null : idle.remove(key);
+			if (statement != null) {
+				hitCount++;
+				lent.put(statement, key);
+				return statement;
+			}
+			missCount++;
+		}
+		PreparedStatement statement = connection.prepareStatement(sql, resultSetType,
+				resultSetConcurrency);
+		synchronized (this) {
+			lent.put(statement, key);
+		}
+		return statement;
+	}
+
+	/**
+	 * Give back a borrowed statement, its parameters and limits are cleared. A
+	 * statement which has been closed, or which isn't from this cache, is discarded.
+	 */
+	public void release(PreparedStatement statement) {
+		if (statement == null)
+			return;
+		String key;
+		synchronized (this) {
+			key = lent.remove(statement);
+		}
+		boolean isReusable = key != null;
+		if (isReusable) {
+			try {
+				//It fails if the statement has been closed, such as being cancelled
+				statement.clearParameters();
+				statement.setMaxRows(0);
+			} catch (SQLException e) {
+				isReusable = false;
+			}
+		}
+		List<PreparedStatement> toClose = new ArrayList<PreparedStatement>();
+		synchronized (this) {
+			if (!isReusable || isClosed || idle.containsKey(key)) {
+				toClose.add(statement);
+			} else {
+				idle.put(key, statement);
+				Iterator<PreparedStatement> it = idle.values().iterator();
+				while (idle.size() > maxSize && it.hasNext()) {
+					toClose.add(it.next());
+					it.remove();
+					evictionCount++;
+				}
+			}
+		}
+		for (PreparedStatement st : toClose)
+			closeQuietly(st);
+	}
+
+	/**
+	 * Prepare the statement through the cache if it's not null, otherwise prepare it
+	 * in the connection.
+	 */
+	public static PreparedStatement prepare(PreparedStatementCache cache,
+			Connection connection, String sql, int resultSetType,
+			int resultSetConcurrency) throws SQLException {
+		if (cache != null)
+			return cache.borrow(sql, resultSetType, resultSetConcurrency);
+		return connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+	}
+
+	/**
+	 * Give back a statement returned by
+	 * {@link #prepare(PreparedStatementCache, Connection, String, int, int)}, it's
+	 * closed if the cache is null.
+	 */
+	public static void release(PreparedStatementCache cache, PreparedStatement statement) {
+		if (statement == null)
+			return;
+		if (cache != null)
+			cache.release(statement);
+		else
+			closeQuietly(statement);
+	}
+
+	/**
+	 * Close the idle statements, the lent statements are closed when they are
+	 * released.
+	 */
+	public void close() {
+		List<PreparedStatement> toClose;
+		synchronized (this) {
+			if (isClosed)
+				return;
+			isClosed = true;
+			toClose = new ArrayList<PreparedStatement>(idle.values());
+			idle.clear();
+		}
+		for (PreparedStatement st : toClose)
+			closeQuietly(st);
+	}
+
+	public synchronized boolean isClosed() {
+		return isClosed;
+	}
+
+	/**
+	 * Collapse the white spaces out of quotes and remove the trailing semicolon, so
+	 * the same statement typed in another layout is found in the cache. The line
+	 * break which ends a line comment is kept, otherwise the text after it would be
+	 * part of the comment.
+	 */
+	static String normalize(String sql) {
+		String text = sql.trim();
+		if (text.endsWith(";"))
+			text = text.substring(0, text.length() - 1).trim();
+		StringBuilder buffer = new StringBuilder(text.length());
+		char quote = 0;
+		boolean isSpace = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (quote != 0) {
+				if (c == quote)
+					quote = 0;
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (c == '-' && i + 1 < text.length() && text.charAt(i + 1) == '-') {
+				int end = text.indexOf('\n', i);
+				if (end < 0)
+					end = text.length();
+				if (isSpace) {
+					buffer.append(' ');
+					isSpace = false;
+				}
+				buffer.append(text.substring(i, end).trim());
+				if (end < text.length())
+					buffer.append('\n');
+				//The white spaces which start next line are dropped
+				while (end + 1 < text.length() && Character.isWhitespace(text.charAt(end + 1)))
+					end++;
+				i = end;
+				continue;
+			} else if (Character.isWhitespace(c)) {
+				isSpace = true;
+				continue;
+			}
+			if (isSpace) {
+				buffer.append(' ');
+				isSpace = false;
+			}
+			buffer.append(c);
+		}
+		return buffer.toString();
+	}
+
+	private static void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (Throwable t) {
+			LogProxy.errorLog("closing cached statement failed", t);
+		}
+	}
+
+	/**
+	 * Return the current figures of the cache.
+	 */
+	public synchronized Statistics getStatistics() {
+		return new Statistics(maxSize, idle.size(), lent.size(), hitCount, missCount,
+				evictionCount);
+	}
+
+	/**
+	 * Figures of a cache at a time.
+	 */
+	public static class Statistics {
+
+		private final int maxSize;
+
+		private final int idleCount;
+
+		private final int lentCount;
+
+		private final long hitCount;
+
+		private final long missCount;
+
+		private final long evictionCount;
+
+		Statistics(int maxSize, int idleCount, int lentCount, long hitCount,
+				long missCount, long evictionCount) {
+			this.maxSize = maxSize;
+			this.idleCount = idleCount;
+			this.lentCount = lentCount;
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.evictionCount = evictionCount;
+		}
+
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		/**
+		 * Return the number of cached statements which aren't used.
+		 */
+		public int getIdleCount() {
+			return idleCount;
+		}
+
+		public int getLentCount() {
+			return lentCount;
+		}
+
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		public long getMissCount() {
+			return missCount;
+		}
+
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+
+		/**
+		 * Return the percentage of borrowings which found a cached statement.
+		 */
+		public int getHitRate() {
+			long total = hitCount + missCount;
+			return total == 0 ? 0 : (int) (hitCount * 100 / total);
+		}
+	}
+}
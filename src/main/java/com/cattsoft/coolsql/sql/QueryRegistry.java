@@ -0,0 +1,161 @@
+package com.cattsoft.coolsql.sql;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.util.StringUtil;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * The statements being executed in all bookmarks. Each thread which executes a
+ * statement registers it by {@link #begin(Bookmark, String, Statement)} before
+ * executing it and removes it by {@link #end(RunningQuery)} afterward, so the
+ * statements can be listed and cancelled from another thread.
+ * <p>
+ * A thread executes one statement at a time; when it registers again before its
+ * statement ends, such as a result reading its first page, the registration only
+ * replaces the statement of the query already registered.
+ * <p>
+ * A watchdog cancels the statements which run longer than the time limit of their
+ * bookmark, see {@link com.cattsoft.coolsql.system.DatabaseSetting#getQueryTimeLimit()}.
+ *
+ * @author agent
+ */
+public class QueryRegistry {
+
+	/**
+	 * Milliseconds between two checks of the watchdog.
+	 */
+	private static final long WATCHDOG_INTERVAL = 1000;
+
+	private static QueryRegistry registry = null;
+
+	/**
+	 * What the statements of a thread are executed for.
+	 */
+	private static final ThreadLocal<Object> owners = new ThreadLocal<Object>();
+
+	private final Map<Thread, RunningQuery> queries = new LinkedHashMap<Thread, RunningQuery>();
+
+	private long nextId = 1;
+
+	private Timer watchdog = null;
+
+	private QueryRegistry() {
+	}
+
+	public static synchronized QueryRegistry getInstance() {
+		if (registry == null)
+			registry = new QueryRegistry();
+		return registry;
+	}
+
+	/**
+	 * Set what the statements executed by current thread are executed for, such as
+	 * the result tab which displays them.
+	 */
+	public static void setOwner(Object owner) {
+		owners.set(owner);
+	}
+
+	/**
+	 * Register a statement executed by current thread.
+	 *
+	 * @param bookmark --the bookmark the statement is executed in, it may be null.
+	 * @return the query, it must be given to {@link #end(RunningQuery)} when the
+	 *         statement has been executed and its rows have been read.
+	 */
+	public RunningQuery begin(Bookmark bookmark, String sql, Statement statement) {
+		Thread thread = Thread.currentThread();
+		synchronized (this) {
+			RunningQuery query = queries.get(thread);
+			if (query != null) {
+				query.depth++;
+				query.setStatement(statement);
+				return query;
+			}
+			query = new RunningQuery(nextId++, bookmark, sql, statement, thread, owners
+					.get());
+			queries.put(thread, query);
+			startWatchdog();
+			return query;
+		}
+	}
+
+	/**
+	 * Remove a query registered by {@link #begin(Bookmark, String, Statement)}, it
+	 * does nothing if the query is null or has been removed.
+	 */
+	public void end(RunningQuery query) {
+		if (query == null)
+			return;
+		synchronized (this) {
+			if (queries.get(query.getThread()) != query)
+				return;
+			if (--query.depth <= 0)
+				queries.remove(query.getThread());
+		}
+	}
+
+	/**
+	 * Return the query executed by the thread, null if the thread isn't executing a
+	 * statement.
+	 */
+	public synchronized RunningQuery getQuery(Thread thread) {
+		return queries.get(thread);
+	}
+
+	/**
+	 * Return the queries being executed, the oldest first.
+	 */
+	public synchronized List<RunningQuery> getQueries() {
+		return new ArrayList<RunningQuery>(queries.values());
+	}
+
+	/**
+	 * Return the number of seconds a statement of the bookmark can run before it's
+	 * cancelled, 0 if there is no limit.
+	 */
+	public static int getTimeLimit(Bookmark bookmark) {
+		if (bookmark == null)
+			return 0;
+		return Setting.getInstance().getDatabaseSetting(bookmark.getAliasName())
+				.getQueryTimeLimit();
+	}
+
+	/**
+	 * The watchdog is started by the first statement registered.
+	 */
+	private void startWatchdog() {
+		if (watchdog != null)
+			return;
+		watchdog = new Timer("QueryRegistry-watchdog", true);
+		watchdog.schedule(new TimerTask() {
+			public void run() {
+				checkTimeLimits();
+			}
+		}, WATCHDOG_INTERVAL, WATCHDOG_INTERVAL);
+	}
+
+	private void checkTimeLimits() {
+		for (RunningQuery query : getQueries()) {
+			if (query.isCancelled())
+				continue;
+			int limit = getTimeLimit(query.getBookmark());
+			if (limit > 0 && query.getElapsedTime() > limit * 1000L) {
+				LogProxy.getProxy().info(
+						"statement of " + query.getBookmark().getAliasName()
+								+ " is cancelled after running " + limit + " seconds: "
+								+ StringUtil.getMaxSubstring(query.getSql(), 80));
+				query.cancel();
+			}
+		}
+	}
+}
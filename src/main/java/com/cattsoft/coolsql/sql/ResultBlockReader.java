@@ -0,0 +1,212 @@
+package com.cattsoft.coolsql.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.sql.store.ResultStore;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Reads blocks of rows of a query result on demand, without changing the page held
+ * by the result. A block is read from the open cursor if it follows the rows read
+ * from it, otherwise by a paged query of the database dialect, or finally by
+ * executing the query again and skipping the rows before the block.
+ * <p>
+ * The queries are executed in a connection borrowed from the bookmark, so reading
+ * blocks doesn't share the editor connection with the statements of the editor,
+ * unless the bookmark doesn't commit automatically. The statements are registered
+ * in {@link QueryRegistry} while they are executed and their rows are read.
+ *
+ * @author agent
+ */
+public class ResultBlockReader {
+
+	private final SQLStandardResultSetResults results;
+
+	/**
+	 * Pager of the blocks, it's separated from the pager of the result because the
+	 * keys are recorded for the start rows of the blocks.
+	 */
+	private final ResultPager pager;
+
+	private ResultSetCursor cursor;
+
+	/**
+	 * The connection borrowed for the cursor, it's given back when the cursor is
+	 * closed. It's null if the cursor belongs to the connection of the result.
+	 */
+	private Connection cursorConnection = null;
+
+	/**
+	 * Whether more rows follow the last block which has been read.
+	 */
+	private boolean hasMore;
+
+	/**
+	 * Create the reader of the result whose current page is its first page. The
+	 * cursor held by the result is taken over by the reader.
+	 */
+	public ResultBlockReader(SQLStandardResultSetResults results) {
+		this.results = results;
+		this.pager = new ResultPager(results);
+		this.cursor = results.detachCursor();
+		this.hasMore = results.hasNextPage();
+		pager.pageLoaded(1, results.getStore());
+	}
+
+	/**
+	 * Read the rows of the block.
+	 *
+	 * @param start --the number of first row of the block, starts with 1.
+	 * @param count --the number of rows of the block.
+	 * @return the rows of the block, less than <code>count</code> if the end of the
+	 *         result is reached.
+	 */
+	public synchronized ResultStore readBlock(int start, int count) throws SQLException,
+			UnifyException {
+		if (cursor != null && !cursor.isClosed()
+				&& cursor.getPosition() == start - 1) {
+			RunningQuery runningQuery = QueryRegistry.getInstance().begin(
+					results.getBookmark(), results.getFilteredQuery(), cursor.getStatement());
+			try {
+				runningQuery.setPhase(RunningQuery.PHASE_FETCHING);
+				ResultStore store = results.createStore();
+				hasMore = cursor.readRows(count, store);
+				pager.pageLoaded(start, store);
+				return store;
+			} catch (SQLException e) {
+				//The cursor may be closed by driver, such as committing the transaction.
+				LogProxy.errorLog("reading block from cursor failed, execute query again", e);
+				close();
+			} finally {
+				QueryRegistry.getInstance().end(runningQuery);
+			}
+		}
+		ResultPager.PagedQuery query = pager.getPagedQuery(start, count);
+		if (query != null) {
+			Bookmark bookmark = results.getBookmark();
+			Connection connection = bookmark.borrowConnection();
+			try {
+				ResultStore store = readPagedQuery(connection, query, count);
+				pager.pageLoaded(start, store);
+				return store;
+			} catch (SQLException e) {
+				LogProxy.errorLog("paged query failed, read the block by executing the query: "
+						+ query.getSql(), e);
+				pager.disable();
+			} finally {
+				bookmark.releaseConnection(connection);
+			}
+		}
+		ResultStore store = readWithCursor(start, count);
+		pager.pageLoaded(start, store);
+		return store;
+	}
+
+	/**
+	 * Return whether more rows follow the last block which has been read.
+	 */
+	public synchronized boolean hasMore() {
+		return hasMore;
+	}
+
+	/**
+	 * Close the cursor held by the reader.
+	 */
+	public synchronized void close() {
+		if (cursor != null) {
+			cursor.close();
+			cursor = null;
+		}
+		if (cursorConnection != null) {
+			results.getBookmark().releaseConnection(cursorConnection);
+			cursorConnection = null;
+		}
+	}
+
+	private ResultStore readPagedQuery(Connection connection,
+			ResultPager.PagedQuery query, int count) throws SQLException {
+		PreparedStatementCache cache = results.getBookmark().getStatementCache(connection);
+		PreparedStatement statement = PreparedStatementCache.prepare(cache, connection,
+				query.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		RunningQuery runningQuery = QueryRegistry.getInstance().begin(
+				results.getBookmark(), query.getSql(), statement);
+		ResultSetCursor blockCursor = null;
+		try {
+			ParameterizedSql.bindAll(statement, query.getParameters());
+			ResultSetCursor.setFetchSize(statement, count + 1);
+			ResultSet set = statement.executeQuery();
+			runningQuery.setPhase(RunningQuery.PHASE_FETCHING);
+			blockCursor = new ResultSetCursor(statement, set, results.getMaxColumnWidth(),
+					SQLStandardResultSetResults.getDisplayedColumnIndices(set.getMetaData()));
+			blockCursor.setStatementCache(cache);
+			ResultStore store = results.createStore();
+			hasMore = blockCursor.skip(query.getSkip())
+					&& blockCursor.readRows(count, store);
+			return store;
+		} finally {
+			QueryRegistry.getInstance().end(runningQuery);
+			if (blockCursor != null)
+				blockCursor.close();
+			else
+				PreparedStatementCache.release(cache, statement);
+		}
+	}
+
+	/**
+	 * Execute the query, skip the rows before the block and read the block. The
+	 * cursor is kept open to read the next block if cursor paging is enabled, the
+	 * connection is kept with it.
+	 */
+	private ResultStore readWithCursor(int start, int count) throws SQLException,
+			UnifyException {
+		close();
+		Bookmark bookmark = results.getBookmark();
+		String sql = results.getFilteredQuery();
+		Connection connection = bookmark.borrowConnection();
+		PreparedStatementCache cache = bookmark.getStatementCache(connection);
+		PreparedStatement statement;
+		try {
+			statement = PreparedStatementCache.prepare(cache, connection, sql,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		} catch (SQLException e) {
+			bookmark.releaseConnection(connection);
+			throw e;
+		}
+		RunningQuery runningQuery = QueryRegistry.getInstance().begin(bookmark, sql,
+				statement);
+		boolean isHeld = ResultSetCursor.isCursorPagingEnabled(bookmark);
+		ResultSetCursor blockCursor = null;
+		try {
+			if (isHeld)
+				ResultSetCursor.setFetchSize(statement, count + 1);
+			else
+				statement.setMaxRows(start + count + 1);
+			ParameterizedSql.bindAll(statement, results.getParameters());
+			ResultSet set = statement.executeQuery();
+			runningQuery.setPhase(RunningQuery.PHASE_FETCHING);
+			blockCursor = new ResultSetCursor(statement, set, results.getMaxColumnWidth());
+			blockCursor.setStatementCache(cache);
+			ResultStore store = results.createStore();
+			hasMore = blockCursor.skip(start - 1) && blockCursor.readRows(count, store);
+			if (isHeld && hasMore) {
+				cursor = blockCursor;
+				cursorConnection = connection;
+				blockCursor = null;
+			}
+			return store;
+		} finally {
+			QueryRegistry.getInstance().end(runningQuery);
+			if (blockCursor != null)
+				blockCursor.close();
+			else if (cursor == null)
+				PreparedStatementCache.release(cache, statement);
+			if (cursorConnection != connection)
+				bookmark.releaseConnection(connection);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.cattsoft.coolsql.sql;
+
+import com.cattsoft.coolsql.sql.store.ResultStore;
+
+/**
+ * Listener of the rows of a query result while they are read from the database. It
+ * lets the rows be displayed as they arrive instead of after the whole page has
+ * been read. All methods are called by the thread which reads the rows.
+ *
+ * @author agent
+ */
+public interface ResultFetchListener {
+
+	/**
+	 * Called before the rows of a page are read. The columns of the result have been
+	 * parsed, and the store which will receive the rows is still empty.
+	 */
+	public void fetchStarted(SQLResultSetResults results, ResultStore store);
+
+	/**
+	 * Called each time a chunk of rows has been added to the store.
+	 *
+	 * @param rowCount --the number of rows read so far.
+	 * @param elapsedTime --milliseconds since the reading started.
+	 */
+	public void rowsFetched(int rowCount, long elapsedTime);
+
+	/**
+	 * Called when all rows of the page have been read.
+	 */
+	public void fetchFinished(int rowCount, long elapsedTime);
+}
@@ -0,0 +1,467 @@
+package com.cattsoft.coolsql.sql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.cattsoft.coolsql.adapters.dialect.DialectFactory;
+import com.cattsoft.coolsql.adapters.dialect.HibernateDialect;
+import com.cattsoft.coolsql.adapters.dialect.UnknownDialectException;
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.sql.model.PrimaryKey;
+import com.cattsoft.coolsql.sql.model.Table;
+import com.cattsoft.coolsql.sql.store.ResultStore;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Builds the query which fetches only one page of a result from the database, so
+ * that moving to another page costs the rows of that page instead of all rows
+ * before it.
+ * <p>
+ * Two kinds of paged query are used:
+ * <ul>
+ * <li>Keyset: if the result is ordered by the primary key of its only table, or
+ * it's unordered and is ordered by the key, the page is selected by the key of the
+ * last row before it. Its cost doesn't depend
+ * on the position of the page.</li>
+ * <li>Offset: the query is limited with the syntax of the database dialect, such
+ * as LIMIT/OFFSET, ROWNUM, FETCH FIRST or TOP.</li>
+ * </ul>
+ * If neither can be used, the result is paged by the held cursor or by executing
+ * the query again, see {@link SQLStandardResultSetResults}.
+ *
+ * @author agent
+ */
+public class ResultPager {
+
+	/**
+	 * The page is read by executing the query again and skipping the rows before it.
+	 */
+	public static final int STRATEGY_RESCAN = 0;
+
+	/**
+	 * The page is read from the cursor held open since previous page.
+	 */
+	public static final int STRATEGY_CURSOR = 1;
+
+	/**
+	 * The page is read by a query limited with the offset syntax of the dialect.
+	 */
+	public static final int STRATEGY_OFFSET = 2;
+
+	/**
+	 * The page is read by a query selecting the rows after a primary key value.
+	 */
+	public static final int STRATEGY_KEYSET = 3;
+
+	private static final StringManager stringMgr =
+		StringManagerFactory.getStringManager(ResultPager.class);
+
+	/**
+	 * Matches the outermost trailing ORDER BY clause of a query, the clause must not
+	 * contain any parenthesis.
+	 */
+	static final Pattern ORDER_BY_PATTERN = Pattern.compile(
+			"\\border\\s+by\\s+([^()]+)$", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Matches the clauses which already limit the rows of a query. Such queries are
+	 * not limited again.
+	 */
+	static final Pattern ROW_LIMIT_PATTERN = Pattern.compile(
+			"\\b(limit|offset|top|rownum|fetch\\s+(first|next))\\b",
+			Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Matches an ORDER BY clause anywhere in a query.
+	 */
+	private static final Pattern ANY_ORDER_BY_PATTERN = Pattern.compile(
+			"\\border\\s+by\\b", Pattern.CASE_INSENSITIVE);
+
+	private static final String KEYSET_ALIAS = "keyset_";
+
+	private final SQLStandardResultSetResults results;
+
+	private HibernateDialect cachedDialect = null;
+
+	private boolean isDialectResolved = false;
+
+	/**
+	 * True after a paged query failed, the result isn't paged by the server anymore.
+	 */
+	private boolean isDisabled = false;
+
+	/**
+	 * Column numbers of the primary key in the result, null if keyset paging can't
+	 * be used.
+	 */
+	private int[] keyColumns = null;
+
+	private String keysetQuery = null;
+
+	/**
+	 * The query ordered by the primary key, it's the query of the first page.
+	 */
+	private String orderedQuery = null;
+
+	private boolean isKeysetResolved = false;
+
+	/**
+	 * Key values of the last row before a page, mapped by the start row of the page.
+	 */
+	private final Map<Integer, Object[]> keysBeforePage = new HashMap<Integer, Object[]>();
+
+	ResultPager(SQLStandardResultSetResults results) {
+		this.results = results;
+	}
+
+	/**
+	 * Return whether results may be paged by the server.
+	 */
+	public static boolean isServerPagingEnabled() {
+		return Setting.getInstance().getBoolProperty(
+				PropertyConstant.PROPERTY_VIEW_RESULTSET_SERVERPAGING, true);
+	}
+
+	/**
+	 * Return the displayed name of the strategy.
+	 */
+	public static String getStrategyName(int strategy) {
+		switch (strategy) {
+		case STRATEGY_CURSOR:
+			return stringMgr.getString("ResultPager.strategy.cursor");
+		case STRATEGY_OFFSET:
+			return stringMgr.getString("ResultPager.strategy.offset");
+		case STRATEGY_KEYSET:
+			return stringMgr.getString("ResultPager.strategy.keyset");
+		default:
+			return stringMgr.getString("ResultPager.strategy.rescan");
+		}
+	}
+
+	/**
+	 * Build the query of the page which starts at the specified row.
+	 *
+	 * @param start --the number of first row of the page, starts with 1.
+	 * @param pageSize --the number of rows of a page.
+	 * @return the paged query, or null if the page can't be fetched by a paged query.
+	 */
+	PagedQuery getPagedQuery(int start, int pageSize) {
+		if (!isAvailable())
+			return null;
+		HibernateDialect dialect = getDialect();
+
+		//One more row is fetched to know whether there are more rows.
+		int limit = pageSize + 1;
+		try {
+			resolveKeyset();
+			Object[] key = keysBeforePage.get(start);
+			if (keyColumns != null && (start == 1 || key != null))
+				return getKeysetQuery(dialect, key, limit);
+
+			String query = results.getFilteredQuery();
+			if (ROW_LIMIT_PATTERN.matcher(query).find())
+				return null;
+			query = orderByKey(query);
+			if (dialect.supportsPagedQueryOffset())
+				return new PagedQuery(STRATEGY_OFFSET, dialect.getPagedQuerySQL(
+						query, start - 1, limit), results.getParameters(), 0);
+			return new PagedQuery(STRATEGY_OFFSET, dialect.getPagedQuerySQL(query,
+					0, start - 1 + limit), results.getParameters(), start - 1);
+		} catch (UnsupportedOperationException e) {
+			LogProxy.getProxy().debug("query can't be paged: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Remember the key of the last row of a page, so that the page after it can be
+	 * selected by the key.
+	 *
+	 * @param start --the number of first row of the page.
+	 * @param rows --rows of the page.
+	 */
+	void pageLoaded(int start, ResultStore rows) {
+		int count = rows == null ? 0 : rows.getRowCount();
+		if (count == 0 || !isAvailable())
+			return;
+		resolveKeyset();
+		if (keyColumns == null)
+			return;
+		Object[] key = new Object[keyColumns.length];
+		for (int i = 0; i < keyColumns.length; i++) {
+			key[i] = rows.getValue(count - 1, keyColumns[i] - 1);
+			if (!isKeyValue(key[i]))
+				return;
+		}
+		keysBeforePage.put(start + count, key);
+	}
+
+	/**
+	 * Stop paging by the server, it's called if a paged query failed.
+	 */
+	void disable() {
+		isDisabled = true;
+	}
+
+	/**
+	 * Forget the keys and the order of the result, it's called when the query has
+	 * been changed by a filter.
+	 */
+	void reset() {
+		keysBeforePage.clear();
+		keyColumns = null;
+		keysetQuery = null;
+		orderedQuery = null;
+		isKeysetResolved = false;
+	}
+
+	private boolean isAvailable() {
+		if (isDisabled || !isServerPagingEnabled())
+			return false;
+		HibernateDialect dialect = getDialect();
+		return dialect != null && dialect.supportsPagedQuery();
+	}
+
+	private HibernateDialect getDialect() {
+		if (!isDialectResolved) {
+			isDialectResolved = true;
+			Bookmark bookmark = results.getBookmark();
+			if (bookmark != null) {
+				try {
+					cachedDialect = DialectFactory.getDialect(bookmark
+							.getDbInfoProvider().getDatabaseMetaData());
+				} catch (UnknownDialectException e) {
+					LogProxy.getProxy().debug("no dialect for server paging: " + e.getMessage());
+				} catch (UnifyException e) {
+					LogProxy.errorLog("getting database of bookmark failed", e);
+				}
+			}
+		}
+		return cachedDialect;
+	}
+
+	/**
+	 * Keyset paging is used only if the query maps to one table, and it's ordered by
+	 * all columns of the primary key in ascending order. The order guarantees the
+	 * rows of next page are just those after the last key of current page. A query
+	 * without order is ordered by the key first.
+	 */
+	private void resolveKeyset() {
+		if (isKeysetResolved)
+			return;
+		isKeysetResolved = true;
+
+		String query = results.getFilteredQuery().trim();
+		if (!ROW_LIMIT_PATTERN.matcher(query).find())
+			query = orderByKey(query);
+		Matcher m = ORDER_BY_PATTERN.matcher(query);
+		if (!m.find())
+			return;
+		String[] orderItems = m.group(1).trim().split("\\s*,\\s*");
+
+		PrimaryKey pk = getPrimaryKey();
+		if (pk == null || pk.getNumberOfColumns() != orderItems.length)
+			return;
+
+		String[] columnNames = results.getColumnNames();
+		int[] columns = new int[orderItems.length];
+		String[] names = new String[orderItems.length];
+		for (int i = 0; i < orderItems.length; i++) {
+			String[] parts = orderItems[i].split("\\s+");
+			if (parts.length > 2
+					|| (parts.length == 2 && !parts[1].equalsIgnoreCase("asc")))
+				return;
+			String name = unquote(parts[0]);
+			if (!name.equalsIgnoreCase(pk.getColumn(i)))
+				return;
+			columns[i] = indexOf(columnNames, name);
+			if (columns[i] < 1)
+				return;
+			names[i] = columnNames[columns[i] - 1];
+		}
+		keyColumns = columns;
+		orderedQuery = query;
+		keysetQuery = buildKeysetQuery(query.substring(0, m.start()), names);
+	}
+
+	/**
+	 * Return the primary key of the only table of the result, null if the result
+	 * doesn't map to one table or the table has no primary key.
+	 */
+	private PrimaryKey getPrimaryKey() {
+		Entity[] entities = results.getEntities();
+		if (entities == null || entities.length != 1
+				|| !(entities[0] instanceof Table))
+			return null;
+		PrimaryKey pk;
+		try {
+			pk = ((Table) entities[0]).getPrimaryKey();
+		} catch (SQLException e) {
+			LogProxy.errorLog("getting primary key for paging failed", e);
+			return null;
+		} catch (UnifyException e) {
+			LogProxy.errorLog("getting primary key for paging failed", e);
+			return null;
+		}
+		return pk == null || pk.getNumberOfColumns() == 0 ? null : pk;
+	}
+
+	/**
+	 * Order a query which has no ORDER BY clause by the primary key of its table.
+	 * Without an order, the database may return the rows in another order each time
+	 * the query is executed, and a row could appear on two pages or on none. The
+	 * query is returned as it is if it's ordered or its key isn't in the result.
+	 */
+	private String orderByKey(String query) {
+		if (ANY_ORDER_BY_PATTERN.matcher(query).find())
+			return query;
+		PrimaryKey pk = getPrimaryKey();
+		if (pk == null)
+			return query;
+		String[] columnNames = results.getColumnNames();
+		StringBuffer sb = new StringBuffer(query.trim());
+		while (sb.length() > 0 && sb.charAt(sb.length() - 1) == ';')
+			sb.setLength(sb.length() - 1);
+		sb.append(" ORDER BY ");
+		for (int i = 0; i < pk.getNumberOfColumns(); i++) {
+			int column = indexOf(columnNames, pk.getColumn(i));
+			if (column < 1)
+				return query;
+			if (i > 0)
+				sb.append(", ");
+			sb.append(columnNames[column - 1]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Build the query selecting rows after a key, the key columns are compared as a
+	 * row value: (k1 > ?) OR (k1 = ? AND k2 > ?) ...
+	 */
+	private static String buildKeysetQuery(String query, String[] names) {
+		StringBuffer sb = new StringBuffer();
+		sb.append("SELECT * FROM (").append(query.trim()).append(") ")
+				.append(KEYSET_ALIAS).append(" WHERE ");
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0)
+				sb.append(" OR ");
+			sb.append("(");
+			for (int j = 0; j < i; j++)
+				sb.append(names[j]).append(" = ? AND ");
+			sb.append(names[i]).append(" > ?)");
+		}
+		sb.append(" ORDER BY ");
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(names[i]);
+		}
+		return sb.toString();
+	}
+
+	private PagedQuery getKeysetQuery(HibernateDialect dialect, Object[] key,
+			int limit) {
+		if (key == null)
+			return new PagedQuery(STRATEGY_KEYSET, dialect.getPagedQuerySQL(
+					orderedQuery, 0, limit), results.getParameters(), 0);
+
+		//The parameters of the query come first, it's wrapped by the keyset query
+		List<Object> parameters = new ArrayList<Object>(Arrays.asList(results
+				.getParameters()));
+		for (int i = 0; i < key.length; i++) {
+			for (int j = 0; j < i; j++)
+				parameters.add(key[j]);
+			parameters.add(key[i]);
+		}
+		return new PagedQuery(STRATEGY_KEYSET, dialect.getPagedQuerySQL(
+				keysetQuery, 0, limit), parameters.toArray(), 0);
+	}
+
+	/**
+	 * Only the values which can be bound as they are read are used as keys. Strings
+	 * may have been cut to the max column width.
+	 */
+	private boolean isKeyValue(Object value) {
+		if (value instanceof Number || value instanceof Date)
+			return true;
+		return value instanceof String
+				&& ((String) value).length() < results.getMaxColumnWidth();
+	}
+
+	/**
+	 * Return the name of a column without its table and quotes.
+	 */
+	static String unquote(String name) {
+		int dot = name.lastIndexOf('.');
+		if (dot >= 0)
+			name = name.substring(dot + 1);
+		if (name.length() > 1 && "\"`[".indexOf(name.charAt(0)) >= 0)
+			name = name.substring(1, name.length() - 1);
+		return name;
+	}
+
+	/**
+	 * Return the column number of the name, ignoring case, -1 if it isn't found.
+	 */
+	static int indexOf(String[] columnNames, String name) {
+		for (int i = 0; i < columnNames.length; i++) {
+			if (columnNames[i].equalsIgnoreCase(name))
+				return i + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * The query of a page and the values of its parameters.
+	 */
+	static class PagedQuery {
+
+		private final int strategy;
+
+		private final String sql;
+
+		private final Object[] parameters;
+
+		private final int skip;
+
+		PagedQuery(int strategy, String sql, Object[] parameters, int skip) {
+			this.strategy = strategy;
+			this.sql = sql;
+			this.parameters = parameters == null ? new Object[0] : parameters;
+			this.skip = skip;
+		}
+
+		public int getStrategy() {
+			return strategy;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public Object[] getParameters() {
+			return parameters;
+		}
+
+		/**
+		 * Return the number of rows before the page which are returned by the query
+		 * and have to be skipped.
+		 */
+		public int getSkip() {
+			return skip;
+		}
+	}
+}
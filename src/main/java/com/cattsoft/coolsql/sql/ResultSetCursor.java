@@ -0,0 +1,241 @@
+package com.cattsoft.coolsql.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Keeps a forward-only cursor of a query open between two pages of a result, so
+ * the next page is read from where the previous one stopped instead of executing
+ * the query again and skipping the rows that have already been displayed.
+ * <p>
+ * The cursor owns its statement. It is closed when the result has been read to the
+ * end, when it has been idle longer than the configured timeout, or explicitly when
+ * the result tab is removed. A statement borrowed from a statement cache is given
+ * back to the cache instead of being closed.
+ *
+ * @author agent
+ */
+public class ResultSetCursor {
+
+	/**
+	 * Shared timer used to close idle cursors. It runs as a daemon so it never keeps
+	 * the application alive.
+	 */
+	private static final Timer idleTimer = new Timer("ResultSetCursor-idle", true);
+
+	private final Statement statement;
+
+	private final ResultSet resultSet;
+
+	private final ResultSetReader reader;
+
+	/**
+	 * Number of rows that have been consumed from the cursor so far.
+	 */
+	private int position = 0;
+
+	/**
+	 * True if the cursor has been moved on a row that has not been read yet. It
+	 * happens when checking whether more rows are available after a page.
+	 */
+	private boolean isPending = false;
+
+	private boolean isClosed = false;
+
+	/**
+	 * Idle timeout in milliseconds, a value less than 1 disables the timeout.
+	 */
+	private final long idleTimeout;
+
+	private TimerTask idleTask = null;
+
+	/**
+	 * The cache the statement is borrowed from, null if the statement is closed with
+	 * the cursor.
+	 */
+	private PreparedStatementCache statementCache = null;
+
+	public ResultSetCursor(Statement statement, ResultSet resultSet,
+			int maxColumnWidth) throws SQLException {
+		this(statement, resultSet, maxColumnWidth, null);
+	}
+
+	/**
+	 * @param columnIndices --indices of the columns to read, null means all columns.
+	 */
+	public ResultSetCursor(Statement statement, ResultSet resultSet,
+			int maxColumnWidth, int[] columnIndices) throws SQLException {
+		this.statement = statement;
+		this.resultSet = resultSet;
+		this.reader = new ResultSetReader(resultSet, columnIndices, maxColumnWidth, "");
+		this.idleTimeout = Setting.getInstance().getIntProperty(
+				PropertyConstant.PROPERTY_VIEW_RESULTSET_CURSOR_IDLETIMEOUT, 300) * 1000L;
+	}
+
+	/**
+	 * Give the statement back to the cache when the cursor is closed, the statement
+	 * must have been borrowed from the cache.
+	 */
+	public synchronized void setStatementCache(PreparedStatementCache statementCache) {
+		this.statementCache = statementCache;
+	}
+
+	/**
+	 * Return whether query results of the bookmark can be paged by holding the cursor.
+	 * MySQL driver buffers the whole result in client side unless streaming is used,
+	 * and streaming blocks the connection, so it is excluded.
+	 */
+	public static boolean isCursorPagingEnabled(Bookmark bookmark) {
+		if (bookmark == null || bookmark.isMysql())
+			return false;
+		return Setting.getInstance().getBoolProperty(
+				PropertyConstant.PROPERTY_VIEW_RESULTSET_CURSORPAGING, true);
+	}
+
+	/**
+	 * Give the driver a hint of how many rows should be fetched each time. Some
+	 * drivers don't support it, so the error is ignored.
+	 */
+	public static void setFetchSize(Statement statement, int fetchSize) {
+		try {
+			statement.setFetchSize(fetchSize);
+		} catch (SQLException e) {
+			LogProxy.errorLog("setting fetch size is not supported", e);
+		}
+	}
+
+	/**
+	 * Skip the specified number of rows without reading column values.
+	 *
+	 * @return false if the cursor reaches the end before skipping all rows.
+	 */
+	public synchronized boolean skip(int count) throws SQLException {
+		checkOpen();
+		while (count > 0) {
+			if (isPending) {
+				isPending = false;
+			} else if (!resultSet.next()) {
+				close();
+				return false;
+			}
+			position++;
+			count--;
+		}
+		return true;
+	}
+
+	/**
+	 * Read at most <code>count</code> rows into the sink. The cursor is closed if
+	 * there is no more row after them.
+	 *
+	 * @param count --the number of rows to read, a value less than 1 means all rows.
+	 * @param sink --receiver of the row data.
+	 * @return true if more rows remain in the cursor.
+	 */
+	public synchronized boolean readRows(int count, RowSink sink)
+			throws SQLException {
+		checkOpen();
+		cancelIdleTask();
+		int read = 0;
+		if (isPending) {
+			reader.readCurrentRow(sink);
+			isPending = false;
+			position++;
+			read++;
+		}
+		if (count < 1 || read < count) {
+			int remaining = count < 1 ? 0 : count - read;
+			int n = reader.readRows(remaining, sink);
+			position += n;
+			if (remaining < 1 || n < remaining) {
+				close();
+				return false;
+			}
+		}
+		isPending = resultSet.next();
+		if (!isPending) {
+			close();
+			return false;
+		}
+		scheduleIdleTask();
+		return true;
+	}
+
+	/**
+	 * Return the number of rows consumed from the cursor.
+	 */
+	public synchronized int getPosition() {
+		return position;
+	}
+
+	public synchronized boolean isClosed() {
+		return isClosed;
+	}
+
+	/**
+	 * Return the statement of the cursor, so it can be cancelled while rows are read.
+	 */
+	public Statement getStatement() {
+		return statement;
+	}
+
+	/**
+	 * Close the cursor and its statement, or give the statement back to its cache.
+	 * Calling this method more than once has no effect.
+	 */
+	public synchronized void close() {
+		if (isClosed)
+			return;
+		isClosed = true;
+		cancelIdleTask();
+		reader.setStopExecution(true);
+		try {
+			resultSet.close();
+		} catch (SQLException e) {
+			LogProxy.errorLog("closing cursor failed", e);
+		}
+		if (statementCache != null) {
+			statementCache.release((PreparedStatement) statement);
+			return;
+		}
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			LogProxy.errorLog("closing statement of cursor failed", e);
+		}
+	}
+
+	private void checkOpen() throws SQLException {
+		if (isClosed)
+			throw new SQLException("cursor has been closed");
+	}
+
+	private void scheduleIdleTask() {
+		if (idleTimeout < 1)
+			return;
+		idleTask = new TimerTask() {
+			public void run() {
+				LogProxy.getProxy().debug("closing idle cursor after "
+						+ idleTimeout / 1000 + "s");
+				close();
+			}
+		};
+		idleTimer.schedule(idleTask, idleTimeout);
+	}
+
+	private void cancelIdleTask() {
+		if (idleTask != null) {
+			idleTask.cancel();
+			idleTask = null;
+		}
+	}
+}
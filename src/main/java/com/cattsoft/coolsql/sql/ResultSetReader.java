@@ -1,10 +1,13 @@
 package com.cattsoft.coolsql.sql;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
-import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.sql.Blob;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -27,6 +30,9 @@ public class ResultSetReader
 	private static final StringManager s_stringMgr =
 		StringManagerFactory.getStringManager(ResultSetReader.class);
 
+	/** The value which represents a null cell. */
+	public static final String NULL_VALUE = "<NULL>";
+
 	/** The <TT>ResultSet</TT> being read. */
 	private final ResultSet _rs;
 
@@ -58,6 +64,23 @@ public class ResultSetReader
    	
    	/** encoding with which displayed string is builded*/
    	private String encoding;
+
+	/** Readers of the columns to read, resolved once from the metadata. */
+	private final ColumnReader[] _readers;
+
+	/** Decoder of the encoding, reused for all cells. */
+	private CharsetDecoder decoder;
+
+	/** Encoding of the decoder. */
+	private String decoderEncoding;
+
+	/** Buffers reused to read and decode the cells. */
+	private byte[] byteBuffer = new byte[256];
+
+	private char[] charBuffer = new char[256];
+
+	private CharBuffer decodeBuffer;
+
 	public ResultSetReader(ResultSet rs)
 		throws SQLException
 	{
@@ -83,6 +106,10 @@ public class ResultSetReader
 		_rsmd = rs.getMetaData();
 
 		_columnCount = columnIndices != null ? columnIndices.length : _rsmd.getColumnCount();
+
+		this.maxColumnWith = maxColumnWith;
+		this.encoding = encoding;
+		_readers = createReaders();
 		
 	}
 
@@ -112,6 +139,49 @@ public class ResultSetReader
 		return null;
 	}
 
+	/**
+	 * Read the row on which the <TT>ResultSet</TT> is currently positioned,
+	 * without moving the cursor. This is used when the caller has already
+	 * called <TT>next()</TT> to check whether more rows are available.
+	 */
+	public Object[] readCurrentRow()
+	{
+		_errorOccured = false;
+		return doRead();
+	}
+
+	/**
+	 * Read at most <TT>count</TT> rows from the <TT>ResultSet</TT> into the sink.
+	 * Values are written column by column, and values of integer and floating
+	 * point columns are passed as primitives, so a columnar sink stores them
+	 * without creating an object for each cell.
+	 *
+	 * @param	count	the number of rows to read, a value less than 1 means all rows.
+	 * @return	the number of rows read, it's less than <TT>count</TT> only if the
+	 * 			end of the <TT>ResultSet</TT> is reached or the reading is stopped.
+	 * @throws	SQLException	Error occured on <TT>ResultSet.next()</TT>.
+	 */
+	public int readRows(int count, RowSink sink) throws SQLException
+	{
+		int read = 0;
+		while ((count < 1 || read < count) && !_stopExecution && _rs.next())
+		{
+			readCurrentRow(sink);
+			read++;
+		}
+		return read;
+	}
+
+	/**
+	 * Read the row on which the <TT>ResultSet</TT> is currently positioned into
+	 * the sink, without moving the cursor.
+	 */
+	public void readCurrentRow(RowSink sink)
+	{
+		_errorOccured = false;
+		doRead(sink);
+	}
+
 	/**
 	 * Read the next row from the <TT>ResultSet</TT> for use in the ContentTab.
 	 * This is different from readRow() in that data is put into the Object array
@@ -212,258 +282,351 @@ public class ResultSetReader
 		Object[] row = new Object[_columnCount];
 		for (int i = 0; i < _columnCount && !_stopExecution; ++i)
 		{
-			int idx = _columnIndices != null ? _columnIndices[i] : i + 1;
 			try
 			{
-				int columnType = _rsmd.getColumnType(idx);
-//				String columnTypeName = safelyGetColumnTypeName(idx);
-				
-				switch (columnType)
-				{
-					case Types.NULL:
-						row[i] = null;
-						break;
-
-					case Types.BIT:
-					case Types.BOOLEAN:
-						row[i] = _rs.getObject(idx);
-						if (row[i] != null
-							&& !(row[i] instanceof Boolean))
-						{
-							if (row[i] instanceof Number)
-							{
-								if (((Number) row[i]).intValue() == 0)
-								{
-									row[i] = Boolean.FALSE;
-								}
-								else
-								{
-									row[i] = Boolean.TRUE;
-								}
-							}
-							else
-							{
-								row[i] = Boolean.valueOf(row[i].toString());
-							}
-						}
-						break;
-
-					case Types.TIME :
-						row[i] = _rs.getTime(idx);
-						break;
-
-					case Types.DATE :
-//                        if (DataTypeDate.getReadDateAsTimestamp()) {
-//                            row[i] = _rs.getTimestamp(idx);
-//                        } else {
-                            row[i] = _rs.getDate(idx);
-//                            	DataTypeDate.staticReadResultSet(_rs, idx, false);
-//                        }
-						break;
-
-					case Types.TIMESTAMP :
-                    case -101 : // Oracle's 'TIMESTAMP WITH TIME ZONE' == -101  
-                    case -102 : // Oracle's 'TIMESTAMP WITH LOCAL TIME ZONE' == -102
-						row[i] = _rs.getTimestamp(idx);
-						break;
-
-					case Types.BIGINT :
-						row[i] = _rs.getObject(idx);
-						if (row[i] != null
-							&& !(row[i] instanceof Long))
-						{
-							if (row[i] instanceof Number)
-							{
-								row[i] = Long.valueOf(((Number)row[i]).longValue());
-							}
-							else
-							{
-								row[i] = Long.valueOf(row[i].toString());
-							}
-						}
-						break;
-
-					case Types.DOUBLE:
-					case Types.FLOAT:
-					case Types.REAL:
-						row[i] = _rs.getObject(idx);
-						if (row[i] != null
-							&& !(row[i] instanceof Double))
-						{
-							if (row[i] instanceof Number)
-							{
-								Number nbr = (Number)row[i];
-								row[i] = new Double(nbr.doubleValue());
-							}
-							else
-							{
-								row[i] = new Double(row[i].toString());
-							}
-						}
-						break;
-
-					case Types.DECIMAL:
-					case Types.NUMERIC:
-						row[i] = _rs.getObject(idx);
-						if (row[i] != null
-							&& !(row[i] instanceof BigDecimal))
-						{
-							if (row[i] instanceof Number)
-							{
-								Number nbr = (Number)row[i];
-								row[i] = new BigDecimal(nbr.doubleValue());
-							}
-							else
-							{
-								row[i] = new BigDecimal(row[i].toString());
-							}
-						}
-						break;
-
-					case Types.INTEGER:
-					case Types.SMALLINT:
-					case Types.TINYINT:
-						row[i] = _rs.getObject(idx);
-						if (_rs.wasNull())
-						{
-							row[i] = null;
-						}
-						if (row[i] != null
-							&& !(row[i] instanceof Integer))
-						{
-							if (row[i] instanceof Number)
-							{
-								row[i] = Integer.valueOf(((Number)row[i]).intValue());
-							}
-							else
-							{
-								row[i] = new Integer(row[i].toString());
-							}
-						}
-						break;
-
-						// TODO: Hard coded -. JDBC/ODBC bridge JDK1.4
-						// brings back -9 for nvarchar columns in
-						// MS SQL Server tables.
-						// -8 is ROWID in Oracle.
-					case Types.CHAR:
-					case Types.VARCHAR:
-					case Types.LONGVARCHAR:
-					case -9:
-					case -8:
-						row[i] = _rs.getString(idx);
-						if (_rs.wasNull())
-						{
-							row[i] = null;
-						}
-						break;
-
-					case Types.BINARY:
-					case Types.VARBINARY:
-					case Types.LONGVARBINARY:
-						row[i] = _rs.getString(idx);
-						break;
-
-					case Types.BLOB:
-						// Since we are reading Meta-data about the DB, we should
-						// never see a BLOB. If we do, the contents are not interpretable
-						// , so just tell the user that it is a BLOB and that it
-						// has data.
-
-                        row[i] = readBlog(_rs,idx);
-//                        	DataTypeBlob.staticReadResultSet(_rs, idx);
-
-						break;
-
-					case Types.CLOB:
-						// Since we are reading Meta-data about the DB, we should
-						// never see a CLOB. However, if we do we assume that
-						// it is printable text and that the user wants to see it, so
-						// read in the entire thing.
-                        row[i] = _rs.getString(idx);
-
-						break;
-
-						//Add begin
-					case Types.JAVA_OBJECT:
-					    row[i] = _rs.getObject(idx);
-					    if (_rs.wasNull())
-					    {
-					        row[i] = null;
-					    }
-					    break;
-					    //Add end
-
-
-					case Types.OTHER:
-					    // Since we are reading Meta-data, there really should never be
-					    // a field with SQL type Other (1111).
-					    // If there is, we REALLY do not know how to handle it,
-					    // so do not attempt to read.
-//					    ??						if (_largeObjInfo.getReadSQLOther())
-//					    ??						{
-//					    ??							// Running getObject on a java class attempts
-//					    ??							// to load the class in memory which we don't want.
-//					    ??							// getString() just gets the value without loading
-//					    ??							// the class (at least under PostgreSQL).
-//					    ??							//row[i] = _rs.getObject(idx);
-//					    ??							row[i] = _rs.getString(idx);
-//					    ??						}
-//					    ??						else
-//					    ??						{
-					    row[i] = s_stringMgr.getString("ResultSetReader.other");
-//					    ??						}
-					    break;
-
-					default:
-//					    /* 
-//					     * See if there is a plugin-registered DataTypeComponent
-//					     * that can handle this column.
-//					     */
-//					    row[i] = 
-//					        CellComponentFactory.readResultWithPluginRegisteredDataType(_rs, 
-//					                                                     columnType, 
-//					                                                     columnTypeName, 
-//					                                                     idx);
-//					    if (row[i] == null) {
-//                            Integer colTypeInteger = Integer.valueOf(columnType);
-//							row[i] = s_stringMgr.getString("ResultSetReader.unknown", 
-//                                                            colTypeInteger);
-//					    }
-						getDefaultValue(_rs,idx,getMaxColumnWith(),getEncoding());
-				}
-				if(row[i]==null||_rs.wasNull())
-				{
-					row[i]="<NULL>";
-				}
+				Object value = _readers[i].read();
+				row[i] = value == null ? NULL_VALUE : value;
 			}catch (Throwable th)
 			{
-                // Don't bother the user with details about where the result fetch
-                // failed if they cancelled the query.
-                if (!_stopExecution) {
-                    _errorOccured = true;
-                    row[i] = s_stringMgr.getString("ResultSetReader.error");
-                    StringBuffer msg = new StringBuffer("Error reading column data");
-                    msg.append(", column index = ").append(idx);
-                    logger.error(msg.toString(), th);
-                }
+				row[i] = getErrorValue(i, th);
 			}
 		}
 
 		return row;
 	}
-	private Object getDefaultValue(ResultSet set,int index, int maxColumnWidth, String encoding) throws SQLException
+
+	/**
+	 * Write the values of current row into the sink.
+	 */
+	private void doRead(RowSink sink)
+	{
+		for (int i = 0; i < _columnCount && !_stopExecution; ++i)
+		{
+			try
+			{
+				_readers[i].readInto(sink, i);
+			}catch (Throwable th)
+			{
+				sink.addObject(i, getErrorValue(i, th));
+			}
+		}
+		sink.endRow();
+	}
+
+	/**
+	 * Record the error which occured reading the column, and return the value
+	 * which is displayed instead of the column data.
+	 */
+	private Object getErrorValue(int column, Throwable th)
+	{
+		// Don't bother the user with details about where the result fetch
+		// failed if they cancelled the query.
+		if (_stopExecution)
+			return null;
+		_errorOccured = true;
+		StringBuffer msg = new StringBuffer("Error reading column data");
+		msg.append(", column index = ").append(_readers[column].index);
+		logger.error(msg.toString(), th);
+		return s_stringMgr.getString("ResultSetReader.error");
+	}
+
+	/**
+	 * Create the readers of the columns. The type of each column is resolved once,
+	 * so reading a row doesn't call the metadata of the <TT>ResultSet</TT>.
+	 */
+	private ColumnReader[] createReaders() throws SQLException
+	{
+		ColumnReader[] readers = new ColumnReader[_columnCount];
+		for (int i = 0; i < _columnCount; ++i)
+		{
+			int idx = _columnIndices != null ? _columnIndices[i] : i + 1;
+			readers[i] = createReader(idx, _rsmd.getColumnType(idx));
+		}
+		return readers;
+	}
+
+	private ColumnReader createReader(int idx, int columnType) throws SQLException
+	{
+		switch (columnType)
+		{
+			case Types.NULL:
+				return new ColumnReader(idx)
+				{
+					Object read()
+					{
+						return null;
+					}
+				};
+
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return new BooleanReader(idx);
+
+			case Types.TIME :
+				return new ColumnReader(idx)
+				{
+					Object read() throws SQLException
+					{
+						return _rs.getTime(index);
+					}
+				};
+
+			case Types.DATE :
+				return new ColumnReader(idx)
+				{
+					Object read() throws SQLException
+					{
+						return _rs.getDate(index);
+					}
+				};
+
+			case Types.TIMESTAMP :
+			case -101 : // Oracle's 'TIMESTAMP WITH TIME ZONE' == -101
+			case -102 : // Oracle's 'TIMESTAMP WITH LOCAL TIME ZONE' == -102
+				return new ColumnReader(idx)
+				{
+					Object read() throws SQLException
+					{
+						return _rs.getTimestamp(index);
+					}
+				};
+
+			case Types.BIGINT :
+				return new LongReader(idx);
+
+			case Types.DOUBLE:
+			case Types.FLOAT:
+			case Types.REAL:
+				return new DoubleReader(idx);
+
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				return new ColumnReader(idx)
+				{
+					Object read() throws SQLException
+					{
+						return _rs.getBigDecimal(index);
+					}
+				};
+
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				return new IntReader(idx);
+
+				// TODO: Hard coded -. JDBC/ODBC bridge JDK1.4
+				// brings back -9 for nvarchar columns in
+				// MS SQL Server tables.
+				// -8 is ROWID in Oracle.
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case -9:
+			case -8:
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+				// Since we are reading Meta-data about the DB, we should
+				// never see a CLOB. However, if we do we assume that
+				// it is printable text and that the user wants to see it, so
+				// read in the entire thing.
+			case Types.CLOB:
+				return new ColumnReader(idx)
+				{
+					Object read() throws SQLException
+					{
+						return _rs.getString(index);
+					}
+				};
+
+			case Types.BLOB:
+				return new ColumnReader(idx)
+				{
+					Object read() throws SQLException
+					{
+						return readBlog(_rs, index);
+					}
+				};
+
+			case Types.JAVA_OBJECT:
+				return new ColumnReader(idx)
+				{
+					Object read() throws SQLException
+					{
+						Object value = _rs.getObject(index);
+						return _rs.wasNull() ? null : value;
+					}
+				};
+
+			case Types.OTHER:
+				// Since we are reading Meta-data, there really should never be
+				// a field with SQL type Other (1111).
+				// If there is, we REALLY do not know how to handle it,
+				// so do not attempt to read.
+				return new ColumnReader(idx)
+				{
+					Object read()
+					{
+						return s_stringMgr.getString("ResultSetReader.other");
+					}
+				};
+
+			default:
+				return new DefaultReader(idx, columnType, _rsmd.getColumnDisplaySize(idx));
+		}
+	}
+
+	/**
+	 * Reader of a column, it's created once for the <TT>ResultSet</TT> according to
+	 * the type of the column.
+	 */
+	private abstract class ColumnReader
+	{
+		/** Index of the column in the <TT>ResultSet</TT>, starting from 1. */
+		protected final int index;
+
+		ColumnReader(int index)
+		{
+			this.index = index;
+		}
+
+		/**
+		 * Read the value of the column in current row, null if the value is null.
+		 */
+		abstract Object read() throws SQLException, IOException;
+
+		/**
+		 * Write the value of the column in current row into the sink.
+		 */
+		void readInto(RowSink sink, int column) throws SQLException, IOException
+		{
+			Object value = read();
+			sink.addObject(column, value == null ? NULL_VALUE : value);
+		}
+	}
+
+	private class BooleanReader extends ColumnReader
+	{
+		BooleanReader(int index)
+		{
+			super(index);
+		}
+
+		Object read() throws SQLException
+		{
+			Object value = _rs.getObject(index);
+			if (value == null || _rs.wasNull())
+				return null;
+			if (value instanceof Boolean)
+				return value;
+			if (value instanceof Number)
+				return ((Number) value).intValue() == 0 ? Boolean.FALSE : Boolean.TRUE;
+			return Boolean.valueOf(value.toString());
+		}
+	}
+
+	private class IntReader extends ColumnReader
+	{
+		IntReader(int index)
+		{
+			super(index);
+		}
+
+		Object read() throws SQLException
+		{
+			int value = _rs.getInt(index);
+			return _rs.wasNull() ? null : Integer.valueOf(value);
+		}
+
+		void readInto(RowSink sink, int column) throws SQLException
+		{
+			int value = _rs.getInt(index);
+			if (_rs.wasNull())
+				sink.addObject(column, NULL_VALUE);
+			else
+				sink.addInt(column, value);
+		}
+	}
+
+	private class LongReader extends ColumnReader
+	{
+		LongReader(int index)
+		{
+			super(index);
+		}
+
+		Object read() throws SQLException
+		{
+			long value = _rs.getLong(index);
+			return _rs.wasNull() ? null : Long.valueOf(value);
+		}
+
+		void readInto(RowSink sink, int column) throws SQLException
+		{
+			long value = _rs.getLong(index);
+			if (_rs.wasNull())
+				sink.addObject(column, NULL_VALUE);
+			else
+				sink.addLong(column, value);
+		}
+	}
+
+	private class DoubleReader extends ColumnReader
+	{
+		DoubleReader(int index)
+		{
+			super(index);
+		}
+
+		Object read() throws SQLException
+		{
+			double value = _rs.getDouble(index);
+			return _rs.wasNull() ? null : Double.valueOf(value);
+		}
+
+		void readInto(RowSink sink, int column) throws SQLException
+		{
+			double value = _rs.getDouble(index);
+			if (_rs.wasNull())
+				sink.addObject(column, NULL_VALUE);
+			else
+				sink.addDouble(column, value);
+		}
+	}
+
+	/**
+	 * Reader of the columns whose type isn't known, the value is read as text.
+	 */
+	private class DefaultReader extends ColumnReader
+	{
+		private final int columnType;
+
+		private final int displaySize;
+
+		DefaultReader(int index, int columnType, int displaySize)
+		{
+			super(index);
+			this.columnType = columnType;
+			this.displaySize = displaySize;
+		}
+
+		Object read() throws SQLException
+		{
+			return getDefaultValue(_rs, index, columnType, displaySize,
+					getMaxColumnWith(), getEncoding());
+		}
+	}
+	private Object getDefaultValue(ResultSet set,int index, int columnType, int displaySize,
+			int maxColumnWidth, String encoding) throws SQLException
 	{
 		Object value=null;
-        int columnType=set.getMetaData().getColumnType(index);
-        ResultSetMetaData rsmd=set.getMetaData();
         try {
             if (columnType == TypesHelper.LONGVARBINARY) //�����͵��ֶ���ݣ�ʹ�ö�����������ȡ���
                 value = getEncodedStringFromBinaryStream(set,
                 		encoding, index,maxColumnWidth);
-            else if (rsmd.getColumnDisplaySize(index)< maxColumnWidth)  //ʹ����ͨ�ֽ�(byte)�ֶ�����ȡ���
+            else if (displaySize< maxColumnWidth)  //ʹ����ͨ�ֽ�(byte)�ֶ�����ȡ���
                 value = getEncodedString(set, encoding, index);
-            else if ("".equals(encoding))           //����ֶγ��ȳ�������ʾ���ȣ����ұ����ʽû��ָ���������ַ�������ȡ���       
+            else if (isDefaultEncoding(encoding))           //����ֶγ��ȳ�������ʾ���ȣ����ұ����ʽû��ָ���������ַ�������ȡ���       
                 value = getStringFromCharacterSteam(set, index,maxColumnWidth);
             else                                        //������������ö�����������ȡ���
                 value = getEncodedStringFromBinaryStream(set,
@@ -612,21 +775,25 @@ public class ResultSetReader
             IOException, UnsupportedEncodingException {
         InputStream binaryStream = set.getBinaryStream(columnNumber);
         if (binaryStream != null) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            int limit = maxColumnWidth < Integer.MAX_VALUE ? maxColumnWidth + 1 : maxColumnWidth;
+            int length = 0;
             try {
-                int c = binaryStream.read();
-                for (int count = 0; c >= 0 && count <= maxColumnWidth; count++) {
-                    baos.write(c);
-                    c = binaryStream.read();
+                while (length < limit) {
+                    if (length == byteBuffer.length)
+                        byteBuffer = grow(byteBuffer, limit);
+                    int count = binaryStream.read(byteBuffer, length,
+                            Math.min(byteBuffer.length, limit) - length);
+                    if (count < 0)
+                        break;
+                    length += count;
                 }
-
             } finally {
                 binaryStream.close();
             }
-            if ("".equals(encoding))
-                return new String(baos.toByteArray());
+            if (isDefaultEncoding(encoding))
+                return new String(byteBuffer, 0, length);
             else
-                return new String(baos.toByteArray(), encoding);
+                return decode(encoding, byteBuffer, length);
         } else {
             return null;
         }
@@ -638,18 +805,21 @@ public class ResultSetReader
             throws SQLException, IOException {
         Reader reader = set.getCharacterStream(columnNumber);
         if (reader != null) {
+            int limit = maxColumnWidth < Integer.MAX_VALUE ? maxColumnWidth + 1 : maxColumnWidth;
             StringBuffer buffer = new StringBuffer();
-            int retVal = reader.read();
-            int count = 0;
-            while (retVal >= 0) {
-                buffer.append((char) retVal);
-                retVal = reader.read();
-                if (++count > maxColumnWidth) {
-                    buffer.append("...>>>");
-                    break;
+            try {
+                while (buffer.length() < limit) {
+                    int count = reader.read(charBuffer, 0,
+                            Math.min(charBuffer.length, limit - buffer.length()));
+                    if (count < 0)
+                        break;
+                    buffer.append(charBuffer, 0, count);
                 }
+            } finally {
+                reader.close();
             }
-            reader.close();
+            if (buffer.length() == limit)
+                buffer.append("...>>>");
             return buffer.toString();
         } else {
             return null;
@@ -659,17 +829,54 @@ public class ResultSetReader
     private String getEncodedString(ResultSet set, String encoding, int index)
             throws SQLException {
         try {
-            if (encoding == null || encoding.trim().length() == 0)
+            if (isDefaultEncoding(encoding))
                 return set.getString(index);
             byte colBytes[] = set.getBytes(index);
             if (colBytes == null)
                 return null;
             else
-                return new String(colBytes, encoding);
+                return decode(encoding, colBytes, colBytes.length);
         } catch (UnsupportedEncodingException e) {
             return set.getString(index);
         }
     }
+
+    private static boolean isDefaultEncoding(String encoding) {
+        return encoding == null || encoding.trim().length() == 0;
+    }
+
+    /**
+     * Build a string from the bytes with the encoding. The decoder is created when
+     * the encoding is used for the first time, and then reused for all cells.
+     */
+    private String decode(String encoding, byte[] bytes, int length)
+            throws UnsupportedEncodingException {
+        if (decoder == null || !encoding.equals(decoderEncoding)) {
+            try {
+                decoder = Charset.forName(encoding).newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            } catch (IllegalArgumentException e) {
+                throw new UnsupportedEncodingException(encoding);
+            }
+            decoderEncoding = encoding;
+        }
+        int capacity = (int) (length * (double) decoder.maxCharsPerByte()) + 1;
+        if (decodeBuffer == null || decodeBuffer.capacity() < capacity)
+            decodeBuffer = CharBuffer.allocate(capacity);
+        decodeBuffer.clear();
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(bytes, 0, length), decodeBuffer, true);
+        decoder.flush(decodeBuffer);
+        decodeBuffer.flip();
+        return decodeBuffer.toString();
+    }
+
+    private static byte[] grow(byte[] buffer, int limit) {
+        byte[] newBuffer = new byte[(int) Math.min((long) limit, buffer.length * 2L)];
+        System.arraycopy(buffer, 0, newBuffer, 0, buffer.length);
+        return newBuffer;
+    }
 	public static Object readBlog(ResultSet rs,int index) throws SQLException
 	{
 		// We always get the BLOB, even when we are not reading the contents.
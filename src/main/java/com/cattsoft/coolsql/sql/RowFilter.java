@@ -0,0 +1,366 @@
+package com.cattsoft.coolsql.sql;
+
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.sql.store.ResultStore;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.system.task.TaskGroup;
+
+/**
+ * Filters the rows of a result store by a condition. The condition is compiled once:
+ * column names are resolved, values are converted to the type of their column and
+ * each test is bound to its column. The rows are then read by blocks, a column at a
+ * time, and the rows which match are set in a bitmap. Ranges of rows are filtered
+ * by several threads if there are many rows.
+ * <p>
+ * As in SQL, a null cell only matches IS NULL.
+ *
+ * @author agent
+ */
+public class RowFilter {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(RowFilter.class);
+
+	/**
+	 * Number of rows over which the rows are filtered by several threads.
+	 */
+	static final int PARALLEL_THRESHOLD = 100000;
+
+	/**
+	 * Number of rows read from the store at once.
+	 */
+	private static final int BLOCK_SIZE = 1024;
+
+	private final ResultStore store;
+
+	private final String[] columnNames;
+
+	/**
+	 * Columns of the store which are used by the condition, the values of a column
+	 * are at the same index in a block.
+	 */
+	private final List<Integer> slots = new ArrayList<Integer>();
+
+	private final Node root;
+
+	/**
+	 * @param columnNames --names of the columns of the store, they are matched
+	 *            ignoring case.
+	 * @throws UnifyException if a column isn't found or a value doesn't match the
+	 *             type of its column.
+	 */
+	public RowFilter(ResultStore store, String[] columnNames, FilterCondition condition)
+			throws UnifyException {
+		this.store = store;
+		this.columnNames = columnNames;
+		this.root = condition.compile(this);
+	}
+
+	/**
+	 * Return the index of the column in a block, the column is read if it hasn't been
+	 * used yet.
+	 */
+	int getSlot(String column) throws UnifyException {
+		String name = column;
+		if (name.length() > 1 && name.charAt(0) == '"' && name.charAt(name.length() - 1) == '"')
+			name = name.substring(1, name.length() - 1);
+		for (int i = 0; i < columnNames.length && i < store.getColumnCount(); i++) {
+			if (name.equalsIgnoreCase(columnNames[i])) {
+				int slot = slots.indexOf(i);
+				if (slot < 0) {
+					slot = slots.size();
+					slots.add(i);
+				}
+				return slot;
+			}
+		}
+		throw new UnifyException(stringMgr.getString("RowFilter.error.nocolumn", column));
+	}
+
+	int getSlotType(int slot) {
+		return store.getColumnType(slots.get(slot).intValue());
+	}
+
+	/**
+	 * Read the values of a column of consecutive rows. Subclasses may override it to
+	 * filter by values which haven't been saved to the store.
+	 *
+	 * @param column --the column of the store.
+	 */
+	protected void readColumn(int column, int start, int count, Object[] target) {
+		store.readColumn(column, start, count, target);
+	}
+
+	/**
+	 * Filter the rows of the store.
+	 *
+	 * @return the rows which match the condition.
+	 */
+	public BitSet filter() {
+		int rowCount = store.getRowCount();
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (rowCount < PARALLEL_THRESHOLD || threads < 2)
+			return filter(0, rowCount);
+
+		int parts = Math.min(threads, rowCount / (PARALLEL_THRESHOLD / 4));
+		TaskGroup group = TaskExecutor.getInstance().createGroup("filter rows",
+				TaskExecutor.PRIORITY_INTERACTIVE, null, parts);
+		List<Callable<BitSet>> ranges = new ArrayList<Callable<BitSet>>();
+		for (int i = 0; i < parts; i++) {
+			final int start = (int) ((long) rowCount * i / parts);
+			final int end = (int) ((long) rowCount * (i + 1) / parts);
+			ranges.add(new Callable<BitSet>() {
+				public BitSet call() {
+					return filter(start, end);
+				}
+			});
+		}
+		try {
+			BitSet rows = new BitSet(rowCount);
+			for (BitSet result : group.invokeAll(ranges))
+				rows.or(result);
+			return rows;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("filtering rows was interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IllegalStateException("filtering rows failed", cause);
+		}
+	}
+
+	/**
+	 * Filter the rows from start (inclusive) to end (exclusive).
+	 */
+	private BitSet filter(int start, int end) {
+		BitSet rows = new BitSet(end);
+		Object[][] block = new Object[slots.size()][BLOCK_SIZE];
+		for (int first = start; first < end; first += BLOCK_SIZE) {
+			int count = Math.min(BLOCK_SIZE, end - first);
+			for (int i = 0; i < block.length; i++)
+				readColumn(slots.get(i).intValue(), first, count, block[i]);
+			for (int i = 0; i < count; i++) {
+				if (root.matches(block, i))
+					rows.set(first + i);
+			}
+		}
+		return rows;
+	}
+
+	static boolean isNull(Object value) {
+		return value == null || ResultSetReader.NULL_VALUE.equals(value);
+	}
+
+	static boolean isStringType(int sqlType) {
+		switch (sqlType) {
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case -9: // NVARCHAR
+		case -15: // NCHAR
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isNumberType(int sqlType) {
+		switch (sqlType) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isDateType(int sqlType) {
+		switch (sqlType) {
+		case Types.DATE:
+		case Types.TIME:
+		case Types.TIMESTAMP:
+		case -101: // Oracle's 'TIMESTAMP WITH TIME ZONE'
+		case -102: // Oracle's 'TIMESTAMP WITH LOCAL TIME ZONE'
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Convert the value to the type of the column.
+	 *
+	 * @throws UnifyException if the value can't be converted to a number or a date
+	 *             for a column of such type.
+	 */
+	static Operand createOperand(String column, FilterCondition.Literal value, int sqlType)
+			throws UnifyException {
+		String text = value.getText();
+		if (isStringType(sqlType))
+			return new Operand(text, null, null);
+		BigDecimal number = parseNumber(text);
+		if (isNumberType(sqlType)) {
+			if (number == null)
+				throw new UnifyException(stringMgr.getString("RowFilter.error.number",
+						column, text));
+			return new Operand(text, number, null);
+		}
+		Timestamp time = parseDate(text);
+		if (isDateType(sqlType)) {
+			if (time == null)
+				throw new UnifyException(stringMgr.getString("RowFilter.error.date",
+						column, text));
+			return new Operand(text, null, time);
+		}
+		return new Operand(text, number, time);
+	}
+
+	private static BigDecimal parseNumber(String text) {
+		try {
+			return new BigDecimal(text.trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parse a date in JDBC escape format: yyyy-mm-dd, hh:mm:ss or both.
+	 */
+	private static Timestamp parseDate(String text) {
+		text = text.trim();
+		try {
+			return Timestamp.valueOf(text);
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			return new Timestamp(java.sql.Date.valueOf(text).getTime());
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			return new Timestamp(Time.valueOf(text).getTime());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Evaluator of a compiled condition.
+	 */
+	interface Node {
+
+		/**
+		 * @param block --values of the used columns of the rows of a block.
+		 * @param row --row index in the block.
+		 */
+		boolean matches(Object[][] block, int row);
+	}
+
+	/**
+	 * Test of the values of one column.
+	 */
+	static abstract class ValueTest {
+
+		/**
+		 * @param value --a value which isn't null.
+		 */
+		abstract boolean accept(Object value);
+
+		boolean acceptsNull() {
+			return false;
+		}
+	}
+
+	/**
+	 * A value of a condition converted to the type of its column. Cells are compared
+	 * as numbers, dates or strings according to their class, so a value converted
+	 * once is compared with every cell without parsing.
+	 */
+	static class Operand {
+
+		private final String text;
+
+		private final BigDecimal number;
+
+		private final double doubleValue;
+
+		/**
+		 * True if the number is an integer within the range of long.
+		 */
+		private final boolean isLong;
+
+		private final long longValue;
+
+		private final Timestamp time;
+
+		Operand(String text, BigDecimal number, Timestamp time) {
+			this.text = text;
+			this.number = number;
+			this.time = time;
+			boolean isLong = false;
+			long longValue = 0;
+			if (number != null) {
+				try {
+					longValue = number.setScale(0).longValue();
+					isLong = BigDecimal.valueOf(longValue).compareTo(number) == 0;
+				} catch (ArithmeticException e) {
+				}
+			}
+			this.isLong = isLong;
+			this.longValue = longValue;
+			this.doubleValue = number == null ? 0 : number.doubleValue();
+		}
+
+		/**
+		 * Compare the cell with this value.
+		 *
+		 * @param value --a cell which isn't null.
+		 * @return a negative integer, zero, or a positive integer as the cell is less
+		 *         than, equal to, or greater than this value.
+		 */
+		int compareValue(Object value) {
+			if (number != null && value instanceof Number) {
+				if (value instanceof Integer || value instanceof Long
+						|| value instanceof Short || value instanceof Byte) {
+					long v = ((Number) value).longValue();
+					if (isLong)
+						return v < longValue ? -1 : (v == longValue ? 0 : 1);
+					return Double.compare(v, doubleValue);
+				}
+				if (value instanceof BigDecimal)
+					return ((BigDecimal) value).compareTo(number);
+				return Double.compare(((Number) value).doubleValue(), doubleValue);
+			}
+			if (time != null && value instanceof java.util.Date) {
+				long t = ((java.util.Date) value).getTime();
+				long literalTime = time.getTime();
+				if (t != literalTime)
+					return t < literalTime ? -1 : 1;
+				if (value instanceof Timestamp)
+					return ((Timestamp) value).getNanos() - time.getNanos();
+				return 0;
+			}
+			return value.toString().compareTo(text);
+		}
+	}
+}
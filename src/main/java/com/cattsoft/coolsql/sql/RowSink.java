@@ -0,0 +1,25 @@
+package com.cattsoft.coolsql.sql;
+
+/**
+ * Receiver of the rows read by {@link ResultSetReader#readRows(int, RowSink)}. The
+ * values of a row are passed column by column, numeric values of the matching JDBC
+ * types are passed as primitives so that a columnar receiver needn't box them. Null
+ * cells are passed as {@link ResultSetReader#NULL_VALUE}. Column indices start with 0.
+ *
+ * @author agent
+ */
+public interface RowSink {
+
+	public void addInt(int column, int value);
+
+	public void addLong(int column, long value);
+
+	public void addDouble(int column, double value);
+
+	public void addObject(int column, Object value);
+
+	/**
+	 * Called after all values of a row have been passed.
+	 */
+	public void endRow();
+}
@@ -0,0 +1,173 @@
+package com.cattsoft.coolsql.sql;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * A statement being executed, as registered in {@link QueryRegistry}. It's created
+ * by the thread which executes the statement, other threads only read it or cancel
+ * it.
+ *
+ * @author agent
+ */
+public class RunningQuery {
+
+	/**
+	 * The statement has been sent to the server.
+	 */
+	public static final int PHASE_EXECUTING = 0;
+
+	/**
+	 * The rows of the result are read.
+	 */
+	public static final int PHASE_FETCHING = 1;
+
+	/**
+	 * The statement has been cancelled and the server hasn't answered yet.
+	 */
+	public static final int PHASE_CANCELLING = 2;
+
+	private final long id;
+
+	private final Bookmark bookmark;
+
+	private final String sql;
+
+	private final Thread thread;
+
+	private final Object owner;
+
+	private final long startTime;
+
+	private volatile Statement statement;
+
+	private volatile int phase = PHASE_EXECUTING;
+
+	private volatile long rowCount = 0;
+
+	private volatile boolean isCancelled = false;
+
+	/**
+	 * Number of registrations of the thread which share this query, the nested ones
+	 * only replace the statement.
+	 */
+	int depth = 1;
+
+	RunningQuery(long id, Bookmark bookmark, String sql, Statement statement,
+			Thread thread, Object owner) {
+		this.id = id;
+		this.bookmark = bookmark;
+		this.sql = sql;
+		this.statement = statement;
+		this.thread = thread;
+		this.owner = owner;
+		this.startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Ask the server to stop the statement. The executing thread receives an error
+	 * and goes on.
+	 */
+	public void cancel() {
+		isCancelled = true;
+		phase = PHASE_CANCELLING;
+		Statement st = statement;
+		if (st == null)
+			return;
+		try {
+			st.cancel();
+		} catch (Throwable t) {
+			LogProxy.errorLog("cancel statement failed", t);
+		}
+	}
+
+	/**
+	 * Cancel the statement, close it and interrupt the executing thread, for
+	 * drivers which ignore the cancellation.
+	 */
+	public void kill() {
+		cancel();
+		Statement st = statement;
+		if (st != null) {
+			try {
+				st.close();
+			} catch (SQLException e) {
+				LogProxy.errorLog("closing statement is not successful", e);
+			}
+		}
+		thread.interrupt();
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Return the bookmark the statement is executed in, it may be null.
+	 */
+	public Bookmark getBookmark() {
+		return bookmark;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public Thread getThread() {
+		return thread;
+	}
+
+	/**
+	 * Return what the statement has been executed for, such as the result tab, null
+	 * if it isn't known.
+	 */
+	public Object getOwner() {
+		return owner;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Return the milliseconds since the statement was registered.
+	 */
+	public long getElapsedTime() {
+		return System.currentTimeMillis() - startTime;
+	}
+
+	public Statement getStatement() {
+		return statement;
+	}
+
+	void setStatement(Statement statement) {
+		this.statement = statement;
+	}
+
+	public int getPhase() {
+		return phase;
+	}
+
+	public void setPhase(int phase) {
+		if (!isCancelled)
+			this.phase = phase;
+	}
+
+	/**
+	 * Return the number of rows read so far.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	public void setRowCount(long rowCount) {
+		this.rowCount = rowCount;
+	}
+
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+}
@@ -88,7 +88,7 @@ public class SQLDatabaseMetaData implements ISQLDatabaseMetaData
 			throw new IllegalArgumentException("SQLDatabaseMetaData == null");
 		}
 		try {
-			_conn = bookmark.getConnection();
+			_conn = bookmark.getMetaConnection();
 		} catch (UnifyException e) {
 			throw new IllegalArgumentException(e.getMessage());
 		}
@@ -3,10 +3,10 @@ package com.cattsoft.coolsql.sql;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -16,10 +16,12 @@ import java.util.List;
 import java.util.Vector;
 
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.util.SqlUtil;
 import com.cattsoft.coolsql.pub.util.StringUtil;
 import com.cattsoft.coolsql.sql.model.Entity;
 import com.cattsoft.coolsql.sql.model.EntityFactory;
+import com.cattsoft.coolsql.sql.store.ResultStore;
 
 /**
  * 
@@ -85,6 +87,10 @@ public abstract class SQLResultSetResults extends SQLResults {
     public class Row {
 
         public Object get(int columnNumber) {
+            if (store != null)
+                return columnNumber <= store.getColumnCount() && columnNumber > 0 ? store
+                        .getValue(index, columnNumber - 1)
+                        : null;
             return columnNumber <= elements.size() && columnNumber > 0 ? elements
                     .get(columnNumber - 1)
                     : null;
@@ -96,14 +102,37 @@ public abstract class SQLResultSetResults extends SQLResults {
 
         private final List<Object> elements;
 
+        /**
+         * The store which holds the row, the row is a view of the store if it's not null.
+         */
+        private final ResultStore store;
+
+        private final int index;
+
         Row(List<Object> elements) {
             this.elements = elements;
+            this.store = null;
+            this.index = -1;
         }
         Row(Object[] elements) {
         	if(elements==null)
         		this.elements=new ArrayList<Object>();
         	else
         		this.elements = Arrays.asList(elements);
+            this.store = null;
+            this.index = -1;
+        }
+        Row(ResultStore store, int index) {
+            this.elements = null;
+            this.store = store;
+            this.index = index;
+        }
+
+        /**
+         * Return the values of the row.
+         */
+        Object[] toArray() {
+            return store != null ? store.getRow(index) : elements.toArray();
         }
     }
 
@@ -151,7 +180,7 @@ public abstract class SQLResultSetResults extends SQLResults {
     }
 
     public SQLResultSetResults(String query, Bookmark bookmark, Entity entity[]) {
-        rows = Collections.synchronizedList(new ArrayList());
+        store = new ResultStore(0);
         columns = Collections.synchronizedList(new ArrayList());
         encoding = "";
         filterSort = null;
@@ -226,7 +255,7 @@ public abstract class SQLResultSetResults extends SQLResults {
     }
 
     public Object getElement(int column, int row) {
-        return ((Row) rows.get(row - 1)).get(column);
+        return store.getValue(row - 1, column - 1);
     }
 
     public int getColumnCount() {
@@ -237,7 +266,7 @@ public abstract class SQLResultSetResults extends SQLResults {
     }
 
     public int getRowCount() {
-        return rows.size();
+        return store.getRowCount();
     }
 
     public String[] getColumnNames() {
@@ -254,15 +283,62 @@ public abstract class SQLResultSetResults extends SQLResults {
         return true;
     }
 
+    /**
+     * Return the rows of the result, each row reads its values from the store.
+     */
     public Row[] getRows() {
-        return (Row[]) rows.toArray(new Row[rows.size()]);
+        ResultStore current = store;
+        Row[] rowArray = new Row[current.getRowCount()];
+        for (int i = 0; i < rowArray.length; i++)
+            rowArray[i] = new Row(current, i);
+        return rowArray;
     }
 
+    /**
+     * Return the store which holds the rows of the result. It's shared with the table
+     * which displays the result, so the rows aren't copied.
+     */
+    public ResultStore getStore() {
+        return store;
+    }
+
+    /**
+     * Set the listener which is notified while the rows of next page are read, null
+     * to remove it.
+     */
+    public void setFetchListener(ResultFetchListener fetchListener) {
+        this.fetchListener = fetchListener;
+    }
+
+    public ResultFetchListener getFetchListener() {
+        return fetchListener;
+    }
+
+    /**
+     * Return the query filtered and sorted by the filter of the result, it's wrapped
+     * as a subquery if any filter or sort has been set. The filter must have been
+     * checked by {@link #getFilteredQuery(FilterSort)} before it's set.
+     */
     public String getFilteredQuery() {
+        try {
+            return getFilteredQuery(filterSort);
+        } catch (UnifyException e) {
+            throw new IllegalStateException("the filter can't be applied in database: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Return the query filtered and sorted by the filter.
+     * 
+     * @param filterSort --the filter, null for the original query.
+     * @throws UnifyException if the filter can't be executed by the database for
+     *             the query, the rows should be filtered by the client instead.
+     */
+    public String getFilteredQuery(FilterSort filterSort) throws UnifyException {
         if (filterSort == null)
             return sql;
-        else
-            return sql + filterSort.toString();
+        return filterSort.apply(sql, getColumnNames());
     }
 
     public Bookmark getBookmark() {
@@ -292,34 +368,62 @@ public abstract class SQLResultSetResults extends SQLResults {
      * ���»�ȡ�����Ϣ��Ȼ����н���
      */
     public void refresh(Connection connection) throws SQLException {
-        Statement statement = connection.createStatement();
-        ConnectionUtil.addLongTimeStatement(Thread.currentThread(), statement);
+        PreparedStatementCache cache = getStatementCache(connection);
+        PreparedStatement statement = PreparedStatementCache.prepare(cache, connection,
+                getFilteredQuery(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        RunningQuery query = QueryRegistry.getInstance().begin(getBookmark(),
+                getFilteredQuery(), statement);
         try {
         	statement.setMaxRows(getMaxSizeOfResultset());//this may accelerate the querying.
+        	ParameterizedSql.bindAll(statement, parameters);
         	
         	long startTime = System.currentTimeMillis();
         	
-            ResultSet resultSet = statement.executeQuery(getFilteredQuery());
+            ResultSet resultSet = statement.executeQuery();
             
             setCostTime(System.currentTimeMillis()-startTime);
             
-            ConnectionUtil.removeLongTimeStatement(Thread.currentThread());
+            query.setPhase(RunningQuery.PHASE_FETCHING);
             try {
                 parseResultSet(resultSet);
             } finally {
                 resultSet.close();
             }
         } finally {
-            statement.close();
+            QueryRegistry.getInstance().end(query);
+            PreparedStatementCache.release(cache, statement);
         }
     }
 
     protected void setRows(Row rows[]) {
-        Row original[] = getRows();
-        this.rows.clear();
-        if (rows != null)
-            this.rows.addAll(Arrays.asList(rows));
-        propertyChangeSupport.firePropertyChange("rows", original, getRows());
+        int columnCount = columns.size();
+        if (rows != null && rows.length > 0)
+            columnCount = Math.max(columnCount, rows[0].toArray().length);
+        ResultStore rowStore = new ResultStore(columnCount);
+        if (rows != null) {
+            for (int i = 0; i < rows.length; i++)
+                rowStore.addRow(rows[i].toArray());
+        }
+        setStore(rowStore);
+    }
+
+    /**
+     * Replace the rows of the result with the rows of the store.
+     */
+    protected void setStore(ResultStore store) {
+        ResultStore original = this.store;
+        this.store = store;
+        propertyChangeSupport.firePropertyChange("rows", original, store);
+    }
+
+    /**
+     * Create an empty store whose columns fit the types of the columns of the result.
+     */
+    protected ResultStore createStore() {
+        int[] sqlTypes = new int[columns.size()];
+        for (int i = 0; i < sqlTypes.length; i++)
+            sqlTypes[i] = ((Column) columns.get(i)).getSqlType();
+        return new ResultStore(sqlTypes);
     }
 
     public String getEncoding() {
@@ -330,6 +434,25 @@ public abstract class SQLResultSetResults extends SQLResults {
         this.encoding = encoding;
     }
 
+    /**
+     * Return the values bound to the '?' of the query in order.
+     */
+    public Object[] getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(Object[] parameters) {
+        this.parameters = parameters == null ? new Object[0] : parameters;
+    }
+
+    /**
+     * Return the cache of prepared statements of the connection, null if its
+     * statements aren't cached.
+     */
+    protected PreparedStatementCache getStatementCache(Connection connection) {
+        return bookmark == null ? null : bookmark.getStatementCache(connection);
+    }
+
     public FilterSort getFilterSort() {
         return filterSort;
     }
@@ -357,12 +480,10 @@ public abstract class SQLResultSetResults extends SQLResults {
      * @return
      */
     public Object[][] getArrayDataOfRow() {
-        Object[][] tmp = new Object[rows.size()][columns.size()];
-        for (int i = 0; i < rows.size(); i++) {
-            Row rowData = (Row) rows.get(i);
-            for (int j = 0; j < columns.size(); j++) {
-                tmp[i][j] = rowData.get(j);
-            }
+        ResultStore current = store;
+        Object[][] tmp = new Object[current.getRowCount()][];
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i] = current.getRow(i);
         }
         return tmp;
     }
@@ -386,14 +507,10 @@ public abstract class SQLResultSetResults extends SQLResults {
      * @return
      */
     public Vector getVectorDataOfRow() {
-        Vector tmpData = new Vector(rows.size());
-        for (int i = 0; i < rows.size(); i++) {
-            Row rowData = (Row) rows.get(i);
-            Vector tmpRow = new Vector(columns.size());
-            for (int j = 0; j < columns.size(); j++) {
-                tmpRow.add(rowData.get(j + 1));
-            }
-            tmpData.add(tmpRow);
+        ResultStore current = store;
+        Vector tmpData = new Vector(current.getRowCount());
+        for (int i = 0; i < current.getRowCount(); i++) {
+            tmpData.add(new Vector(Arrays.asList(current.getRow(i))));
         }
         return tmpData;
     }
@@ -407,9 +524,9 @@ public abstract class SQLResultSetResults extends SQLResults {
      */
     protected int getMaxSizeOfResultset(){return 0;}
     /**
-     * Query row data list
+     * Query row data, held in columns
      */
-    private List rows;
+    private ResultStore store;
 
     /**
      * all columns information list
@@ -445,4 +562,15 @@ public abstract class SQLResultSetResults extends SQLResults {
      * The start offset of current page
      */
     protected int start;
+
+    /**
+     * Listener notified while rows are read
+     */
+    private ResultFetchListener fetchListener;
+
+    /**
+     * Values bound to the '?' of the query in order, empty if the query has no
+     * parameter.
+     */
+    private Object[] parameters = new Object[0];
 }
@@ -3,16 +3,21 @@ package com.cattsoft.coolsql.sql;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.cattsoft.coolsql.adapters.dialect.DialectUtils;
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.sql.model.Entity;
+import com.cattsoft.coolsql.sql.store.ResultStore;
 import com.cattsoft.coolsql.system.PropertyConstant;
 import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.view.log.LogProxy;
 
 public class SQLStandardResultSetResults extends SQLResultSetResults {
 
@@ -40,28 +45,96 @@ public class SQLStandardResultSetResults extends SQLResultSetResults {
     }
 
     static SQLResultSetResults create(ResultSet set, Bookmark bookmark,
-            String query, Entity[] entity, int numberOfRows) throws SQLException {
+            String query, Object[] parameters, Entity[] entity, int numberOfRows,
+            ResultFetchListener fetchListener) throws SQLException {
         SQLStandardResultSetResults results = new SQLStandardResultSetResults(
                 bookmark, query, entity, numberOfRows);
+        results.setParameters(parameters);
+        results.setFetchListener(fetchListener);
         results.parseResultSet(set);
         if(entity==null)
             results.setEntitys(getEntitiesInResult(set,bookmark));
         return results;
     }
 
+    /**
+     * Create the result of a query and hold its cursor open, so that the following
+     * pages are read from the same cursor. The statement is owned by the result
+     * after this method returns, and it will be closed together with the cursor, or
+     * given back to the cache if it's not null.
+     *
+     * @param parameters --values bound to the query, null if it has no parameter.
+     */
+    static SQLResultSetResults create(Statement statement, ResultSet set,
+            Bookmark bookmark, String query, Object[] parameters, Entity[] entity,
+            int numberOfRows, ResultFetchListener fetchListener,
+            PreparedStatementCache cache) throws SQLException {
+        SQLStandardResultSetResults results = new SQLStandardResultSetResults(
+                bookmark, query, entity, numberOfRows);
+        results.setParameters(parameters);
+        results.setFetchListener(fetchListener);
+        if(entity==null)
+            results.setEntitys(getEntitiesInResult(set,bookmark));
+        results.parseColumns(set.getMetaData());
+        results.cursor = new ResultSetCursor(statement, set, results.maxColumnWidth);
+        results.cursor.setStatementCache(cache);
+        results.pagingStrategy = ResultPager.STRATEGY_CURSOR;
+        try {
+            results.parsePage(results.cursor);
+        } catch (SQLException e) {
+            results.closeCursor();
+            throw e;
+        }
+        return results;
+    }
+
     /**
      * ������ݿ���ÿ���ֶε�ֵ��ֻȡǰ2048���ֽ�
      */
     protected void parseResultSet(ResultSet set) throws SQLException {
-        int rowCount = 1;
-        ResultSetMetaData metaData = set.getMetaData();
-        int columnCount = metaData.getColumnCount();
-        
         ResultSetReader reader=new ResultSetReader(set);
         reader.setMaxColumnWith(maxColumnWidth);
-        /**
-         * ��ȡ����е���������Ϣ
-         */
+        parseColumns(set.getMetaData());
+        
+        int firstRow = fullMode ? 0 : start;
+        int lastRow = fullMode ? Integer.MAX_VALUE : (start + numberOfRowsPerPage) - 1;
+        boolean disable = start < 1 || lastRow < 1;
+        ResultStore rowStore = createPageStore();
+        
+        //Rows before current page are skipped without reading their values
+        int skipped = 0;
+        if (!disable) {
+            while (skipped < firstRow - 1 && set.next())
+                skipped++;
+        }
+        int pageSize = disable || fullMode ? 0 : numberOfRowsPerPage;
+        int read = 0;
+        if (skipped >= firstRow - 1) {
+            RowSink sink = openSink(rowStore);
+            read = reader.readRows(pageSize, sink);
+            closeSink(sink);
+        }
+        if (pageSize > 0 && read == pageSize) {
+            hasMore = set.next();
+        } else {
+            totalNumberOfRows = skipped + read;
+            hasMore = false;
+        }
+        
+        //��������Ľ����ݱ���
+        setStore(rowStore);
+        pagingStrategy = ResultPager.STRATEGY_RESCAN;
+        pager.pageLoaded(start, rowStore);
+    }
+
+
+    /**
+     * ��ȡ����е���������Ϣ
+     */
+    private void parseColumns(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        if (isRowNumColumn(metaData, columnCount))
+            columnCount--;
         List<SQLResultSetResults.Column> columns = new ArrayList<SQLResultSetResults.Column>();
         for (int i = 1; i <= columnCount; i++)
             columns.add(new SQLResultSetResults.Column(metaData
@@ -70,54 +143,196 @@ public class SQLStandardResultSetResults extends SQLResultSetResults {
 
         setColumns((SQLResultSetResults.Column[]) columns
                 .toArray(new SQLResultSetResults.Column[columns.size()]));
-        
-        
-        boolean exitEarly = false;
-        int firstRow = fullMode ? 0 : start;
-        int lastRow = fullMode ? Integer.MAX_VALUE : (start + numberOfRowsPerPage) - 1;
-        List<SQLResultSetResults.Row> rowList = new ArrayList<SQLResultSetResults.Row>();
-        while (true) {
-        	Object[] rowData=reader.readRow();
-        	if (rowData == null)
-				break;
-        	
-            boolean disable = start < 1 || lastRow < 1;
-            if (disable || rowCount >= firstRow && rowCount <= lastRow) {
-//                List row = new ArrayList();
-//                int i = 1;
-                
-//                /**
-//                 * Parse row data
-//                 */
-//                for (int length = columns.size(); i <= length; i++) {
-//                    Object value = null;
-//                    row.add(value != null && !set.wasNull() ? ((Object) (value))
-//                                    : "<NULL>");
-//                }
-
-                //������������ݶ���(SQLResultSetResults.Row)����������
-                rowList.add(new SQLResultSetResults.Row(rowData));
-            }
-            rowCount++;
-            
-            //����������λ�ã��˳���ݽ���
-            if (!disable && rowCount > lastRow) {
-                exitEarly = true;
-                break;
+    }
+
+    /**
+     * Return true if the column is the row number added by the dialect to a paged
+     * query, it isn't displayed.
+     */
+    private static boolean isRowNumColumn(ResultSetMetaData metaData, int column)
+            throws SQLException {
+        return column > 1 && DialectUtils.PAGED_QUERY_ROWNUM_COLUMN
+                .equalsIgnoreCase(metaData.getColumnName(column));
+    }
+
+    /**
+     * Return the indices of the columns which should be read from the result set,
+     * null if all columns are read.
+     */
+    static int[] getDisplayedColumnIndices(ResultSetMetaData metaData)
+            throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        if (!isRowNumColumn(metaData, columnCount))
+            return null;
+        int[] indices = new int[columnCount - 1];
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = i + 1;
+        return indices;
+    }
+
+    /**
+     * Read the rows of current page from the cursor which is positioned just before
+     * the first row of the page.
+     */
+    private void parsePage(ResultSetCursor cursor) throws SQLException {
+        ResultStore rowStore = createPageStore();
+        RowSink sink = openSink(rowStore);
+        hasMore = cursor.readRows(fullMode ? 0 : numberOfRowsPerPage, sink);
+        closeSink(sink);
+        RunningQuery runningQuery = QueryRegistry.getInstance().getQuery(Thread.currentThread());
+        if (runningQuery != null)
+            runningQuery.setRowCount(rowStore.getRowCount());
+        if (!hasMore)
+            totalNumberOfRows = (fullMode ? 0 : start - 1) + rowStore.getRowCount();
+
+        setStore(rowStore);
+        pager.pageLoaded(start, rowStore);
+    }
+
+    /**
+     * Create the store of the page which is read. In full mode all rows are read, so
+     * the rows are spilled to a temporary file once they exceed the heap budget.
+     */
+    private ResultStore createPageStore() {
+        ResultStore rowStore = createStore();
+        if (fullMode)
+            rowStore.setSpillThreshold(Setting.getInstance().getIntProperty(
+                    PropertyConstant.PROPERTY_VIEW_RESULTSET_SPILL_MEMORYBUDGET, 64) * 1024L * 1024L);
+        return rowStore;
+    }
+
+    /**
+     * Return the sink which the rows of the page are read into. The rows are written
+     * into the store directly unless a fetch listener is set.
+     */
+    private RowSink openSink(ResultStore rowStore) {
+        ResultFetchListener listener = getFetchListener();
+        if (listener == null)
+            return rowStore;
+        return new FetchProgressSink(this, rowStore, listener);
+    }
+
+    private void closeSink(RowSink sink) {
+        if (sink instanceof FetchProgressSink)
+            ((FetchProgressSink) sink).finish();
+    }
+
+    /**
+     * Execute the query which returns only the rows of current page.
+     */
+    private void executePagedQuery(Connection connection,
+            ResultPager.PagedQuery query) throws SQLException {
+        closeCursor();
+        PreparedStatementCache cache = getStatementCache(connection);
+        PreparedStatement statement = PreparedStatementCache.prepare(cache, connection,
+                query.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        RunningQuery runningQuery = QueryRegistry.getInstance().begin(getBookmark(),
+                query.getSql(), statement);
+        ResultSetCursor pageCursor = null;
+        try {
+            ParameterizedSql.bindAll(statement, query.getParameters());
+            ResultSetCursor.setFetchSize(statement, numberOfRowsPerPage + 1);
+
+            long startTime = System.currentTimeMillis();
+            ResultSet set = statement.executeQuery();
+            setCostTime(System.currentTimeMillis() - startTime);
+
+            runningQuery.setPhase(RunningQuery.PHASE_FETCHING);
+            ResultSetMetaData metaData = set.getMetaData();
+            parseColumns(metaData);
+            pageCursor = new ResultSetCursor(statement, set,
+                    maxColumnWidth, getDisplayedColumnIndices(metaData));
+            pageCursor.setStatementCache(cache);
+            if (pageCursor.skip(query.getSkip())) {
+                parsePage(pageCursor);
+            } else {
+                hasMore = false;
+                totalNumberOfRows = start - 1;
+                setStore(createStore());
             }
+            pagingStrategy = query.getStrategy();
+        } finally {
+            QueryRegistry.getInstance().end(runningQuery);
+            if (pageCursor != null)
+                pageCursor.close();
+            else
+                PreparedStatementCache.release(cache, statement);
         }
-        if (exitEarly) {  //��������˳�������ݽ���
-            hasMore = set.next();
-        } else {   //��ɽ��Ľ�������ô�������������
-            totalNumberOfRows = Math.max(0, rowCount - 1);
-            hasMore = false;
+    }
+
+    /**
+     * Execute the query with a forward-only cursor, skip the rows before current page
+     * and read the page. The cursor is kept open if there are more rows.
+     */
+    private void executeWithCursor(Connection connection) throws SQLException {
+        closeCursor();
+        PreparedStatementCache cache = getStatementCache(connection);
+        PreparedStatement statement = PreparedStatementCache.prepare(cache, connection,
+                getFilteredQuery(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        RunningQuery runningQuery = QueryRegistry.getInstance().begin(getBookmark(),
+                getFilteredQuery(), statement);
+        boolean isOwnedByCursor = false;
+        try {
+            ParameterizedSql.bindAll(statement, getParameters());
+            ResultSetCursor.setFetchSize(statement, numberOfRowsPerPage + 1);
+
+            long startTime = System.currentTimeMillis();
+            ResultSet set = statement.executeQuery();
+            setCostTime(System.currentTimeMillis() - startTime);
+
+            runningQuery.setPhase(RunningQuery.PHASE_FETCHING);
+            parseColumns(set.getMetaData());
+            cursor = new ResultSetCursor(statement, set, maxColumnWidth);
+            cursor.setStatementCache(cache);
+            isOwnedByCursor = true;
+            pagingStrategy = ResultPager.STRATEGY_CURSOR;
+            if (cursor.skip(start - 1)) {
+                parsePage(cursor);
+            } else {
+                hasMore = false;
+                totalNumberOfRows = cursor.getPosition();
+                setStore(createStore());
+            }
+        } catch (SQLException e) {
+            closeCursor();
+            throw e;
+        } finally {
+            QueryRegistry.getInstance().end(runningQuery);
+            if (!isOwnedByCursor)
+                PreparedStatementCache.release(cache, statement);
         }
-        
-        //��������Ľ����ݱ���
-        setRows((SQLResultSetResults.Row[]) rowList
-                .toArray(new SQLResultSetResults.Row[rowList.size()]));
     }
 
+    /**
+     * Return true if the cursor of this result is still open for reading next page.
+     */
+    public boolean isCursorOpen() {
+        return cursor != null && !cursor.isClosed();
+    }
+
+    /**
+     * Hand the cursor held by this result over to the caller, which becomes
+     * responsible for closing it. Next page will be fetched by executing the query
+     * again.
+     *
+     * @return the cursor, null if no cursor is held.
+     */
+    ResultSetCursor detachCursor() {
+        ResultSetCursor detached = cursor;
+        cursor = null;
+        return detached;
+    }
+
+    /**
+     * Close the cursor held by this result. Next page will be fetched by executing
+     * the query again.
+     */
+    public void closeCursor() {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+    }
 
     public int getTotalNumberOfRows() {
         return totalNumberOfRows;
@@ -126,19 +341,53 @@ public class SQLStandardResultSetResults extends SQLResultSetResults {
     public void nextPage(Connection connection) throws SQLException {
         if (hasNextPage()) {
             start += numberOfRowsPerPage;
-            maxSizeOfResultset=start+numberOfRowsPerPage;
-            super.refresh(connection);
+            if (isCursorOpen() && !fullMode) {
+                try {
+                    long startTime = System.currentTimeMillis();
+                    parsePage(cursor);
+                    setCostTime(System.currentTimeMillis() - startTime);
+                    pagingStrategy = ResultPager.STRATEGY_CURSOR;
+                    return;
+                } catch (SQLException e) {
+                    //The cursor may be closed by driver, such as committing the transaction.
+                    LogProxy.errorLog("reading next page from cursor failed, execute query again", e);
+                    closeCursor();
+                }
+            }
+            refresh(connection);
         }
     }
 
     public void previousPage(Connection connection) throws SQLException {
         if (hasPreviousPage()) {
             start = Math.max(1, start - numberOfRowsPerPage);
-            maxSizeOfResultset=start+numberOfRowsPerPage;
-            super.refresh(connection);
+            refresh(connection);
         }
     }
+    /**
+     * Read current page again. The page is fetched by a paged query if the dialect
+     * supports it, otherwise by executing the query with a held cursor, or finally by
+     * executing the query and skipping the rows before the page.
+     */
     public void refresh(Connection connection) throws SQLException{
+    	if (!fullMode) {
+    		ResultPager.PagedQuery query = pager.getPagedQuery(start, numberOfRowsPerPage);
+    		if (query != null) {
+    			try {
+    				executePagedQuery(connection, query);
+    				return;
+    			} catch (SQLException e) {
+    				LogProxy.errorLog("paged query failed, page the result by executing the query: "
+    						+ query.getSql(), e);
+    				pager.disable();
+    			}
+    		}
+    		if (ResultSetCursor.isCursorPagingEnabled(getBookmark())) {
+    			executeWithCursor(connection);
+    			return;
+    		}
+    	}
+    	closeCursor();
     	maxSizeOfResultset=start+numberOfRowsPerPage;
     	super.refresh(connection);
 	}
@@ -157,6 +406,8 @@ public class SQLStandardResultSetResults extends SQLResultSetResults {
     }
 
     public void setFullMode(boolean fullMode) {
+        if (fullMode)
+            closeCursor();
         this.fullMode = fullMode;
     }
 
@@ -177,9 +428,21 @@ public class SQLStandardResultSetResults extends SQLResultSetResults {
     }
 
     public void setFilterSort(FilterSort filterSort) {
+        closeCursor();
+        pager.reset();
         super.setFilterSort(filterSort);
         start = 1;
     }
+    /**
+     * Return how current page has been fetched, one of the strategy constants of
+     * {@link ResultPager}.
+     */
+    public int getPagingStrategy() {
+        return pagingStrategy;
+    }
+    public int getNumberOfRowsPerPage() {
+        return numberOfRowsPerPage;
+    }
     public int getMaxColumnWidth()
     {
     	return maxColumnWidth;
@@ -215,4 +478,19 @@ public class SQLStandardResultSetResults extends SQLResultSetResults {
      * max size that current querying may fetch from database.
      */
     protected int maxSizeOfResultset=0;
+    
+    /**
+     * Cursor held open to read the following pages, it's null if the cursor has been closed.
+     */
+    private ResultSetCursor cursor;
+
+    /**
+     * Builds the queries which fetch only one page from the database.
+     */
+    private final ResultPager pager = new ResultPager(this);
+
+    /**
+     * How current page has been fetched.
+     */
+    private int pagingStrategy = ResultPager.STRATEGY_RESCAN;
 }
@@ -78,7 +78,13 @@ public class ScriptExecuteWorker extends SwingWorker<Object, String> {
 	 */
 	@Override
 	protected Object doInBackground() throws Exception {
-		statementExecuter.execute();
+		//Worker threads are reused, so the owner is cleared afterward
+		QueryRegistry.setOwner(statementExecuter);
+		try {
+			statementExecuter.execute();
+		} finally {
+			QueryRegistry.setOwner(null);
+		}
 		return null;
 	}
 	@Override
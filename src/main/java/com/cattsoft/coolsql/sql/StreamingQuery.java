@@ -0,0 +1,220 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.sql;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * A query of a bookmark whose rows are read once from the first to the last, such as
+ * the query of an export. It's executed on a connection of the pool with a
+ * forward-only, read-only cursor and a large fetch size, so the driver fetches the
+ * rows from the server by blocks instead of caching the whole result. The
+ * connection of the pool is taken out of auto-commit mode, since some drivers, such
+ * as PostgreSQL, only fetch by blocks inside a transaction; the pool rolls it back
+ * and restores auto-commit when the connection is released. The query is
+ * registered in {@link QueryRegistry} while it's open.
+ * <p>
+ * Usage: {@link #open()}, read the result set, then {@link #close()} in a finally
+ * block.
+ *
+ * @author agent
+ */
+public class StreamingQuery {
+
+	/**
+	 * java.sql.Types.LONGNVARCHAR and NCLOB, which are missing in old JDKs.
+	 */
+	private static final int LONGNVARCHAR = -16;
+	private static final int NCLOB = 2011;
+
+	private final Bookmark bookmark;
+
+	private final String sql;
+
+	private int fetchSize = 1000;
+
+	private Object[] parameters = null;
+
+	private Connection con = null;
+
+	private Statement st = null;
+
+	private ResultSet rs = null;
+
+	private RunningQuery query = null;
+
+	private long rowCount = 0;
+
+	private boolean isStopped = false;
+
+	public StreamingQuery(Bookmark bookmark, String sql) {
+		this.bookmark = bookmark;
+		this.sql = sql;
+	}
+
+	/**
+	 * @param fetchSize --number of rows fetched from the server at a time.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = Math.max(1, fetchSize);
+	}
+
+	/**
+	 * @param parameters --values of the ? parameters of the query, null if the query
+	 *            has no parameter.
+	 */
+	public void setParameters(Object[] parameters) {
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Execute the query.
+	 *
+	 * @return the result, its cursor is forward-only.
+	 */
+	public ResultSet open() throws SQLException, UnifyException {
+		ConnectionPool pool = bookmark.getConnectionPool();
+		PreparedStatement ps = null;
+		if (pool != null) {
+			con = pool.borrow();
+			con.setAutoCommit(false);
+		} else {
+			con = bookmark.getConnection();
+		}
+		if (parameters == null) {
+			st = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		} else {
+			ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ParameterizedSql.bindAll(ps, parameters);
+			st = ps;
+		}
+		//MySQL driver only streams rows with this fetch size, otherwise it reads all
+		ResultSetCursor.setFetchSize(st, bookmark.isMysql() ? Integer.MIN_VALUE : fetchSize);
+		LogProxy.getProxy().debug("The streaming SQL (" + bookmark.getAliasName() + "): " + sql);
+		query = QueryRegistry.getInstance().begin(bookmark, sql, st);
+		rs = ps != null ? ps.executeQuery() : st.executeQuery(sql);
+		query.setPhase(RunningQuery.PHASE_FETCHING);
+		return rs;
+	}
+
+	/**
+	 * Set the number of rows read so far, it's shown in the running statements.
+	 */
+	public void setRowCount(long rowCount) {
+		this.rowCount = rowCount;
+		if (query != null)
+			query.setRowCount(rowCount);
+	}
+
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Tell that the rows left won't be read, the statement is cancelled when the
+	 * query is closed instead of fetching them.
+	 */
+	public void stop() {
+		isStopped = true;
+	}
+
+	/**
+	 * Close the result and the statement, and give the connection back to the pool.
+	 */
+	public void close() {
+		QueryRegistry.getInstance().end(query);
+		query = null;
+		if (isStopped && st != null) {
+			try {
+				st.cancel();
+			} catch (SQLException e) {
+			}
+		}
+		try {
+			if (rs != null)
+				rs.close();
+			if (st != null)
+				st.close();
+		} catch (SQLException e) {
+			LogProxy.sqlErrorLog("closing streaming query failed", e);
+		}
+		rs = null;
+		st = null;
+		ConnectionPool pool = bookmark.getConnectionPool();
+		if (con != null && pool != null)
+			pool.release(con);
+		con = null;
+	}
+
+	/**
+	 * Count the rows of the query by a separate COUNT(*) query, so the query itself
+	 * needn't be scrolled to its end.
+	 *
+	 * @return the number of rows, -1 if the query can't be counted, for example if
+	 *         it isn't a SELECT statement.
+	 */
+	public static long count(Bookmark bookmark, String sql) {
+		String inner = sql.trim();
+		while (inner.endsWith(";"))
+			inner = inner.substring(0, inner.length() - 1).trim();
+		StreamingQuery countQuery = new StreamingQuery(bookmark, "SELECT COUNT(*) FROM ("
+				+ inner + ") row_count");
+		try {
+			ResultSet set = countQuery.open();
+			return set.next() ? set.getLong(1) : -1;
+		} catch (Exception e) {
+			LogProxy.getProxy().debug("rows of query can't be counted: " + e.getMessage());
+			return -1;
+		} finally {
+			countQuery.close();
+		}
+	}
+
+	/**
+	 * Return whether the values of the column type should be read as a character
+	 * stream.
+	 */
+	public static boolean isLongTextType(int type) {
+		return type == Types.CLOB || type == Types.LONGVARCHAR || type == NCLOB
+				|| type == LONGNVARCHAR;
+	}
+
+	/**
+	 * Return the value of the column as text, null if the value is null. Long text
+	 * values are read as a character stream by blocks.
+	 *
+	 * @param type --the type of the column, see {@link java.sql.Types}.
+	 * @param buffer --buffer reused to read long text values.
+	 */
+	public static String getText(ResultSet rs, int column, int type, StringBuilder buffer)
+			throws SQLException, IOException {
+		if (!isLongTextType(type))
+			return rs.getString(column);
+		Reader reader = rs.getCharacterStream(column);
+		if (reader == null)
+			return null;
+		try {
+			buffer.setLength(0);
+			char[] chars = new char[4096];
+			int length;
+			while ((length = reader.read(chars)) >= 0)
+				buffer.append(chars, 0, length);
+			return buffer.toString();
+		} finally {
+			reader.close();
+		}
+	}
+}
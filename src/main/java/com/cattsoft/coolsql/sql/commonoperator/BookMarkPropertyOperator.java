@@ -10,6 +10,7 @@ import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.gui.property.NodeKey;
 import com.cattsoft.coolsql.gui.property.PropertyFrame;
 import com.cattsoft.coolsql.gui.property.database.BookMarkProperty;
+import com.cattsoft.coolsql.gui.property.database.ConnectionPoolProperty;
 import com.cattsoft.coolsql.gui.property.database.DataTypesProperty;
 import com.cattsoft.coolsql.gui.property.database.DatabaseProperty;
 import com.cattsoft.coolsql.gui.property.database.DriverProperty;
@@ -88,6 +89,10 @@ public class BookMarkPropertyOperator implements Operatable {
         key.setDisplayName(stringMgr.getString("property.database.tabletype.desc"));   
         pf.addCard(key,TableTypeProperty.class,bookmark);
         
+        key=new NodeKey(stringMgr.getString("property.database.connectionpool.nodename"),(Icon)null,PropertyFrame.getRootData());
+        key.setDisplayName(stringMgr.getString("property.database.connectionpool.desc"));   
+        pf.addCard(key,ConnectionPoolProperty.class,bookmark);
+        
         pf.setVisible(true);
     }
 
@@ -7,6 +7,8 @@ import java.sql.SQLException;
 import java.util.List;
 
 import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
 import com.cattsoft.coolsql.view.resultset.DataSetPanel;
 import com.cattsoft.coolsql.view.resultset.RetriveDataThread;
 
@@ -32,8 +34,17 @@ public class SQLProcessOperator extends BaseOperator {
         DataSetPanel dataPane=(DataSetPanel)list.get(0);
         int processType=((Integer)list.get(1)).intValue();
 
-        RetriveDataThread thread=new RetriveDataThread(dataPane,dataPane.getSql(),dataPane.getBookmark(),processType);
-        dataPane.setCurrentThread(thread);
-        thread.start();
+        final RetriveDataThread process=new RetriveDataThread(dataPane,dataPane.getSql(),dataPane.getBookmark(),processType);
+        ManagedTask task=TaskExecutor.getInstance().createTask(process,"query "+dataPane.getBookmark().getAliasName(),
+                TaskExecutor.PRIORITY_INTERACTIVE,dataPane.getBookmark());
+        task.setCancelAction(new Runnable()
+        {
+            public void run()
+            {
+                process.discard();
+            }
+        });
+        dataPane.setCurrentThread(task.getThread());
+        task.start();
     }
 }
@@ -8,9 +8,14 @@ import java.util.List;
 
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.sql.ParameterizedSql;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
 import com.cattsoft.coolsql.view.ResultSetView;
 import com.cattsoft.coolsql.view.ViewManage;
 import com.cattsoft.coolsql.view.resultset.DataSetPanel;
+import com.cattsoft.coolsql.view.resultset.ParameterValuesDialog;
+import com.cattsoft.coolsql.view.resultset.ResultSetDataProcess;
 import com.cattsoft.coolsql.view.resultset.RetriveDataThread;
 
 /**
@@ -37,11 +42,36 @@ public class SQLResultProcessOperator extends BaseOperator  {
         String sql=(String)list.get(1);
         int processType=((Integer)list.get(2)).intValue();
         
+        //The values of the parameters are asked before the result tab is added
+        ParameterizedSql parameterizedSql=null;
+        Object[] parameterValues=null;
+        if(processType==ResultSetDataProcess.EXECUTE)
+        {
+            parameterizedSql=ParameterizedSql.parse(sql);
+            if(parameterizedSql.hasParameters())
+            {
+                parameterValues=ParameterValuesDialog.showDialog(parameterizedSql);
+                if(parameterValues==null)
+                    return;
+            }else
+                parameterizedSql=null;
+        }
+        
         ResultSetView view=ViewManage.getInstance().getResultView();
         DataSetPanel com=view.addTab(bookmark);  //���
-        RetriveDataThread thread=new RetriveDataThread(com,sql,bookmark,processType);
-        com.setCurrentThread(thread);
-        thread.start();
+        final RetriveDataThread process=parameterizedSql==null?new RetriveDataThread(com,sql,bookmark,processType)
+                :new RetriveDataThread(com,parameterizedSql,parameterValues,bookmark);
+        ManagedTask task=TaskExecutor.getInstance().createTask(process,"query "+bookmark.getAliasName(),
+                TaskExecutor.PRIORITY_INTERACTIVE,bookmark);
+        task.setCancelAction(new Runnable()
+        {
+            public void run()
+            {
+                process.discard();
+            }
+        });
+        com.setCurrentThread(task.getThread());
+        task.start();
         view.setSelectedTab(com);
     }
 }
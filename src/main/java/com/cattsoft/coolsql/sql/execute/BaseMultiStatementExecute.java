@@ -5,12 +5,16 @@ package com.cattsoft.coolsql.sql.execute;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.sql.Connection;
+import java.util.List;
 
 import javax.swing.event.EventListenerList;
 
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.pub.parse.StringManager;
 import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
 import com.cattsoft.coolsql.view.log.ILogger;
 import com.cattsoft.coolsql.view.log.LogProxy;
 
@@ -42,9 +46,23 @@ public abstract class BaseMultiStatementExecute
 
 	protected int executedCount;// current count of statements executed
 	protected long updatedRowCount=0;
+	protected long executionTime=0;// milliseconds spent executing statements
 
 	protected IStatementExecute statementExecuter;
 	protected Bookmark bookmark;
+	/**
+	 * The connection statements are executed in, null means the connection of bookmark.
+	 */
+	protected Connection connection;
+
+	/**
+	 * Consecutive DML statements of the same shape are executed as JDBC batches if
+	 * it's true. If abortOnError is true, the statements of a batch after the failed
+	 * statement are never kept, see {@link BatchStatementExecute#setStopOnError(boolean)}.
+	 */
+	protected boolean isBatchEnabled = Setting.getInstance().getBoolProperty(
+			PropertyConstant.PROPERTY_VIEW_SQLEDITOR_BATCH_ENABLED, true);
+	private BatchStatementExecute batchExecuter;
 
 	protected ILogger resultLogger;// outside logger used to print information
 									// related to execution to else log
@@ -59,11 +77,20 @@ public abstract class BaseMultiStatementExecute
 	}
 	protected BaseMultiStatementExecute(Bookmark bookmark,
 			IStatementExecute statementExecuter) {
+		this(bookmark, null, statementExecuter);
+	}
+	/**
+	 * @param connection --the connection statements are executed in, null means the
+	 *            connection of bookmark.
+	 */
+	protected BaseMultiStatementExecute(Bookmark bookmark, Connection connection,
+			IStatementExecute statementExecuter) {
 		this.bookmark = bookmark;
+		this.connection = connection;
 		this.statementExecuter = statementExecuter;
 		if(statementExecuter==null)
 		{
-			this.statementExecuter=new DefaultStatementExecute(bookmark);
+			this.statementExecuter=new DefaultStatementExecute(bookmark,connection);
 		}
 		evList = new EventListenerList();
 	}
@@ -121,6 +148,19 @@ public abstract class BaseMultiStatementExecute
 	public void setVerboseLogging(boolean verboseLogging) {
 		this.verboseLogging = verboseLogging;
 	}
+	/**
+	 * @return the isBatchEnabled
+	 */
+	public boolean isBatchEnabled() {
+		return this.isBatchEnabled;
+	}
+	/**
+	 * @param isBatchEnabled
+	 *            the isBatchEnabled to set
+	 */
+	public void setBatchEnabled(boolean isBatchEnabled) {
+		this.isBatchEnabled = isBatchEnabled;
+	}
 	public void changeBookmark(Bookmark bookmark)
 	{
 		this.bookmark=bookmark;
@@ -165,6 +205,126 @@ public abstract class BaseMultiStatementExecute
 	public final void removePropertyListener(PropertyChangeListener l) {
 		evList.remove(PropertyChangeListener.class, l);
 	}
+	/**
+	 * Execute the statement, or add it to current batch if batching is enabled and
+	 * it's a DML statement. The statements of current batch are executed when the
+	 * batch is full or when a statement of another shape comes, so the result may
+	 * concern the statements which have been added before. {@link #finishBatch()}
+	 * must be called after the last statement.
+	 *
+	 * @param line --line of the statement in the script, 0 if it's unknown.
+	 * @return true if an error occurred.
+	 */
+	protected boolean executeStatement(String sql, int line) {
+		if (sql == null)
+			return true;
+		if (!isBatchEnabled)
+			return executeSingleStatement(sql);
+		if (batchExecuter == null) {
+			Setting setting = Setting.getInstance();
+			batchExecuter = new BatchStatementExecute(bookmark, connection, setting.getIntProperty(
+					PropertyConstant.PROPERTY_VIEW_SQLEDITOR_BATCH_SIZE, 500), setting
+					.getIntProperty(PropertyConstant.PROPERTY_VIEW_SQLEDITOR_BATCH_COMMITINTERVAL,
+							5000));
+		}
+		String shape = batchExecuter.getShape(sql);
+		boolean error = false;
+		if (shape == null) {
+			error = finishBatch();
+			if (error && abortOnError)
+				return error;
+			return executeSingleStatement(sql) || error;
+		}
+		if (!batchExecuter.accept(shape)) {
+			error = executeBatch();
+			if (error && abortOnError)
+				return error;
+		}
+		batchExecuter.add(sql, shape, line);
+		if (batchExecuter.isFull())
+			error = executeBatch() || error;
+		return error;
+	}
+
+	/**
+	 * Execute the statements left in current batch, then commit them and restore the
+	 * auto commit mode of the connection if it has been changed.
+	 *
+	 * @return true if an error occurred.
+	 */
+	protected boolean finishBatch() {
+		if (batchExecuter == null)
+			return false;
+		boolean error = false;
+		try {
+			if (!cancelExecution)
+				error = executeBatch();
+		} finally {
+			batchExecuter.finish();
+		}
+		return error;
+	}
+
+	/**
+	 * Discard the statements left in current batch, the statements which have been
+	 * executed are committed if the auto commit mode of the connection has been
+	 * changed.
+	 */
+	protected void discardBatch() {
+		if (batchExecuter != null)
+			batchExecuter.finish();
+	}
+
+	/**
+	 * Cancel the batch which is executing.
+	 */
+	protected void cancelBatch() {
+		if (batchExecuter != null)
+			batchExecuter.cancel();
+	}
+
+	private boolean executeBatch() {
+		int count = batchExecuter.size();
+		if (count == 0)
+			return false;
+
+		String msg;
+		if (batchExecuter.getFirstLine() > 0)
+			msg = stringMgr.getString("batchprocess.execute.batch.lines", count,
+					batchExecuter.getFirstLine(), batchExecuter.getLastLine());
+		else
+			msg = stringMgr.getString("batchprocess.execute.batch", count);
+		fireMessageChanged(msg);
+		if (verboseLogging) {
+			this.printMessage(msg);
+			LogProxy.getProxy().info(msg);
+		}
+		long verbstart = System.currentTimeMillis();
+		batchExecuter.setStopOnError(abortOnError);
+		boolean error = !batchExecuter.execute();
+		long verbend = System.currentTimeMillis();
+		executionTime += verbend - verbstart;
+
+		StatementRunnerResult result = batchExecuter.getExecuteResultInfo();
+		updatedRowCount += result.getTotalUpdateCount();
+		String feedback = result.getMessageBuffer().toString();
+		if (error) {
+			msg = stringMgr.getString("batchprocess.error") + ":" + feedback;
+			LogProxy.errorMessage(msg);
+			this.printMessage(msg);
+		}
+		this.printMessage(stringMgr.getString("batchprocess.execute.sql.time")
+				+ " " + (((double) (verbend - verbstart)) / 1000.0) + "s");
+
+		//The statements after the failed one are executed one by one
+		if (error && !abortOnError && !cancelExecution) {
+			List<String> remaining = batchExecuter.getRemainingStatements();
+			for (int i = 0; i < remaining.size() && !cancelExecution; i++)
+				executeSingleStatement(remaining.get(i));
+		}
+		return error;
+	}
+
 	protected boolean executeSingleStatement(String sql) {
 		if (sql == null)
 			return true;
@@ -179,6 +339,7 @@ public abstract class BaseMultiStatementExecute
 		long verbstart = System.currentTimeMillis();
 		boolean error =statementExecuter.execute(sql, 0, 0);
 		long verbend = System.currentTimeMillis();
+		executionTime += verbend - verbstart;
 
 		StatementRunnerResult result = this.statementExecuter
 				.getExecuteResultInfo();
@@ -251,6 +412,12 @@ public abstract class BaseMultiStatementExecute
 	public long getUpdatedRowCount() {
 		return this.updatedRowCount;
 	}
+	/**
+	 * Return the milliseconds spent executing statements, without reading scripts.
+	 */
+	public long getExecutionTime() {
+		return this.executionTime;
+	}
 	/**
 	 * @return the isFinished
 	 */
@@ -0,0 +1,534 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.sql.execute;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.pub.util.ExceptionUtil;
+import com.cattsoft.coolsql.pub.util.SQLLexer;
+import com.cattsoft.coolsql.pub.util.StringUtil;
+import com.cattsoft.coolsql.sql.QueryRegistry;
+import com.cattsoft.coolsql.sql.RunningQuery;
+import com.cattsoft.coolsql.sql.formater.SQLToken;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Executes consecutive INSERT, UPDATE and DELETE statements as JDBC batches, so a
+ * data script doesn't take a round trip to the database for each statement.
+ * Statements are grouped by their shape, that is the statement with its literals
+ * replaced by '?': a batch holds statements which only differ by their values.
+ * <p>
+ * If the connection commits automatically and a commit interval is set, the
+ * connection doesn't commit automatically while statements are batched and it's
+ * committed every <code>commitInterval</code> statements instead, until
+ * {@link #finish()} is called.
+ * <p>
+ * If the execution stops at the first error, the statements after a failed
+ * statement are never kept, as if the statements were executed one by one: a batch
+ * is executed after a savepoint, and if the driver goes on after the failed
+ * statement, the batch is rolled back to the savepoint and the statements before
+ * the failed one are executed again one by one. If the connection can't be rolled
+ * back to the start of the batch, the statements are executed one by one.
+ *
+ * @author agent
+ */
+public class BatchStatementExecute {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(BatchStatementExecute.class);
+
+	private final Bookmark bookmark;
+
+	private final int batchSize;
+
+	private final int commitInterval;
+
+	/**
+	 * Lexer used to compute the shape of statements, it's reset for each statement.
+	 */
+	private final SQLLexer lexer = new SQLLexer("");
+
+	private final List<String> sqls = new ArrayList<String>();
+
+	/**
+	 * Line of each statement in the script, 0 if it's unknown.
+	 */
+	private final List<Integer> lines = new ArrayList<Integer>();
+
+	/**
+	 * Shape of the statements of current batch.
+	 */
+	private String shape = null;
+
+	/**
+	 * The connection statements are executed in, null means the connection of bookmark.
+	 */
+	private final Connection fixedConnection;
+
+	private Connection connection = null;
+
+	private Statement statement = null;
+
+	/**
+	 * True if auto commit has been disabled by this object.
+	 */
+	private boolean isCommitManaged = false;
+
+	private int uncommittedCount = 0;
+
+	private boolean stopOnError = false;
+
+	/**
+	 * True if the statements of a batch can be rolled back without rolling back the
+	 * statements executed before the batch.
+	 */
+	private boolean canUndoBatch = false;
+
+	private StatementRunnerResult result = new StatementRunnerResult();
+
+	/**
+	 * Statements of the last batch which haven't been executed because a statement
+	 * failed and the driver stopped.
+	 */
+	private List<String> remainingSqls = new ArrayList<String>();
+
+	/**
+	 * @param batchSize --maximum number of statements in a batch.
+	 * @param commitInterval --number of statements after which the connection is
+	 *            committed, 0 means the auto commit mode of the connection isn't
+	 *            changed.
+	 */
+	public BatchStatementExecute(Bookmark bookmark, int batchSize, int commitInterval) {
+		this(bookmark, null, batchSize, commitInterval);
+	}
+
+	/**
+	 * @param connection --the connection statements are executed in, null means the
+	 *            connection of bookmark.
+	 */
+	public BatchStatementExecute(Bookmark bookmark, Connection connection, int batchSize,
+			int commitInterval) {
+		this.bookmark = bookmark;
+		this.fixedConnection = connection;
+		this.batchSize = Math.max(1, batchSize);
+		this.commitInterval = Math.max(0, commitInterval);
+	}
+
+	/**
+	 * @param stopOnError --true if the statements after a failed statement must
+	 *            never be kept, the auto commit mode of the connection is changed
+	 *            even if no commit interval is set.
+	 */
+	public void setStopOnError(boolean stopOnError) {
+		this.stopOnError = stopOnError;
+	}
+
+	public boolean isStopOnError() {
+		return stopOnError;
+	}
+
+	/**
+	 * Return the shape of the statement if it can be batched: the keywords and
+	 * names of the statement with its literals replaced by '?'. Null is returned if
+	 * the statement isn't an INSERT, UPDATE or DELETE statement.
+	 */
+	public String getShape(String sql) {
+		try {
+			lexer.reset(new StringReader(sql), 0, 0, 0);
+		} catch (IOException e) {
+			return null;
+		}
+		SQLToken token = lexer.getNextToken(false, false);
+		if (token == null)
+			return null;
+		String verb = token.getContents();
+		if (!"INSERT".equalsIgnoreCase(verb) && !"UPDATE".equalsIgnoreCase(verb)
+				&& !"DELETE".equalsIgnoreCase(verb))
+			return null;
+		StringBuilder buffer = new StringBuilder(sql.length());
+		boolean isLastLiteral = false;
+		for (; token != null; token = lexer.getNextToken(false, false)) {
+			if (token.isError())
+				return null;
+			//A string with an escaped quote is read as several literals
+			if (token.isLiteral() && isLastLiteral)
+				continue;
+			isLastLiteral = token.isLiteral();
+			if (buffer.length() > 0)
+				buffer.append(' ');
+			if (token.isLiteral())
+				buffer.append('?');
+			else if (token.isReservedWord())
+				buffer.append(token.getContents().toUpperCase());
+			else
+				buffer.append(token.getContents());
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Return true if a statement of the shape can be added to current batch.
+	 */
+	public boolean accept(String shape) {
+		return sqls.size() == 0 || shape.equals(this.shape);
+	}
+
+	/**
+	 * Add a statement to current batch.
+	 *
+	 * @param line --line of the statement in the script, 0 if it's unknown.
+	 */
+	public void add(String sql, String shape, int line) {
+		if (sqls.size() == 0)
+			this.shape = shape;
+		sqls.add(sql);
+		lines.add(line);
+	}
+
+	/**
+	 * Return the number of statements of current batch.
+	 */
+	public int size() {
+		return sqls.size();
+	}
+
+	public boolean isFull() {
+		return sqls.size() >= batchSize;
+	}
+
+	/**
+	 * Return the line of the first statement of current batch.
+	 */
+	public int getFirstLine() {
+		return lines.size() == 0 ? 0 : lines.get(0);
+	}
+
+	public int getLastLine() {
+		return lines.size() == 0 ? 0 : lines.get(lines.size() - 1);
+	}
+
+	/**
+	 * Execute the statements of current batch, the batch is empty afterward.
+	 *
+	 * @return true if all statements have been executed successfully.
+	 */
+	public boolean execute() {
+		result.clear();
+		remainingSqls.clear();
+		if (sqls.size() == 0) {
+			result.success();
+			return true;
+		}
+		RunningQuery query = null;
+		Savepoint savepoint = null;
+		try {
+			if (statement == null) {
+				connection = fixedConnection != null ? fixedConnection : bookmark
+						.getConnection();
+				if ((commitInterval > 0 || stopOnError) && connection.getAutoCommit()) {
+					connection.setAutoCommit(false);
+					isCommitManaged = true;
+				}
+				canUndoBatch = !connection.getAutoCommit()
+						&& (isCommitManaged || connection.getMetaData().supportsSavepoints());
+				statement = connection.createStatement();
+			}
+			query = QueryRegistry.getInstance().begin(bookmark, sqls.get(0), statement);
+			if (stopOnError && !canUndoBatch)
+				return executeOneByOne(sqls.size());
+			if (stopOnError)
+				savepoint = startUndoableBatch();
+
+			for (String sql : sqls)
+				statement.addBatch(sql);
+			long start = System.currentTimeMillis();
+			int[] counts = statement.executeBatch();
+			result.setExecutionTime(System.currentTimeMillis() - start);
+			result.success();
+			result.addUpdateCountMsg(sumUpdateCount(counts, counts.length));
+			releaseSavepoint(savepoint);
+			commitIfNeeded(sqls.size());
+			return true;
+		} catch (BatchUpdateException e) {
+			if (stopOnError)
+				return undoBatch(savepoint, e);
+			processBatchError(e);
+			return false;
+		} catch (SQLException e) {
+			if (stopOnError && statement != null)
+				return undoBatch(savepoint, e);
+			addErrorInfo(sqls.get(0), getFirstLine(), e);
+			return false;
+		} catch (UnifyException e) {
+			addErrorInfo(sqls.get(0), getFirstLine(), e);
+			return false;
+		} finally {
+			QueryRegistry.getInstance().end(query);
+			clearBatch();
+		}
+	}
+
+	/**
+	 * Find the statement which failed. Some drivers stop at the first failure and
+	 * return the update counts of the statements executed before it, others go on
+	 * and mark the failed statements.
+	 */
+	private void processBatchError(BatchUpdateException e) {
+		int[] counts = e.getUpdateCounts();
+		int failed = -1;
+		if (counts != null && counts.length < sqls.size()) {
+			failed = counts.length;
+			remainingSqls.addAll(sqls.subList(failed + 1, sqls.size()));
+		} else if (counts != null) {
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] == Statement.EXECUTE_FAILED) {
+					failed = i;
+					break;
+				}
+			}
+		}
+		if (failed > -1) {
+			addErrorInfo(sqls.get(failed), lines.get(failed), e);
+		} else {
+			addErrorInfo(sqls.get(0), getFirstLine(), e);
+		}
+		if (counts != null)
+			result.addUpdateCountMsg(sumUpdateCount(counts, counts.length));
+		try {
+			commitIfNeeded(failed > -1 ? failed : sqls.size());
+		} catch (SQLException ex) {
+			LogProxy.sqlErrorLog("committing batch failed", ex);
+		}
+	}
+
+	/**
+	 * Make the statements of the batch undoable: a savepoint is set if the
+	 * connection supports them, otherwise the statements executed before are
+	 * committed so a rollback only undoes the batch.
+	 *
+	 * @return the savepoint, null if the batch is undone by a rollback.
+	 */
+	private Savepoint startUndoableBatch() throws SQLException {
+		if (connection.getMetaData().supportsSavepoints())
+			return connection.setSavepoint();
+		if (uncommittedCount > 0) {
+			connection.commit();
+			uncommittedCount = 0;
+		}
+		return null;
+	}
+
+	private void releaseSavepoint(Savepoint savepoint) {
+		if (savepoint == null)
+			return;
+		try {
+			connection.releaseSavepoint(savepoint);
+		} catch (SQLException e) {
+			//Some drivers don't release savepoints, they end with the transaction
+		}
+	}
+
+	/**
+	 * Keep the statements of the failed batch which come before the failed
+	 * statement only. If the driver stopped at the failed statement, nothing comes
+	 * after it. Otherwise the batch is rolled back and the statements before the
+	 * failed one are executed again one by one, or all statements up to the first
+	 * failure if the driver doesn't tell which statement failed.
+	 *
+	 * @return true if the statements have been executed successfully when they are
+	 *         executed again.
+	 */
+	private boolean undoBatch(Savepoint savepoint, SQLException e) {
+		int[] counts = e instanceof BatchUpdateException ? ((BatchUpdateException) e)
+				.getUpdateCounts() : null;
+		int failed = -1;
+		if (counts != null && counts.length < sqls.size()) {
+			failed = counts.length;
+		} else if (counts != null) {
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] == Statement.EXECUTE_FAILED) {
+					failed = i;
+					break;
+				}
+			}
+		}
+		try {
+			if (failed > -1 && failed == counts.length) {
+				addErrorInfo(sqls.get(failed), lines.get(failed), e);
+				result.addUpdateCountMsg(sumUpdateCount(counts, counts.length));
+				releaseSavepoint(savepoint);
+				commitIfNeeded(failed);
+				return false;
+			}
+			if (savepoint != null) {
+				connection.rollback(savepoint);
+				releaseSavepoint(savepoint);
+			} else {
+				connection.rollback();
+			}
+			statement.clearBatch();
+			if (failed == -1)
+				return executeOneByOne(sqls.size());
+			if (executeOneByOne(failed)) {
+				int total = (int) result.getTotalUpdateCount();
+				addErrorInfo(sqls.get(failed), lines.get(failed), e);
+				result.addUpdateCountMsg(total);
+			}
+			return false;
+		} catch (SQLException ex) {
+			addErrorInfo(sqls.get(0), getFirstLine(), ex);
+			return false;
+		}
+	}
+
+	/**
+	 * Execute the first statements of current batch one by one, up to the first
+	 * failure.
+	 *
+	 * @return true if all statements have been executed successfully.
+	 */
+	private boolean executeOneByOne(int count) throws SQLException {
+		long start = System.currentTimeMillis();
+		int total = 0;
+		for (int i = 0; i < count; i++) {
+			try {
+				int updateCount = statement.executeUpdate(sqls.get(i));
+				if (updateCount > 0)
+					total += updateCount;
+			} catch (SQLException e) {
+				addErrorInfo(sqls.get(i), lines.get(i), e);
+				result.addUpdateCountMsg(total);
+				commitIfNeeded(i);
+				return false;
+			}
+		}
+		result.clear();
+		result.setExecutionTime(System.currentTimeMillis() - start);
+		result.success();
+		result.addUpdateCountMsg(total);
+		commitIfNeeded(count);
+		return true;
+	}
+
+	private static int sumUpdateCount(int[] counts, int length) {
+		int total = 0;
+		for (int i = 0; i < length; i++) {
+			if (counts[i] > 0)
+				total += counts[i];
+		}
+		return total;
+	}
+
+	private void commitIfNeeded(int executedCount) throws SQLException {
+		if (!isCommitManaged)
+			return;
+		uncommittedCount += executedCount;
+		if (uncommittedCount >= commitInterval) {
+			connection.commit();
+			uncommittedCount = 0;
+		}
+	}
+
+	private void clearBatch() {
+		sqls.clear();
+		lines.clear();
+		shape = null;
+		if (statement != null) {
+			try {
+				statement.clearBatch();
+			} catch (SQLException e) {
+				LogProxy.sqlErrorLog("clearing batch failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Commit the statements executed since last commit, restore the auto commit mode
+	 * of the connection and close the statement. Pending statements are discarded.
+	 */
+	public void finish() {
+		sqls.clear();
+		lines.clear();
+		shape = null;
+		try {
+			if (isCommitManaged) {
+				try {
+					connection.commit();
+				} finally {
+					connection.setAutoCommit(true);
+				}
+			}
+		} catch (SQLException e) {
+			LogProxy.SQLErrorReport(e);
+		} finally {
+			isCommitManaged = false;
+			uncommittedCount = 0;
+			if (statement != null) {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+				}
+			}
+			statement = null;
+			connection = null;
+		}
+	}
+
+	/**
+	 * Cancel the batch which is executing.
+	 */
+	public void cancel() {
+		Statement st = statement;
+		if (st == null)
+			return;
+		try {
+			st.cancel();
+		} catch (SQLException e) {
+			LogProxy.SQLErrorReport("Cancelling statement failed!" + e.getMessage(), e);
+		} finally {
+			result.setPromptingWasCancelled();
+		}
+	}
+
+	/**
+	 * Return the statements of the last batch which haven't been executed after a
+	 * statement failed.
+	 */
+	public List<String> getRemainingStatements() {
+		return new ArrayList<String>(remainingSqls);
+	}
+
+	public StatementRunnerResult getExecuteResultInfo() {
+		return result;
+	}
+
+	private void addErrorInfo(String sql, int line, Throwable e) {
+		result.clear();
+
+		StringBuilder msg = new StringBuilder(150);
+		if (line > 0)
+			msg.append(stringMgr.getString("statement.batch.error.line", line) + "\n");
+		else
+			msg.append(stringMgr.getString("statement.execute.error") + "\n");
+		msg.append(StringUtil.getMaxSubstring(sql.trim(), 150));
+
+		result.addMessage(msg);
+		result.addMessageNewLine();
+		result.addMessage(ExceptionUtil.getAllExceptions(e));
+
+		result.failure();
+	}
+}
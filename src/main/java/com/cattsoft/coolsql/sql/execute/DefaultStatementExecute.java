@@ -16,6 +16,8 @@ import com.cattsoft.coolsql.pub.util.ExceptionUtil;
 import com.cattsoft.coolsql.pub.util.SqlUtil;
 import com.cattsoft.coolsql.pub.util.StringUtil;
 import com.cattsoft.coolsql.sql.ISQLDatabaseMetaData;
+import com.cattsoft.coolsql.sql.QueryRegistry;
+import com.cattsoft.coolsql.sql.RunningQuery;
 import com.cattsoft.coolsql.view.log.LogProxy;
 
 /**
@@ -28,6 +30,10 @@ public class DefaultStatementExecute implements IStatementExecute {
 	private static final StringManager stringMgr=StringManagerFactory.getStringManager(DefaultStatementExecute.class);
 	
 	private Bookmark bookmark;
+	/**
+	 * The connection statements are executed in, null means the connection of bookmark.
+	 */
+	private Connection connection;
 	private Statement statement;
 	
 	private boolean isFinished=false;
@@ -38,8 +44,16 @@ public class DefaultStatementExecute implements IStatementExecute {
 	private StatementRunnerResult result;
 	
 	public DefaultStatementExecute(Bookmark bookmark)
+	{
+		this(bookmark,null);
+	}
+	/**
+	 * @param connection --the connection statements are executed in, null means the connection of bookmark.
+	 */
+	public DefaultStatementExecute(Bookmark bookmark,Connection connection)
 	{
 		this.bookmark=bookmark;
+		this.connection=connection;
 		result=new StatementRunnerResult();
 	}
 	/* (non-Javadoc)
@@ -83,7 +97,7 @@ public class DefaultStatementExecute implements IStatementExecute {
 		if(result!=null)
 			result.clear();
 		try {
-			statement=bookmark.getConnection().createStatement();
+			statement=getConnection().createStatement();
 			ISQLDatabaseMetaData md = null;
 			md = bookmark.getDbInfoProvider().getDatabaseMetaData();
 			boolean isJdbcOdbc = md.getURL().startsWith("jdbc:odbc:");
@@ -103,6 +117,7 @@ public class DefaultStatementExecute implements IStatementExecute {
 			return false;
 		}
 		
+		RunningQuery query=QueryRegistry.getInstance().begin(bookmark,sql,statement);
 		try {
 			setSavepoint();
 			long sqlExecStart = System.currentTimeMillis();
@@ -112,6 +127,7 @@ public class DefaultStatementExecute implements IStatementExecute {
 			result.success();
 			if(flag)//query
 			{
+				query.setPhase(RunningQuery.PHASE_FETCHING);
 				result.setResultSet(statement.getResultSet());
 			}else  //modify database information
 			{
@@ -131,6 +147,7 @@ public class DefaultStatementExecute implements IStatementExecute {
 		}
 		finally
 		{
+			QueryRegistry.getInstance().end(query);
 			isFinished=true;
 			if (this.result.isSuccess())
 			{
@@ -166,12 +183,17 @@ public class DefaultStatementExecute implements IStatementExecute {
 	public boolean isStarted() {
 		return isStarted;
 	}
+	private Connection getConnection() throws UnifyException
+	{
+		if (connection != null) return connection;
+		return bookmark.getConnection();
+	}
 	private void setSavepoint()
 	{
 		if (!useSavepoint) return;
 		try
 		{
-			this.savepoint = bookmark.getConnection().setSavepoint();
+			this.savepoint = getConnection().setSavepoint();
 		}
 		catch (Exception e)
 		{
@@ -183,7 +205,7 @@ public class DefaultStatementExecute implements IStatementExecute {
 		if (this.savepoint == null) return;
 		try
 		{
-			bookmark.getConnection().releaseSavepoint(savepoint);
+			getConnection().releaseSavepoint(savepoint);
 		}
 		catch (Exception e)
 		{
@@ -200,7 +222,7 @@ public class DefaultStatementExecute implements IStatementExecute {
 		if (this.savepoint == null) return;
 		try
 		{
-			bookmark.getConnection().rollback(savepoint);
+			getConnection().rollback(savepoint);
 		}
 		catch (Exception e)
 		{
@@ -236,7 +258,7 @@ public class DefaultStatementExecute implements IStatementExecute {
 	{
 		Connection con;
 		try {
-			con = bookmark.getConnection();
+			con = getConnection();
 		} catch (UnifyException e) {
 			return false;
 		}
@@ -3,6 +3,7 @@
  */
 package com.cattsoft.coolsql.sql.execute;
 
+import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,10 +39,22 @@ public class MultiStatementExecute extends BaseMultiStatementExecute{
 		else
 			this.sqls=new ArrayList<String>();
 	}
+	/**
+	 * @param connection --the connection statements are executed in, null means the connection of bookmark.
+	 */
+	public MultiStatementExecute(Bookmark bookmark,Connection connection,List<String> sqls)
+	{
+		super(bookmark,connection,null);
+		if(sqls!=null)
+			this.sqls=sqls;
+		else
+			this.sqls=new ArrayList<String>();
+	}
 	public void cancel() {
 		cancelExecution=true;
 		if (this.statementExecuter != null)
 			statementExecuter.cancel();
+		cancelBatch();
 
 	}
 	/* (non-Javadoc)
@@ -60,7 +73,7 @@ public class MultiStatementExecute extends BaseMultiStatementExecute{
 			error=false;
 			try
 			{
-				error=executeSingleStatement(sql);
+				error=executeStatement(sql, 0);
 				if (this.cancelExecution)
 				{
 					String msg=stringMgr.getString("batchprocess.execute.cancel");
@@ -82,6 +95,10 @@ public class MultiStatementExecute extends BaseMultiStatementExecute{
 				break;
 			
 		}
+		if (error && abortOnError)
+			discardBatch();
+		else
+			error = finishBatch() || error;
 		long end=System.currentTimeMillis();
 		String msg=stringMgr.getString("batchprocess.execute.totaltime")+(end-start)+" ms";
 		LogProxy.getProxy().info(msg);
@@ -0,0 +1,437 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.sql.execute;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.pub.util.ExceptionUtil;
+import com.cattsoft.coolsql.sql.ConnectionPool;
+import com.cattsoft.coolsql.sql.QueryRegistry;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.system.task.TaskGroup;
+import com.cattsoft.coolsql.view.log.ILogger;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Runs independent script files, or independent groups of statements, concurrently
+ * over several connections of the connection pool of a bookmark. Each file or group
+ * is a lane which is executed in order on one connection, by the same executer as
+ * if it was executed alone. The lanes are picked by a fixed number of workers.
+ * <p>
+ * If abortOnError is true, a lane stops at its first error, and the lanes which
+ * haven't finished are cancelled.
+ * <p>
+ * Connections of the pool commit automatically, so if the bookmark doesn't commit
+ * automatically, the lanes are executed one after another in the connection of the
+ * bookmark instead, and the user commits or rolls them back as usual.
+ *
+ * @author agent
+ */
+public class ParallelStatementExecute extends BaseMultiStatementExecute {
+
+	private static final StringManager stringMgr = StringManagerFactory
+			.getStringManager(ParallelStatementExecute.class);
+
+	/**
+	 * Line comment which starts a new group of statements in the editor, for example:
+	 * <pre>
+	 * --@group
+	 * DELETE FROM T1;
+	 * </pre>
+	 */
+	public static final String GROUP_MARKER = "--@group";
+
+	private final List<Lane> lanes;
+
+	private final int workerCount;
+
+	private String encoding = null;
+
+	/**
+	 * Executers of the lanes being executed.
+	 */
+	private final List<BaseMultiStatementExecute> running = Collections
+			.synchronizedList(new ArrayList<BaseMultiStatementExecute>());
+
+	private final AtomicInteger nextLane = new AtomicInteger(0);
+
+	private final AtomicInteger progress = new AtomicInteger(0);
+
+	private int failedLaneCount = 0;
+
+	private ParallelStatementExecute(Bookmark bookmark, List<Lane> lanes, int workerCount) {
+		super(bookmark);
+		this.lanes = lanes;
+		this.workerCount = Math.max(1, workerCount);
+	}
+
+	/**
+	 * Return the number of connections used at most, as set by the user.
+	 */
+	public static int getDefaultWorkerCount() {
+		return Setting.getInstance().getIntProperty(
+				PropertyConstant.PROPERTY_VIEW_SQLEDITOR_PARALLEL_WORKERS, 4);
+	}
+
+	/**
+	 * Create an executer which runs each file in a lane.
+	 *
+	 * @param workerCount --number of connections used at most.
+	 */
+	public static ParallelStatementExecute createForFiles(Bookmark bookmark,
+			List<File> files, int workerCount) {
+		List<Lane> lanes = new ArrayList<Lane>();
+		for (File file : files)
+			lanes.add(new FileLane(file));
+		return new ParallelStatementExecute(bookmark, lanes, workerCount);
+	}
+
+	/**
+	 * Create an executer which runs each group of statements in a lane.
+	 *
+	 * @param groups --statements of each group, see {@link #splitGroups(String)}.
+	 * @param workerCount --number of connections used at most.
+	 */
+	public static ParallelStatementExecute createForStatements(Bookmark bookmark,
+			List<List<String>> groups, int workerCount) {
+		List<Lane> lanes = new ArrayList<Lane>();
+		for (int i = 0; i < groups.size(); i++)
+			lanes.add(new StatementLane(stringMgr.getString("parallel.lane.group", i + 1),
+					groups.get(i)));
+		return new ParallelStatementExecute(bookmark, lanes, workerCount);
+	}
+
+	/**
+	 * Split a script into the parts separated by lines which only hold
+	 * {@link #GROUP_MARKER}, the marker lines are removed. The script is returned
+	 * as the only part if it has no marker.
+	 */
+	public static List<String> splitGroups(String script) {
+		List<String> parts = new ArrayList<String>();
+		int partStart = 0;
+		int lineStart = 0;
+		while (lineStart <= script.length()) {
+			int lineEnd = script.indexOf('\n', lineStart);
+			if (lineEnd < 0)
+				lineEnd = script.length();
+			if (isGroupMarker(script.substring(lineStart, lineEnd))) {
+				parts.add(script.substring(partStart, lineStart));
+				partStart = Math.min(lineEnd + 1, script.length());
+			}
+			lineStart = lineEnd + 1;
+		}
+		parts.add(script.substring(partStart));
+		return parts;
+	}
+
+	private static boolean isGroupMarker(String line) {
+		line = line.trim();
+		if (!line.startsWith("--"))
+			return false;
+		return line.substring(2).trim().equalsIgnoreCase(GROUP_MARKER.substring(2));
+	}
+
+	public void cancel() {
+		cancelExecution = true;
+		BaseMultiStatementExecute[] executers;
+		synchronized (running) {
+			executers = running.toArray(new BaseMultiStatementExecute[running.size()]);
+		}
+		for (BaseMultiStatementExecute executer : executers)
+			executer.cancel();
+	}
+
+	public void execute() {
+		long start = System.currentTimeMillis();
+		int taskLength = 0;
+		for (Lane lane : lanes)
+			taskLength += lane.getTaskLength();
+		fireTaskLengthChanged(taskLength);
+
+		ConnectionPool pool = bookmark.getConnectionPool();
+		int workers = Math.min(workerCount, lanes.size());
+		if (!bookmark.isAutoCommit()) {
+			String msg = stringMgr.getString("parallel.manualcommit", bookmark
+					.getAliasName());
+			LogProxy.getProxy().info(msg);
+			printMessage(msg);
+			workers = Math.min(workers, 1);
+		} else if (pool == null) {
+			String msg = stringMgr.getString("parallel.error.noconnection", bookmark
+					.getAliasName());
+			LogProxy.errorMessage(msg);
+			printMessage(msg);
+			workers = 0;
+			failedLaneCount = lanes.size();
+		} else
+			workers = Math.min(workers, pool.getStatistics().getMaxSize());
+
+		String msg = stringMgr.getString("parallel.start", lanes.size(), workers);
+		fireMessageChanged(msg);
+		printMessage(msg);
+		LogProxy.getProxy().info(msg);
+
+		if (workers > 0) {
+			TaskGroup group = TaskExecutor.getInstance().createGroup("parallel script",
+					TaskExecutor.PRIORITY_BATCH, bookmark, workers);
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int i = 0; i < workers; i++) {
+				final int worker = i + 1;
+				futures.add(group.submit(new Runnable() {
+					public void run() {
+						runWorker(worker);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					cancel();
+					break;
+				} catch (Exception e) {
+					LogProxy.errorLog("parallel worker failed", e);
+				}
+			}
+			//Lanes which no worker could run, since no connection was borrowed
+			int skipped = lanes.size() - Math.min(nextLane.get(), lanes.size());
+			if (skipped > 0 && !cancelExecution)
+				failedLaneCount += skipped;
+		}
+
+		long end = System.currentTimeMillis();
+		msg = stringMgr.getString("parallel.summary", lanes.size(), workers, end - start,
+				executionTime, updatedRowCount, failedLaneCount);
+		LogProxy.getProxy().info(msg);
+		printMessage(msg);
+		fireMessageChanged(msg);
+		this.isSuccess = !(failedLaneCount > 0 && (abortOnError || workers == 0));
+		isFinished = true;
+		try {
+			if (resultLogger != null)
+				resultLogger.finishLog();
+		} finally {
+			fireMessageChanged(stringMgr.getString("batchprocess.execute.finished"));
+		}
+	}
+
+	/**
+	 * Execute lanes one after another on a borrowed connection until there is no lane
+	 * left, see {@link Bookmark#borrowConnection()}.
+	 */
+	private void runWorker(int worker) {
+		Connection con;
+		try {
+			con = bookmark.borrowConnection();
+		} catch (Exception e) {
+			String msg = stringMgr.getString("parallel.error.borrow", worker)
+					+ ExceptionUtil.getDisplay(e);
+			LogProxy.errorLog(msg, e);
+			printMessage(msg);
+			return;
+		}
+		try {
+			while (!cancelExecution) {
+				int index = nextLane.getAndIncrement();
+				if (index >= lanes.size())
+					break;
+				runLane(worker, lanes.get(index), con);
+			}
+		} catch (Throwable e) {
+			LogProxy.errorReport(stringMgr.getString("batchprocess.error"), e);
+			printMessage(ExceptionUtil.getDisplay(e));
+			laneFailed();
+		} finally {
+			bookmark.releaseConnection(con);
+		}
+	}
+
+	private void runLane(int worker, Lane lane, Connection con) {
+		final String prefix = "[" + worker + ": " + lane.getName() + "] ";
+		BaseMultiStatementExecute executer = lane.create(bookmark, con, encoding);
+		executer.setAbortOnError(abortOnError);
+		executer.setVerboseLogging(verboseLogging);
+		executer.setBatchEnabled(isBatchEnabled);
+		if (resultLogger != null)
+			executer.setExecuteLogger(new LaneLogger(resultLogger, prefix));
+		executer.addPropertyListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (evt.getPropertyName().equals(PROPERTY_MESSAGE)) {
+					fireMessageChanged(prefix + evt.getNewValue());
+				} else if (evt.getPropertyName().equals(PROPERTY_PROGRESS)) {
+					int value = progress.incrementAndGet();
+					fireProgressChanged(value - 1, value);
+				}
+			}
+		});
+		running.add(executer);
+		QueryRegistry.setOwner(prefix.trim());
+		try {
+			if (!cancelExecution)
+				executer.execute();
+		} finally {
+			QueryRegistry.setOwner(null);
+			running.remove(executer);
+		}
+		if (lane.isProgressOnFinish()) {
+			int value = progress.incrementAndGet();
+			fireProgressChanged(value - 1, value);
+		}
+		synchronized (this) {
+			executedCount += executer.getExecutedCount();
+			updatedRowCount += executer.getUpdatedRowCount();
+			executionTime += executer.getExecutionTime();
+		}
+		if (!executer.isSuccess())
+			laneFailed();
+	}
+
+	private void laneFailed() {
+		synchronized (this) {
+			failedLaneCount++;
+		}
+		if (abortOnError)
+			cancel();
+	}
+
+	/**
+	 * Fire the events one at a time, since workers fire them concurrently.
+	 */
+	protected synchronized void firePropertyEvent(PropertyChangeEvent e) {
+		super.firePropertyEvent(e);
+	}
+
+	/**
+	 * @return the encoding of script files
+	 */
+	public String getEncoding() {
+		return this.encoding;
+	}
+
+	/**
+	 * @param encoding
+	 *            the encoding of script files to set
+	 */
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * A unit executed in order on one connection.
+	 */
+	private static abstract class Lane {
+
+		abstract String getName();
+
+		/**
+		 * Return the number of progress steps of the lane.
+		 */
+		abstract int getTaskLength();
+
+		/**
+		 * Return true if the lane makes one progress step when it has finished,
+		 * otherwise its executer reports a step for each statement.
+		 */
+		abstract boolean isProgressOnFinish();
+
+		abstract BaseMultiStatementExecute create(Bookmark bookmark, Connection con,
+				String encoding);
+	}
+
+	private static class FileLane extends Lane {
+
+		private final File file;
+
+		FileLane(File file) {
+			this.file = file;
+		}
+
+		String getName() {
+			return file.getName();
+		}
+
+		int getTaskLength() {
+			return 1;
+		}
+
+		boolean isProgressOnFinish() {
+			return true;
+		}
+
+		BaseMultiStatementExecute create(Bookmark bookmark, Connection con, String encoding) {
+			List<File> files = new ArrayList<File>();
+			files.add(file);
+			ScriptStatementExecute executer = new ScriptStatementExecute(bookmark, con, files);
+			executer.setEncoding(encoding);
+			return executer;
+		}
+	}
+
+	private static class StatementLane extends Lane {
+
+		private final String name;
+
+		private final List<String> sqls;
+
+		StatementLane(String name, List<String> sqls) {
+			this.name = name;
+			this.sqls = sqls;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		int getTaskLength() {
+			return sqls.size();
+		}
+
+		boolean isProgressOnFinish() {
+			return false;
+		}
+
+		BaseMultiStatementExecute create(Bookmark bookmark, Connection con, String encoding) {
+			return new MultiStatementExecute(bookmark, con, sqls);
+		}
+	}
+
+	/**
+	 * Writes the messages of a lane to the logger of the whole execution, the
+	 * messages are prefixed by the lane, and the logger isn't finished by the lane.
+	 */
+	private static class LaneLogger implements ILogger {
+
+		private final ILogger logger;
+
+		private final String prefix;
+
+		LaneLogger(ILogger logger, String prefix) {
+			this.logger = logger;
+			this.prefix = prefix;
+		}
+
+		public void appendLog(Object ob) {
+			synchronized (logger) {
+				logger.appendLog(prefix + ob);
+			}
+		}
+
+		public void finishLog() {
+		}
+	}
+}
@@ -6,6 +6,7 @@ package com.cattsoft.coolsql.sql.execute;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -64,10 +65,20 @@ public class ScriptStatementExecute extends BaseMultiStatementExecute {
 		if (filenames == null)
 			filenames = new ArrayList<File>();
 	}
+	/**
+	 * @param connection --the connection statements are executed in, null means the
+	 *            connection of bookmark.
+	 */
+	public ScriptStatementExecute(Bookmark bookmark, Connection connection,
+			List<File> filenames) {
+		super(bookmark, connection, null);
+		this.filenames = filenames != null ? filenames : new ArrayList<File>();
+	}
 	public void cancel() {
 		cancelExecution = true;
 		if (this.statementExecuter != null)
 			statementExecuter.cancel();
+		cancelBatch();
 	}
 	public void execute() {
 		boolean isError = false;
@@ -154,7 +165,7 @@ public class ScriptStatementExecute extends BaseMultiStatementExecute {
 				continue;
 
 			try {
-				error = executeSingleStatement(sql);
+				error = executeStatement(sql, parser.getLastCommandLine());
 				if (this.cancelExecution) {
 					String msg = stringMgr
 							.getString("batchprocess.execute.cancel");
@@ -175,6 +186,10 @@ public class ScriptStatementExecute extends BaseMultiStatementExecute {
 			if (error && abortOnError)
 				break;
 		}
+		if (error && abortOnError)
+			discardBatch();
+		else
+			error = finishBatch() || error;
 
 		end = System.currentTimeMillis();
 
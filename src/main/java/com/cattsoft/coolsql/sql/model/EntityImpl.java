@@ -138,7 +138,7 @@ public abstract class EntityImpl implements Entity {
     public Column[] getColumns() throws UnifyException, SQLException {
         if (columns != null)
             return columns;
-        Connection connection = bookmark.getConnection();
+        Connection connection = bookmark.getMetaConnection();
         try {
             columns = getColumnsFromMetaData(connection);
             return columns;
@@ -282,7 +282,7 @@ public abstract class EntityImpl implements Entity {
         if (iniComment != null && iniComment.length() > 0)
             return iniComment;
         String comment = "";
-            Connection con = bookmark.getConnection();
+            Connection con = bookmark.getMetaConnection();
             DatabaseAdapter adapter = bookmark.getAdapter();
             Statement stmt = con.createStatement();
             try {
@@ -309,7 +309,7 @@ public abstract class EntityImpl implements Entity {
     public Index[] getIndexes() throws UnifyException, SQLException{
         List indexList = new ArrayList();
         Map temp = new HashMap();
-            Connection connection = bookmark.getConnection();
+            Connection connection = bookmark.getMetaConnection();
             DatabaseMetaData metaData = connection.getMetaData();
             ResultSet resultSet;
             IndexImpl index;
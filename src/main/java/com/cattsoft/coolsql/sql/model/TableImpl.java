@@ -27,7 +27,7 @@ public class TableImpl extends EntityImpl implements Table {
         Integer size = null;
         try {
             size = new Integer(getBookmark().getDbInfoProvider().getSize(getBookmark(),
-                    getBookmark().getConnection(), getQualifiedName(),
+                    getBookmark().getMetaConnection(), getQualifiedName(),
                     getBookmark().getAdapter()));
         } catch (SQLException sqlexception) {
         } catch (UnifyException connectionexception) {
@@ -44,7 +44,7 @@ public class TableImpl extends EntityImpl implements Table {
     {
     	if(pkInfoForCache==null)
     	{
-	    	DatabaseMetaData metaData=getBookmark().getConnection().getMetaData();
+	    	DatabaseMetaData metaData=getBookmark().getMetaConnection().getMetaData();
 	    	PrimaryKey pk=null;
 	    	try
 	    	{
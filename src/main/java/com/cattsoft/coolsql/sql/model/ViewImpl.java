@@ -23,7 +23,7 @@ public class ViewImpl extends EntityImpl
         Integer size = null;
         try
         {
-            size = new Integer(getBookmark().getDbInfoProvider().getSize(getBookmark(), getBookmark().getConnection(), getQualifiedName(), getBookmark().getAdapter()));
+            size = new Integer(getBookmark().getDbInfoProvider().getSize(getBookmark(), getBookmark().getMetaConnection(), getQualifiedName(), getBookmark().getAdapter()));
         }
         catch(SQLException sqlexception) { }
         catch(UnifyException connectionexception) { }
@@ -0,0 +1,405 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cattsoft.coolsql.sql.ResultSetReader;
+
+/**
+ * Values of one column of a result. The values are kept in chunks of CHUNK_SIZE
+ * rows, so that appending rows doesn't copy the values of the full chunks.
+ * <p>
+ * Subclasses keep the values of the column type in primitive arrays. A null cell
+ * is marked in a bitmap, and a value which isn't of the column type (such as a
+ * string typed by user in a numeric cell) is kept aside in a map.
+ * <p>
+ * The estimated heap size of the column is updated each time an array is allocated
+ * or a value is changed, so reading it doesn't walk the values.
+ *
+ * @author agent
+ */
+abstract class ColumnStore {
+
+	static final int CHUNK_BITS = 10;
+
+	/**
+	 * Number of rows of a chunk.
+	 */
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Initial length of the first chunk. The first chunk grows up to CHUNK_SIZE, so a
+	 * small page doesn't allocate full chunks.
+	 */
+	static final int FIRST_CHUNK_SIZE = 64;
+
+	/**
+	 * Estimated size of an array header in bytes.
+	 */
+	static final int ARRAY_HEADER = 16;
+
+	/**
+	 * Estimated size of an object reference in bytes.
+	 */
+	static final int REFERENCE_SIZE = 4;
+
+	/**
+	 * Estimated size of a value kept aside: a HashMap entry and a boxed key.
+	 */
+	static final int OTHER_ENTRY_SIZE = 48;
+
+	/**
+	 * Null marks of cells, a long array of one bit per row for each chunk.
+	 */
+	private final List<long[]> nullChunks = new ArrayList<long[]>();
+
+	/**
+	 * Values which can't be kept in the chunks, mapped by row. It's created when it
+	 * is needed.
+	 */
+	private Map<Integer, Object> others = null;
+
+	private int size = 0;
+
+	/**
+	 * Estimated heap size of the column in bytes.
+	 */
+	private long memorySize = 0;
+
+	/**
+	 * Number of rows which the allocated chunks can hold.
+	 */
+	private int capacity = 0;
+
+	/**
+	 * Create the column store which fits the JDBC type.
+	 */
+	static ColumnStore create(int sqlType) {
+		switch (sqlType) {
+		case Types.INTEGER:
+		case Types.SMALLINT:
+		case Types.TINYINT:
+			return new IntColumnStore();
+		case Types.BIGINT:
+			return new LongColumnStore();
+		case Types.DOUBLE:
+		case Types.FLOAT:
+		case Types.REAL:
+			return new DoubleColumnStore();
+		case Types.DATE:
+			return new DateColumnStore(java.sql.Date.class);
+		case Types.TIME:
+			return new DateColumnStore(java.sql.Time.class);
+		case Types.TIMESTAMP:
+		case -101: // Oracle's 'TIMESTAMP WITH TIME ZONE'
+		case -102: // Oracle's 'TIMESTAMP WITH LOCAL TIME ZONE'
+			return new DateColumnStore(java.sql.Timestamp.class);
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case -9: // NVARCHAR
+		case -15: // NCHAR
+			return new StringColumnStore();
+		default:
+			return new ObjectColumnStore();
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void add(Object value) {
+		set(append(), value);
+	}
+
+	/**
+	 * Append an integer value, the value is boxed unless the column keeps ints.
+	 */
+	void addInt(int value) {
+		add(Integer.valueOf(value));
+	}
+
+	/**
+	 * Append a long value, the value is boxed unless the column keeps longs.
+	 */
+	void addLong(long value) {
+		add(Long.valueOf(value));
+	}
+
+	/**
+	 * Append a double value, the value is boxed unless the column keeps doubles.
+	 */
+	void addDouble(double value) {
+		add(Double.valueOf(value));
+	}
+
+	/**
+	 * Append a row which isn't null and whose value is to be written in the chunks by
+	 * the caller.
+	 *
+	 * @return the index of the new row.
+	 */
+	int append() {
+		if (size == capacity) {
+			int chunk = size >> CHUNK_BITS;
+			int length = CHUNK_SIZE;
+			if (chunk == 0)
+				length = Math.min(Math.max(FIRST_CHUNK_SIZE, capacity * 2), CHUNK_SIZE);
+			long[] bits = new long[(length + 63) >> 6];
+			if (chunk < nullChunks.size()) {
+				long[] old = nullChunks.get(chunk);
+				System.arraycopy(old, 0, bits, 0, old.length);
+				nullChunks.set(chunk, bits);
+				memorySize += 8L * (bits.length - old.length);
+			} else {
+				nullChunks.add(bits);
+				memorySize += ARRAY_HEADER + 8L * bits.length;
+			}
+			growChunk(chunk, length);
+			capacity = (chunk << CHUNK_BITS) + length;
+		}
+		size++;
+		setNull(size - 1, false);
+		return size - 1;
+	}
+
+	Object get(int row) {
+		checkRow(row);
+		if (isNull(row))
+			return ResultSetReader.NULL_VALUE;
+		if (others != null) {
+			Integer key = Integer.valueOf(row);
+			if (others.containsKey(key))
+				return others.get(key);
+		}
+		return getValue(row);
+	}
+
+	void set(int row, Object value) {
+		checkRow(row);
+		if (others != null && others.containsKey(Integer.valueOf(row)))
+			memorySize -= OTHER_ENTRY_SIZE + estimateSize(others.remove(Integer.valueOf(row)));
+		if (ResultSetReader.NULL_VALUE.equals(value)) {
+			setNull(row, true);
+			clearValue(row);
+			return;
+		}
+		setNull(row, false);
+		if (value == null || !setValue(row, value)) {
+			clearValue(row);
+			if (others == null)
+				others = new HashMap<Integer, Object>();
+			others.put(Integer.valueOf(row), value);
+			memorySize += OTHER_ENTRY_SIZE + estimateSize(value);
+		}
+	}
+
+	/**
+	 * Remove the value of the row, the values after it are moved up.
+	 */
+	void remove(int row) {
+		removeRows(new int[] { row });
+	}
+
+	/**
+	 * Remove the values of the rows, the values after them are moved up. The values
+	 * are moved once, so removing many rows costs a single pass over the column.
+	 *
+	 * @param rows --indices of the rows in ascending order, without duplicates.
+	 */
+	void removeRows(int[] rows) {
+		if (rows.length == 0)
+			return;
+		checkRow(rows[0]);
+		checkRow(rows[rows.length - 1]);
+		int target = rows[0];
+		int next = 0;
+		for (int i = rows[0]; i < size; i++) {
+			if (next < rows.length && rows[next] == i) {
+				next++;
+				continue;
+			}
+			set(target++, get(i));
+		}
+		for (int i = target; i < size; i++)
+			set(i, ResultSetReader.NULL_VALUE);
+		size = target;
+	}
+
+	/**
+	 * Return the estimated heap size of the column in bytes.
+	 */
+	long getMemorySize() {
+		return memorySize;
+	}
+
+	/**
+	 * Add the heap size of allocated arrays or referenced values to the estimated
+	 * size of the column, a released size is given as a negative value.
+	 */
+	void addMemorySize(long bytes) {
+		memorySize += bytes;
+	}
+
+	/**
+	 * Return the heap size taken by growing a chunk array.
+	 *
+	 * @param oldLength --the length of the array which is replaced, -1 if the chunk
+	 *            is new.
+	 * @param elementSize --the size of an element in bytes.
+	 */
+	static long getGrowthSize(int oldLength, int length, int elementSize) {
+		if (oldLength < 0)
+			return ARRAY_HEADER + (long) elementSize * length;
+		return (long) elementSize * (length - oldLength);
+	}
+
+	/**
+	 * Return true if the value of the row is kept in the chunks of the column.
+	 */
+	boolean isStored(int row) {
+		return !isNull(row)
+				&& (others == null || !others.containsKey(Integer.valueOf(row)));
+	}
+
+	/**
+	 * Return true if the value of the row is kept in the chunks, otherwise the row is
+	 * set in nulls if the cell is null, or in otherRows if its value is kept aside.
+	 *
+	 * @param index --the index of the row in the bit sets.
+	 */
+	boolean isStored(int row, int index, BitSet nulls, BitSet otherRows) {
+		if (isNull(row)) {
+			nulls.set(index);
+			return false;
+		}
+		if (others != null && others.containsKey(Integer.valueOf(row))) {
+			otherRows.set(index);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Read the first rows of the column as integral numbers, without boxing them. The
+	 * value of a row is put at offset + row in the returned array, the rows whose value
+	 * isn't kept in the chunks are set in nulls or otherRows, see
+	 * {@link #isStored(int, int, BitSet, BitSet)}.
+	 *
+	 * @return null if the column doesn't keep integral numbers.
+	 */
+	long[] readLongs(int offset, int count, BitSet nulls, BitSet otherRows) {
+		return null;
+	}
+
+	/**
+	 * Read the first rows of the column as floating numbers, see
+	 * {@link #readLongs(int, int, BitSet, BitSet)}.
+	 *
+	 * @return null if the column doesn't keep floating numbers.
+	 */
+	double[] readDoubles(int offset, int count, BitSet nulls, BitSet otherRows) {
+		return null;
+	}
+
+	/**
+	 * Read the first rows of the column as times in milliseconds, see
+	 * {@link #readLongs(int, int, BitSet, BitSet)}.
+	 *
+	 * @return null if the column doesn't keep dates.
+	 */
+	long[] readTimes(int offset, int count, BitSet nulls, BitSet otherRows) {
+		return null;
+	}
+
+	/**
+	 * Read the nanoseconds of the first rows of the column, the rows which aren't
+	 * kept in the chunks are left to 0.
+	 *
+	 * @return null if the column doesn't keep timestamps.
+	 */
+	int[] readNanos(int offset, int count) {
+		return null;
+	}
+
+	/**
+	 * Read the first rows of the column as strings, see
+	 * {@link #readLongs(int, int, BitSet, BitSet)}.
+	 *
+	 * @return null if the column doesn't keep strings.
+	 */
+	String[] readStrings(int offset, int count, BitSet nulls, BitSet otherRows) {
+		return null;
+	}
+
+	/**
+	 * Append a new chunk of the specified length to the column, or grow the chunk to
+	 * the length if it exists.
+	 */
+	abstract void growChunk(int chunk, int length);
+
+	/**
+	 * Return the value of the row which is kept in the chunks.
+	 */
+	abstract Object getValue(int row);
+
+	/**
+	 * Keep the value in the chunks.
+	 *
+	 * @return false if the value isn't of the column type.
+	 */
+	abstract boolean setValue(int row, Object value);
+
+	/**
+	 * Release the value of the row which is kept in the chunks, it's called when the
+	 * cell becomes null or its value is kept aside.
+	 */
+	void clearValue(int row) {
+	}
+
+	/**
+	 * Estimate the heap size of a cell value in bytes.
+	 */
+	static long estimateSize(Object value) {
+		if (value == null || value instanceof Boolean)
+			return 0;
+		if (value instanceof String)
+			return 40 + 2 * ((String) value).length();
+		if (value instanceof Integer || value instanceof Short
+				|| value instanceof Byte || value instanceof Float)
+			return 16;
+		if (value instanceof Long || value instanceof Double)
+			return 24;
+		if (value instanceof BigDecimal)
+			return 64 + ((BigDecimal) value).unscaledValue().bitLength() / 8;
+		return 32;
+	}
+
+	private boolean isNull(int row) {
+		long[] bits = nullChunks.get(row >> CHUNK_BITS);
+		int offset = row & CHUNK_MASK;
+		return (bits[offset >> 6] & (1L << (offset & 63))) != 0;
+	}
+
+	private void setNull(int row, boolean isNull) {
+		long[] bits = nullChunks.get(row >> CHUNK_BITS);
+		int offset = row & CHUNK_MASK;
+		if (isNull)
+			bits[offset >> 6] |= 1L << (offset & 63);
+		else
+			bits[offset >> 6] &= ~(1L << (offset & 63));
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= size)
+			throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+	}
+}
@@ -0,0 +1,106 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Column of java.sql.Date, java.sql.Time or java.sql.Timestamp values. The time in
+ * milliseconds is kept in long arrays, and the nanoseconds of timestamps are kept in
+ * int arrays.
+ *
+ * @author agent
+ */
+class DateColumnStore extends ColumnStore {
+
+	private final Class<? extends Date> type;
+
+	private final List<long[]> timeChunks = new ArrayList<long[]>();
+
+	/**
+	 * Nanoseconds of timestamps, null if the column isn't a timestamp column.
+	 */
+	private final List<int[]> nanoChunks;
+
+	DateColumnStore(Class<? extends Date> type) {
+		this.type = type;
+		nanoChunks = type == Timestamp.class ? new ArrayList<int[]>() : null;
+	}
+
+	void growChunk(int chunk, int length) {
+		long[] times = new long[length];
+		if (chunk < timeChunks.size()) {
+			long[] old = timeChunks.get(chunk);
+			System.arraycopy(old, 0, times, 0, old.length);
+			timeChunks.set(chunk, times);
+			addMemorySize(getGrowthSize(old.length, length, 8));
+		} else {
+			timeChunks.add(times);
+			addMemorySize(getGrowthSize(-1, length, 8));
+		}
+		if (nanoChunks == null)
+			return;
+		int[] nanos = new int[length];
+		if (chunk < nanoChunks.size()) {
+			int[] old = nanoChunks.get(chunk);
+			System.arraycopy(old, 0, nanos, 0, old.length);
+			nanoChunks.set(chunk, nanos);
+			addMemorySize(getGrowthSize(old.length, length, 4));
+		} else {
+			nanoChunks.add(nanos);
+			addMemorySize(getGrowthSize(-1, length, 4));
+		}
+	}
+
+	Object getValue(int row) {
+		long time = getTime(row);
+		if (type == Timestamp.class) {
+			Timestamp value = new Timestamp(time);
+			value.setNanos(nanoChunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK]);
+			return value;
+		}
+		if (type == Time.class)
+			return new Time(time);
+		return new java.sql.Date(time);
+	}
+
+	boolean setValue(int row, Object value) {
+		if (value.getClass() != type)
+			return false;
+		timeChunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK] = ((Date) value).getTime();
+		if (nanoChunks != null)
+			nanoChunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK] = ((Timestamp) value).getNanos();
+		return true;
+	}
+
+	/**
+	 * Return the time in milliseconds of the row, the row must be stored in the
+	 * chunks.
+	 */
+	long getTime(int row) {
+		return timeChunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK];
+	}
+
+	long[] readTimes(int offset, int count, BitSet nulls, BitSet otherRows) {
+		long[] values = new long[offset + count];
+		for (int row = 0; row < count; row++) {
+			if (isStored(row, offset + row, nulls, otherRows))
+				values[offset + row] = getTime(row);
+		}
+		return values;
+	}
+
+	int[] readNanos(int offset, int count) {
+		if (nanoChunks == null)
+			return null;
+		int[] values = new int[offset + count];
+		for (int row = 0; row < count; row++) {
+			if (isStored(row))
+				values[offset + row] = nanoChunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK];
+		}
+		return values;
+	}
+}
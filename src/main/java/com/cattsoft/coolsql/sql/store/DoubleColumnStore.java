@@ -0,0 +1,60 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Column of floating point values which are kept in double arrays.
+ *
+ * @author agent
+ */
+class DoubleColumnStore extends ColumnStore {
+
+	private final List<double[]> chunks = new ArrayList<double[]>();
+
+	void growChunk(int chunk, int length) {
+		double[] values = new double[length];
+		if (chunk < chunks.size()) {
+			double[] old = chunks.get(chunk);
+			System.arraycopy(old, 0, values, 0, old.length);
+			chunks.set(chunk, values);
+			addMemorySize(getGrowthSize(old.length, length, 8));
+		} else {
+			chunks.add(values);
+			addMemorySize(getGrowthSize(-1, length, 8));
+		}
+	}
+
+	Object getValue(int row) {
+		return Double.valueOf(chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK]);
+	}
+
+	boolean setValue(int row, Object value) {
+		if (value.getClass() != Double.class)
+			return false;
+		chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK] = ((Double) value).doubleValue();
+		return true;
+	}
+
+	void addDouble(double value) {
+		int row = append();
+		chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK] = value;
+	}
+
+	/**
+	 * Return the value of the row as primitive, the row must be stored in the chunks.
+	 */
+	double getDouble(int row) {
+		return chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK];
+	}
+
+	double[] readDoubles(int offset, int count, BitSet nulls, BitSet otherRows) {
+		double[] values = new double[offset + count];
+		for (int row = 0; row < count; row++) {
+			if (isStored(row, offset + row, nulls, otherRows))
+				values[offset + row] = getDouble(row);
+		}
+		return values;
+	}
+}
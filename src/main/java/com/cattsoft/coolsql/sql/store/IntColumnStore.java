@@ -0,0 +1,60 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Column of integer values which are kept in int arrays.
+ *
+ * @author agent
+ */
+class IntColumnStore extends ColumnStore {
+
+	private final List<int[]> chunks = new ArrayList<int[]>();
+
+	void growChunk(int chunk, int length) {
+		int[] values = new int[length];
+		if (chunk < chunks.size()) {
+			int[] old = chunks.get(chunk);
+			System.arraycopy(old, 0, values, 0, old.length);
+			chunks.set(chunk, values);
+			addMemorySize(getGrowthSize(old.length, length, 4));
+		} else {
+			chunks.add(values);
+			addMemorySize(getGrowthSize(-1, length, 4));
+		}
+	}
+
+	Object getValue(int row) {
+		return Integer.valueOf(chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK]);
+	}
+
+	boolean setValue(int row, Object value) {
+		if (value.getClass() != Integer.class)
+			return false;
+		chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK] = ((Integer) value).intValue();
+		return true;
+	}
+
+	void addInt(int value) {
+		int row = append();
+		chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK] = value;
+	}
+
+	/**
+	 * Return the value of the row as primitive, the row must be stored in the chunks.
+	 */
+	int getInt(int row) {
+		return chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK];
+	}
+
+	long[] readLongs(int offset, int count, BitSet nulls, BitSet otherRows) {
+		long[] values = new long[offset + count];
+		for (int row = 0; row < count; row++) {
+			if (isStored(row, offset + row, nulls, otherRows))
+				values[offset + row] = getInt(row);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,60 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Column of long values which are kept in long arrays.
+ *
+ * @author agent
+ */
+class LongColumnStore extends ColumnStore {
+
+	private final List<long[]> chunks = new ArrayList<long[]>();
+
+	void growChunk(int chunk, int length) {
+		long[] values = new long[length];
+		if (chunk < chunks.size()) {
+			long[] old = chunks.get(chunk);
+			System.arraycopy(old, 0, values, 0, old.length);
+			chunks.set(chunk, values);
+			addMemorySize(getGrowthSize(old.length, length, 8));
+		} else {
+			chunks.add(values);
+			addMemorySize(getGrowthSize(-1, length, 8));
+		}
+	}
+
+	Object getValue(int row) {
+		return Long.valueOf(chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK]);
+	}
+
+	boolean setValue(int row, Object value) {
+		if (value.getClass() != Long.class)
+			return false;
+		chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK] = ((Long) value).longValue();
+		return true;
+	}
+
+	void addLong(long value) {
+		int row = append();
+		chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK] = value;
+	}
+
+	/**
+	 * Return the value of the row as primitive, the row must be stored in the chunks.
+	 */
+	long getLong(int row) {
+		return chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK];
+	}
+
+	long[] readLongs(int offset, int count, BitSet nulls, BitSet otherRows) {
+		long[] values = new long[offset + count];
+		for (int row = 0; row < count; row++) {
+			if (isStored(row, offset + row, nulls, otherRows))
+				values[offset + row] = getLong(row);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,45 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Column of values which have no primitive representation, such as BigDecimal or
+ * the description of a blob. The values are referenced from object arrays.
+ *
+ * @author agent
+ */
+class ObjectColumnStore extends ColumnStore {
+
+	private final List<Object[]> chunks = new ArrayList<Object[]>();
+
+	void growChunk(int chunk, int length) {
+		Object[] values = new Object[length];
+		if (chunk < chunks.size()) {
+			Object[] old = chunks.get(chunk);
+			System.arraycopy(old, 0, values, 0, old.length);
+			chunks.set(chunk, values);
+			addMemorySize(getGrowthSize(old.length, length, REFERENCE_SIZE));
+		} else {
+			chunks.add(values);
+			addMemorySize(getGrowthSize(-1, length, REFERENCE_SIZE));
+		}
+	}
+
+	Object getValue(int row) {
+		return chunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK];
+	}
+
+	boolean setValue(int row, Object value) {
+		Object[] chunk = chunks.get(row >> CHUNK_BITS);
+		addMemorySize(estimateSize(value) - estimateSize(chunk[row & CHUNK_MASK]));
+		chunk[row & CHUNK_MASK] = value;
+		return true;
+	}
+
+	void clearValue(int row) {
+		Object[] chunk = chunks.get(row >> CHUNK_BITS);
+		addMemorySize(-estimateSize(chunk[row & CHUNK_MASK]));
+		chunk[row & CHUNK_MASK] = null;
+	}
+}
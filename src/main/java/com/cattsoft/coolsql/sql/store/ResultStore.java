@@ -0,0 +1,464 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.io.IOException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.cattsoft.coolsql.sql.RowSink;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Column oriented storage of the rows of a query result. Each column keeps its values
+ * in chunks of primitive arrays chosen by the JDBC type of the column, so numeric
+ * and date cells are not boxed, and repeated strings are kept once.
+ * <p>
+ * Values are read and written as objects, in the same form as produced by
+ * {@link com.cattsoft.coolsql.sql.ResultSetReader}, including its null marker. Row and
+ * column indices start with 0.
+ * <p>
+ * If a spill threshold is set, the rows are moved to a temporary file once they
+ * take more heap than the threshold. Spilled rows are read back one by one through
+ * an index of their offsets in the file, see {@link SpillFile}.
+ *
+ * @author agent
+ */
+public class ResultStore implements RowSink {
+
+	private final ColumnStore[] columns;
+
+	/**
+	 * JDBC types of the columns, null if the columns may keep any kind of value.
+	 */
+	private final int[] sqlTypes;
+
+	private int rowCount = 0;
+
+	/**
+	 * Max heap size of the rows in bytes before they are spilled, 0 means the rows
+	 * are never spilled.
+	 */
+	private long spillThreshold = 0;
+
+	private SpillFile spillFile = null;
+
+	/**
+	 * Offsets in the spill file of the rows which have been spilled, they are the
+	 * first rows of the store.
+	 */
+	private long[] spillOffsets = null;
+
+	private int spilledRowCount = 0;
+
+	/**
+	 * Create the store whose columns fit the JDBC types.
+	 *
+	 * @param sqlTypes --JDBC type of each column, see java.sql.Types.
+	 */
+	public ResultStore(int[] sqlTypes) {
+		this.sqlTypes = sqlTypes.clone();
+		columns = new ColumnStore[sqlTypes.length];
+		for (int i = 0; i < columns.length; i++)
+			columns[i] = ColumnStore.create(sqlTypes[i]);
+	}
+
+	/**
+	 * Create the store whose columns may keep any kind of value.
+	 */
+	public ResultStore(int columnCount) {
+		this.sqlTypes = null;
+		columns = new ColumnStore[columnCount];
+		for (int i = 0; i < columns.length; i++)
+			columns[i] = new ObjectColumnStore();
+	}
+
+	public synchronized int getRowCount() {
+		return rowCount;
+	}
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	/**
+	 * Append a row. Missing values are stored as null, extra values are ignored.
+	 */
+	public synchronized void addRow(Object[] row) {
+		for (int i = 0; i < columns.length; i++)
+			columns[i].add(row != null && i < row.length ? row[i] : null);
+		rowCount++;
+		checkSpill();
+	}
+
+	/**
+	 * Append a row. Missing values are stored as null, extra values are ignored.
+	 */
+	public synchronized void addRow(List<?> row) {
+		for (int i = 0; i < columns.length; i++)
+			columns[i].add(row != null && i < row.size() ? row.get(i) : null);
+		rowCount++;
+		checkSpill();
+	}
+
+	public synchronized void addInt(int column, int value) {
+		if (column < columns.length)
+			columns[column].addInt(value);
+	}
+
+	public synchronized void addLong(int column, long value) {
+		if (column < columns.length)
+			columns[column].addLong(value);
+	}
+
+	public synchronized void addDouble(int column, double value) {
+		if (column < columns.length)
+			columns[column].addDouble(value);
+	}
+
+	public synchronized void addObject(int column, Object value) {
+		if (column < columns.length)
+			columns[column].add(value);
+	}
+
+	/**
+	 * Complete the row whose values have been appended column by column. Columns
+	 * which haven't got a value are stored as null.
+	 */
+	public synchronized void endRow() {
+		int inHeap = rowCount - spilledRowCount;
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i].size() == inHeap)
+				columns[i].add(null);
+		}
+		rowCount++;
+		checkSpill();
+	}
+
+	public synchronized Object getValue(int row, int column) {
+		if (row < spilledRowCount) {
+			if (column < 0 || column >= columns.length)
+				throw new IndexOutOfBoundsException("column: " + column);
+			try {
+				return spillFile.readValue(spillOffsets[row], column);
+			} catch (IOException e) {
+				throw spillError(e);
+			}
+		}
+		return columns[column].get(row - spilledRowCount);
+	}
+
+	/**
+	 * Set the value of a cell. A spilled row is written again at the end of the spill
+	 * file with the new value.
+	 */
+	public synchronized void setValue(int row, int column, Object value) {
+		if (row < spilledRowCount) {
+			Object[] values = getRow(row);
+			values[column] = value;
+			try {
+				spillOffsets[row] = spillFile.append(values);
+			} catch (IOException e) {
+				throw spillError(e);
+			}
+			return;
+		}
+		columns[column].set(row - spilledRowCount, value);
+	}
+
+	/**
+	 * Copy the values of a column of consecutive rows into the target array, the
+	 * lock of the store is taken once for all the rows.
+	 */
+	public synchronized void readColumn(int column, int start, int count, Object[] target) {
+		if (column < 0 || column >= columns.length)
+			throw new IndexOutOfBoundsException("column: " + column);
+		int end = start + count;
+		int i = 0;
+		for (int row = start; row < end && row < spilledRowCount; row++, i++) {
+			try {
+				target[i] = spillFile.readValue(spillOffsets[row], column);
+			} catch (IOException e) {
+				throw spillError(e);
+			}
+		}
+		ColumnStore store = columns[column];
+		for (int row = Math.max(start, spilledRowCount); row < end; row++, i++)
+			target[i] = store.get(row - spilledRowCount);
+	}
+
+	/**
+	 * Read the first rows of a column as integral numbers, without boxing them. The
+	 * null cells are set in nulls. The rows whose value isn't kept as a number, such
+	 * as a value of another type or a spilled row, are set in otherRows: their
+	 * values are read by {@link #getValue(int, int)}.
+	 *
+	 * @return the values by row, null if the column doesn't keep integral numbers.
+	 */
+	public synchronized long[] readLongs(int column, int count, BitSet nulls,
+			BitSet otherRows) {
+		int spilled = Math.min(spilledRowCount, count);
+		long[] values = getColumn(column).readLongs(spilled, count - spilled, nulls,
+				otherRows);
+		if (values != null)
+			otherRows.set(0, spilled);
+		return values;
+	}
+
+	/**
+	 * Read the first rows of a column as floating numbers, see
+	 * {@link #readLongs(int, int, BitSet, BitSet)}.
+	 *
+	 * @return the values by row, null if the column doesn't keep floating numbers.
+	 */
+	public synchronized double[] readDoubles(int column, int count, BitSet nulls,
+			BitSet otherRows) {
+		int spilled = Math.min(spilledRowCount, count);
+		double[] values = getColumn(column).readDoubles(spilled, count - spilled, nulls,
+				otherRows);
+		if (values != null)
+			otherRows.set(0, spilled);
+		return values;
+	}
+
+	/**
+	 * Read the first rows of a column of dates as times in milliseconds, see
+	 * {@link #readLongs(int, int, BitSet, BitSet)}.
+	 *
+	 * @return the times by row, null if the column doesn't keep dates.
+	 */
+	public synchronized long[] readTimes(int column, int count, BitSet nulls,
+			BitSet otherRows) {
+		int spilled = Math.min(spilledRowCount, count);
+		long[] values = getColumn(column).readTimes(spilled, count - spilled, nulls,
+				otherRows);
+		if (values != null)
+			otherRows.set(0, spilled);
+		return values;
+	}
+
+	/**
+	 * Read the nanoseconds of the first rows of a column of timestamps, only the rows
+	 * read by {@link #readTimes(int, int, BitSet, BitSet)} are set, the others are 0.
+	 *
+	 * @return the nanoseconds by row, null if the column doesn't keep timestamps.
+	 */
+	public synchronized int[] readNanos(int column, int count) {
+		int spilled = Math.min(spilledRowCount, count);
+		return getColumn(column).readNanos(spilled, count - spilled);
+	}
+
+	/**
+	 * Read the first rows of a column as strings, see
+	 * {@link #readLongs(int, int, BitSet, BitSet)}.
+	 *
+	 * @return the values by row, null if the column doesn't keep strings.
+	 */
+	public synchronized String[] readStrings(int column, int count, BitSet nulls,
+			BitSet otherRows) {
+		int spilled = Math.min(spilledRowCount, count);
+		String[] values = getColumn(column).readStrings(spilled, count - spilled, nulls,
+				otherRows);
+		if (values != null)
+			otherRows.set(0, spilled);
+		return values;
+	}
+
+	private ColumnStore getColumn(int column) {
+		if (column < 0 || column >= columns.length)
+			throw new IndexOutOfBoundsException("column: " + column);
+		return columns[column];
+	}
+
+	/**
+	 * Return the JDBC type of the column, {@link Types#OTHER} if the column may keep
+	 * any kind of value.
+	 */
+	public int getColumnType(int column) {
+		return sqlTypes == null ? Types.OTHER : sqlTypes[column];
+	}
+
+	/**
+	 * Return a copy of the values of the row.
+	 */
+	public synchronized Object[] getRow(int row) {
+		if (row < spilledRowCount) {
+			try {
+				return spillFile.read(spillOffsets[row], columns.length);
+			} catch (IOException e) {
+				throw spillError(e);
+			}
+		}
+		Object[] values = new Object[columns.length];
+		for (int i = 0; i < columns.length; i++)
+			values[i] = columns[i].get(row - spilledRowCount);
+		return values;
+	}
+
+	/**
+	 * Remove the row, the rows after it are moved up.
+	 */
+	public synchronized void removeRow(int row) {
+		removeRows(new int[] { row });
+	}
+
+	/**
+	 * Remove the rows, the rows after them are moved up. The rows are removed in one
+	 * pass over each column, whatever the number of rows.
+	 *
+	 * @param rows --indices of the rows, in any order, duplicates are ignored.
+	 */
+	public synchronized void removeRows(int[] rows) {
+		if (rows.length == 0)
+			return;
+		int[] sorted = rows.clone();
+		Arrays.sort(sorted);
+		if (sorted[0] < 0 || sorted[sorted.length - 1] >= rowCount)
+			throw new IndexOutOfBoundsException("rows: " + sorted[0] + ".."
+					+ sorted[sorted.length - 1] + ", size: " + rowCount);
+
+		int spilled = 0;
+		int stored = 0;
+		int[] storedRows = new int[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			if (i > 0 && sorted[i] == sorted[i - 1])
+				continue;
+			if (sorted[i] < spilledRowCount)
+				sorted[spilled++] = sorted[i];
+			else
+				storedRows[stored++] = sorted[i] - spilledRowCount;
+		}
+		if (spilled > 0) {
+			int target = sorted[0];
+			int next = 0;
+			for (int i = sorted[0]; i < spilledRowCount; i++) {
+				if (next < spilled && sorted[next] == i) {
+					next++;
+					continue;
+				}
+				spillOffsets[target++] = spillOffsets[i];
+			}
+			spilledRowCount = target;
+		}
+		if (stored > 0) {
+			if (stored < storedRows.length) {
+				int[] copy = new int[stored];
+				System.arraycopy(storedRows, 0, copy, 0, stored);
+				storedRows = copy;
+			}
+			for (int i = 0; i < columns.length; i++)
+				columns[i].removeRows(storedRows);
+		}
+		rowCount -= spilled + stored;
+	}
+
+	/**
+	 * Return the estimated heap size of the stored values in bytes, the spilled rows
+	 * take only their offsets.
+	 */
+	public synchronized long getMemorySize() {
+		long memory = 0;
+		for (int i = 0; i < columns.length; i++)
+			memory += columns[i].getMemorySize();
+		if (spillOffsets != null)
+			memory += ColumnStore.ARRAY_HEADER + 8L * spillOffsets.length;
+		return memory;
+	}
+
+	/**
+	 * Set the heap size in bytes over which the rows are spilled to a temporary file.
+	 *
+	 * @param threshold --a value less than 1 means the rows are never spilled.
+	 */
+	public synchronized void setSpillThreshold(long threshold) {
+		this.spillThreshold = threshold < 1 ? 0 : threshold;
+	}
+
+	public synchronized long getSpillThreshold() {
+		return spillThreshold;
+	}
+
+	/**
+	 * Return true if some rows have been spilled to the temporary file.
+	 */
+	public synchronized boolean isSpilled() {
+		return spilledRowCount > 0;
+	}
+
+	/**
+	 * Return the number of bytes of the spill file, 0 if no row has been spilled.
+	 */
+	public synchronized long getSpillSize() {
+		return spillFile == null ? 0 : spillFile.length();
+	}
+
+	/**
+	 * Delete the spill file. The spilled rows can't be read anymore, so it's called
+	 * when the store isn't displayed any more.
+	 */
+	public synchronized void close() {
+		if (spillFile != null) {
+			spillFile.close();
+			spillFile = null;
+		}
+		spillThreshold = 0;
+	}
+
+	/**
+	 * Spill the rows in heap if they take more heap than the threshold. The heap size
+	 * is checked each time a chunk of rows is filled.
+	 */
+	private void checkSpill() {
+		int inHeap = rowCount - spilledRowCount;
+		if (spillThreshold < 1 || (inHeap & ColumnStore.CHUNK_MASK) != 0)
+			return;
+		long memory = 0;
+		for (int i = 0; i < columns.length; i++)
+			memory += columns[i].getMemorySize();
+		if (memory <= spillThreshold)
+			return;
+		try {
+			spill();
+		} catch (IOException e) {
+			LogProxy.errorLog("spilling rows to temporary file failed, rows are kept in heap", e);
+			spillThreshold = 0;
+		}
+	}
+
+	/**
+	 * Append the rows in heap to the spill file and release their columns.
+	 */
+	private void spill() throws IOException {
+		if (spillFile == null)
+			spillFile = SpillFile.create("coolsql-result");
+		if (spillOffsets == null || spillOffsets.length < rowCount) {
+			long[] grown = new long[Math.max(rowCount, spillOffsets == null ? 0
+					: spillOffsets.length * 2)];
+			if (spillOffsets != null)
+				System.arraycopy(spillOffsets, 0, grown, 0, spilledRowCount);
+			spillOffsets = grown;
+		}
+		int inHeap = rowCount - spilledRowCount;
+		Object[] values = new Object[columns.length];
+		for (int row = 0; row < inHeap; row++) {
+			for (int i = 0; i < columns.length; i++)
+				values[i] = columns[i].get(row);
+			spillOffsets[spilledRowCount + row] = spillFile.append(values);
+		}
+		spilledRowCount = rowCount;
+		for (int i = 0; i < columns.length; i++)
+			columns[i] = sqlTypes == null ? new ObjectColumnStore() : ColumnStore
+					.create(sqlTypes[i]);
+	}
+
+	private static IllegalStateException spillError(IOException e) {
+		return new IllegalStateException("reading spilled rows failed: " + e.getMessage(), e);
+	}
+
+	/**
+	 * Return the estimated heap size of a row in bytes, 0 if there is no row.
+	 */
+	public synchronized long getMemoryPerRow() {
+		return rowCount == 0 ? 0 : getMemorySize() / rowCount;
+	}
+}
@@ -0,0 +1,188 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the rows of a result store by the values of a column. If the rows of the
+ * store have been spilled, the values aren't loaded into heap all together: runs of
+ * rows which fit the spill threshold are sorted in heap and written to a temporary
+ * file, then the runs are merged. Only the resulting order of rows is kept in heap.
+ * <p>
+ * The sort is stable, rows of equal values keep their order.
+ *
+ * @author agent
+ */
+public class ResultStoreSorter {
+
+	/**
+	 * Estimated heap size of a value and its row number while a run is sorted.
+	 */
+	private static final int ENTRY_SIZE = 64;
+
+	private final ResultStore store;
+
+	private final int column;
+
+	private final Comparator<Object> comparator;
+
+	/**
+	 * Number of rows sorted in heap at once.
+	 */
+	private final int runSize;
+
+	/**
+	 * @param column --the column whose values the rows are sorted by, starts with 0.
+	 * @param comparator --comparator of the values of the column.
+	 */
+	public ResultStoreSorter(ResultStore store, int column, Comparator<Object> comparator) {
+		this.store = store;
+		this.column = column;
+		this.comparator = comparator;
+		long threshold = store.getSpillThreshold();
+		if (threshold < 1 || !store.isSpilled())
+			runSize = Integer.MAX_VALUE;
+		else
+			runSize = (int) Math.min(Integer.MAX_VALUE, Math.max(ColumnStore.CHUNK_SIZE,
+					threshold / ENTRY_SIZE));
+	}
+
+	/**
+	 * Return the value of the row which it's sorted by. Subclasses may override it to
+	 * sort by values which haven't been saved to the store.
+	 */
+	protected Object getValue(int row) {
+		return store.getValue(row, column);
+	}
+
+	/**
+	 * Sort the rows.
+	 *
+	 * @return the row numbers of the store in sorted order.
+	 */
+	public int[] sort() throws IOException {
+		int rowCount = store.getRowCount();
+		if (rowCount <= runSize) {
+			Entry[] run = readRun(0, rowCount);
+			int[] order = new int[rowCount];
+			for (int i = 0; i < rowCount; i++)
+				order[i] = run[i].row;
+			return order;
+		}
+		SpillFile runFile = SpillFile.create("coolsql-sort");
+		try {
+			PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(
+					rowCount / runSize + 1, new Comparator<RunCursor>() {
+						public int compare(RunCursor c1, RunCursor c2) {
+							int result = comparator.compare(c1.value, c2.value);
+							return result != 0 ? result : c1.index - c2.index;
+						}
+					});
+			List<RunCursor> runs = new ArrayList<RunCursor>();
+			for (int start = 0; start < rowCount; start += runSize) {
+				Entry[] run = readRun(start, Math.min(runSize, rowCount - start));
+				long first = -1;
+				for (int i = 0; i < run.length; i++) {
+					long offset = runFile.append(new Object[] { run[i].value,
+							Integer.valueOf(run[i].row) });
+					if (first < 0)
+						first = offset;
+				}
+				runs.add(new RunCursor(runFile, runs.size(), first, run.length));
+			}
+			queue.addAll(runs);
+
+			int[] order = new int[rowCount];
+			int count = 0;
+			while (!queue.isEmpty()) {
+				RunCursor cursor = queue.poll();
+				order[count++] = cursor.row;
+				if (cursor.next())
+					queue.add(cursor);
+			}
+			return order;
+		} finally {
+			runFile.close();
+		}
+	}
+
+	/**
+	 * Read the values of the rows and sort them in heap.
+	 */
+	private Entry[] readRun(int start, int count) {
+		Entry[] run = new Entry[count];
+		for (int i = 0; i < count; i++)
+			run[i] = new Entry(getValue(start + i), start + i);
+		Arrays.sort(run, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return comparator.compare(e1.value, e2.value);
+			}
+		});
+		return run;
+	}
+
+	private static class Entry {
+
+		private final Object value;
+
+		private final int row;
+
+		private Entry(Object value, int row) {
+			this.value = value;
+			this.row = row;
+		}
+	}
+
+	/**
+	 * Reads the sorted entries of a run from the run file.
+	 */
+	private static class RunCursor {
+
+		private final SpillFile file;
+
+		/**
+		 * Index of the run, equal values are taken from the first run first.
+		 */
+		private final int index;
+
+		private long offset;
+
+		private int remaining;
+
+		private Object value;
+
+		private int row;
+
+		private RunCursor(SpillFile file, int index, long offset, int count)
+				throws IOException {
+			this.file = file;
+			this.index = index;
+			this.offset = offset;
+			this.remaining = count;
+			read();
+		}
+
+		/**
+		 * Move to the next entry of the run.
+		 *
+		 * @return false if the run has been read to the end.
+		 */
+		private boolean next() throws IOException {
+			if (--remaining < 1)
+				return false;
+			offset = file.next(offset);
+			read();
+			return true;
+		}
+
+		private void read() throws IOException {
+			Object[] entry = file.read(offset, 2);
+			value = entry[0];
+			row = ((Integer) entry[1]).intValue();
+		}
+	}
+}
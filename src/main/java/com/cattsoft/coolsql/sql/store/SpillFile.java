@@ -0,0 +1,486 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cattsoft.coolsql.sql.ResultSetReader;
+
+/**
+ * Temporary file which rows are written to when a result takes more heap than its
+ * budget. Rows are appended at the end of the file and read back by their offset
+ * through memory mapped segments of the file, so reading a row doesn't copy the file
+ * into heap.
+ * <p>
+ * A row is written as its length followed by the values of its columns, each
+ * value starting with a tag of its type. A row doesn't cross the boundary of a
+ * segment unless it's larger than a segment; the end of a segment which can't hold
+ * the next row is left empty.
+ *
+ * @author agent
+ */
+class SpillFile {
+
+	static final int SEGMENT_BITS = 26;
+
+	/**
+	 * Size of a mapped segment of the file.
+	 */
+	static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+	/**
+	 * Size of the buffer which appended rows are collected in before they are written
+	 * to the file.
+	 */
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	private static final byte TAG_NULL = 0;
+
+	private static final byte TAG_NULL_VALUE = 1;
+
+	private static final byte TAG_STRING = 2;
+
+	private static final byte TAG_INT = 3;
+
+	private static final byte TAG_LONG = 4;
+
+	private static final byte TAG_DOUBLE = 5;
+
+	private static final byte TAG_FLOAT = 6;
+
+	private static final byte TAG_SHORT = 7;
+
+	private static final byte TAG_BYTE = 8;
+
+	private static final byte TAG_BOOLEAN = 9;
+
+	private static final byte TAG_BIGDECIMAL = 10;
+
+	private static final byte TAG_DATE = 11;
+
+	private static final byte TAG_TIME = 12;
+
+	private static final byte TAG_TIMESTAMP = 13;
+
+	private static final byte TAG_BYTES = 14;
+
+	private static final byte TAG_SERIALIZED = 15;
+
+	private static final byte TAG_ARRAY = 16;
+
+	private final File file;
+
+	private final RandomAccessFile randomFile;
+
+	private final FileChannel channel;
+
+	/**
+	 * Mapped segments of the file, an element is null until the segment is read.
+	 */
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+	/**
+	 * Rows which haven't been written to the file, they start at
+	 * <code>bufferStart</code>.
+	 */
+	private ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+	private long bufferStart = 0;
+
+	/**
+	 * Buffer which a row is encoded in before it's appended.
+	 */
+	private ByteBuffer rowBuffer = ByteBuffer.allocate(1024);
+
+	private boolean isClosed = false;
+
+	/**
+	 * Create the spill file in the temporary directory. The file is deleted when it's
+	 * closed or when the application exits.
+	 */
+	static SpillFile create(String prefix) throws IOException {
+		File file = File.createTempFile(prefix, ".spill");
+		file.deleteOnExit();
+		return new SpillFile(file);
+	}
+
+	private SpillFile(File file) throws IOException {
+		this.file = file;
+		this.randomFile = new RandomAccessFile(file, "rw");
+		this.channel = randomFile.getChannel();
+	}
+
+	/**
+	 * Return the number of bytes written, including the rows which are still
+	 * buffered.
+	 */
+	long length() {
+		return bufferStart + writeBuffer.position();
+	}
+
+	/**
+	 * Append the row to the file.
+	 *
+	 * @return the offset of the row.
+	 */
+	long append(Object[] row) throws IOException {
+		checkOpen();
+		rowBuffer.clear();
+		rowBuffer.putInt(0);
+		for (int i = 0; i < row.length; i++)
+			encode(row[i]);
+		int length = rowBuffer.position();
+		rowBuffer.putInt(0, length);
+		rowBuffer.flip();
+
+		long offset = length();
+		long free = SEGMENT_SIZE - (offset & (SEGMENT_SIZE - 1));
+		if (length > free && length <= SEGMENT_SIZE) {
+			//Leave the end of the segment empty, the row starts the next segment.
+			flush();
+			bufferStart = offset + free;
+			offset = bufferStart;
+		}
+		if (length > writeBuffer.remaining())
+			flush();
+		if (length > writeBuffer.capacity()) {
+			while (rowBuffer.hasRemaining())
+				bufferStart += channel.write(rowBuffer, bufferStart);
+		} else {
+			writeBuffer.put(rowBuffer);
+		}
+		return offset;
+	}
+
+	/**
+	 * Read the row at the offset.
+	 */
+	Object[] read(long offset, int columnCount) throws IOException {
+		ByteBuffer buffer = getRowBuffer(offset);
+		Object[] row = new Object[columnCount];
+		for (int i = 0; i < columnCount; i++)
+			row[i] = decode(buffer);
+		return row;
+	}
+
+	/**
+	 * Read the value of a column of the row at the offset, the values of the columns
+	 * before it are skipped.
+	 */
+	Object readValue(long offset, int column) throws IOException {
+		ByteBuffer buffer = getRowBuffer(offset);
+		for (int i = 0; i < column; i++)
+			skip(buffer);
+		return decode(buffer);
+	}
+
+	/**
+	 * Return the offset of the row following the row at the offset.
+	 */
+	long next(long offset) throws IOException {
+		ByteBuffer row = getRowBuffer(offset);
+		long end = offset + 4 + row.remaining();
+		long free = SEGMENT_SIZE - (end & (SEGMENT_SIZE - 1));
+		if (end >= length())
+			return end;
+		if (end + 4 > bufferStart)
+			flush();
+		//An empty end of segment reads as a row of length 0.
+		if (free < 4 || getRowLength(end) == 0)
+			return end + free;
+		return end;
+	}
+
+	/**
+	 * Close the file and delete it. Calling this method more than once has no effect.
+	 */
+	void close() {
+		if (isClosed)
+			return;
+		isClosed = true;
+		segments.clear();
+		writeBuffer = null;
+		rowBuffer = null;
+		try {
+			channel.close();
+			randomFile.close();
+		} catch (IOException e) {
+			//The file is deleted anyway.
+		}
+		//A mapped segment may keep the file until it's garbage collected on some
+		//platforms, the file is deleted on exit then.
+		file.delete();
+	}
+
+	private void checkOpen() throws IOException {
+		if (isClosed)
+			throw new IOException("spill file has been closed: " + file);
+	}
+
+	private void flush() throws IOException {
+		writeBuffer.flip();
+		while (writeBuffer.hasRemaining())
+			bufferStart += channel.write(writeBuffer, bufferStart);
+		writeBuffer.clear();
+	}
+
+	private int getRowLength(long offset) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(4);
+		while (header.hasRemaining() && channel.read(header, offset + header.position()) > 0)
+			;
+		return header.hasRemaining() ? 0 : header.getInt(0);
+	}
+
+	/**
+	 * Return a buffer which is positioned at the first value of the row.
+	 */
+	private ByteBuffer getRowBuffer(long offset) throws IOException {
+		checkOpen();
+		if (offset + 4 > bufferStart)
+			flush();
+		int segment = (int) (offset >> SEGMENT_BITS);
+		int position = (int) (offset & (SEGMENT_SIZE - 1));
+		MappedByteBuffer mapped = getSegment(segment, position + 4);
+		int length = mapped.getInt(position);
+		if (position + length > SEGMENT_SIZE) {
+			//The row is larger than a segment, it's read into heap.
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining()
+					&& channel.read(buffer, offset + buffer.position()) > 0)
+				;
+			buffer.position(4);
+			return buffer;
+		}
+		mapped = getSegment(segment, position + length);
+		ByteBuffer buffer = mapped.duplicate();
+		buffer.limit(position + length);
+		buffer.position(position + 4);
+		return buffer;
+	}
+
+	/**
+	 * Return the mapped segment, it's mapped again if the mapping is shorter than the
+	 * required size because the file has grown since.
+	 */
+	private MappedByteBuffer getSegment(int segment, int requiredSize) throws IOException {
+		while (segments.size() <= segment)
+			segments.add(null);
+		MappedByteBuffer mapped = segments.get(segment);
+		if (mapped == null || mapped.capacity() < requiredSize) {
+			long start = (long) segment << SEGMENT_BITS;
+			long size = Math.min(SEGMENT_SIZE, channel.size() - start);
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+			segments.set(segment, mapped);
+		}
+		return mapped;
+	}
+
+	private void ensureCapacity(int size) {
+		if (rowBuffer.remaining() >= size)
+			return;
+		int capacity = Math.max(rowBuffer.capacity() * 2, rowBuffer.position() + size);
+		ByteBuffer buffer = ByteBuffer.allocate(capacity);
+		rowBuffer.flip();
+		buffer.put(rowBuffer);
+		rowBuffer = buffer;
+	}
+
+	private void encode(Object value) throws IOException {
+		ensureCapacity(17);
+		if (value == null) {
+			rowBuffer.put(TAG_NULL);
+		} else if (ResultSetReader.NULL_VALUE.equals(value)) {
+			rowBuffer.put(TAG_NULL_VALUE);
+		} else if (value instanceof String) {
+			String s = (String) value;
+			ensureCapacity(5 + 2 * s.length());
+			rowBuffer.put(TAG_STRING).putInt(s.length());
+			for (int i = 0; i < s.length(); i++)
+				rowBuffer.putChar(s.charAt(i));
+		} else if (value instanceof Integer) {
+			rowBuffer.put(TAG_INT).putInt(((Integer) value).intValue());
+		} else if (value instanceof Long) {
+			rowBuffer.put(TAG_LONG).putLong(((Long) value).longValue());
+		} else if (value instanceof Double) {
+			rowBuffer.put(TAG_DOUBLE).putDouble(((Double) value).doubleValue());
+		} else if (value instanceof Float) {
+			rowBuffer.put(TAG_FLOAT).putFloat(((Float) value).floatValue());
+		} else if (value instanceof Short) {
+			rowBuffer.put(TAG_SHORT).putShort(((Short) value).shortValue());
+		} else if (value instanceof Byte) {
+			rowBuffer.put(TAG_BYTE).put(((Byte) value).byteValue());
+		} else if (value instanceof Boolean) {
+			rowBuffer.put(TAG_BOOLEAN).put((byte) (((Boolean) value).booleanValue() ? 1 : 0));
+		} else if (value instanceof BigDecimal) {
+			BigDecimal decimal = (BigDecimal) value;
+			byte[] unscaled = decimal.unscaledValue().toByteArray();
+			ensureCapacity(9 + unscaled.length);
+			rowBuffer.put(TAG_BIGDECIMAL).putInt(decimal.scale()).putInt(unscaled.length)
+					.put(unscaled);
+		} else if (value instanceof java.sql.Timestamp) {
+			java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+			rowBuffer.put(TAG_TIMESTAMP).putLong(timestamp.getTime()).putInt(timestamp.getNanos());
+		} else if (value instanceof java.sql.Time) {
+			rowBuffer.put(TAG_TIME).putLong(((java.sql.Time) value).getTime());
+		} else if (value instanceof java.sql.Date) {
+			rowBuffer.put(TAG_DATE).putLong(((java.sql.Date) value).getTime());
+		} else if (value instanceof byte[]) {
+			putBytes(TAG_BYTES, (byte[]) value);
+		} else if (value instanceof Object[]) {
+			Object[] array = (Object[]) value;
+			rowBuffer.put(TAG_ARRAY).putInt(array.length);
+			for (int i = 0; i < array.length; i++)
+				encode(array[i]);
+		} else if (value instanceof Serializable) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(value);
+			out.close();
+			putBytes(TAG_SERIALIZED, bytes.toByteArray());
+		} else {
+			encode(value.toString());
+		}
+	}
+
+	private void putBytes(byte tag, byte[] bytes) {
+		ensureCapacity(5 + bytes.length);
+		rowBuffer.put(tag).putInt(bytes.length).put(bytes);
+	}
+
+	private static Object decode(ByteBuffer buffer) throws IOException {
+		byte tag = buffer.get();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_NULL_VALUE:
+			return ResultSetReader.NULL_VALUE;
+		case TAG_STRING: {
+			char[] chars = new char[buffer.getInt()];
+			for (int i = 0; i < chars.length; i++)
+				chars[i] = buffer.getChar();
+			return new String(chars);
+		}
+		case TAG_INT:
+			return Integer.valueOf(buffer.getInt());
+		case TAG_LONG:
+			return Long.valueOf(buffer.getLong());
+		case TAG_DOUBLE:
+			return Double.valueOf(buffer.getDouble());
+		case TAG_FLOAT:
+			return Float.valueOf(buffer.getFloat());
+		case TAG_SHORT:
+			return Short.valueOf(buffer.getShort());
+		case TAG_BYTE:
+			return Byte.valueOf(buffer.get());
+		case TAG_BOOLEAN:
+			return buffer.get() != 0 ? Boolean.TRUE : Boolean.FALSE;
+		case TAG_BIGDECIMAL: {
+			int scale = buffer.getInt();
+			byte[] unscaled = new byte[buffer.getInt()];
+			buffer.get(unscaled);
+			return new BigDecimal(new BigInteger(unscaled), scale);
+		}
+		case TAG_TIMESTAMP: {
+			java.sql.Timestamp timestamp = new java.sql.Timestamp(buffer.getLong());
+			timestamp.setNanos(buffer.getInt());
+			return timestamp;
+		}
+		case TAG_TIME:
+			return new java.sql.Time(buffer.getLong());
+		case TAG_DATE:
+			return new java.sql.Date(buffer.getLong());
+		case TAG_BYTES: {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			return bytes;
+		}
+		case TAG_ARRAY: {
+			Object[] array = new Object[buffer.getInt()];
+			for (int i = 0; i < array.length; i++)
+				array[i] = decode(buffer);
+			return array;
+		}
+		case TAG_SERIALIZED: {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			try {
+				return in.readObject();
+			} catch (ClassNotFoundException e) {
+				IOException ioe = new IOException("reading spilled value failed");
+				ioe.initCause(e);
+				throw ioe;
+			} finally {
+				in.close();
+			}
+		}
+		default:
+			throw new IOException("unknown tag of spilled value: " + tag);
+		}
+	}
+
+	/**
+	 * Move the buffer over the value without decoding it.
+	 */
+	private static void skip(ByteBuffer buffer) throws IOException {
+		byte tag = buffer.get();
+		int size;
+		switch (tag) {
+		case TAG_NULL:
+		case TAG_NULL_VALUE:
+			size = 0;
+			break;
+		case TAG_STRING:
+			size = 2 * buffer.getInt();
+			break;
+		case TAG_INT:
+		case TAG_FLOAT:
+			size = 4;
+			break;
+		case TAG_LONG:
+		case TAG_DOUBLE:
+		case TAG_TIME:
+		case TAG_DATE:
+			size = 8;
+			break;
+		case TAG_SHORT:
+			size = 2;
+			break;
+		case TAG_BYTE:
+		case TAG_BOOLEAN:
+			size = 1;
+			break;
+		case TAG_BIGDECIMAL:
+			buffer.getInt();
+			size = buffer.getInt();
+			break;
+		case TAG_TIMESTAMP:
+			size = 12;
+			break;
+		case TAG_BYTES:
+		case TAG_SERIALIZED:
+			size = buffer.getInt();
+			break;
+		case TAG_ARRAY:
+			for (int i = buffer.getInt(); i > 0; i--)
+				skip(buffer);
+			size = 0;
+			break;
+		default:
+			throw new IOException("unknown tag of spilled value: " + tag);
+		}
+		buffer.position(buffer.position() + size);
+	}
+}
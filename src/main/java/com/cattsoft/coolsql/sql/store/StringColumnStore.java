@@ -0,0 +1,176 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column of string values. The column starts with dictionary encoding: each distinct
+ * value is kept once, and the rows keep the int code of their value. Columns of low
+ * cardinality, such as status or type codes, take 4 bytes per row this way. When the
+ * dictionary grows over {@link #MAX_DICTIONARY_SIZE} the column is converted to
+ * plain string arrays.
+ *
+ * @author agent
+ */
+class StringColumnStore extends ColumnStore {
+
+	/**
+	 * Max number of distinct values kept by the dictionary.
+	 */
+	static final int MAX_DICTIONARY_SIZE = 4096;
+
+	/**
+	 * Codes of values in dictionary mode, null after the column has been converted
+	 * to plain mode.
+	 */
+	private List<int[]> codeChunks = new ArrayList<int[]>();
+
+	private Map<String, Integer> codes = new HashMap<String, Integer>();
+
+	private List<String> dictionary = new ArrayList<String>();
+
+	/**
+	 * Values in plain mode, null in dictionary mode.
+	 */
+	private List<String[]> valueChunks = null;
+
+	void growChunk(int chunk, int length) {
+		if (valueChunks != null) {
+			String[] values = new String[length];
+			if (chunk < valueChunks.size()) {
+				String[] old = valueChunks.get(chunk);
+				System.arraycopy(old, 0, values, 0, old.length);
+				valueChunks.set(chunk, values);
+				addMemorySize(getGrowthSize(old.length, length, REFERENCE_SIZE));
+			} else {
+				valueChunks.add(values);
+				addMemorySize(getGrowthSize(-1, length, REFERENCE_SIZE));
+			}
+		} else {
+			int[] values = new int[length];
+			if (chunk < codeChunks.size()) {
+				int[] old = codeChunks.get(chunk);
+				System.arraycopy(old, 0, values, 0, old.length);
+				codeChunks.set(chunk, values);
+				addMemorySize(getGrowthSize(old.length, length, 4));
+			} else {
+				codeChunks.add(values);
+				addMemorySize(getGrowthSize(-1, length, 4));
+			}
+		}
+	}
+
+	Object getValue(int row) {
+		if (valueChunks != null)
+			return valueChunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK];
+		return dictionary.get(codeChunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK]);
+	}
+
+	boolean setValue(int row, Object value) {
+		if (!(value instanceof String))
+			return false;
+		String s = (String) value;
+		if (valueChunks == null) {
+			Integer code = codes.get(s);
+			if (code == null && dictionary.size() < MAX_DICTIONARY_SIZE) {
+				code = Integer.valueOf(dictionary.size());
+				dictionary.add(s);
+				codes.put(s, code);
+				addMemorySize(getEntrySize(s));
+			}
+			if (code != null) {
+				codeChunks.get(row >> CHUNK_BITS)[row & CHUNK_MASK] = code.intValue();
+				return true;
+			}
+			toPlain();
+		}
+		String[] chunk = valueChunks.get(row >> CHUNK_BITS);
+		addMemorySize(estimateSize(s) - estimateSize(chunk[row & CHUNK_MASK]));
+		chunk[row & CHUNK_MASK] = s;
+		return true;
+	}
+
+	void clearValue(int row) {
+		if (valueChunks != null) {
+			String[] chunk = valueChunks.get(row >> CHUNK_BITS);
+			addMemorySize(-estimateSize(chunk[row & CHUNK_MASK]));
+			chunk[row & CHUNK_MASK] = null;
+		}
+	}
+
+	/**
+	 * Return the estimated heap size of a dictionary entry: the value, its boxed code
+	 * and the entry of the map.
+	 */
+	private static long getEntrySize(String value) {
+		return estimateSize(value) + 16 + 48;
+	}
+
+	/**
+	 * Return the estimated heap size of the chunks and the values referenced by them,
+	 * it's computed when the column is converted to plain mode.
+	 */
+	private long getChunkMemorySize() {
+		long memory = 0;
+		if (valueChunks != null) {
+			for (int i = 0; i < valueChunks.size(); i++) {
+				String[] chunk = valueChunks.get(i);
+				memory += ARRAY_HEADER + REFERENCE_SIZE * chunk.length;
+				for (int j = 0; j < chunk.length; j++)
+					memory += estimateSize(chunk[j]);
+			}
+		} else {
+			for (int i = 0; i < codeChunks.size(); i++)
+				memory += ARRAY_HEADER + 4 * codeChunks.get(i).length;
+			for (int i = 0; i < dictionary.size(); i++)
+				memory += getEntrySize(dictionary.get(i));
+		}
+		return memory;
+	}
+
+	String[] readStrings(int offset, int count, BitSet nulls, BitSet otherRows) {
+		String[] values = new String[offset + count];
+		for (int row = 0; row < count; row++) {
+			if (isStored(row, offset + row, nulls, otherRows))
+				values[offset + row] = (String) getValue(row);
+		}
+		return values;
+	}
+
+	/**
+	 * Return true if the column is still dictionary encoded.
+	 */
+	boolean isDictionaryEncoded() {
+		return valueChunks == null;
+	}
+
+	/**
+	 * Convert the column to plain string arrays. The dictionary isn't useful anymore
+	 * because the column has too many distinct values.
+	 */
+	private void toPlain() {
+		long oldSize = getChunkMemorySize();
+		List<String[]> plain = new ArrayList<String[]>(codeChunks.size());
+		int count = size();
+		for (int i = 0; i < codeChunks.size(); i++) {
+			int[] codeChunk = codeChunks.get(i);
+			String[] chunk = new String[codeChunk.length];
+			for (int j = 0; j < codeChunk.length; j++) {
+				int row = (i << CHUNK_BITS) + j;
+				if (row >= count)
+					break;
+				if (isStored(row))
+					chunk[j] = dictionary.get(codeChunk[j]);
+			}
+			plain.add(chunk);
+		}
+		valueChunks = plain;
+		codeChunks = null;
+		codes = null;
+		dictionary = null;
+		addMemorySize(getChunkMemorySize() - oldSize);
+	}
+}
@@ -18,8 +18,13 @@ public class DatabaseSetting implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	DatabaseSetting() {
+	/**
+	 * Alias name of the bookmark.
+	 */
+	private final String bookmark;
 
+	DatabaseSetting(String bookmark) {
+		this.bookmark = bookmark;
 	}
 	/**
 	 * Retrieve the string used to separate multiple SQL statements. Possible
@@ -44,4 +49,25 @@ public class DatabaseSetting implements Serializable {
 	{
 		return false;
 	}
+	/**
+	 * Return the number of seconds a statement of the bookmark can run before it's
+	 * cancelled, 0 if there is no limit. A bookmark without a limit of its own uses
+	 * the global limit.
+	 */
+	public int getQueryTimeLimit()
+	{
+		Setting setting = Setting.getInstance();
+		return setting.getIntProperty(PropertyConstant.PROPERTY_VIEW_BOOKMARK_QUERYTIMELIMIT
+				+ "." + bookmark, setting.getIntProperty(
+				PropertyConstant.PROPERTY_VIEW_BOOKMARK_QUERYTIMELIMIT, 0));
+	}
+	/**
+	 * @param seconds --time limit of the statements of the bookmark, 0 means no limit.
+	 */
+	public void setQueryTimeLimit(int seconds)
+	{
+		Setting.getInstance().setIntProperty(
+				PropertyConstant.PROPERTY_VIEW_BOOKMARK_QUERYTIMELIMIT + "." + bookmark,
+				Math.max(0, seconds));
+	}
 }
@@ -22,6 +22,8 @@ public class PropertyConstant {
 
 	public static final String PROPERTY_EDITORTABLE_SHORTDRAGTYPE = "editortable.shortdragtype";
 	public static final String PROPERTY_EDITORTABLE_ERRORCELL_COLOR = "editortable.errorcell.color";
+	// Maximum number of rows of the insert dialog sent to the database in a batch.
+	public static final String PROPERTY_EDITORTABLE_INSERT_BATCHSIZE = "editortable.insert.batchsize";
 
 	public static final String PROPERTY_COMMONTABLE_ISDISPLAYLINENUMBER = "commontable.isdisplaylinenumber";
 	public static final String PROPERTY_COMMONTABLE_DISPLAY_HORIZONTALLINE = "commontable.displayhorizontalline";
@@ -44,6 +46,36 @@ public class PropertyConstant {
 	public static final String PROPERTY_SYSTEM_EXPORT_EXCEL_ISDISPLAYHEAD = "system.export.excel.isdisplayhead";
 	public static final String PROPERTY_SYSTEM_EXPORT_EXCEL_MAXROWSWRITE = "system.export.excel.maxrowswrite";
 	public static final String PROPERTY_SYSTEM_EXPORT_EXCEL_HEADCOLOR = "system.export.excel.headcolor";
+	// Charset of the exported text files.
+	public static final String PROPERTY_SYSTEM_EXPORT_CHARSET = "system.export.charset";
+	// Number of rows fetched from the server at a time when the result of a query is exported.
+	public static final String PROPERTY_SYSTEM_EXPORT_FETCHSIZE = "system.export.fetchsize";
+	// Whether the rows of a query are counted before they are exported, to show the progress.
+	public static final String PROPERTY_SYSTEM_EXPORT_COUNTROWS = "system.export.countrows";
+	// Number of partitions a table is split into when it's exported by partitions.
+	public static final String PROPERTY_SYSTEM_EXPORT_PARTITIONS = "system.export.partitions";
+	// Number of partitions read at the same time when a table is exported by partitions.
+	public static final String PROPERTY_SYSTEM_EXPORT_PARALLEL = "system.export.parallel";
+	// Number of rows of an INSERT statement when the result of a query is exported as a SQL script.
+	public static final String PROPERTY_SYSTEM_EXPORT_SQL_ROWSPERINSERT = "system.export.sql.rowsperinsert";
+	// Whether the SQL scripts of INSERT statements are compressed by gzip.
+	public static final String PROPERTY_SYSTEM_EXPORT_SQL_GZIP = "system.export.sql.gzip";
+	// Number of rows of a file inserted in a batch and committed together when data is imported.
+	public static final String PROPERTY_SYSTEM_IMPORT_BATCHSIZE = "system.import.batchsize";
+	// Number of connections which insert the rows of a file in parallel when data is imported.
+	public static final String PROPERTY_SYSTEM_IMPORT_WRITERS = "system.import.writers";
+	// Number of tables copied at the same time when tables are copied to another bookmark.
+	public static final String PROPERTY_SYSTEM_COPY_PARALLELTABLES = "system.copy.paralleltables";
+	// Number of rows fetched from the source at a time when tables are copied to another bookmark.
+	public static final String PROPERTY_SYSTEM_COPY_FETCHSIZE = "system.copy.fetchsize";
+	// Number of background tasks which run at the same time.
+	public static final String PROPERTY_SYSTEM_EXECUTOR_MAXTHREADS = "system.executor.maxthreads";
+	// Number of exports and other batch tasks which run at the same time.
+	public static final String PROPERTY_SYSTEM_EXECUTOR_BATCHTHREADS = "system.executor.batchthreads";
+	// Number of background tasks of a connected bookmark which run at the same time.
+	public static final String PROPERTY_SYSTEM_EXECUTOR_BOOKMARKTHREADS = "system.executor.bookmarkthreads";
+	// Whether background tasks run in virtual threads when the JVM supports them.
+	public static final String PROPERTY_SYSTEM_EXECUTOR_VIRTUALTHREADS = "system.executor.virtualthreads";
 
 	/**
 	 * favorite
@@ -72,6 +104,18 @@ public class PropertyConstant {
 	public static final String PROPERTY_VIEW_BOOKMARK_CONNECT_TIMEOUT = "view.bookmark.connect.timeout"; // ok
 	public static final String PROPERTY_VIEW_BOOKMARK_BEFORE_DISCONNECT = "view.bookmark.before.disconnect"; // ok
 	public static final String PROPERTY_VIEW_BOOKMARK_DEFAULT_HIGHLIGHTCOLOR = "view.bookmark.default.highlightcolor"; // ok
+	// Number of idle connections kept by the connection pool of a bookmark.
+	public static final String PROPERTY_VIEW_BOOKMARK_POOL_MINSIZE = "view.bookmark.pool.minsize";
+	// Maximum number of connections opened by the connection pool of a bookmark.
+	public static final String PROPERTY_VIEW_BOOKMARK_POOL_MAXSIZE = "view.bookmark.pool.maxsize";
+	// Seconds after which an idle pooled connection is closed.
+	public static final String PROPERTY_VIEW_BOOKMARK_POOL_IDLETIMEOUT = "view.bookmark.pool.idletimeout";
+	// Whether metadata is read through a connection of its own instead of the editor connection.
+	public static final String PROPERTY_VIEW_BOOKMARK_METACONNECTION = "view.bookmark.metaconnection";
+	// Maximum number of prepared statements cached for the editor connection of a bookmark, 0 disables the cache.
+	public static final String PROPERTY_VIEW_BOOKMARK_STATEMENTCACHE_SIZE = "view.bookmark.statementcache.size";
+	// Seconds a statement can run before the watchdog cancels it, 0 means no limit. A bookmark can override it with the key suffixed by ".<alias>".
+	public static final String PROPERTY_VIEW_BOOKMARK_QUERYTIMELIMIT = "view.bookmark.querytimelimit";
 	/**
 	 * sqleditor view
 	 */
@@ -82,6 +126,14 @@ public class PropertyConstant {
 	public static final String PROPERTY_VIEW_SQLEDITOR_EDITOR_FONT = "view.sqleditor.font"; // ok
 
 	public static final String PROPERTY_VIEW_SQLEDITOR_BEFORE_ENABLEAUTOCOMMIT = "view.sqleditor.before.enableautocommit"; // ok
+	// Whether consecutive INSERT/UPDATE/DELETE statements of a script are executed as JDBC batches.
+	public static final String PROPERTY_VIEW_SQLEDITOR_BATCH_ENABLED = "view.sqleditor.batch.enabled";
+	// Maximum number of statements in a batch.
+	public static final String PROPERTY_VIEW_SQLEDITOR_BATCH_SIZE = "view.sqleditor.batch.size";
+	// Number of batched statements after which an auto-commit connection is committed, 0 leaves auto commit on.
+	public static final String PROPERTY_VIEW_SQLEDITOR_BATCH_COMMITINTERVAL = "view.sqleditor.batch.commitinterval";
+	// Maximum number of connections used to execute script files or statement groups in parallel.
+	public static final String PROPERTY_VIEW_SQLEDITOR_PARALLEL_WORKERS = "view.sqleditor.parallel.workers";
 
 	// highlight
 	public static final String PROPERTY_SQLEDITOR_HIGHLIGHT_COMMENT1_COLOR = "view.sqleditor.highlight.comment1.color";
@@ -134,8 +186,26 @@ public class PropertyConstant {
 	public static final String PROPERTY_VIEW_RESULTSET_DISPLAYMETAINFO = "view.resultset.displaymetainfo";
 	public static final String PROPERTY_VIEW_RESULTSET_NUMBEROFROWSPERPAGE = "view.resultset.datatable.numberOfRowsPerPage";
 	public static final String PROPERTY_VIEW_RESULTSET_MAXCOLUMNWIDTH = "view.resultset.maxcolumnwidth";
+	// Whether the cursor of a query is held open to read the next page.
+	public static final String PROPERTY_VIEW_RESULTSET_CURSORPAGING = "view.resultset.cursorpaging";
+	// Seconds after which an idle cursor held by a result tab is closed.
+	public static final String PROPERTY_VIEW_RESULTSET_CURSOR_IDLETIMEOUT = "view.resultset.cursor.idletimeout";
+	// Whether a page is fetched by a query limited with the syntax of the database dialect.
+	public static final String PROPERTY_VIEW_RESULTSET_SERVERPAGING = "view.resultset.serverpaging";
+	// Whether rows are displayed in chunks while the page is being read.
+	public static final String PROPERTY_VIEW_RESULTSET_STREAMING = "view.resultset.streaming";
+	// Whether a result of many pages is displayed in one table whose rows are read in blocks while scrolling.
+	public static final String PROPERTY_VIEW_RESULTSET_VIRTUALSCROLL = "view.resultset.virtualscroll";
+	// Megabytes of heap used by the blocks of rows held by a table in virtual scrolling.
+	public static final String PROPERTY_VIEW_RESULTSET_VIRTUALSCROLL_MEMORYBUDGET = "view.resultset.virtualscroll.memorybudget";
+	// Megabytes of heap used by the rows of a result read in full mode before they are spilled to a temporary file.
+	public static final String PROPERTY_VIEW_RESULTSET_SPILL_MEMORYBUDGET = "view.resultset.spill.memorybudget";
 
 	public static final String PROPERTY_VIEW_RESULTSET_MODIFIEDCELL_HIGHLIGHT = "view.resultset.modifiedcell.highlight";
+	// Maximum number of changed rows sent to the database in a batch when the changes of a result are saved.
+	public static final String PROPERTY_VIEW_RESULTSET_SAVE_BATCHSIZE = "view.resultset.save.batchsize";
+	// Number of saved rows after which the changes of a result are committed, 0 commits once all changes are saved.
+	public static final String PROPERTY_VIEW_RESULTSET_SAVE_COMMITINTERVAL = "view.resultset.save.commitinterval";
 
 	// The property relevant to result table in the resultset view.
 	public static final String PROPERTY_VIEW_RESULTSET_DATASETTABLE_ISDIRECTMODIFY = "view.resultset.datasettable.isdirectmodify";
@@ -80,7 +80,7 @@ public class Setting implements ISetting{
 
 				public void bookmarkAdded(BookmarkEvent e) {
 					String bookmark=e.getBookmark().getAliasName();
-					setting.dbProperties.put(bookmark, new DatabaseSetting());
+					setting.dbProperties.put(bookmark, new DatabaseSetting(bookmark));
 						
 				}
 
@@ -437,7 +437,7 @@ public class Setting implements ISetting{
 		DatabaseSetting dbp=dbProperties.get(bookmark);
 		if(dbp==null)
 		{
-			dbp=new DatabaseSetting();
+			dbp=new DatabaseSetting(bookmark);
 			dbProperties.put(bookmark, dbp);
 		}
 		return dbp;
@@ -60,7 +60,7 @@ public class TrackEntityCommand implements ActionCommand {
 			if(en==null)
 				return;
 			List<?> list = bookmark.getDbInfoProvider().queryEntities(bookmark,
-					bookmark.getConnection(), en.getCatalog(), en.getSchema(),
+					bookmark.getMetaConnection(), en.getCatalog(), en.getSchema(),
 					en.getName(), null);
 			if (list == null || list.size() == 0) {
 				LogProxy.errorMessage(s_stringMgr.getString("objectselected.notfound"));
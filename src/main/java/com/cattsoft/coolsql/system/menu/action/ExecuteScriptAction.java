@@ -6,15 +6,22 @@ package com.cattsoft.coolsql.system.menu.action;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.sql.SQLException;
+import java.util.Arrays;
+
+import javax.swing.JOptionPane;
 
 import com.cattsoft.coolsql.action.framework.CsAction;
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.bookmarkBean.BookmarkManage;
 import com.cattsoft.coolsql.pub.display.GUIUtil;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
 import com.cattsoft.coolsql.sql.commonoperator.Operatable;
 import com.cattsoft.coolsql.sql.commonoperator.OperatorFactory;
 import com.cattsoft.coolsql.sql.commonoperator.SQLScriptExecuteOperator;
 import com.cattsoft.coolsql.sql.execute.IMultiStatementExecute;
+import com.cattsoft.coolsql.sql.execute.ParallelStatementExecute;
 import com.cattsoft.coolsql.sql.execute.ScriptStatementExecute;
 import com.cattsoft.coolsql.system.PropertyManage;
 import com.cattsoft.coolsql.view.SqlEditorView;
@@ -31,6 +38,7 @@ import com.cattsoft.coolsql.view.log.LogProxy;
 public class ExecuteScriptAction extends CsAction {
 
 	private static final long serialVersionUID = 1L;
+	private static final StringManager stringMgr=StringManagerFactory.getStringManager(ParallelStatementExecute.class);
 	private IMultiStatementExecute executer;
 	public ExecuteScriptAction()
 	{
@@ -50,7 +58,16 @@ public class ExecuteScriptAction extends CsAction {
 		PropertyManage.getSystemProperty().setSelectFile_importData(importDataPath);
 		
 		ILogger log=new FileLogger(new File(importDataPath,"script.log"));
-		executer=new ScriptStatementExecute(BookmarkManage.getInstance().getDefaultBookmark(),file);
+		Bookmark bookmark=BookmarkManage.getInstance().getDefaultBookmark();
+		int workerCount=ParallelStatementExecute.getDefaultWorkerCount();
+		if(file.length>1&&workerCount>1&&bookmark!=null&&bookmark.getConnectionPool()!=null&&bookmark.isAutoCommit()
+				&&JOptionPane.showConfirmDialog(GUIUtil.findLikelyOwnerWindow(),
+						stringMgr.getString("parallel.confirm.files",file.length,Math.min(workerCount,file.length)),
+						"confirm",JOptionPane.YES_NO_OPTION)==JOptionPane.YES_OPTION)
+		{
+			executer=ParallelStatementExecute.createForFiles(bookmark,Arrays.asList(file),workerCount);
+		}else
+			executer=new ScriptStatementExecute(bookmark,file);
 		executer.setExecuteLogger(log);
 
 		Operatable operator;
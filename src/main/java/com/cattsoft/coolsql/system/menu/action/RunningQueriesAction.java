@@ -0,0 +1,30 @@
+/**
+ * 
+ */
+package com.cattsoft.coolsql.system.menu.action;
+
+import java.awt.event.ActionEvent;
+
+import com.cattsoft.coolsql.action.framework.CsAction;
+import com.cattsoft.coolsql.gui.RunningQueriesDialog;
+import com.cattsoft.coolsql.pub.display.GUIUtil;
+
+/**
+ * Show the statements being executed in all bookmarks.
+ * @author agent
+ */
+public class RunningQueriesAction extends CsAction {
+
+	private static final long serialVersionUID = 1L;
+
+	public RunningQueriesAction()
+	{
+		initMenuDefinitionById("RunningQueriesAction");
+	}
+	/* (non-Javadoc)
+	 * @see com.cattsoft.coolsql.action.framework.CsAction#executeAction(java.awt.event.ActionEvent)
+	 */
+	public void executeAction(ActionEvent e) {
+		RunningQueriesDialog.showDialog(GUIUtil.getMainFrame());
+	}
+}
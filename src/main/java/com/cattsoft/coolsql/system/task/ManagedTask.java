@@ -0,0 +1,255 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.system.task;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.SwingUtilities;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.component.WaitDialog;
+import com.cattsoft.coolsql.pub.component.WaitDialogManage;
+import com.cattsoft.coolsql.sql.QueryRegistry;
+import com.cattsoft.coolsql.sql.RunningQuery;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * A background task submitted to {@link TaskExecutor}. The thread of the task is
+ * created with the task, so it can be registered, for example to a wait dialog,
+ * before the task is started; it's started when the executor admits the task.
+ * <p>
+ * The task is also the cancellation token of its work: {@link #cancel()} marks it
+ * cancelled and stops the statement its thread is executing, and the work checks
+ * {@link #isCancelled()} between its steps. A task cancelled before its work starts
+ * never runs the work: the wait dialog registered to its thread is closed and its
+ * cancel action, see {@link #setCancelAction(Runnable)}, is run instead.
+ *
+ * @author agent
+ */
+public class ManagedTask {
+
+	/**
+	 * The task has been created but not started.
+	 */
+	public static final int STATE_NEW = 0;
+
+	/**
+	 * The task waits for the executor to admit it.
+	 */
+	public static final int STATE_WAITING = 1;
+
+	public static final int STATE_RUNNING = 2;
+
+	public static final int STATE_DONE = 3;
+
+	private final TaskExecutor executor;
+
+	private final long id;
+
+	private final String name;
+
+	private final int priority;
+
+	private final Bookmark bookmark;
+
+	private final Runnable runnable;
+
+	private Thread thread;
+
+	private volatile Runnable cancelAction = null;
+
+	/**
+	 * The group the task is a part of, null if it isn't a part of a group.
+	 */
+	private TaskGroup group = null;
+
+	/**
+	 * The groups created by the work of the task, they are cancelled with the task.
+	 */
+	private final List<TaskGroup> ownedGroups = new CopyOnWriteArrayList<TaskGroup>();
+
+	private volatile int state = STATE_NEW;
+
+	private volatile boolean isCancelled = false;
+
+	private volatile long submitTime;
+
+	private volatile long startTime;
+
+	ManagedTask(TaskExecutor executor, long id, String name, int priority,
+			Bookmark bookmark, Runnable runnable) {
+		this.executor = executor;
+		this.id = id;
+		this.name = name;
+		this.priority = priority;
+		this.bookmark = bookmark;
+		this.runnable = runnable;
+	}
+
+	/**
+	 * Submit the task, it runs as soon as the limits of the executor allow it.
+	 */
+	public void start() {
+		executor.submit(this);
+	}
+
+	/**
+	 * Cancel the task. The statement executed by a running task is stopped; a
+	 * waiting task is removed from the executor, its work is never run.
+	 */
+	public void cancel() {
+		isCancelled = true;
+		for (TaskGroup owned : ownedGroups)
+			owned.cancel();
+		if (executor.discard(this))
+			return;
+		if (state == STATE_RUNNING) {
+			RunningQuery query = QueryRegistry.getInstance().getQuery(thread);
+			if (query != null)
+				query.kill();
+		}
+	}
+
+	/**
+	 * Set the work which is run instead of the work of the task if the task is
+	 * cancelled before it starts, for example to remove the tab the task should have
+	 * filled.
+	 */
+	public void setCancelAction(Runnable cancelAction) {
+		this.cancelAction = cancelAction;
+	}
+
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+
+	/**
+	 * Return the thread which runs the task, it's created with the task.
+	 */
+	public Thread getThread() {
+		return thread;
+	}
+
+	void setThread(Thread thread) {
+		this.thread = thread;
+	}
+
+	/**
+	 * Return the group the task is a part of, null if it isn't a part of a group.
+	 */
+	public TaskGroup getGroup() {
+		return group;
+	}
+
+	void setGroup(TaskGroup group) {
+		this.group = group;
+	}
+
+	void addOwnedGroup(TaskGroup owned) {
+		ownedGroups.add(owned);
+		if (isCancelled)
+			owned.cancel();
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return one of the priority classes of {@link TaskExecutor}.
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Return the bookmark the task works on, null if the task isn't limited by the
+	 * bookmark limit.
+	 */
+	public Bookmark getBookmark() {
+		return bookmark;
+	}
+
+	public int getState() {
+		return state;
+	}
+
+	void setState(int state) {
+		this.state = state;
+		if (state == STATE_WAITING)
+			submitTime = System.currentTimeMillis();
+		else if (state == STATE_RUNNING)
+			startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Return the milliseconds the task has waited or waited before it started.
+	 */
+	public long getWaitTime() {
+		if (state == STATE_NEW)
+			return 0;
+		return (state == STATE_WAITING ? System.currentTimeMillis() : startTime)
+				- submitTime;
+	}
+
+	/**
+	 * Return the milliseconds since the task started, 0 if it hasn't started.
+	 */
+	public long getRunTime() {
+		return state == STATE_RUNNING ? System.currentTimeMillis() - startTime : 0;
+	}
+
+	/**
+	 * The body of the thread.
+	 */
+	void run() {
+		try {
+			//The task may be cancelled between its admission and the start of its thread
+			if (isCancelled)
+				abandon();
+			else
+				runnable.run();
+		} catch (Throwable e) {
+			LogProxy.errorLog("error occur in background task " + name
+					+ ",cause of error: " + e.getMessage(), e);
+		} finally {
+			ownedGroups.clear();
+			executor.finish(this);
+		}
+	}
+
+	/**
+	 * Release what the task holds when it's cancelled before its work starts: the
+	 * wait dialog of its thread is closed, and its cancel action is run.
+	 */
+	void abandon() {
+		final WaitDialog dialog = WaitDialogManage.getInstance().disposeRegister(thread);
+		if (dialog != null) {
+			//The dialog may not be visible yet, it's closed after it's shown
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					dialog.dispose();
+				}
+			});
+		}
+		Runnable action = cancelAction;
+		if (action != null) {
+			try {
+				action.run();
+			} catch (Throwable e) {
+				LogProxy.errorLog("error occur in cancel action of background task " + name
+						+ ",cause of error: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	public String toString() {
+		return name;
+	}
+}
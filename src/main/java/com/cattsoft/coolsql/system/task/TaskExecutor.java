@@ -0,0 +1,343 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.system.task;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Runs the background database work: queries of the result tabs, connecting and
+ * refreshing bookmarks, inserts, imports and exports. Each task belongs to a
+ * priority class and waits until the limits allow it:
+ * <ul>
+ * <li>at most {@link PropertyConstant#PROPERTY_SYSTEM_EXECUTOR_MAXTHREADS} tasks
+ * run at the same time,</li>
+ * <li>at most {@link PropertyConstant#PROPERTY_SYSTEM_EXECUTOR_BATCHTHREADS} of
+ * them are batch tasks, so exports never take all threads from queries,</li>
+ * <li>at most {@link PropertyConstant#PROPERTY_SYSTEM_EXECUTOR_BOOKMARKTHREADS}
+ * tasks of a connected bookmark run at the same time, and the tasks of a bookmark
+ * which isn't connected run one by one.</li>
+ * </ul>
+ * Waiting tasks are admitted by priority class, then in the order they were
+ * submitted. Each task runs in a thread of its own, named after the task; the
+ * thread is virtual if the JVM supports virtual threads, since the tasks mostly
+ * block in JDBC calls. Work split into parts which run in parallel runs as a
+ * {@link TaskGroup}.
+ *
+ * @author agent
+ */
+public class TaskExecutor {
+
+	/**
+	 * Work the user waits for, such as the query of a result tab.
+	 */
+	public static final int PRIORITY_INTERACTIVE = 0;
+
+	/**
+	 * Connecting bookmarks and reading their metadata.
+	 */
+	public static final int PRIORITY_METADATA = 1;
+
+	/**
+	 * Exports, imports and other long work.
+	 */
+	public static final int PRIORITY_BATCH = 2;
+
+	private static final String[] PRIORITY_NAMES = { "query", "metadata", "batch" };
+
+	private static TaskExecutor executor = null;
+
+	private final LinkedList<ManagedTask> waiting = new LinkedList<ManagedTask>();
+
+	private final List<ManagedTask> running = new ArrayList<ManagedTask>();
+
+	private long nextId = 1;
+
+	/**
+	 * The limits of the threads: all tasks, batch tasks and tasks of a bookmark; null
+	 * if they are read from the settings each time tasks are dispatched.
+	 */
+	private final int[] fixedLimits;
+
+	/**
+	 * Thread.ofVirtual(), Thread.Builder.name(String) and
+	 * Thread.Builder.unstarted(Runnable), null if the JVM has no virtual threads.
+	 */
+	private Method ofVirtual = null;
+	private Method builderName = null;
+	private Method builderUnstarted = null;
+
+	public static synchronized TaskExecutor getInstance() {
+		if (executor == null)
+			executor = new TaskExecutor();
+		return executor;
+	}
+
+	private TaskExecutor() {
+		fixedLimits = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			builderName = builder.getMethod("name", String.class);
+			builderUnstarted = builder.getMethod("unstarted", Runnable.class);
+		} catch (Exception e) {
+			ofVirtual = null;
+		}
+	}
+
+	/**
+	 * Create an executor with fixed limits, which runs its tasks in platform threads.
+	 * It's used by tests, which mustn't depend on the settings.
+	 */
+	TaskExecutor(int maxThreads, int batchThreads, int bookmarkThreads) {
+		fixedLimits = new int[] { maxThreads, batchThreads, bookmarkThreads };
+	}
+
+	/**
+	 * Create a task, it isn't run until {@link ManagedTask#start()} is invoked.
+	 *
+	 * @param runnable --the work of the task.
+	 * @param name --the name of the task, it's used as the name of its thread.
+	 * @param priority --PRIORITY_INTERACTIVE, PRIORITY_METADATA or PRIORITY_BATCH.
+	 * @param bookmark --the bookmark the task works on, null if the task shouldn't
+	 *            be limited by the bookmark limit.
+	 */
+	public ManagedTask createTask(Runnable runnable, String name, int priority,
+			Bookmark bookmark) {
+		if (runnable == null)
+			throw new IllegalArgumentException("runnable must be a non-null value");
+		if (priority < PRIORITY_INTERACTIVE || priority > PRIORITY_BATCH)
+			throw new IllegalArgumentException("priority is unknown:" + priority);
+		long id;
+		synchronized (this) {
+			id = nextId++;
+		}
+		final ManagedTask task = new ManagedTask(this, id, name, priority, bookmark,
+				runnable);
+		task.setThread(newThread(new Runnable() {
+			public void run() {
+				task.run();
+			}
+		}, "CoolSQL-" + PRIORITY_NAMES[priority] + "-" + id + " " + name, priority));
+		return task;
+	}
+
+	/**
+	 * Create a task and start it.
+	 *
+	 * @see #createTask(Runnable, String, int, Bookmark)
+	 */
+	public ManagedTask execute(Runnable runnable, String name, int priority,
+			Bookmark bookmark) {
+		ManagedTask task = createTask(runnable, name, priority, bookmark);
+		task.start();
+		return task;
+	}
+
+	/**
+	 * Create a group of tasks, see {@link TaskGroup}. If current thread belongs to a
+	 * task, the group is cancelled with the task.
+	 *
+	 * @param name --the name of the group, its parts are named after it.
+	 * @param parallelism --the number of parts which run at the same time.
+	 * @see #createTask(Runnable, String, int, Bookmark)
+	 */
+	public TaskGroup createGroup(String name, int priority, Bookmark bookmark,
+			int parallelism) {
+		if (priority < PRIORITY_INTERACTIVE || priority > PRIORITY_BATCH)
+			throw new IllegalArgumentException("priority is unknown:" + priority);
+		TaskGroup group = new TaskGroup(this, name, priority, bookmark, parallelism);
+		ManagedTask owner = getTask(Thread.currentThread());
+		if (owner != null)
+			owner.addOwnedGroup(group);
+		return group;
+	}
+
+	/**
+	 * Return the task of the thread, null if the thread doesn't belong to a waiting
+	 * or running task.
+	 */
+	public synchronized ManagedTask getTask(Thread thread) {
+		for (ManagedTask task : running) {
+			if (task.getThread() == thread)
+				return task;
+		}
+		for (ManagedTask task : waiting) {
+			if (task.getThread() == thread)
+				return task;
+		}
+		return null;
+	}
+
+	/**
+	 * Return whether the task run by current thread has been cancelled, false if
+	 * current thread doesn't belong to a task.
+	 */
+	public static boolean isCurrentTaskCancelled() {
+		ManagedTask task = getInstance().getTask(Thread.currentThread());
+		return task != null && task.isCancelled();
+	}
+
+	/**
+	 * Return the running tasks, then the waiting tasks in the order they will be
+	 * admitted.
+	 */
+	public synchronized List<ManagedTask> getTasks() {
+		List<ManagedTask> tasks = new ArrayList<ManagedTask>(running);
+		tasks.addAll(waiting);
+		return tasks;
+	}
+
+	public synchronized int getRunningCount() {
+		return running.size();
+	}
+
+	public synchronized int getWaitingCount() {
+		return waiting.size();
+	}
+
+	void submit(ManagedTask task) {
+		boolean isCancelled;
+		synchronized (this) {
+			if (task.getState() != ManagedTask.STATE_NEW)
+				throw new IllegalStateException("task has been started:" + task);
+			isCancelled = task.isCancelled();
+			if (isCancelled) {
+				// A task cancelled before it's started is never queued
+				task.setState(ManagedTask.STATE_DONE);
+			} else {
+				task.setState(ManagedTask.STATE_WAITING);
+				// Behind the waiting tasks of the same or a higher priority class
+				int index = waiting.size();
+				while (index > 0
+						&& waiting.get(index - 1).getPriority() > task.getPriority())
+					index--;
+				waiting.add(index, task);
+			}
+		}
+		if (isCancelled)
+			task.abandon();
+		else
+			dispatch();
+	}
+
+	void finish(ManagedTask task) {
+		synchronized (this) {
+			running.remove(task);
+			task.setState(ManagedTask.STATE_DONE);
+		}
+		dispatch();
+	}
+
+	/**
+	 * Remove a waiting task which has been cancelled, it ends without running.
+	 *
+	 * @return false if the task isn't waiting.
+	 */
+	boolean discard(ManagedTask task) {
+		synchronized (this) {
+			if (!waiting.remove(task))
+				return false;
+			task.setState(ManagedTask.STATE_DONE);
+		}
+		task.abandon();
+		return true;
+	}
+
+	/**
+	 * Start the waiting tasks which the limits allow to run. Cancelled tasks are
+	 * never started, they are removed by {@link #discard(ManagedTask)}.
+	 */
+	void dispatch() {
+		List<ManagedTask> admitted = new ArrayList<ManagedTask>();
+		synchronized (this) {
+			int maxThreads;
+			int batchThreads;
+			int bookmarkThreads;
+			if (fixedLimits != null) {
+				maxThreads = fixedLimits[0];
+				batchThreads = fixedLimits[1];
+				bookmarkThreads = fixedLimits[2];
+			} else {
+				Setting setting = Setting.getInstance();
+				maxThreads = Math.max(1, setting.getIntProperty(
+						PropertyConstant.PROPERTY_SYSTEM_EXECUTOR_MAXTHREADS, 8));
+				batchThreads = Math.max(1, setting.getIntProperty(
+						PropertyConstant.PROPERTY_SYSTEM_EXECUTOR_BATCHTHREADS, 2));
+				bookmarkThreads = Math.max(1, setting.getIntProperty(
+						PropertyConstant.PROPERTY_SYSTEM_EXECUTOR_BOOKMARKTHREADS, 4));
+			}
+			for (Iterator<ManagedTask> it = waiting.iterator(); it.hasNext();) {
+				ManagedTask task = it.next();
+				if (task.isCancelled()
+						|| !canRun(task, maxThreads, batchThreads, bookmarkThreads))
+					continue;
+				it.remove();
+				task.setState(ManagedTask.STATE_RUNNING);
+				running.add(task);
+				admitted.add(task);
+			}
+		}
+		for (ManagedTask task : admitted) {
+			if (task.getWaitTime() > 1000)
+				LogProxy.getProxy().debug(
+						"task " + task.getName() + " started after waiting "
+								+ task.getWaitTime() + " ms");
+			task.getThread().start();
+		}
+	}
+
+	private boolean canRun(ManagedTask task, int maxThreads, int batchThreads,
+			int bookmarkThreads) {
+		// The parts of a group are limited by the group
+		if (task.getGroup() != null)
+			return true;
+		if (running.size() >= maxThreads)
+			return false;
+		int batchCount = 0;
+		int bookmarkCount = 0;
+		for (ManagedTask other : running) {
+			if (other.getPriority() == PRIORITY_BATCH)
+				batchCount++;
+			if (task.getBookmark() != null && other.getBookmark() == task.getBookmark())
+				bookmarkCount++;
+		}
+		if (task.getPriority() == PRIORITY_BATCH && batchCount >= batchThreads)
+			return false;
+		if (task.getBookmark() != null) {
+			// The tasks of a bookmark without connections are serialized
+			int limit = task.getBookmark().getConnectionPool() == null ? 1
+					: bookmarkThreads;
+			if (bookmarkCount >= limit)
+				return false;
+		}
+		return true;
+	}
+
+	private Thread newThread(Runnable runnable, String name, int priority) {
+		if (ofVirtual != null
+				&& Setting.getInstance().getBoolProperty(
+						PropertyConstant.PROPERTY_SYSTEM_EXECUTOR_VIRTUALTHREADS, true)) {
+			try {
+				Object builder = builderName.invoke(ofVirtual.invoke(null), name);
+				return (Thread) builderUnstarted.invoke(builder, runnable);
+			} catch (Exception e) {
+				LogProxy.errorLog("virtual thread can't be created, platform threads are used", e);
+				ofVirtual = null;
+			}
+		}
+		Thread thread = new Thread(runnable, name);
+		if (priority == PRIORITY_BATCH)
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+		return thread;
+	}
+}
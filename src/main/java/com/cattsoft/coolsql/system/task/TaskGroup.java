@@ -0,0 +1,206 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.system.task;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+
+/**
+ * Work split into parts which run in parallel, such as the writers of an import or
+ * the partitions of an export. Each part runs as a task of {@link TaskExecutor},
+ * named after the group, and at most the parallelism of the group run at the same
+ * time; the other parts wait in the group.
+ * <p>
+ * The parts are admitted by the executor at once: the task which creates the group
+ * already holds its place and waits for the parts, so parts waiting behind the
+ * limits of the executor could never run. They are counted as running tasks, so
+ * they delay other tasks. Cancelling the task which created the group cancels the
+ * group.
+ *
+ * @author agent
+ */
+public class TaskGroup {
+
+	private final TaskExecutor executor;
+
+	private final String name;
+
+	private final int priority;
+
+	private final Bookmark bookmark;
+
+	private final int parallelism;
+
+	private final LinkedList<Part<?>> pending = new LinkedList<Part<?>>();
+
+	private final List<Part<?>> started = new ArrayList<Part<?>>();
+
+	private int partCount = 0;
+
+	private volatile boolean isCancelled = false;
+
+	TaskGroup(TaskExecutor executor, String name, int priority, Bookmark bookmark,
+			int parallelism) {
+		this.executor = executor;
+		this.name = name;
+		this.priority = priority;
+		this.bookmark = bookmark;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Submit a part, it runs as soon as fewer parts than the parallelism run.
+	 */
+	public <T> Future<T> submit(Callable<T> work) {
+		return submit(new Part<T>(work));
+	}
+
+	/**
+	 * Submit a part, it runs as soon as fewer parts than the parallelism run.
+	 */
+	public Future<?> submit(Runnable work) {
+		return submit(new Part<Object>(work));
+	}
+
+	/**
+	 * Run the parts and wait for them. If a part fails, the other parts are
+	 * cancelled.
+	 *
+	 * @return the results of the parts, in the order of the parts.
+	 * @throws ExecutionException if a part fails.
+	 */
+	public <T> List<T> invokeAll(List<? extends Callable<T>> works)
+			throws InterruptedException, ExecutionException {
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+		for (Callable<T> work : works)
+			futures.add(submit(work));
+		List<T> results = new ArrayList<T>();
+		boolean isDone = false;
+		try {
+			for (Future<T> future : futures)
+				results.add(future.get());
+			isDone = true;
+		} finally {
+			if (!isDone) {
+				for (Future<T> future : futures)
+					future.cancel(true);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Cancel the parts: the waiting parts never run, the statements of the running
+	 * parts are stopped and their threads are interrupted.
+	 */
+	public void cancel() {
+		List<Part<?>> parts;
+		synchronized (this) {
+			isCancelled = true;
+			parts = new ArrayList<Part<?>>(pending);
+			parts.addAll(started);
+			pending.clear();
+		}
+		for (Part<?> part : parts)
+			part.cancel(true);
+	}
+
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+
+	private <T> Future<T> submit(Part<T> part) {
+		synchronized (this) {
+			if (!isCancelled)
+				pending.add(part);
+		}
+		if (isCancelled)
+			part.cancel(false);
+		else
+			startParts();
+		return part;
+	}
+
+	/**
+	 * Start the waiting parts the parallelism allows to run.
+	 */
+	private void startParts() {
+		List<ManagedTask> tasks = new ArrayList<ManagedTask>();
+		synchronized (this) {
+			while (started.size() < parallelism && !pending.isEmpty()) {
+				final Part<?> part = pending.removeFirst();
+				ManagedTask task = executor.createTask(part, name + " #" + (++partCount),
+						priority, bookmark);
+				task.setGroup(this);
+				task.setCancelAction(new Runnable() {
+					public void run() {
+						part.cancel(false);
+						finished(part);
+					}
+				});
+				part.task = task;
+				started.add(part);
+				tasks.add(task);
+			}
+		}
+		for (ManagedTask task : tasks)
+			task.start();
+	}
+
+	/**
+	 * Free the place of a started part when its thread ends, even if it has been
+	 * cancelled, so no more parts than the parallelism run.
+	 */
+	private void finished(Part<?> part) {
+		synchronized (this) {
+			started.remove(part);
+		}
+		if (!isCancelled)
+			startParts();
+	}
+
+	private class Part<T> extends FutureTask<T> {
+
+		private volatile ManagedTask task = null;
+
+		Part(Callable<T> work) {
+			super(work);
+		}
+
+		Part(Runnable work) {
+			super(work, null);
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (!super.cancel(mayInterruptIfRunning))
+				return false;
+			ManagedTask current = task;
+			if (current != null)
+				current.cancel();
+			return true;
+		}
+
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				finished(this);
+			}
+		}
+
+		protected void done() {
+			//A part cancelled while it waits never runs
+			synchronized (TaskGroup.this) {
+				pending.remove(this);
+			}
+		}
+	}
+}
@@ -4,8 +4,8 @@
 package com.cattsoft.coolsql.system.task;
 
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.cattsoft.coolsql.pub.parse.StringManager;
 import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
@@ -15,23 +15,21 @@ import com.cattsoft.coolsql.view.log.LogProxy;
  * @author ��Т��(kenny liu)
  *
  * 2008-2-3 create
+ *
+ * The tasks are run by {@link TaskExecutor} as metadata tasks.
  */
 public class TaskManage {
 
 	private static final StringManager strMg=StringManagerFactory.getStringManager(TaskManage.class);
 	
 	private static TaskManage tm=null;
-	private List<IExecute> tasks=null;
-	
-	private IExecute currentTask=null; //task that is executing,it will be null if have no task to execute.
-	
-//	private int taskCount=0; //the count of all thread that is executing currently.
 	
-//	private boolean isSuspend=false; //this variant is not useful,but may be used to control the executing of task;
+	/**
+	 * The tasks which haven't ended, key:task   value:the task of executor
+	 */
+	private Map<IExecute,ManagedTask> tasks=null;
 	
-	private boolean isStopExecuting=false;
-	private TaskController tc=null;
-	public static TaskManage getInstance()
+	public static synchronized TaskManage getInstance()
 	{
 		if(tm==null)
 			tm=new TaskManage();
@@ -40,94 +38,65 @@ public class TaskManage {
 	}
 	private TaskManage()
 	{
-		tasks=new ArrayList<IExecute>();
-		tc=new TaskController();
-		
-		/**
-		 * set the controller thread as a daemon thread.
-		 */
-		Thread controllerThread =new Thread(tc);
-		controllerThread.setDaemon(true);
-		controllerThread.setPriority(Thread.MIN_PRIORITY);
-		controllerThread.start();
-	}
-	private synchronized IExecute nextTask()
-	{
-		IExecute task=null;
-		if(tasks.size()>0)
-		{
-			task=tasks.remove(0);
-			return task;
-		}else
-			return null;
-		
+		tasks=new HashMap<IExecute,ManagedTask>();
 	}
-	public void addTask(IExecute task)
+	public void addTask(final IExecute task)
 	{
-		if(task!=null)
+		if(task==null)
+			return;
+		synchronized(tasks)
 		{
-			tasks.add(task);
-			tc.awake();
+			tasks.put(task,TaskExecutor.getInstance().createTask(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						if(!TaskExecutor.isCurrentTaskCancelled())
+							task.run();
+					}catch(Throwable t)
+					{
+						showMessage(t);
+					}finally
+					{
+						synchronized(tasks)
+						{
+							tasks.remove(task);
+						}
+					}
+				}
+			},"task",TaskExecutor.PRIORITY_METADATA,null));
+			tasks.get(task).start();
 		}
 	}
 	public void showMessage(final Throwable t)
 	{
-//		SwingUtilities.invokeLater(new Runnable()
-//		{
-//			public void run()
-//			{
-				if(t instanceof SQLException)
-					LogProxy.SQLErrorReport((SQLException)t);
-				else
-					LogProxy.errorReport(strMg.getString("error.runtime") + t.getMessage(), t);
-//			}
-//		});
+		if(t instanceof SQLException)
+			LogProxy.SQLErrorReport((SQLException)t);
+		else
+			LogProxy.errorReport(strMg.getString("error.runtime") + t.getMessage(), t);
 	}
 	/**
 	 * 
 	 * @param task -- the task that need to be removed
 	 * @throws TaskException --if task is executing,it 'll throw taskexception.
 	 */
-	public void removeTask(Runnable task) throws TaskException
-	{
-		if(currentTask==task)
-			throw new TaskException(strMg.getString("error.taskexecuting"));
-		tasks.remove(task);
-	}
-	private class TaskController implements Runnable
+	public void removeTask(IExecute task) throws TaskException
 	{
-		public synchronized void awake()
+		ManagedTask managedTask;
+		synchronized(tasks)
 		{
-			super.notify();
+			managedTask=tasks.get(task);
 		}
-		public synchronized void run()
+		if(managedTask==null)
+			return;
+		if(managedTask.getState()==ManagedTask.STATE_RUNNING)
+			throw new TaskException(strMg.getString("error.taskexecuting"));
+		managedTask.cancel();
+		//A cancelled waiting task never runs, so it doesn't remove itself
+		synchronized(tasks)
 		{
-			while(!isStopExecuting)
-			{
-				IExecute task=nextTask();
-				if(task==null)
-					try {
-						wait();
-					} catch (InterruptedException e) {
-						// ignore all error
-					}
-				else
-				{
-					currentTask=task;
-//					taskCount++;
-					try
-					{
-						task.run();
-					}catch(Throwable t)
-					{
-						showMessage(t);
-					}finally
-					{
-//						taskCount--;
-					}
-				}
-				
-			}
+			tasks.remove(task);
 		}
 	}
 }
@@ -216,6 +216,13 @@ public class SqlEditorView extends View {
         return pane.getQueries();
     }
 
+    /**
+     * Return the selected statements by group, see {@link SqlPanel#getQueryGroups()}.
+     */
+    public List<List<String>> getQueryGroups() {
+        return pane.getQueryGroups();
+    }
+
     /**
      * ��ȡ�༭����
      * 
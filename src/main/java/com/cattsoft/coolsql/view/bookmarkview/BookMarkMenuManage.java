@@ -18,8 +18,11 @@ import com.cattsoft.coolsql.action.bookmarkmenu.CearTableAction;
 import com.cattsoft.coolsql.action.bookmarkmenu.ConnectAction;
 import com.cattsoft.coolsql.action.bookmarkmenu.CopyAction;
 import com.cattsoft.coolsql.action.bookmarkmenu.CopyCommand;
+import com.cattsoft.coolsql.action.bookmarkmenu.CopyTablesAction;
 import com.cattsoft.coolsql.action.bookmarkmenu.DeleteBookMarkAction;
 import com.cattsoft.coolsql.action.bookmarkmenu.DisconnectAction;
+import com.cattsoft.coolsql.action.bookmarkmenu.ExportTablePartitionsAction;
+import com.cattsoft.coolsql.action.bookmarkmenu.ImportEntityDataAction;
 import com.cattsoft.coolsql.action.bookmarkmenu.PropertyAction;
 import com.cattsoft.coolsql.action.bookmarkmenu.QueryAllDataOfTableAction;
 import com.cattsoft.coolsql.action.bookmarkmenu.ReNameAction;
@@ -113,6 +116,9 @@ public class BookMarkMenuManage extends BaseMenuManage {
     private JMenuItem viewCountOfTable;
     
     private JMenuItem addData=null;  //��������
+    private JMenuItem importData=null;
+    private JMenuItem copyTables=null;
+    private JMenuItem exportPartitions=null;
     
     private JMenuItem clearAll=null;//����������
 
@@ -209,6 +215,21 @@ public class BookMarkMenuManage extends BaseMenuManage {
                 .getIcon("system.icon.addrows"), new AddEntityDataAction());
         tableMenu.add(addData);
         
+        importData=createMenuItem(PublicResource
+                .getString("bookmarkView.popup.importdata"), IconResource.getBlankIcon(),
+                new ImportEntityDataAction());
+        tableMenu.add(importData);
+        
+        copyTables=createMenuItem(PublicResource
+                .getString("bookmarkView.popup.copytables"), IconResource.getBlankIcon(),
+                new CopyTablesAction());
+        tableMenu.add(copyTables);
+        
+        exportPartitions=createMenuItem(PublicResource
+                .getString("bookmarkView.popup.exportpartitions"), IconResource.getBlankIcon(),
+                new ExportTablePartitionsAction());
+        tableMenu.add(exportPartitions);
+        
         CearTableAction clearAction=new CearTableAction();
         clearAll=createMenuItem(PublicResource
                 .getString("bookmarkView.popup.deleteall"), IconResource.getBlankIcon(), clearAction);
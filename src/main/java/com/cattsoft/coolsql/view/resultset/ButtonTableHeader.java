@@ -124,7 +124,7 @@ public class ButtonTableHeader extends BasicTableHeader {
                     && column == _currentlySortedColumnIdx)
                 _buttonRaised.setIcon(_currentSortedColumnIcon);
             else
-                _buttonRaised.setIcon(null);
+                _buttonRaised.setIcon(getMinorSortIcon(table, modelColumn));
             
             if(headerColor[modelColumn]!=null)
             	_buttonRaised.setForeground(headerColor[modelColumn]);
@@ -155,6 +155,23 @@ public class ButtonTableHeader extends BasicTableHeader {
         }
     }
 
+    /**
+     * Return the icon of a column which the rows are sorted by besides the clicked
+     * column, null if the rows aren't sorted by the column.
+     */
+    private Icon getMinorSortIcon(JTable table, int modelColumn) {
+        if (_currentSortedColumnIcon == null
+                || !(table.getModel() instanceof SortableTableModel))
+            return null;
+        SortableTableModel model = (SortableTableModel) table.getModel();
+        int[] columns = model.getSortColumns();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] == modelColumn)
+                return model.isSortAscending(modelColumn) ? s_ascIcon : s_descIcon;
+        }
+        return null;
+    }
+
     class HeaderListener extends MouseAdapter implements MouseMotionListener {
 
         public void mousePressed(MouseEvent e) {
@@ -176,7 +193,11 @@ public class ButtonTableHeader extends BasicTableHeader {
                 TableModel tm = getTable().getModel();
                 if (column > -1 && column < getTable().getColumnCount()
                         && (tm instanceof SortableTableModel)) {
-                    ((SortableTableModel) tm).sortByColumn(column);
+                    //Shift-click adds the column to the sorted columns
+                    if (e.isShiftDown())
+                        ((SortableTableModel) tm).addSortColumn(column);
+                    else
+                        ((SortableTableModel) tm).sortByColumn(column);
                     if (((SortableTableModel) tm)._bAscending)
                         _currentSortedColumnIcon = ButtonTableHeader.s_ascIcon;
                     else
@@ -0,0 +1,291 @@
+package com.cattsoft.coolsql.view.resultset;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Holds the changes of a result table which haven't been saved to database: the new
+ * values of modified cells and the rows marked as deleted. The values are mapped by
+ * the model row and column packed into a long key, in an open addressing table, so
+ * looking up a cell while painting or sorting doesn't create any object. A bitmap
+ * of the rows which have modified cells allows iterating them in row order.
+ * <p>
+ * A modified cell may hold a null value, use {@link #containsKey(int, int)} to know
+ * whether a cell has been modified.
+ * <p>
+ * Rows and columns are model indices, they must not be negative.
+ *
+ * @author agent
+ */
+public class CellEditOverlay {
+
+    /**
+     * Key of the empty slots, no cell is packed into a negative key.
+     */
+    private static final long EMPTY = -1L;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    /**
+     * Number of modified cells.
+     */
+    private int size = 0;
+
+    /**
+     * Rows which have at least one modified cell.
+     */
+    private final BitSet dirtyRows = new BitSet();
+
+    /**
+     * Rows marked as deleted.
+     */
+    private final BitSet deletedRows = new BitSet();
+
+    /**
+     * Greatest column which has been modified, the columns of a row are looked up
+     * until it.
+     */
+    private int maxColumn = -1;
+
+    public CellEditOverlay() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (keys.length - 1);
+    }
+
+    /**
+     * Return the slot of the key, -1 if it's not in the table.
+     */
+    private int indexOf(int row, int column) {
+        if (size == 0 || row < 0 || column < 0)
+            return -1;
+        long key = key(row, column);
+        int mask = keys.length - 1;
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            if (keys[i] == key)
+                return i;
+            if (keys[i] == EMPTY)
+                return -1;
+        }
+    }
+
+    /**
+     * Return true if the cell has been modified.
+     */
+    public boolean containsKey(int row, int column) {
+        return indexOf(row, column) > -1;
+    }
+
+    /**
+     * Return the new value of the cell, null if the cell hasn't been modified or its
+     * new value is null.
+     */
+    public Object get(int row, int column) {
+        int index = indexOf(row, column);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * Set the new value of the cell.
+     *
+     * @return the previous new value of the cell.
+     */
+    public Object put(int row, int column, Object value) {
+        if (row < 0 || column < 0)
+            throw new IllegalArgumentException("invalid cell: row=" + row
+                    + ",column=" + column);
+        long key = key(row, column);
+        int mask = keys.length - 1;
+        int i = slot(key);
+        for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                Object old = values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        dirtyRows.set(row);
+        if (column > maxColumn)
+            maxColumn = column;
+        if (size * 4 > keys.length * 3)
+            rehash(keys.length * 2);
+        return null;
+    }
+
+    /**
+     * Remove the modification of the cell.
+     *
+     * @return the new value of the removed cell.
+     */
+    public Object remove(int row, int column) {
+        int index = indexOf(row, column);
+        if (index < 0)
+            return null;
+        Object old = values[index];
+        deleteSlot(index);
+        size--;
+        if (nextModifiedColumn(row, 0) < 0)
+            dirtyRows.clear(row);
+        return old;
+    }
+
+    /**
+     * Empty the slot and move back the keys of the following probe sequence, so no
+     * deleted marker is left in the table.
+     */
+    private void deleteSlot(int index) {
+        int mask = keys.length - 1;
+        int hole = index;
+        for (int i = (index + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            int home = slot(keys[i]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        Arrays.fill(keys, EMPTY);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY)
+                continue;
+            int i = slot(oldKeys[j]);
+            while (keys[i] != EMPTY)
+                i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    /**
+     * Remove the modifications of all cells, the deleted rows are kept.
+     */
+    public void clear() {
+        if (keys.length > INITIAL_CAPACITY) {
+            keys = new long[INITIAL_CAPACITY];
+            values = new Object[INITIAL_CAPACITY];
+            Arrays.fill(keys, EMPTY);
+        } else if (size > 0) {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(values, null);
+        }
+        size = 0;
+        maxColumn = -1;
+        dirtyRows.clear();
+    }
+
+    /**
+     * Return the number of modified cells.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the first row which has modified cells from the specified row on, -1 if
+     * there is no such row.
+     */
+    public int nextDirtyRow(int fromRow) {
+        return dirtyRows.nextSetBit(fromRow < 0 ? 0 : fromRow);
+    }
+
+    /**
+     * Return the number of rows which have modified cells.
+     */
+    public int getDirtyRowCount() {
+        return dirtyRows.cardinality();
+    }
+
+    /**
+     * Return the first modified column of the row from the specified column on, -1 if
+     * there is no such column.
+     */
+    public int nextModifiedColumn(int row, int fromColumn) {
+        if (row < 0 || !dirtyRows.get(row))
+            return -1;
+        for (int column = fromColumn < 0 ? 0 : fromColumn; column <= maxColumn; column++) {
+            if (indexOf(row, column) > -1)
+                return column;
+        }
+        return -1;
+    }
+
+    /**
+     * Mark the row as deleted.
+     *
+     * @return false if the row has been marked.
+     */
+    public boolean markDeleted(int row) {
+        if (deletedRows.get(row))
+            return false;
+        deletedRows.set(row);
+        return true;
+    }
+
+    /**
+     * Cancel marking the row as deleted.
+     *
+     * @return false if the row hasn't been marked.
+     */
+    public boolean cancelDeleted(int row) {
+        if (row < 0 || !deletedRows.get(row))
+            return false;
+        deletedRows.clear(row);
+        return true;
+    }
+
+    public boolean isDeleted(int row) {
+        return row > -1 && deletedRows.get(row);
+    }
+
+    /**
+     * Return the number of rows marked as deleted.
+     */
+    public int getDeletedCount() {
+        return deletedRows.cardinality();
+    }
+
+    /**
+     * Return the first row marked as deleted from the specified row on, -1 if there
+     * is no such row.
+     */
+    public int nextDeletedRow(int fromRow) {
+        return deletedRows.nextSetBit(fromRow < 0 ? 0 : fromRow);
+    }
+
+    /**
+     * Return true if there is any modified cell or deleted row.
+     */
+    public boolean hasChanges() {
+        return size > 0 || !deletedRows.isEmpty();
+    }
+}
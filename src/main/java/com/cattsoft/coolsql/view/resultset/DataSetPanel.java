@@ -30,6 +30,7 @@ import javax.swing.event.CellEditorListener;
 import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
 
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.pub.component.AnimateLabel;
@@ -45,6 +46,7 @@ import com.cattsoft.coolsql.pub.util.SqlUtil;
 import com.cattsoft.coolsql.pub.util.StringUtil;
 import com.cattsoft.coolsql.sql.ConnectionUtil;
 import com.cattsoft.coolsql.sql.ISQLDatabaseMetaData;
+import com.cattsoft.coolsql.sql.ResultPager;
 import com.cattsoft.coolsql.sql.SQLResultSetResults;
 import com.cattsoft.coolsql.sql.SQLResults;
 import com.cattsoft.coolsql.sql.SQLStandardResultSetResults;
@@ -313,7 +315,7 @@ public class DataSetPanel extends JPanel {
             return false;
         if (sqlResult instanceof SQLStandardResultSetResults) {
             SQLStandardResultSetResults queryResult = (SQLStandardResultSetResults) sqlResult;
-            return queryResult.hasNextPage()&&!queryResult.isFullMode();
+            return queryResult.hasNextPage()&&!queryResult.isFullMode()&&!isVirtualScrolling();
         } else
             return false;
     }
@@ -328,11 +330,57 @@ public class DataSetPanel extends JPanel {
             return false;
         if (sqlResult instanceof SQLStandardResultSetResults) {
             SQLStandardResultSetResults queryResult = (SQLStandardResultSetResults) sqlResult;
-            return queryResult.hasPreviousPage()&&!queryResult.isFullMode();
+            return queryResult.hasPreviousPage()&&!queryResult.isFullMode()&&!isVirtualScrolling();
         } else
             return false;
     }
 
+    /**
+     * Return whether the table of this panel displays all rows of the result, reading
+     * them in blocks while scrolling.
+     */
+    public boolean isVirtualScrolling() {
+        return getVirtualModel() != null;
+    }
+
+    private VirtualResultTableModel getVirtualModel() {
+        TableModel model = getStoreModel(content);
+        return model instanceof VirtualResultTableModel ? (VirtualResultTableModel) model : null;
+    }
+
+    /**
+     * Return the model of rows of the component, null if it isn't a table of result.
+     */
+    private static ResultStoreTableModel getStoreModel(JComponent com) {
+        if (!(com instanceof DataSetTable))
+            return null;
+        TableModel model = ((DataSetTable) com).getModel();
+        if (!(model instanceof SortableTableModel))
+            return null;
+        model = ((SortableTableModel) model).getActualModel();
+        return model instanceof ResultStoreTableModel ? (ResultStoreTableModel) model : null;
+    }
+
+    /**
+     * Release the rows of current content which is replaced by the new content: stop
+     * reading the blocks of virtual scrolling, and delete the spill file of the rows
+     * unless the new content displays the same rows.
+     *
+     * @param newContent --the new content, null if the panel is removed.
+     */
+    private void releaseContent(JComponent newContent) {
+        ResultStoreTableModel model = getStoreModel(content);
+        if (model == null)
+            return;
+        if (model instanceof VirtualResultTableModel) {
+            ((VirtualResultTableModel) model).dispose();
+            return;
+        }
+        ResultStoreTableModel newModel = getStoreModel(newContent);
+        if (newModel == null || newModel.getStore() != model.getStore())
+            model.getStore().close();
+    }
+
     /**
      * Set the content of panel.
      * the type of content may be dataset table and label.
@@ -346,6 +394,7 @@ public class DataSetPanel extends JPanel {
             prompt.stop();
             prompt=null;
         }
+        releaseContent(com);
         //If current content object is  JTable type, then clear previous DataTable before updating the content value.
         if(content instanceof JTable)
         {
@@ -365,7 +414,7 @@ public class DataSetPanel extends JPanel {
 
 		if (table instanceof DataSetTable) {
 			DataSetTable dsTable = (DataSetTable) getContent();
-			dsTable.setEditable(isAllowEdit());
+			dsTable.setEditable(isAllowEdit()&&!isVirtualScrolling());
 			if (dsTable.getModel() instanceof SortableTableModel) {
 				((SortableTableModel) dsTable.getModel())
 						.addTableModelModifyListener(new TableModelModifyListener() {
@@ -403,6 +452,11 @@ public class DataSetPanel extends JPanel {
             prompt.stop();
         removeListenerFromBookmark();
         cancelExecute();
+        if (sqlResult instanceof SQLStandardResultSetResults) {
+            //Release the cursor held by the result of this panel.
+            ((SQLStandardResultSetResults) sqlResult).closeCursor();
+        }
+        releaseContent(null);
 
         JComponent com = this.getContent();
         if (com == null)
@@ -658,6 +712,30 @@ public class DataSetPanel extends JPanel {
     public void setRowCount(int count) {
         status.setRowCount(count);
     }
+    /**
+     * @param name --name of the strategy by which current page has been fetched.
+     */
+    public void setPagingStrategy(String name) {
+        status.setPagingStrategy(name);
+    }
+
+    /**
+     * Display the number of rows read and the read speed.
+     * 
+     * @param rows --the number of rows read.
+     * @param elapsedTime --milliseconds spent in reading the rows.
+     */
+    public void setFetchProgress(int rows, long elapsedTime) {
+        long rowsPerSecond = elapsedTime > 0 ? rows * 1000L / elapsedTime : rows;
+        status.setFetchProgress(rows, rowsPerSecond);
+    }
+
+    /**
+     * @param bytes --estimated heap size of a row of current page.
+     */
+    public void setMemoryPerRow(long bytes) {
+        status.setMemoryPerRow(bytes);
+    }
 
     /**
      * @param sql
@@ -752,6 +830,8 @@ public class DataSetPanel extends JPanel {
         updateRowRange();
         int total = queryData.getTotalNumberOfRows();
         setRowCount(total); //����������
+        setPagingStrategy(ResultPager.getStrategyName(queryData.getPagingStrategy()));
+        setMemoryPerRow(queryData.getStore().getMemoryPerRow());
         
     }
 
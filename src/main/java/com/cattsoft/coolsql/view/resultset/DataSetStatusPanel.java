@@ -63,6 +63,12 @@ public class DataSetStatusPanel extends JPanel {
  
 	private TextEditor costTime=null;  //��ʾִ��sql����Ҫ��ʱ��
 	
+	private TextEditor pagingStrategy=null;  //How current page has been fetched
+	
+	private TextEditor memoryPerRow=null;  //Estimated heap size of a row of current page
+	
+	private TextEditor fetchProgress=null;  //Rows read and read speed of current page
+	
 	private TextEditor sql = null;  //��ʾsql���
 
 	private int start = 0;  //��¼��ʾ����ʼλ��
@@ -122,6 +128,27 @@ public class DataSetStatusPanel extends JPanel {
 		costTime.setBorder(createComponentBorder());
 		add(costTime, gbc);
 		
+		gbc.gridx++;
+		pagingStrategy = new TextEditor(8);
+		pagingStrategy.setToolTipText(stringMgr.getString("resultset.datasetstatus.pagingstrategy.tip"));
+		pagingStrategy.setEditable(false);
+		pagingStrategy.setBorder(createComponentBorder());
+		add(pagingStrategy, gbc);
+		
+		gbc.gridx++;
+		memoryPerRow = new TextEditor(8);
+		memoryPerRow.setToolTipText(stringMgr.getString("resultset.datasetstatus.memoryperrow.tip"));
+		memoryPerRow.setEditable(false);
+		memoryPerRow.setBorder(createComponentBorder());
+		add(memoryPerRow, gbc);
+		
+		gbc.gridx++;
+		fetchProgress = new TextEditor(14);
+		fetchProgress.setToolTipText(stringMgr.getString("resultset.datasetstatus.fetchprogress.tip"));
+		fetchProgress.setEditable(false);
+		fetchProgress.setBorder(createComponentBorder());
+		add(fetchProgress, gbc);
+		
 		gbc.gridx++;
 		gbc.gridwidth = GridBagConstraints.REMAINDER;
 		gbc.weightx = 1.0D;
@@ -180,6 +207,33 @@ public class DataSetStatusPanel extends JPanel {
 	        costTime.setText(costInfo+time+costInfoUnit);
 	    }
 	}
+	/**
+	 * Display the name of the strategy by which current page has been fetched.
+	 */
+	public void setPagingStrategy(String name)
+	{
+		pagingStrategy.setText(name == null ? "" : name);
+	}
+	/**
+	 * Display the number of rows read from database for current page and the read speed.
+	 */
+	public void setFetchProgress(int rows, long rowsPerSecond)
+	{
+		fetchProgress.setText(stringMgr.getString("resultset.datasetstatus.fetchprogress",
+				String.valueOf(rows), String.valueOf(rowsPerSecond)));
+	}
+	/**
+	 * Display the estimated heap size of a row of current page.
+	 * @param bytes --size in bytes, the field is cleared if it's less than 1.
+	 */
+	public void setMemoryPerRow(long bytes)
+	{
+		if (bytes < 1)
+			memoryPerRow.setText("");
+		else
+			memoryPerRow.setText(stringMgr.getString("resultset.datasetstatus.memoryperrow",
+					String.valueOf(bytes)));
+	}
 	public void setRangeStart(int row) {
 		start = row;
 	}
@@ -11,9 +11,7 @@ import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Vector;
 
 import javax.swing.DefaultCellEditor;
@@ -28,7 +26,6 @@ import javax.swing.KeyStroke;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.DefaultTableColumnModel;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
@@ -39,7 +36,7 @@ import com.cattsoft.coolsql.pub.display.BaseTable;
 import com.cattsoft.coolsql.pub.display.BaseTableCellRender;
 import com.cattsoft.coolsql.pub.display.DataTran;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
-import com.cattsoft.coolsql.pub.util.StringUtil;
+import com.cattsoft.coolsql.sql.store.ResultStore;
 import com.cattsoft.coolsql.system.PropertyConstant;
 import com.cattsoft.coolsql.system.Setting;
 import com.cattsoft.coolsql.view.resultset.action.DataSetTableCopyAction;
@@ -98,8 +95,33 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
         pubInit(DataTran.convertToVector(data), cols);
     }
 
+    /**
+     * Create the table which displays the rows of the store. The store is shared, the
+     * rows aren't copied.
+     */
+    public DataSetTable(ResultStore store, ColumnDisplayDefinition[] cols) {
+        this(new ResultStoreTableModel(store), cols);
+    }
+
+    /**
+     * Create the table which displays the rows of the model, such as a model which
+     * reads its rows on demand.
+     */
+    public DataSetTable(ResultStoreTableModel model, ColumnDisplayDefinition[] cols) {
+        super();
+        pubInit(model, null, cols);
+    }
+
     private void pubInit(Vector<Object> data, ColumnDisplayDefinition[] cols) {
-        SortableTableModel stm = new SortableTableModel(new DefaultTableModel());
+        pubInit(null, data, cols);
+    }
+
+    /**
+     * @param model --the model of rows, a model of empty store is created if it's null.
+     * @param data --the rows which are inserted into the created model.
+     */
+    private void pubInit(ResultStoreTableModel model, Vector<Object> data, ColumnDisplayDefinition[] cols) {
+        SortableTableModel stm = new SortableTableModel(model == null ? new ResultStoreTableModel() : model);
         
 //        getTableHeader().setResizingAllowed(true);
 //        getTableHeader().setReorderingAllowed(true);
@@ -127,7 +149,8 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
         stm.addSortModelListener(new PropertyChangeListener() {
 
 			public void propertyChange(PropertyChangeEvent evt) {
-				if (evt.getPropertyName().equals(SortableTableModel.PROPERTYNAME_ORDER)) {
+				if (evt.getPropertyName().equals(SortableTableModel.PROPERTYNAME_ORDER)
+						|| evt.getPropertyName().equals(SortableTableModel.PROPERTYNAME_FILTER)) {
 					firePropertyChange(PROPERTY_DELETEDROW, -1, getRowCount());
 				}
 			}
@@ -145,7 +168,9 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
         	
         });
         
-        if (data != null)
+        if (model != null)
+            stm.rowInfoReset(stm.getRowCount());
+        else if (data != null)
             stm.insertRows(data);
         this.adjustPerfectWidth();
         
@@ -284,15 +309,14 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
     {
     	List<int[]> list=new ArrayList<int[]>();
     	SortableTableModel model = (SortableTableModel) this.getModel();
-    	Iterator<String> it = model.modifyData.keySet().iterator();
-    	while(it.hasNext())
+    	CellEditOverlay edits = model.getEditOverlay();
+    	for (int row = edits.nextDirtyRow(0); row > -1; row = edits.nextDirtyRow(row + 1))
     	{
-    		String key=(String)it.next();
-    		int[] result=StringUtil.resolveString(key);
-    		if(result==null)
-    			continue;
-    		
-    		list.add(result);
+    		for (int column = edits.nextModifiedColumn(row, 0); column > -1;
+    				column = edits.nextModifiedColumn(row, column + 1))
+    		{
+    			list.add(new int[] {row, column});
+    		}
     	}
     	
     	return list;
@@ -303,7 +327,7 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
      */
     public int getRealRow(int row) {
         SortableTableModel model = (SortableTableModel) this.getModel();
-        return model._indexes[row].intValue();
+        return model.getRealRow(row);
     }
     /**
      * To mark the row as deleted.
@@ -311,14 +335,14 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
      */
     public void markDeletedRow(int row) {
     	SortableTableModel model = (SortableTableModel) this.getModel();
-    	model.markDeletedRow(model._indexes[row]);
+    	model.markDeletedRow(model.getRealRow(row));
     	
 //    	firePropertyChange(PROPERTY_DELETEDROW, -1, row);
     }
     public void markDeletedRow(int[] rows) {
     	SortableTableModel model = (SortableTableModel) this.getModel();
     	for (int row : rows) {
-    		model.markDeletedRow(model._indexes[row]);
+    		model.markDeletedRow(model.getRealRow(row));
     	}
     	
 //    	firePropertyChange(PROPERTY_DELETEDROW, -1, 0);
@@ -328,13 +352,13 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
      */
     public void cancelDeletedRow(int row) {
     	SortableTableModel model = (SortableTableModel) this.getModel();
-    	model.cancelDeletedRow(model._indexes[row]);
+    	model.cancelDeletedRow(model.getRealRow(row));
 //    	firePropertyChange(PROPERTY_DELETEDROW, -1, row);
     }
     public void cancelDeletedRow(int[] rows) {
     	SortableTableModel model = (SortableTableModel) this.getModel();
     	for (int row : rows) {
-    		model.cancelDeletedRow(model._indexes[row]);
+    		model.cancelDeletedRow(model.getRealRow(row));
     	}
     	
 //    	firePropertyChange(PROPERTY_DELETEDROW, -1, 0);
@@ -347,7 +371,7 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
     		return false;
     	}
     	SortableTableModel model = (SortableTableModel) this.getModel();
-    	return model.isShouldDelete(model._indexes[row]);
+    	return model.isShouldDelete(model.getRealRow(row));
     }
     /*
      * ���� Javadoc��
@@ -369,8 +393,7 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
     public void restoreAll()
     {
     	 SortableTableModel stm = (SortableTableModel) getModel();
-         Map<String, Object> tmp = stm.modifyData;
-         tmp.clear();
+         stm.clearModify();
          repaint();
     }
     /**
@@ -380,8 +403,7 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
     public boolean hasModified()
     {
     	 SortableTableModel stm = (SortableTableModel) getModel();
-         Map<String, Object> tmp = stm.modifyData;
-         return tmp.size()>0 || stm.deletedRows.size() > 0;
+         return stm.hasChanges();
     }
     /**
      * Return true if the specified cell has been modified .
@@ -392,11 +414,10 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
     public boolean isModified(int row,int column)
     {
     	SortableTableModel stm = (SortableTableModel) getModel();
-        Map<String, Object> tmp = stm.modifyData;
         column=convertColumnIndexToModel(column);
         row=stm.getRealRow(row);
         
-        return tmp.containsKey(StringUtil.compose(row, column));
+        return stm.isModified(row, column);
     }
     /**
      * To restore specified cell .
@@ -407,10 +428,9 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
     public Object restoreCell(int row,int column)
     {
     	SortableTableModel stm = (SortableTableModel) getModel();
-        Map<String, Object> tmp = stm.modifyData;
     	column=convertColumnIndexToModel(column);
     	row=stm.getRealRow(row);
-    	Object value=tmp.remove(StringUtil.compose(row, column));
+    	Object value=stm.removeModify(row, column);
     	repaint();
     	return value;
     }
@@ -431,17 +451,14 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
             }
 
             SortableTableModel stm = (SortableTableModel) getModel();
-            Map<String, Object> tmp = stm.modifyData;
             /**
              * �����Ǹ��к��ж�Ӧ�ı��Ԫ���Ƿ��޸Ĺ��޸Ĺ�����ɫ��Ⱦ
              */
-            int realRow = stm._indexes[row].intValue();
+            int realRow = stm.getRealRow(row);
             int realColumn=table.convertColumnIndexToModel(column);
             
-            String key=StringUtil.compose(realRow, realColumn);
-            
-            if (tmp.containsKey(key)) {
-            	Object text = (String) tmp.get(key);
+            if (stm.isModified(realRow, realColumn)) {
+            	Object text = stm.getModify(realRow, realColumn);
             	if(text==null)
             		label.setText("<NULL>");
             	else
@@ -474,13 +491,13 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
             SortableTableModel stm = (SortableTableModel) DataSetTable.this
             .getModel();
             int realRow=stm.getRealRow(r);
-            sourceOb=stm.modifyData.get(StringUtil.compose(realRow,convertColumnIndexToModel(c)));
+            sourceOb=stm.getModify(realRow,convertColumnIndexToModel(c));
             isSaved = false;
         }
     }
     /**
-     * This mothod pay attention to the modifydata map, doesn't make a change to the real model.
-     * @param value --the new value will be set into modifyData map.
+     * This mothod saves the value as a modification of the cell, doesn't make a change to the real model.
+     * @param value --the new value will be saved as a modification of the cell.
      * @param row --table row in the table view.
      * @param column --table column in the table view.
      */
@@ -495,14 +512,14 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
     		{
     			confirmRestoreCell(row,column,stm,"<NULL>");
     		}else
-    			stm.modifyData.put(StringUtil.compose(row, convertColumnIndexToModel(column)), value);
+    			stm.modifyCell(row, convertColumnIndexToModel(column), value);
     	}else
     	{
     		if(currentValue.equals(value))
     		{
     			confirmRestoreCell(row,column,stm,currentValue.toString());
     		}else
-    			stm.modifyData.put(StringUtil.compose(row, convertColumnIndexToModel(column)), value);
+    			stm.modifyCell(row, convertColumnIndexToModel(column), value);
     	}
     }
     private boolean confirmRestoreCell(int row,int column,SortableTableModel stm,String oldValue)
@@ -510,7 +527,7 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
     	//Do nothing if current cell specified by row and column has not been modified.
     	row=stm.getRealRow(row);
     	column= convertColumnIndexToModel(column);
-    	if(stm.modifyData.containsKey(StringUtil.compose(row, column)))
+    	if(stm.isModified(row, column))
     		return false;
     	
     	int result = JOptionPane.showConfirmDialog(CommonFrame
@@ -518,7 +535,7 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
                 .getString("resultView.editorcell.equal",oldValue),"confirm",JOptionPane.YES_NO_OPTION);
         if(result==JOptionPane.YES_OPTION)
         {
-            stm.modifyData.remove(StringUtil.compose(row, column));
+            stm.removeModify(row, column);
         }
         return result==JOptionPane.YES_OPTION;
     }
@@ -552,7 +569,7 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
                             .getString("resultView.editorcell.equal",oldOb.toString()),"confirm",JOptionPane.YES_NO_OPTION);
                     if(result==JOptionPane.YES_OPTION)
                     {
-                        stm.modifyData.remove(StringUtil.compose(row, column));
+                        stm.removeModify(row, column);
                         isRestore=true;
                     }else
                     {
@@ -579,7 +596,7 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
                  * �����µ���ݱ������ڴ���
                  */
                 if(!isRestore)
-                    stm.modifyData.put(StringUtil.compose(row, column), newOb);
+                    stm.putModify(row, column, newOb);
                 oldOb = null;
                 sourceOb=null;
             }
@@ -596,9 +613,8 @@ public class DataSetTable extends BaseTable implements PropertyChangeListener {
         public Component getTableCellEditorComponent(JTable table,
                 Object value, boolean isSelected, int row, int column) {
             SortableTableModel stm = (SortableTableModel) getModel();
-            Map<String, Object> tmp = stm.modifyData;
             int realRow = stm.getRealRow(row);
-            Object text = (String) tmp.get(StringUtil.compose(realRow, table.convertColumnIndexToModel(column)));
+            Object text = stm.getModify(realRow, table.convertColumnIndexToModel(column));
             if (text != null)
                 delegate.setValue(text);
             else
@@ -0,0 +1,265 @@
+/**
+ *
+ */
+package com.cattsoft.coolsql.view.resultset;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.DefaultCellEditor;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+
+import com.cattsoft.coolsql.pub.component.BaseDialog;
+import com.cattsoft.coolsql.pub.component.RenderButton;
+import com.cattsoft.coolsql.pub.display.BaseTable;
+import com.cattsoft.coolsql.pub.display.GUIUtil;
+import com.cattsoft.coolsql.pub.display.TableScrollPane;
+import com.cattsoft.coolsql.pub.parse.PublicResource;
+import com.cattsoft.coolsql.pub.parse.StringManager;
+import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
+import com.cattsoft.coolsql.pub.util.StringUtil;
+import com.cattsoft.coolsql.sql.ParameterizedSql;
+
+/**
+ * Prompts for the values of the parameters of a statement before it's executed.
+ * The values entered are remembered by the name of the parameter, and proposed
+ * the next time a statement with the same parameter is executed.
+ *
+ * @author agent
+ */
+public class ParameterValuesDialog extends BaseDialog {
+
+	private static final long serialVersionUID = 1L;
+	private static final StringManager stringMgr=StringManagerFactory.getStringManager(ParameterValuesDialog.class);
+
+	/**
+	 * The value is a number if it can be read as a number, otherwise a string.
+	 */
+	public static final String TYPE_AUTO="Auto";
+	public static final String TYPE_STRING="String";
+	public static final String TYPE_NUMBER="Number";
+	public static final String TYPE_DATE="Date";
+	public static final String TYPE_TIMESTAMP="Timestamp";
+	public static final String TYPE_NULL="NULL";
+
+	private static final String[] TYPES=new String[]{TYPE_AUTO,TYPE_STRING,TYPE_NUMBER,TYPE_DATE,TYPE_TIMESTAMP,TYPE_NULL};
+
+	/**
+	 * The type and value text last entered for each parameter name.
+	 */
+	private static final Map<String,String[]> rememberedValues=new HashMap<String,String[]>();
+
+	private JTable table;
+	private ParameterTableModel model;
+	private Object[] values;
+
+	private ParameterValuesDialog(ParameterizedSql sql)
+	{
+		super(GUIUtil.getMainFrame(),true);
+		setTitle(stringMgr.getString("resultset.parameterdialog.title"));
+
+		JPanel main=(JPanel)getContentPane();
+		main.setLayout(new BorderLayout());
+
+		main.add(new JLabel(stringMgr.getString("resultset.parameterdialog.info",
+				StringUtil.getMaxSubstring(sql.getOriginalSql().trim(),80))),BorderLayout.NORTH);
+
+		model=new ParameterTableModel(sql.getNames());
+		table=new BaseTable();
+		table.setModel(model);
+		table.getColumnModel().getColumn(1).setCellEditor(new DefaultCellEditor(new JComboBox(TYPES)));
+		main.add(new TableScrollPane(table),BorderLayout.CENTER);
+
+		/**button area */
+		JPanel buttonPane=new JPanel(new FlowLayout(FlowLayout.CENTER));
+
+		JButton okButton=new RenderButton(PublicResource.getOkButtonLabel());
+		okButton.addActionListener(new ActionListener()
+		{
+
+			public void actionPerformed(ActionEvent e) {
+				if(table.isEditing())
+					table.getCellEditor().stopCellEditing();
+				if(readValues())
+					doClose();
+			}
+		}
+		);
+		buttonPane.add(okButton);
+
+		JButton quitButton=new RenderButton(PublicResource.getCancelButtonLabel());
+		quitButton.addActionListener(new ActionListener()
+		{
+
+			public void actionPerformed(ActionEvent e) {
+				values=null;
+				doClose();
+			}
+		}
+		);
+		buttonPane.add(quitButton);
+
+		main.add(buttonPane,BorderLayout.SOUTH);
+
+		getRootPane().setDefaultButton(okButton);
+		setSize(450,250);
+		toCenter();
+
+		addWindowListener(new WindowAdapter()
+		{
+			@Override
+			public void windowClosing(WindowEvent e)
+			{
+				values=null;
+				doClose();
+			}
+		}
+		);
+	}
+	/**
+	 * Ask the values of the parameters of the statement.
+	 *
+	 * @return values in the order of {@link ParameterizedSql#getNames()}, null if
+	 *         the user cancelled.
+	 */
+	public static Object[] showDialog(ParameterizedSql sql)
+	{
+		ParameterValuesDialog dialog=new ParameterValuesDialog(sql);
+		dialog.setVisible(true);
+		return dialog.values;
+	}
+	private void doClose()
+	{
+		removeAll();
+		dispose();
+	}
+	/**
+	 * Convert the texts to values and remember them.
+	 *
+	 * @return false if a text can't be converted to its type.
+	 */
+	private boolean readValues()
+	{
+		Object[] converted=new Object[model.names.size()];
+		for(int i=0;i<converted.length;i++)
+		{
+			try
+			{
+				converted[i]=convert(model.types[i],model.texts[i]);
+			}catch(IllegalArgumentException e)
+			{
+				JOptionPane.showMessageDialog(this,stringMgr.getString("resultset.parameterdialog.invalidvalue",
+						model.names.get(i),model.types[i],model.texts[i]),"error",JOptionPane.ERROR_MESSAGE);
+				return false;
+			}
+		}
+		synchronized(rememberedValues)
+		{
+			for(int i=0;i<converted.length;i++)
+			{
+				if(!ParameterizedSql.isPositional(model.names.get(i)))
+					rememberedValues.put(model.names.get(i),new String[]{model.types[i],model.texts[i]});
+			}
+		}
+		values=converted;
+		return true;
+	}
+	/**
+	 * @throws IllegalArgumentException if the text isn't a value of the type.
+	 */
+	static Object convert(String type,String text)
+	{
+		if(TYPE_NULL.equals(type))
+			return null;
+		if(text==null)
+			text="";
+		if(TYPE_STRING.equals(type))
+			return text;
+		if(TYPE_NUMBER.equals(type))
+			return new BigDecimal(text.trim());
+		if(TYPE_DATE.equals(type))
+			return Date.valueOf(text.trim());
+		if(TYPE_TIMESTAMP.equals(type))
+			return Timestamp.valueOf(text.trim());
+		try
+		{
+			return new BigDecimal(text.trim());
+		}catch(NumberFormatException e)
+		{
+			return text;
+		}
+	}
+	private static class ParameterTableModel extends AbstractTableModel
+	{
+		private static final long serialVersionUID = 1L;
+
+		final List<String> names;
+		final String[] types;
+		final String[] texts;
+
+		ParameterTableModel(List<String> names)
+		{
+			this.names=names;
+			types=new String[names.size()];
+			texts=new String[names.size()];
+			synchronized(rememberedValues)
+			{
+				for(int i=0;i<types.length;i++)
+				{
+					String[] remembered=rememberedValues.get(names.get(i));
+					types[i]=remembered==null?TYPE_AUTO:remembered[0];
+					texts[i]=remembered==null?"":remembered[1];
+				}
+			}
+		}
+		public int getColumnCount()
+		{
+			return 3;
+		}
+		public int getRowCount()
+		{
+			return names.size();
+		}
+		public String getColumnName(int column)
+		{
+			return stringMgr.getString("resultset.parameterdialog.table.column"+column);
+		}
+		public Object getValueAt(int row, int column)
+		{
+			if(column==0)
+				return names.get(row);
+			else if(column==1)
+				return types[row];
+			else
+				return texts[row];
+		}
+		public boolean isCellEditable(int row, int column)
+		{
+			return column>0;
+		}
+		public void setValueAt(Object value, int row, int column)
+		{
+			if(column==1)
+				types[row]=(String)value;
+			else if(column==2)
+				texts[row]=value==null?"":value.toString();
+			fireTableCellUpdated(row,column);
+		}
+	}
+}
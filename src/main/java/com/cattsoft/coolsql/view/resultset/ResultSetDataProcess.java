@@ -10,9 +10,15 @@ import javax.swing.SwingUtilities;
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
+import com.cattsoft.coolsql.sql.ParameterizedSql;
+import com.cattsoft.coolsql.sql.ResultFetchListener;
 import com.cattsoft.coolsql.sql.SQLResultSetResults;
 import com.cattsoft.coolsql.sql.SQLResults;
+import com.cattsoft.coolsql.sql.SQLStandardResultSetResults;
 import com.cattsoft.coolsql.sql.SQLUpdateResults;
+import com.cattsoft.coolsql.sql.store.ResultStore;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
 import com.cattsoft.coolsql.view.ResultSetView;
 import com.cattsoft.coolsql.view.ViewManage;
 import com.cattsoft.coolsql.view.bookmarkview.RecentSQL;
@@ -39,6 +45,13 @@ public class ResultSetDataProcess {
 
     private Bookmark bookmark;
 
+    /**
+     * The statement with its parameters, null if it has no parameter.
+     */
+    private ParameterizedSql parameterizedSql = null;
+
+    private Object[] parameterValues = null;
+
     //    private JTable tmpTable = null; //��ʱ��ؼ����ñ���������ݵ�ҳ��������
     public ResultSetDataProcess(DataSetPanel dataPane, String sql,
             Bookmark bookmark, int processType) {
@@ -59,6 +72,16 @@ public class ResultSetDataProcess {
 //        dataPane.firePanelPropertyUpdate("sqlResult", null, );
     }
 
+    /**
+     * Set the values of the parameters of the statement executed first.
+     * 
+     * @param parameterValues --values in the order of {@link ParameterizedSql#getNames()}.
+     */
+    public void setParameters(ParameterizedSql parameterizedSql, Object[] parameterValues) {
+        this.parameterizedSql = parameterizedSql;
+        this.parameterValues = parameterValues;
+    }
+
     /**
      * У�鴦������
      * 
@@ -94,8 +117,15 @@ public class ResultSetDataProcess {
         dataPane.setPromptText(PublicResource
                 .getSQLString("sql.execute.process.start"));
         SQLResults set = null;
+        TableFetchListener fetchListener = isStreaming() ? new TableFetchListener() : null;
         try {
-            set = bookmark.getDbInfoProvider().execute(bookmark.getConnection(), sql);          
+            if (parameterizedSql == null)
+                set = bookmark.getDbInfoProvider().executeWithCursor(bookmark.getConnection(),
+                        sql, fetchListener);
+            else
+                set = bookmark.getDbInfoProvider().executeWithCursor(bookmark.getConnection(),
+                        parameterizedSql.getSql(),
+                        parameterizedSql.getPlaceValues(parameterValues), fetchListener);
             
             /**
              * ����sql����
@@ -126,14 +156,13 @@ public class ResultSetDataProcess {
         if (set.isResultSet()) //����ǲ�ѯ���
         {
             SQLResultSetResults querySet = (SQLResultSetResults) set;
+            querySet.setFetchListener(null);
                        
             //������ؼ�,ͬʱ��ʼ�����
-            DataSetTable dataTable = new DataSetTable(querySet
-                    .getVectorDataOfRow(), DataSetPanel
-                    .getHeaderDefinition(querySet.getArrayDataOfColumn()));
-            ResultSetView view=ViewManage.getInstance().getResultView();
-            view.installDataSetTableSelectionListener(dataTable);
-            dataPane.addTableToContent(dataTable); //�������ݲ���,�����չʾ�ڽ�����
+            //The table filled while reading is replaced by the one of virtual scrolling
+            if (fetchListener == null || fetchListener.getTable() == null
+                    || isVirtualScrolling(querySet))
+                addTable(querySet);
             
             /**
              * ����ѯ�Ľ�����֮��չʾ�ڽ�����
@@ -167,6 +196,12 @@ public class ResultSetDataProcess {
                 .getSQLString("sql.execute.process.start"));
 
         boolean isError = false;
+        SQLResults data = dataPane.getSqlResult();
+        TableFetchListener fetchListener = null;
+        if (data.isResultSet() && isStreaming()) {
+            fetchListener = new TableFetchListener();
+            ((SQLResultSetResults) data).setFetchListener(fetchListener);
+        }
         try {
             if (processType == PREVIOUS)
                 dataPane.previousPage();
@@ -181,20 +216,20 @@ public class ResultSetDataProcess {
         } catch (UnifyException e) {
             isError = true;
             LogProxy.errorReport(e);
+        } finally {
+            if (fetchListener != null)
+                ((SQLResultSetResults) data).setFetchListener(null);
         }
 
         dataPane.setPromptText(PublicResource
                 .getSQLString("sql.execute.process.initdata"));
-        SQLResults data = dataPane.getSqlResult();
         if (data.isResultSet()) {
             SQLResultSetResults querySet = (SQLResultSetResults) data;
             //������ؼ�,ͬʱ��ʼ�����
-            DataSetTable dataTable = new DataSetTable(querySet
-                    .getVectorDataOfRow(), DataSetPanel
-                    .getHeaderDefinition(querySet.getArrayDataOfColumn()));
-            ResultSetView view=ViewManage.getInstance().getResultView();
-            view.installDataSetTableSelectionListener(dataTable);
-            dataPane.addTableToContent(dataTable); //�������ݲ���,�����չʾ�ڽ�����
+            //The table filled while reading shows a partial page if an error occurred
+            if (isError || fetchListener == null || fetchListener.getTable() == null
+                    || isVirtualScrolling(querySet))
+                addTable(querySet);
             //����������Ӽ����¼�
             //            ResultSetView view=ViewManage.getInstance().getResultView();
             //            dataPane.addDataChangeListener(view.getResultSetListener());
@@ -207,6 +242,58 @@ public class ResultSetDataProcess {
         }
     }
 
+    /**
+     * Create the table which displays the rows of the result, and show it in the panel.
+     */
+    private void addTable(SQLResultSetResults querySet) {
+        ColumnDisplayDefinition[] cols = DataSetPanel.getHeaderDefinition(querySet
+                .getArrayDataOfColumn());
+        DataSetTable dataTable;
+        if (isVirtualScrolling(querySet))
+            dataTable = new DataSetTable(new VirtualResultTableModel(
+                    (SQLStandardResultSetResults) querySet), cols);
+        else
+            dataTable = new DataSetTable(querySet.getStore(), cols);
+        ResultSetView view = ViewManage.getInstance().getResultView();
+        view.installDataSetTableSelectionListener(dataTable);
+        dataPane.addTableToContent(dataTable);
+    }
+
+    /**
+     * Return whether all rows of the result are displayed in one table which reads
+     * them in blocks while scrolling. It's used for a result of more than one page
+     * whose first page is displayed.
+     */
+    private boolean isVirtualScrolling(SQLResultSetResults querySet) {
+        if (!(querySet instanceof SQLStandardResultSetResults))
+            return false;
+        SQLStandardResultSetResults results = (SQLStandardResultSetResults) querySet;
+        return Setting.getInstance().getBoolProperty(
+                PropertyConstant.PROPERTY_VIEW_RESULTSET_VIRTUALSCROLL, false)
+                && results.hasNextPage() && !results.hasPreviousPage()
+                && !results.isFullMode();
+    }
+
+    /**
+     * Release the panel when the statement is cancelled before it's executed: the
+     * tab of a first execution is removed, the panel of a page turn is made ready
+     * again.
+     */
+    public void discard() {
+        if (processType == EXECUTE)
+            removeProcessingTab();
+        else
+            dataPane.setReady(true);
+    }
+
+    /**
+     * Return whether rows are displayed while the page is being read.
+     */
+    private boolean isStreaming() {
+        return Setting.getInstance().getBoolProperty(
+                PropertyConstant.PROPERTY_VIEW_RESULTSET_STREAMING, true);
+    }
+
     /**
      * ɾ������ͼ�ж�Ӧ�����tab
      *  
@@ -222,4 +309,59 @@ public class ResultSetDataProcess {
     		}
     	});
     }
+
+    /**
+     * Displays the rows of a page in a table as soon as the reading starts. The table
+     * shares the store which the rows are read into, and it's told about new rows in
+     * chunks, so the event dispatch thread handles one insertion event per chunk.
+     */
+    private class TableFetchListener implements ResultFetchListener {
+
+        private DataSetTable table = null;
+
+        private ResultStoreTableModel model = null;
+
+        public void fetchStarted(SQLResultSetResults results, ResultStore store) {
+            table = new DataSetTable(store, DataSetPanel
+                    .getHeaderDefinition(results.getArrayDataOfColumn()));
+            model = (ResultStoreTableModel) ((SortableTableModel) table.getModel())
+                    .getActualModel();
+            model.beginAppend();
+            ResultSetView view = ViewManage.getInstance().getResultView();
+            view.installDataSetTableSelectionListener(table);
+            dataPane.addTableToContent(table);
+            showProgress(0, 0);
+        }
+
+        public void rowsFetched(int rowCount, long elapsedTime) {
+            model.rowsAppended();
+            showProgress(rowCount, elapsedTime);
+        }
+
+        public void fetchFinished(int rowCount, long elapsedTime) {
+            model.endAppend();
+            showProgress(rowCount, elapsedTime);
+            final DataSetTable filledTable = table;
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    filledTable.adjustPerfectWidth();
+                }
+            });
+        }
+
+        /**
+         * Return the table which has been filled, null if no row has been read.
+         */
+        public DataSetTable getTable() {
+            return table;
+        }
+
+        private void showProgress(final int rowCount, final long elapsedTime) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    dataPane.setFetchProgress(rowCount, elapsedTime);
+                }
+            });
+        }
+    }
 }
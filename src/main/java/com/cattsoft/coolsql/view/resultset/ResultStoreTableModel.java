@@ -0,0 +1,223 @@
+package com.cattsoft.coolsql.view.resultset;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import com.cattsoft.coolsql.sql.store.ResultStore;
+
+/**
+ * Table model which reads the cells from a result store. The store is shared with
+ * the query result, so the rows of a page aren't copied into vectors for display.
+ * It offers the methods of DefaultTableModel which are used by SortableTableModel.
+ * <p>
+ * Rows may be appended to the store by another thread while the model is displayed,
+ * see {@link #beginAppend()}. The listeners then see only the rows which have been
+ * published in the event dispatch thread.
+ *
+ * @author agent
+ */
+public class ResultStoreTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private ResultStore store;
+
+    private Vector<Object> columnIdentifiers;
+
+    /**
+     * Number of rows known by the listeners while rows are appended by another
+     * thread, -1 if the model isn't in append mode.
+     */
+    private volatile int publishedRowCount = -1;
+
+    /**
+     * True if publishing the appended rows has been scheduled and not run yet.
+     */
+    private boolean isPublishPending = false;
+
+    public ResultStoreTableModel() {
+        this(null);
+    }
+
+    /**
+     * @param store --the rows of the model, an empty store is created if it's null.
+     */
+    public ResultStoreTableModel(ResultStore store) {
+        this.store = store == null ? new ResultStore(0) : store;
+        columnIdentifiers = new Vector<Object>();
+    }
+
+    public ResultStore getStore() {
+        return store;
+    }
+
+    public int getRowCount() {
+        return publishedRowCount < 0 ? store.getRowCount() : publishedRowCount;
+    }
+
+    public int getColumnCount() {
+        return columnIdentifiers.size();
+    }
+
+    public String getColumnName(int column) {
+        Object id = column < columnIdentifiers.size() ? columnIdentifiers.get(column) : null;
+        return id == null ? super.getColumnName(column) : id.toString();
+    }
+
+    public Object getValueAt(int row, int column) {
+        if (column >= store.getColumnCount())
+            return null;
+        return store.getValue(row, column);
+    }
+
+    public boolean isCellEditable(int row, int column) {
+        return true;
+    }
+
+    /**
+     * Return whether the rows can be sorted in client side, it needs all rows to be
+     * held by the model.
+     */
+    public boolean isSortable() {
+        return true;
+    }
+
+    public void setValueAt(Object value, int row, int column) {
+        setValueQuietly(value, row, column);
+        fireTableCellUpdated(row, column);
+    }
+
+    /**
+     * Set the value of the cell without notifying the listeners.
+     */
+    public void setValueQuietly(Object value, int row, int column) {
+        if (column < store.getColumnCount())
+            store.setValue(row, column, value);
+    }
+
+    public void addRow(Object[] values) {
+        int row = store.getRowCount();
+        store.addRow(values);
+        fireTableRowsInserted(row, row);
+    }
+
+    public void addRow(Vector<?> values) {
+        int row = store.getRowCount();
+        store.addRow(values);
+        fireTableRowsInserted(row, row);
+    }
+
+    public void removeRow(int row) {
+        store.removeRow(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Remove the rows at once, listeners are notified once.
+     *
+     * @param rows --indices of the rows, in any order.
+     */
+    public void removeRows(int[] rows) {
+        if (rows.length == 0)
+            return;
+        store.removeRows(rows);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Enter append mode: rows appended to the store by another thread are shown only
+     * after they have been published by {@link #rowsAppended()}.
+     */
+    public synchronized void beginAppend() {
+        publishedRowCount = store.getRowCount();
+    }
+
+    /**
+     * Schedule the publishing of the rows which have been appended to the store. It
+     * can be called by any thread. Calls made before the publishing runs are
+     * coalesced into one insertion event.
+     */
+    public synchronized void rowsAppended() {
+        if (isPublishPending)
+            return;
+        isPublishPending = true;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                publishRows(false);
+            }
+        });
+    }
+
+    /**
+     * Publish the remaining rows and leave append mode.
+     */
+    public void endAppend() {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                publishRows(true);
+            }
+        });
+    }
+
+    /**
+     * Fire the insertion of the rows appended since last publishing, it's called in
+     * the event dispatch thread.
+     */
+    private void publishRows(boolean isEnd) {
+        int oldCount;
+        int newCount;
+        synchronized (this) {
+            isPublishPending = false;
+            if (publishedRowCount < 0)
+                return;
+            oldCount = publishedRowCount;
+            newCount = store.getRowCount();
+            publishedRowCount = isEnd ? -1 : newCount;
+        }
+        if (newCount > oldCount)
+            fireTableRowsInserted(oldCount, newCount - 1);
+    }
+
+    public void setColumnIdentifiers(Object[] ids) {
+        setColumnIdentifiers(ids == null ? null : new Vector<Object>(Arrays.asList(ids)));
+    }
+
+    /**
+     * Replace the column names. If the number of columns changes, the rows are copied
+     * into a new store of the new width.
+     */
+    public void setColumnIdentifiers(Vector<?> ids) {
+        columnIdentifiers = ids == null ? new Vector<Object>() : new Vector<Object>(ids);
+        if (columnIdentifiers.size() != store.getColumnCount())
+            store = resize(store, columnIdentifiers.size());
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Replace the rows and the column names.
+     *
+     * @param data --vector of row vectors.
+     */
+    public void setDataVector(Vector<?> data, Vector<?> ids) {
+        columnIdentifiers = ids == null ? new Vector<Object>() : new Vector<Object>(ids);
+        store = new ResultStore(columnIdentifiers.size());
+        if (data != null) {
+            Iterator<?> it = data.iterator();
+            while (it.hasNext())
+                store.addRow((List<?>) it.next());
+        }
+        fireTableStructureChanged();
+    }
+
+    private static ResultStore resize(ResultStore source, int columnCount) {
+        ResultStore target = new ResultStore(columnCount);
+        for (int i = 0; i < source.getRowCount(); i++)
+            target.addRow(source.getRow(i));
+        return target;
+    }
+}
@@ -1,25 +1,50 @@
 package com.cattsoft.coolsql.view.resultset;
 
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.sql.ParameterizedSql;
+import com.cattsoft.coolsql.sql.QueryRegistry;
 
 
 /**
  * 
  * @author liu_xlin ����ݿ�ִ��sql,�Խ�����չʾ,������ҪΪ���Զ��߳������swing����̰߳�ȫ�ϵ�����
  */
-public class RetriveDataThread extends Thread {
+public class RetriveDataThread implements Runnable {
     private ResultSetDataProcess process;
+    private DataSetPanel dataPane;
     
     public RetriveDataThread(DataSetPanel dataPane, String sql,
             Bookmark bookmark, int processType)
     {
+        this.dataPane=dataPane;
         process=new ResultSetDataProcess(dataPane,sql,bookmark,processType);
     }
+    /**
+     * Execute a statement with parameters.
+     * 
+     * @param parameterValues --values of the parameters, in the order of {@link ParameterizedSql#getNames()}.
+     */
+    public RetriveDataThread(DataSetPanel dataPane, ParameterizedSql sql,
+            Object[] parameterValues, Bookmark bookmark)
+    {
+        this.dataPane=dataPane;
+        process=new ResultSetDataProcess(dataPane,sql.getOriginalSql(),bookmark,ResultSetDataProcess.EXECUTE);
+        process.setParameters(sql,parameterValues);
+    }
     /**
      * ��д�̷߳���
      */
     public void run()
     {
+        //The running statements of this thread are listed as the statements of the tab
+        QueryRegistry.setOwner(dataPane);
         process.process();
     }
+    /**
+     * Release the panel if the thread is cancelled before it runs.
+     */
+    public void discard()
+    {
+        process.discard();
+    }
 }
@@ -0,0 +1,519 @@
+package com.cattsoft.coolsql.view.resultset;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.cattsoft.coolsql.sql.ResultSetReader;
+import com.cattsoft.coolsql.sql.store.ResultStore;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.system.task.TaskGroup;
+
+/**
+ * Sorts the rows of a table model by one or more columns. The values of the sorted
+ * columns are read once into typed keys straight from the columns of the result
+ * store: primitive arrays for numeric and date columns, strings for character
+ * columns, so the cells aren't boxed. Modified cells which haven't been saved are
+ * applied to the keys before sorting. Then an int permutation of the rows is merge
+ * sorted, by several threads if there are many rows.
+ * <p>
+ * The sort is stable, rows of equal keys keep their order. Null cells are greater
+ * than any value.
+ *
+ * @author agent
+ */
+class RowPermutationSorter {
+
+    /**
+     * Number of rows over which the permutation is sorted by several threads.
+     */
+    static final int PARALLEL_THRESHOLD = 100000;
+
+    /**
+     * Size of ranges which are sorted by insertion.
+     */
+    private static final int INSERTION_SORT_SIZE = 32;
+
+    private final SortKey[] keys;
+
+    private final int rowCount;
+
+    /**
+     * @param model --the model whose rows are sorted.
+     * @param columns --the sorted columns of model, the first one is the major key.
+     * @param ascending --the order of each column.
+     * @param edits --modified cells of the model, it may be null.
+     */
+    RowPermutationSorter(ResultStoreTableModel model, int[] columns, boolean[] ascending,
+            CellEditOverlay edits) {
+        rowCount = model.getRowCount();
+        keys = new SortKey[columns.length];
+        for (int i = 0; i < columns.length; i++)
+            keys[i] = SortKey.create(model.getStore(), rowCount, columns[i], ascending[i],
+                    edits);
+    }
+
+    /**
+     * Sort the rows.
+     *
+     * @return the model rows in sorted order.
+     */
+    int[] sort() {
+        int[] order = new int[rowCount];
+        for (int i = 0; i < rowCount; i++)
+            order[i] = i;
+        int[] buffer = new int[rowCount];
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (rowCount < PARALLEL_THRESHOLD || threads < 2)
+            mergeSort(order, buffer, 0, rowCount);
+        else
+            parallelSort(order, buffer, threads);
+        return order;
+    }
+
+    /**
+     * Sort equal ranges of the permutation in parallel, then merge the sorted ranges
+     * by pairs in parallel until one range is left.
+     */
+    private void parallelSort(final int[] order, final int[] buffer, int threads) {
+        int parts = Math.min(threads, rowCount / (PARALLEL_THRESHOLD / 4));
+        final int[] bounds = new int[parts + 1];
+        for (int i = 0; i <= parts; i++)
+            bounds[i] = (int) ((long) rowCount * i / parts);
+        TaskGroup group = TaskExecutor.getInstance().createGroup("sort rows",
+                TaskExecutor.PRIORITY_INTERACTIVE, null, parts);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int i = 0; i < parts; i++) {
+            final int from = bounds[i];
+            final int to = bounds[i + 1];
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    mergeSort(order, buffer, from, to);
+                    return null;
+                }
+            });
+        }
+        invokeAll(group, tasks);
+        for (int width = 1; width < parts; width *= 2) {
+            tasks.clear();
+            for (int i = 0; i + width < parts; i += 2 * width) {
+                final int from = bounds[i];
+                final int mid = bounds[i + width];
+                final int to = bounds[Math.min(i + 2 * width, parts)];
+                tasks.add(new Callable<Object>() {
+                    public Object call() {
+                        merge(order, buffer, from, mid, to);
+                        return null;
+                    }
+                });
+            }
+            invokeAll(group, tasks);
+        }
+    }
+
+    private static void invokeAll(TaskGroup group, List<Callable<Object>> tasks) {
+        try {
+            group.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("sorting rows is interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException("sorting rows failed", cause);
+        }
+    }
+
+    /**
+     * Sort the range of the permutation, the buffer is used for merging.
+     */
+    private void mergeSort(int[] order, int[] buffer, int from, int to) {
+        if (to - from <= INSERTION_SORT_SIZE) {
+            for (int i = from + 1; i < to; i++) {
+                int row = order[i];
+                int j = i - 1;
+                while (j >= from && compare(order[j], row) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid);
+        mergeSort(order, buffer, mid, to);
+        merge(order, buffer, from, mid, to);
+    }
+
+    /**
+     * Merge two adjacent sorted ranges of the permutation.
+     */
+    private void merge(int[] order, int[] buffer, int from, int mid, int to) {
+        if (compare(order[mid - 1], order[mid]) <= 0)
+            return;
+        System.arraycopy(order, from, buffer, from, to - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to)
+            order[k++] = compare(buffer[j], buffer[i]) < 0 ? buffer[j++] : buffer[i++];
+        while (i < mid)
+            order[k++] = buffer[i++];
+        while (j < to)
+            order[k++] = buffer[j++];
+    }
+
+    private int compare(int row1, int row2) {
+        for (int i = 0; i < keys.length; i++) {
+            int result = keys[i].compare(row1, row2);
+            if (result != 0)
+                return result;
+        }
+        return 0;
+    }
+
+    /**
+     * Return true if the value is a null cell.
+     */
+    static boolean isNull(Object value) {
+        return value == null || ResultSetReader.NULL_VALUE.equals(value);
+    }
+
+    /**
+     * Compare two cell values in ascending order. Null cells are greater than any
+     * value, and values which can't be compared with each other are compared by
+     * their strings.
+     */
+    @SuppressWarnings("unchecked")
+    static int compareValues(Object value1, Object value2) {
+        boolean isNull1 = isNull(value1);
+        boolean isNull2 = isNull(value2);
+        if (isNull1 || isNull2)
+            return isNull1 == isNull2 ? 0 : isNull1 ? 1 : -1;
+        try {
+            return ((Comparable<Object>) value1).compareTo(value2);
+        } catch (ClassCastException e) {
+            return value1.toString().compareTo(value2.toString());
+        }
+    }
+
+    /**
+     * Values of a sorted column in the form which is compared fastest.
+     */
+    private static abstract class SortKey {
+
+        static final int TYPE_NONE = 0;
+
+        static final int TYPE_INTEGRAL = 1;
+
+        static final int TYPE_FLOATING = 2;
+
+        static final int TYPE_DATE = 3;
+
+        static final int TYPE_STRING = 4;
+
+        static final int TYPE_OBJECT = 5;
+
+        /**
+         * Null cells of the column.
+         */
+        protected final BitSet nulls;
+
+        /**
+         * 1 in ascending order, -1 in descending order.
+         */
+        protected final int direction;
+
+        protected SortKey(BitSet nulls, boolean ascending) {
+            this.nulls = nulls;
+            this.direction = ascending ? 1 : -1;
+        }
+
+        /**
+         * Create the key of a column of the store. The values kept in primitive arrays
+         * or as strings by the store are read without boxing, then the values which
+         * are kept aside and the modified cells are set one by one. If one of them
+         * doesn't fit the type of the column, the key is created from all the values.
+         */
+        static SortKey create(ResultStore store, int rowCount, int column,
+                boolean ascending, CellEditOverlay edits) {
+            BitSet nulls = new BitSet(rowCount);
+            BitSet others = new BitSet(rowCount);
+            SortKey key = null;
+            long[] longs = store.readLongs(column, rowCount, nulls, others);
+            if (longs != null) {
+                key = new LongKey(longs, nulls, ascending);
+            } else {
+                double[] doubles = store.readDoubles(column, rowCount, nulls, others);
+                if (doubles != null) {
+                    key = new DoubleKey(doubles, nulls, ascending);
+                } else {
+                    long[] times = store.readTimes(column, rowCount, nulls, others);
+                    if (times != null) {
+                        key = new DateKey(times, store.readNanos(column, rowCount), nulls,
+                                ascending);
+                    } else {
+                        String[] strings = store.readStrings(column, rowCount, nulls, others);
+                        if (strings != null)
+                            key = new StringKey(strings, nulls, ascending);
+                    }
+                }
+            }
+            if (edits != null) {
+                for (int row = edits.nextDirtyRow(0); row > -1 && row < rowCount;
+                        row = edits.nextDirtyRow(row + 1)) {
+                    if (edits.containsKey(row, column))
+                        others.set(row);
+                }
+            }
+            if (key == null)
+                return create(readValues(store, rowCount, column, edits), ascending);
+            for (int row = others.nextSetBit(0); row > -1; row = others.nextSetBit(row + 1)) {
+                Object value = getValue(store, row, column, edits);
+                if (isNull(value)) {
+                    nulls.set(row);
+                    continue;
+                }
+                nulls.clear(row);
+                if (!key.setValue(row, value))
+                    return create(readValues(store, rowCount, column, edits), ascending);
+            }
+            return key;
+        }
+
+        private static Object getValue(ResultStore store, int row, int column,
+                CellEditOverlay edits) {
+            if (edits != null && edits.containsKey(row, column))
+                return edits.get(row, column);
+            return store.getValue(row, column);
+        }
+
+        /**
+         * Read the values of the column as objects, with the modified cells.
+         */
+        private static Object[] readValues(ResultStore store, int rowCount, int column,
+                CellEditOverlay edits) {
+            Object[] values = new Object[rowCount];
+            store.readColumn(column, 0, rowCount, values);
+            if (edits != null) {
+                for (int row = edits.nextDirtyRow(0); row > -1 && row < rowCount;
+                        row = edits.nextDirtyRow(row + 1)) {
+                    if (edits.containsKey(row, column))
+                        values[row] = edits.get(row, column);
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Create the key which fits the type of the values.
+         */
+        static SortKey create(Object[] values, boolean ascending) {
+            BitSet nulls = new BitSet(values.length);
+            int type = TYPE_NONE;
+            for (int i = 0; i < values.length; i++) {
+                if (isNull(values[i])) {
+                    nulls.set(i);
+                    continue;
+                }
+                int valueType = getType(values[i]);
+                if (type == TYPE_NONE || type == valueType)
+                    type = valueType;
+                else if ((type == TYPE_INTEGRAL || type == TYPE_FLOATING)
+                        && (valueType == TYPE_INTEGRAL || valueType == TYPE_FLOATING))
+                    type = TYPE_FLOATING;
+                else
+                    type = TYPE_OBJECT;
+            }
+            SortKey key;
+            switch (type) {
+            case TYPE_INTEGRAL:
+                key = new LongKey(new long[values.length], nulls, ascending);
+                break;
+            case TYPE_FLOATING:
+                key = new DoubleKey(new double[values.length], nulls, ascending);
+                break;
+            case TYPE_DATE:
+                key = new DateKey(new long[values.length], null, nulls, ascending);
+                break;
+            case TYPE_STRING:
+                key = new StringKey(new String[values.length], nulls, ascending);
+                break;
+            default:
+                return new ObjectKey(values, nulls, ascending);
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (!nulls.get(i))
+                    key.setValue(i, values[i]);
+            }
+            return key;
+        }
+
+        static int getType(Object value) {
+            if (value instanceof Integer || value instanceof Long
+                    || value instanceof Short || value instanceof Byte)
+                return TYPE_INTEGRAL;
+            if (value instanceof Double || value instanceof Float)
+                return TYPE_FLOATING;
+            if (value instanceof java.util.Date)
+                return TYPE_DATE;
+            if (value instanceof String)
+                return TYPE_STRING;
+            return TYPE_OBJECT;
+        }
+
+        int compare(int row1, int row2) {
+            boolean isNull1 = nulls.get(row1);
+            boolean isNull2 = nulls.get(row2);
+            if (isNull1 || isNull2)
+                return isNull1 == isNull2 ? 0 : (isNull1 ? 1 : -1) * direction;
+            return compareValues(row1, row2) * direction;
+        }
+
+        /**
+         * Compare the values of two rows which aren't null, in ascending order.
+         */
+        abstract int compareValues(int row1, int row2);
+
+        /**
+         * Set the value of a row which isn't null.
+         *
+         * @return false if the value doesn't fit the type of the key.
+         */
+        abstract boolean setValue(int row, Object value);
+    }
+
+    private static class LongKey extends SortKey {
+
+        private final long[] values;
+
+        private LongKey(long[] values, BitSet nulls, boolean ascending) {
+            super(nulls, ascending);
+            this.values = values;
+        }
+
+        int compareValues(int row1, int row2) {
+            long v1 = values[row1];
+            long v2 = values[row2];
+            return v1 < v2 ? -1 : v1 == v2 ? 0 : 1;
+        }
+
+        boolean setValue(int row, Object value) {
+            if (getType(value) != TYPE_INTEGRAL)
+                return false;
+            values[row] = ((Number) value).longValue();
+            return true;
+        }
+    }
+
+    private static class DoubleKey extends SortKey {
+
+        private final double[] values;
+
+        private DoubleKey(double[] values, BitSet nulls, boolean ascending) {
+            super(nulls, ascending);
+            this.values = values;
+        }
+
+        int compareValues(int row1, int row2) {
+            return Double.compare(values[row1], values[row2]);
+        }
+
+        boolean setValue(int row, Object value) {
+            int type = getType(value);
+            if (type != TYPE_INTEGRAL && type != TYPE_FLOATING)
+                return false;
+            values[row] = ((Number) value).doubleValue();
+            return true;
+        }
+    }
+
+    /**
+     * Dates are compared by their milliseconds, and timestamps by their nanoseconds
+     * too.
+     */
+    private static class DateKey extends SortKey {
+
+        private final long[] times;
+
+        /**
+         * Nanoseconds of timestamps, null until a timestamp is set.
+         */
+        private int[] nanos;
+
+        private DateKey(long[] times, int[] nanos, BitSet nulls, boolean ascending) {
+            super(nulls, ascending);
+            this.times = times;
+            this.nanos = nanos;
+        }
+
+        int compareValues(int row1, int row2) {
+            long t1 = times[row1];
+            long t2 = times[row2];
+            if (t1 != t2)
+                return t1 < t2 ? -1 : 1;
+            //The milliseconds of the nanoseconds are in the times already
+            return nanos == null ? 0 : nanos[row1] % 1000000 - nanos[row2] % 1000000;
+        }
+
+        boolean setValue(int row, Object value) {
+            if (getType(value) != TYPE_DATE)
+                return false;
+            times[row] = ((java.util.Date) value).getTime();
+            if (value instanceof java.sql.Timestamp) {
+                if (nanos == null)
+                    nanos = new int[times.length];
+                nanos[row] = ((java.sql.Timestamp) value).getNanos();
+            } else if (nanos != null) {
+                nanos[row] = 0;
+            }
+            return true;
+        }
+    }
+
+    private static class StringKey extends SortKey {
+
+        private final String[] values;
+
+        private StringKey(String[] values, BitSet nulls, boolean ascending) {
+            super(nulls, ascending);
+            this.values = values;
+        }
+
+        int compareValues(int row1, int row2) {
+            return values[row1].compareTo(values[row2]);
+        }
+
+        boolean setValue(int row, Object value) {
+            if (getType(value) != TYPE_STRING)
+                return false;
+            values[row] = (String) value;
+            return true;
+        }
+    }
+
+    private static class ObjectKey extends SortKey {
+
+        private final Object[] values;
+
+        private ObjectKey(Object[] source, BitSet nulls, boolean ascending) {
+            super(nulls, ascending);
+            values = source;
+        }
+
+        int compareValues(int row1, int row2) {
+            return RowPermutationSorter.compareValues(values[row1], values[row2]);
+        }
+
+        boolean setValue(int row, Object value) {
+            values[row] = value;
+            return true;
+        }
+    }
+}
@@ -10,41 +10,38 @@ package com.cattsoft.coolsql.view.resultset;
  */
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.Vector;
 
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.AbstractTableModel;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableModel;
 
-import com.cattsoft.coolsql.pub.util.StringUtil;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.sql.FilterCondition;
+import com.cattsoft.coolsql.sql.RowFilter;
+import com.cattsoft.coolsql.sql.store.ResultStore;
+import com.cattsoft.coolsql.sql.store.ResultStoreSorter;
+import com.cattsoft.coolsql.view.log.LogProxy;
 
 public class SortableTableModel extends AbstractTableModel {
 
 	private static final long serialVersionUID = 1L;
 
 	public static final String PROPERTYNAME_ORDER = "order";
-	/**
-     * ��¼�޸ĺ����� key=row+column value=newvalue
-     */
-    protected Map<String,Object> modifyData = null;
+
+	public static final String PROPERTYNAME_FILTER = "filter";
     /**
-     * The rows that should be deleted.
+     * Modified cells and deleted rows which haven't been saved, by model index.
      */
-    protected Set<Integer> deletedRows = null;
+    protected final CellEditOverlay edits = new CellEditOverlay();
 
     private MyTableModelListener tableListener;
 
@@ -52,16 +49,37 @@ public class SortableTableModel extends AbstractTableModel {
 
     protected boolean _bAscending;
 
-    private DefaultTableModel _actualModel;
+    private ResultStoreTableModel _actualModel;
 
-    protected Integer[] _indexes;
+    /**
+     * Model row of each view row, null while all rows are displayed in model order.
+     */
+    protected int[] _indexes;
 
-    protected Vector<PropertyChangeListener> pcs;
+    /**
+     * Model rows in sorted order, null if the rows aren't sorted.
+     */
+    private int[] sortedRows;
 
     /**
-     * �бȽ���
+     * Model rows which match the filter, null if the rows aren't filtered.
      */
-    private TableModelComparator comparator=null;
+    private BitSet filteredRows;
+
+    private FilterCondition rowFilter;
+
+    /**
+     * Columns which the rows are sorted by, the first one is the major key.
+     */
+    private final List<Integer> sortColumns = new ArrayList<Integer>();
+
+    /**
+     * Order of each sorted column, true means ascending.
+     */
+    private final List<Boolean> sortOrders = new ArrayList<Boolean>();
+
+    protected Vector<PropertyChangeListener> pcs;
+
     public TableModel getActualModel() {
         return _actualModel;
     }
@@ -70,122 +88,15 @@ public class SortableTableModel extends AbstractTableModel {
         this(null);
     }
 
-    @SuppressWarnings("serial")
-	public SortableTableModel(DefaultTableModel model) {
+    public SortableTableModel(ResultStoreTableModel model) {
         super();
         
-        deletedRows = new HashSet<Integer>() {
-        	@Override
-        	public boolean add(Integer v) {
-        		boolean isAdded = super.add(v);
-        		
-        		if (isAdded) {
-	        		TableModelModifyEvent event=new TableModelModifyEvent(
-	        				this,TableModelModifyEvent.ACTION_TYPE_DELETE, null, v, true);
-	        		fireDataChanged(event);
-        		}
-        		
-        		return isAdded;
-        	}
-        	@Override
-        	public boolean remove(Object v) {
-        		boolean isRemoved = super.remove(v);
-        		
-        		if (isRemoved) {
-        			TableModelModifyEvent event=new TableModelModifyEvent(
-	        				this,TableModelModifyEvent.ACTION_TYPE_CANCEL_DELETE, null, v, size() > 0 || modifyData.size() > 0);
-	        		fireDataChanged(event);
-        		}
-        		
-        		return isRemoved;
-        	}
-        	@Override
-        	public void clear() {
-        		int size  = size();
-        		super.clear();
-        		if (size > 0) {
-        			TableModelModifyEvent event=new TableModelModifyEvent(
-	        				this,TableModelModifyEvent.ACTION_TYPE_CANCEL_DELETE, null, size, modifyData.size() > 0);
-	        		fireDataChanged(event);
-        		}
-        	}
-        	@Override
-        	public boolean addAll(Collection<? extends Integer> c) {
-        		boolean isAdded = super.addAll(c);
-        		
-        		if (isAdded) {
-        			TableModelModifyEvent event=new TableModelModifyEvent(
-	        				this,TableModelModifyEvent.ACTION_TYPE_DELETE, null, c, true);
-	        		fireDataChanged(event);
-        		}
-        		
-        		return isAdded;
-        	}
-        };
-        /**Ensure that user can be notified when modifyData takes a change */
-        modifyData = new HashMap<String,Object>()
-        {
-			private static final long serialVersionUID = 1L;
-			@Override
-        	public Object put(String key,Object value)
-        	{
-        		Object oldValue=super.put(key, value);
-        		if(oldValue==null)
-        		{
-        			if(value==null)
-        				return null;
-        		}else
-        		{
-        			if(oldValue.equals(value))
-        				return oldValue;
-        		}
-        		TableModelModifyEvent event=new TableModelModifyEvent(
-        				this,TableModelModifyEvent.ACTION_TYPE_MODIFY,oldValue,value,true);
-        		fireDataChanged(event);
-        		return oldValue;
-        	}
-			@Override
-			public void putAll(Map<? extends String, ? extends Object> t)
-			{
-				int oldSize = size();
-				super.putAll(t);
-				if (oldSize != size()) {
-					TableModelModifyEvent event=new TableModelModifyEvent(
-	        				this,TableModelModifyEvent.ACTION_TYPE_MODIFY,null,t,true);
-	        		fireDataChanged(event);
-				}
-			}
-        	@Override
-        	public Object remove(Object key)
-        	{
-        		Object value = super.remove(key);
-        		if (value != null) {
-	        		TableModelModifyEvent event=new TableModelModifyEvent(
-	        				this,TableModelModifyEvent.ACTION_TYPE_RESTORE,value, null, size() > 0 || deletedRows.size() > 0);
-	        		fireDataChanged(event);
-        		}
-        		return value;
-        	}
-        	@Override
-        	public void clear()
-        	{
-        		int oldSize = size();
-        		super.clear();
-        		if (oldSize != 0) {
-	        		TableModelModifyEvent event=new TableModelModifyEvent(
-	        				this,TableModelModifyEvent.ACTION_TYPE_RESTROE_ALL, null, null, deletedRows.size() > 0);
-	        		fireDataChanged(event);
-        		}
-        	}
-        }
-        ;
         tableListener = new MyTableModelListener();
         _iColumn = -1;
-        _indexes = new Integer[0];
+        _indexes = null;
         _bAscending = true;
         setActualModel(model);
         pcs = new Vector<PropertyChangeListener>();
-        comparator=new TableModelComparator();
     }
 
     /**
@@ -193,7 +104,7 @@ public class SortableTableModel extends AbstractTableModel {
      * 
      * @param newModel
      */
-    public void setActualModel(DefaultTableModel newModel) {
+    public void setActualModel(ResultStoreTableModel newModel) {
         if (_actualModel != null)
             _actualModel.removeTableModelListener(tableListener);
         _actualModel = newModel;
@@ -202,81 +113,120 @@ public class SortableTableModel extends AbstractTableModel {
     }
     public void modifyCell(int row,int modelColumn,Object value)
     {
-    	modifyData.put(StringUtil.compose(getRealRow(row),modelColumn),value);
+    	putModify(getRealRow(row),modelColumn,value);
     }
     /**
-     * 
-     * @param key the string generated by method StringUtil.compose(int row,int column).
+     * Save the new value of the cell, listeners are notified if the value changes.
+     * @param modelRow --the row index in model.
+     * @param modelColumn --the column index in model.
      * @param value --the new value of cell.
+     * @return the previous new value of the cell.
      */
-    public void modifyCell(String key,Object value)
+    public Object putModify(int modelRow,int modelColumn,Object value)
     {
-    	modifyData.put(key,value);
-    }
-    public Set<Integer> getShouldDeletedRows() {
-    	return deletedRows;
-    }
-    /**
-     * Retrieve a data structure of modified data which is represented by a map key of which is row index ,
-     * value of which is cell data structure list.
-     */
-    public Map<Integer, List<SortModelModifyStruct>> getModifiedDataStructure() {
-		Map<Integer, List<SortModelModifyStruct>> modifyStructMap = new HashMap<Integer, List<SortModelModifyStruct>>();
-		Iterator<String> it = modifyData.keySet().iterator();
-		while (it.hasNext()) {
-			String key = it.next().toString();
-			int[] cellInfo = StringUtil.resolveString(key);
-			if (cellInfo == null)
-				continue;
-
-			if (isShouldDelete((cellInfo[0]))) { //ignore the row should be deleted.
-				continue;
-			}
-			List<SortModelModifyStruct> rowStruct = modifyStructMap
-					.get(cellInfo[0]);
-			if (rowStruct == null) {
-				rowStruct = new ArrayList<SortModelModifyStruct>();
-				modifyStructMap.put(cellInfo[0], rowStruct);
-			}
-			rowStruct.add(new SortModelModifyStruct(cellInfo[1], modifyData
-					.get(key)));
-		}
-		return modifyStructMap;
-	}
+    	boolean isModified=edits.containsKey(modelRow, modelColumn);
+    	Object oldValue=edits.put(modelRow, modelColumn, value);
+    	if(oldValue==null)
+    	{
+    		if(value==null&&isModified)
+    			return null;
+    	}else
+    	{
+    		if(oldValue.equals(value))
+    			return oldValue;
+    	}
+    	TableModelModifyEvent event=new TableModelModifyEvent(
+    			this,TableModelModifyEvent.ACTION_TYPE_MODIFY,oldValue,value,true);
+    	fireDataChanged(event);
+    	return oldValue;
+    }
+    /**
+     * Return the new value of the cell, null if it's not modified.
+     * @param modelRow --the row index in model.
+     * @param modelColumn --the column index in model.
+     */
+    public Object getModify(int modelRow,int modelColumn)
+    {
+    	return edits.get(modelRow, modelColumn);
+    }
+    /**
+     * Return true if the cell specified by model indices has been modified.
+     */
+    public boolean isModified(int modelRow,int modelColumn)
+    {
+    	return edits.containsKey(modelRow, modelColumn);
+    }
+    /**
+     * Return true if any cell has been modified or any row has been marked as deleted.
+     */
+    public boolean hasChanges()
+    {
+    	return edits.hasChanges();
+    }
+    /**
+     * Return the changes which haven't been saved. The modified cells and deleted
+     * rows can be iterated in row order, they should be changed by the methods of
+     * this model so the listeners are notified.
+     */
+    public CellEditOverlay getEditOverlay()
+    {
+    	return edits;
+    }
+    /**
+     * Retrieve the modified cells of the row.
+     * @param modelRow the row index in model.
+     * @return empty list if no cell of the row has been modified.
+     */
+    public List<SortModelModifyStruct> getRowModifies(int modelRow) {
+    	List<SortModelModifyStruct> list = new ArrayList<SortModelModifyStruct>();
+    	for (int column = edits.nextModifiedColumn(modelRow, 0); column > -1;
+    			column = edits.nextModifiedColumn(modelRow, column + 1)) {
+    		list.add(new SortModelModifyStruct(column, edits.get(modelRow, column)));
+    	}
+    	return list;
+    }
     /**
      * To mark the row as deleted.
      * @param row the row should be deleted.
      */
-    public void markDeletedRow(Integer row) {
-    	deletedRows.add(row);
+    public void markDeletedRow(int row) {
+    	if (edits.markDeleted(row)) {
+    		TableModelModifyEvent event=new TableModelModifyEvent(
+    				this,TableModelModifyEvent.ACTION_TYPE_DELETE, null, row, true);
+    		fireDataChanged(event);
+    	}
     }
     public void markDeletedRow(Integer[] rows) {
     	if (rows == null || rows.length == 0) {
     		return;
     	}
     	for (Integer row : rows) {
-    		deletedRows.add(row);
+    		markDeletedRow(row.intValue());
     	}
     }
     /**
      * Cancel the row has been marked as deleted to normal status.
      */
-    public void cancelDeletedRow(Integer row) {
-    	deletedRows.remove(row);
+    public void cancelDeletedRow(int row) {
+    	if (edits.cancelDeleted(row)) {
+    		TableModelModifyEvent event=new TableModelModifyEvent(
+    				this,TableModelModifyEvent.ACTION_TYPE_CANCEL_DELETE, null, row, edits.hasChanges());
+    		fireDataChanged(event);
+    	}
     }
     public void cancelDeletedRow(Integer[] rows) {
     	if (rows == null || rows.length == 0) {
     		return;
     	}
     	for (Integer row : rows) {
-    		deletedRows.remove(row);
+    		cancelDeletedRow(row.intValue());
     	}
     }
     /**
      * Return true if the specified row should be deleted.
      */
-    public boolean isShouldDelete(Integer row) {
-    	return deletedRows.contains(row);
+    public boolean isShouldDelete(int row) {
+    	return edits.isDeleted(row);
     }
     public class SortModelModifyStruct implements Serializable
     {
@@ -319,7 +269,7 @@ public class SortableTableModel extends AbstractTableModel {
      * @param row the row index in view.
      */
     public int getRealRow(int row) {
-        return _indexes[row].intValue();
+        return _indexes == null ? row : _indexes[row];
     }
     /**
      * Get the row index in view corresponding to model row index.
@@ -327,6 +277,8 @@ public class SortableTableModel extends AbstractTableModel {
      */
     public int getViewRow(int modelRow)
     {
+    	if(_indexes==null)
+    		return modelRow;
     	for(int i=0;i<_indexes.length;i++)
     	{
     		if(_indexes[i]==modelRow)
@@ -340,7 +292,9 @@ public class SortableTableModel extends AbstractTableModel {
      * @see javax.swing.table.TableModel#getRowCount()
      */
     public int getRowCount() {
-        return _actualModel == null ? 0 : _actualModel.getRowCount();
+        if (_actualModel == null)
+            return 0;
+        return _indexes == null ? _actualModel.getRowCount() : _indexes.length;
     }
 
     /*
@@ -359,7 +313,7 @@ public class SortableTableModel extends AbstractTableModel {
      */
     public Object getValueAt(int row, int col) {
         //System.out.println("row="+row+",col="+col+",value="+o+",index["+row+"]="+_indexes[row].intValue()+"");
-        return _actualModel.getValueAt(_indexes[row].intValue(), col);
+        return _actualModel.getValueAt(getRealRow(row), col);
     }
 
     /**
@@ -368,7 +322,7 @@ public class SortableTableModel extends AbstractTableModel {
      * @see javax.swing.table.TableModel#setValueAt(java.lang.Object, int, int)
      */
     public void setValueAt(Object value, int row, int col) {
-        _actualModel.setValueAt(value, _indexes[row].intValue(), col);
+        _actualModel.setValueAt(value, getRealRow(row), col);
     }
 
     /**
@@ -386,10 +340,7 @@ public class SortableTableModel extends AbstractTableModel {
      * Set the value of specified cell, but not fire a notification to all table model listener
      */
     public void setValueInRealModel(Object ob, int row, int col) {
-//        _actualModel.setValueAt(ob, row, col);
-    	@SuppressWarnings("unchecked")
-    	Vector<Object> rowVector = (Vector<Object>)_actualModel.getDataVector().elementAt(row);
-        rowVector.setElementAt(ob, col);
+        _actualModel.setValueQuietly(ob, row, col);
     }
     /**
      * 
@@ -399,10 +350,10 @@ public class SortableTableModel extends AbstractTableModel {
      */
     public Object getDisplayValue(int row,int column)
     {
-    	String key=StringUtil.compose(getRealRow(row), column);
-    	if(this.modifyData.containsKey(key))
+    	int modelRow=getRealRow(row);
+    	if(edits.containsKey(modelRow, column))
     	{
-    		return this.modifyData.get(key);
+    		return edits.get(modelRow, column);
     	}else
     	{
     		return getValueAt(row,column);
@@ -431,29 +382,17 @@ public class SortableTableModel extends AbstractTableModel {
     }
 
     /**
-     * Delete multiple rows specified by user.
+     * Delete multiple rows specified by user. The rows are removed from the store in
+     * one pass and the listeners are notified once.
      * @param rows the row index in model.
      */
     public void deleteRows(int rows[]) {
-    	Set<Integer> rowsSet = new HashSet<Integer>(rows.length);
-    	for (Integer i : rows) {
-    		rowsSet.add(i);
-    	}
-    	List<Integer> rowsList = new ArrayList<Integer>(rowsSet.size());
-    	rowsList.addAll(rowsSet);
-    	Collections.sort(rowsList, intSorterDesc);
-        for (int i = 0; i < rowsList.size(); i++) {
-            deleteRow(rowsList.get(i));
-        }
+        if (rows.length == 0)
+            return;
+        _actualModel.removeRows(rows);
+        fireTableDataChanged();
     }
 
-    private final static Comparator<Integer> intSorterDesc = new Comparator<Integer>() {
-
-		public int compare(Integer o1, Integer o2) {
-			return o2 - o1;
-		}
-    	
-    };
     /**
      * ����һ�����
      * 
@@ -499,7 +438,7 @@ public class SortableTableModel extends AbstractTableModel {
     }
 
     public boolean isCellEditable(int row, int col) {
-        return _actualModel.isCellEditable(_indexes[row].intValue(), col);
+        return _actualModel.isCellEditable(getRealRow(row), col);
     }
 
     /**
@@ -522,15 +461,151 @@ public class SortableTableModel extends AbstractTableModel {
      * @param ascending the mode of ordering. True means sorting by ascending.
      */
     public void sortByColumn(int column, boolean ascending) {
+        if (!_actualModel.isSortable())
+            return;
+        sortColumns.clear();
+        sortOrders.clear();
+        sortColumns.add(column);
+        sortOrders.add(ascending);
+        sortRows(column, ascending);
+    }
+
+    /**
+     * Add the column to the sorted columns as a minor key, the rows keep the order
+     * of the columns sorted before and are sorted by this column where they are
+     * equal. If the column has been sorted, its order is reversed.
+     * @param column The column index in model.
+     * @return true if the column is sorted by ascending.
+     */
+    public boolean addSortColumn(int column) {
+        if (!_actualModel.isSortable())
+            return true;
+        int index = sortColumns.indexOf(column);
+        boolean ascending = true;
+        if (index < 0) {
+            sortColumns.add(column);
+            sortOrders.add(ascending);
+        } else {
+            ascending = !sortOrders.get(index).booleanValue();
+            sortOrders.set(index, ascending);
+        }
+        sortRows(column, ascending);
+        return ascending;
+    }
+
+    /**
+     * Return the columns which the rows are sorted by, the first one is the major key.
+     */
+    public int[] getSortColumns() {
+        int[] columns = new int[sortColumns.size()];
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = sortColumns.get(i).intValue();
+        return columns;
+    }
+
+    /**
+     * Return true if the column is sorted by ascending, false if it's sorted by
+     * descending or not sorted.
+     */
+    public boolean isSortAscending(int column) {
+        int index = sortColumns.indexOf(column);
+        return index > -1 && sortOrders.get(index).booleanValue();
+    }
+
+    /**
+     * Sort the rows by the sorted columns.
+     * @param column the column which has been clicked.
+     * @param ascending its order.
+     */
+    private void sortRows(int column, boolean ascending) {
+        int[] columns = getSortColumns();
+        boolean[] orders = new boolean[columns.length];
+        for (int i = 0; i < orders.length; i++)
+            orders[i] = sortOrders.get(i).booleanValue();
+        if (_actualModel.getStore().isSpilled()) {
+            try {
+                sortedRows = sortSpilledRows(columns, orders);
+            } catch (IOException e) {
+                LogProxy.errorReport(e);
+                return;
+            }
+        } else {
+            sortedRows = new RowPermutationSorter(_actualModel, columns, orders, edits).sort();
+        }
+        updateIndexes();
         _iColumn = column;
         _bAscending = ascending;
-        comparator.set_iColumn(column);
-        comparator.set_iAscending(ascending);
-        Arrays.sort(_indexes, comparator);
         fireTableDataChanged();
         fireSortModeChanged(PROPERTYNAME_ORDER, null, null);
     }
 
+    /**
+     * Display only the rows which match the condition, the rows keep their order.
+     * Modified cells are filtered by their new values.
+     * @param condition the condition of rows, null to display all rows.
+     * @throws UnifyException if the condition can't be compiled for the columns of
+     *             the model.
+     */
+    public void setRowFilter(FilterCondition condition) throws UnifyException {
+        if (condition == null) {
+            if (rowFilter == null)
+                return;
+            filteredRows = null;
+            rowFilter = null;
+        } else {
+            if (!_actualModel.isSortable())
+                return;
+            String[] names = new String[getColumnCount()];
+            for (int i = 0; i < names.length; i++)
+                names[i] = getColumnName(i);
+            RowFilter filter = new RowFilter(_actualModel.getStore(), names, condition) {
+                protected void readColumn(int column, int start, int count, Object[] target) {
+                    super.readColumn(column, start, count, target);
+                    int end = start + count;
+                    for (int row = edits.nextDirtyRow(start); row > -1 && row < end;
+                            row = edits.nextDirtyRow(row + 1)) {
+                        if (edits.containsKey(row, column))
+                            target[row - start] = edits.get(row, column);
+                    }
+                }
+            };
+            filteredRows = filter.filter();
+            rowFilter = condition;
+        }
+        updateIndexes();
+        _actualModel.fireTableDataChanged();
+        fireSortModeChanged(PROPERTYNAME_FILTER, null, rowFilter);
+    }
+
+    /**
+     * Return the condition of displayed rows, null if the rows aren't filtered.
+     */
+    public FilterCondition getRowFilter() {
+        return rowFilter;
+    }
+
+    /**
+     * Build the view rows from the sorted rows and the filtered rows.
+     */
+    private void updateIndexes() {
+        if (filteredRows == null) {
+            _indexes = sortedRows;
+            return;
+        }
+        int[] rows = new int[filteredRows.cardinality()];
+        int count = 0;
+        if (sortedRows == null) {
+            for (int row = filteredRows.nextSetBit(0); row > -1; row = filteredRows.nextSetBit(row + 1))
+                rows[count++] = row;
+        } else {
+            for (int i = 0; i < sortedRows.length; i++) {
+                if (filteredRows.get(sortedRows[i]))
+                    rows[count++] = sortedRows[i];
+            }
+        }
+        _indexes = rows;
+    }
+
     /**
      * ��ͷ��Ϣ����
      * 
@@ -621,32 +696,84 @@ public class SortableTableModel extends AbstractTableModel {
         clearModify();
 
         _iColumn = -1;
-        _indexes = new Integer[0];
+        _indexes = null;
+        sortedRows = null;
+        filteredRows = null;
+        rowFilter = null;
         _bAscending = true;
+        sortColumns.clear();
+        sortOrders.clear();
     }
     public Object removeModify(int modelRow,int modelColumn)
     {
-    	return this.modifyData.remove(StringUtil.compose(modelRow,modelColumn));
-    }
-    public Object removeModify(String key)
-    {
-    	return this.modifyData.remove(key);
+    	if(!edits.containsKey(modelRow, modelColumn))
+    		return null;
+    	Object value=edits.remove(modelRow, modelColumn);
+    	TableModelModifyEvent event=new TableModelModifyEvent(
+    			this,TableModelModifyEvent.ACTION_TYPE_RESTORE,value, null, edits.hasChanges());
+    	fireDataChanged(event);
+    	return value;
     }
     /**
      * ���޸ĵ���ݶ���գ�׼����һ�εı������޸�
      *  
      */
     public void clearModify() {
-        this.modifyData.clear();
+        if (edits.isEmpty())
+            return;
+        edits.clear();
+        TableModelModifyEvent event=new TableModelModifyEvent(
+                this,TableModelModifyEvent.ACTION_TYPE_RESTROE_ALL, null, null, edits.hasChanges());
+        fireDataChanged(event);
     }
     /**
      * ����Ϣ����(��ݵ�ǰ�����֯)
      *
      */
     public void rowInfoReset(int rows) {
-        _indexes = new Integer[rows];
-        for (int i = 0; i < _indexes.length; i++)
-            _indexes[i] = new Integer(i);
+        _indexes = null;
+        sortedRows = null;
+        sortColumns.clear();
+        sortOrders.clear();
+        if (rowFilter != null) {
+            filteredRows = null;
+            rowFilter = null;
+            fireSortModeChanged(PROPERTYNAME_FILTER, null, null);
+        }
+    }
+
+    /**
+     * Sort the rows whose store has been spilled to a temporary file, the values of
+     * the columns are sorted by runs and merged instead of being loaded into heap.
+     */
+    private int[] sortSpilledRows(final int[] columns, final boolean[] orders)
+            throws IOException {
+        final ResultStore store = _actualModel.getStore();
+        ResultStoreSorter sorter = new ResultStoreSorter(store, columns[0],
+                new Comparator<Object>() {
+                    public int compare(Object o1, Object o2) {
+                        Object[] keys1 = (Object[]) o1;
+                        Object[] keys2 = (Object[]) o2;
+                        for (int i = 0; i < keys1.length; i++) {
+                            int result = RowPermutationSorter.compareValues(keys1[i], keys2[i]);
+                            if (result != 0)
+                                return orders[i] ? result : -result;
+                        }
+                        return 0;
+                    }
+                }) {
+            protected Object getValue(int row) {
+                Object[] keys = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    if (edits.containsKey(row, columns[i]))
+                        keys[i] = edits.get(row, columns[i]);
+                    else
+                        keys[i] = store.getValue(row, columns[i]);
+                }
+                return keys;
+            }
+        };
+        return sorter.sort();
     }
 
     protected class MyTableModelListener implements TableModelListener {
@@ -662,62 +789,6 @@ public class SortableTableModel extends AbstractTableModel {
         }
     }
 
-    protected class TableModelComparator implements Comparator<Integer> {
-
-        public int compare(Integer i1, Integer i2) {
-            Object data1;
-            Object data2;
-            data1 = modifyData.get(StringUtil.compose(i1.intValue(), _iColumn));
-            data2 = modifyData.get(StringUtil.compose(i2.intValue(), _iColumn));
-            if (data1 == null)
-                data1 = _actualModel.getValueAt(i1.intValue(), _iColumn);
-            if (data2 == null)
-                data2 = _actualModel.getValueAt(i2.intValue(), _iColumn);
-            if (data1 == null && data2 == null)
-                return 0;
-            if (data1 == null)
-                return 1 * _iAscending;
-            if (data2 == null)
-                return -1 * _iAscending;
-            try {
-                Comparable<Object> c1 = (Comparable<Object>) data1;
-
-                return c1.compareTo((Comparable<Object>)data2) * _iAscending;
-            } catch (ClassCastException ex) {
-                return data1.toString().compareTo(data2.toString())
-                        * _iAscending;
-            }
-        }
-
-        private int _iColumn;
-
-        private int _iAscending;
-
-        public TableModelComparator()
-        {
-            this(-1);
-        }
-        public TableModelComparator(int iColumn) {
-            this(iColumn, true);
-        }
-
-        public TableModelComparator(int iColumn, boolean ascending) {
-            _iColumn = iColumn;
-            if (ascending)
-                _iAscending = 1;
-            else
-                _iAscending = -1;
-        }
-        public void set_iAscending(boolean ascending) {
-            if (ascending)
-                _iAscending = 1;
-            else
-                _iAscending = -1;
-        }
-        public void set_iColumn(int column) {
-            _iColumn = column;
-        }
-    }
     /**
      * Adds a listener to the list that's notified each time a change
      * to the data model occurs.
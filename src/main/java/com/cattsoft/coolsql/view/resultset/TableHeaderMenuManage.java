@@ -11,15 +11,23 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
+import javax.swing.table.TableModel;
 
 import com.cattsoft.coolsql.pub.component.BaseMenuManage;
 import com.cattsoft.coolsql.pub.component.BasePopupMenu;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
 import com.cattsoft.coolsql.pub.util.StringUtil;
+import com.cattsoft.coolsql.sql.FilterCondition;
+import com.cattsoft.coolsql.sql.FilterParser;
+import com.cattsoft.coolsql.sql.FilterSort;
 import com.cattsoft.coolsql.sql.SQLResultSetResults;
+import com.cattsoft.coolsql.view.log.LogProxy;
+import com.cattsoft.coolsql.view.resultset.action.SQLPageProcessAction;
 
 /**
  * @author liu_xlin
@@ -35,6 +43,15 @@ public class TableHeaderMenuManage extends BaseMenuManage {
      * ��������˵���
      */
     private JMenuItem copyColumnName=null;
+    /**
+     * Filter the rows which have been loaded.
+     */
+    private JMenuItem filterRows=null;
+    /**
+     * Filter the rows by executing the query again in database.
+     */
+    private JMenuItem filterInDatabase=null;
+    private JMenuItem clearFilter=null;
     
     /**
      * @param com
@@ -82,14 +99,154 @@ public class TableHeaderMenuManage extends BaseMenuManage {
             copyColumnName = createMenuItem(PublicResource
                     .getString("resultView.tableheader.popmenu.copyname"),null, copyNameAction);
             popMenu.add(copyColumnName);
+            popMenu.addSeparator();
+            filterRows = createMenuItem(PublicResource
+                    .getString("resultView.tableheader.popmenu.filter"),null, new ActionListener()
+            {
+                public void actionPerformed(ActionEvent e) {
+                    filter(false);
+                }
+            });
+            popMenu.add(filterRows);
+            filterInDatabase = createMenuItem(PublicResource
+                    .getString("resultView.tableheader.popmenu.filterindb"),null, new ActionListener()
+            {
+                public void actionPerformed(ActionEvent e) {
+                    filter(true);
+                }
+            });
+            popMenu.add(filterInDatabase);
+            clearFilter = createMenuItem(PublicResource
+                    .getString("resultView.tableheader.popmenu.clearfilter"),null, new ActionListener()
+            {
+                public void actionPerformed(ActionEvent e) {
+                    clearFilter();
+                }
+            });
+            popMenu.add(clearFilter);
+        }
+    }
+    private SortableTableModel getSortModel()
+    {
+        JTableHeader tableHeader=(JTableHeader)getComponent();
+        if(tableHeader==null||tableHeader.getTable()==null)
+            return null;
+        TableModel model=tableHeader.getTable().getModel();
+        return model instanceof SortableTableModel?(SortableTableModel)model:null;
+    }
+    /**
+     * Return the query result displayed by the table, null if it isn't a query.
+     */
+    private SQLResultSetResults getQueryResult()
+    {
+        JTableHeader tableHeader=(JTableHeader)getComponent();
+        if(tableHeader==null||tableHeader.getTable()==null)
+            return null;
+        DataSetPanel panel=DataSetPanel.getDataPaneByContent(tableHeader.getTable());
+        if(panel==null||!(panel.getSqlResult() instanceof SQLResultSetResults))
+            return null;
+        return (SQLResultSetResults)panel.getSqlResult();
+    }
+    /**
+     * Ask user for a filter condition and apply it.
+     * @param isInDatabase true if the query should be executed again with the condition,
+     * false if the rows which have been loaded are filtered.
+     */
+    private void filter(boolean isInDatabase)
+    {
+        JTableHeader tableHeader=(JTableHeader)getComponent();
+        SortableTableModel model=getSortModel();
+        SQLResultSetResults result=getQueryResult();
+        if(model==null||(isInDatabase&&result==null))
+            return;
+
+        FilterCondition current=model.getRowFilter();
+        if(isInDatabase&&result.getFilterSort()!=null)
+            current=result.getFilterSort().getCondition();
+        String text=current==null?null:current.toString();
+        if(text==null)
+        {
+            int col = point==null?-1:tableHeader.columnAtPoint(point);
+            text=col<0?"":tableHeader.getTable().getColumnName(col)+" = ";
+        }
+        Object input=JOptionPane.showInputDialog(tableHeader.getTable(),PublicResource
+                .getString("resultView.filter.prompt"),PublicResource
+                .getString(isInDatabase?"resultView.tableheader.popmenu.filterindb":"resultView.tableheader.popmenu.filter"),
+                JOptionPane.PLAIN_MESSAGE,null,null,text);
+        if(input==null)
+            return;
+        try {
+            FilterCondition condition=StringUtil.trim(input.toString()).length()==0?null:FilterParser.parse(input.toString());
+            if(isInDatabase)
+            {
+                FilterSort filterSort=result.getFilterSort();
+                if(filterSort==null)
+                    filterSort=new FilterSort();
+                FilterCondition previous=filterSort.getCondition();
+                filterSort.setCondition(condition);
+                try {
+                    result.getFilteredQuery(filterSort); //Check whether the filter can be executed by database.
+                } catch (UnifyException e) {
+                    //Filter the loaded rows instead
+                    filterSort.setCondition(previous);
+                    LogProxy.message(tableHeader.getTable(),PublicResource.getString(
+                        "resultView.filter.clientside",e.getMessage()),JOptionPane.WARNING_MESSAGE);
+                    model.setRowFilter(condition);
+                    return;
+                }
+                result.setFilterSort(filterSort);
+                model.setRowFilter(null);
+                refresh(tableHeader);
+            }else
+            {
+                model.setRowFilter(condition);
+            }
+        } catch (UnifyException e) {
+            LogProxy.errorReport(e);
         }
     }
+    private void clearFilter()
+    {
+        JTableHeader tableHeader=(JTableHeader)getComponent();
+        SortableTableModel model=getSortModel();
+        if(model!=null)
+        {
+            try {
+                model.setRowFilter(null);
+            } catch (UnifyException e) {
+                LogProxy.errorReport(e);
+            }
+        }
+        SQLResultSetResults result=getQueryResult();
+        if(result!=null&&result.getFilterSort()!=null&&result.getFilterSort().getCondition()!=null)
+        {
+            result.getFilterSort().setCondition(null);
+            result.setFilterSort(result.getFilterSort());
+            refresh(tableHeader);
+        }
+    }
+    /**
+     * Execute the query of the table again.
+     */
+    private void refresh(JTableHeader tableHeader)
+    {
+        DataSetPanel panel=DataSetPanel.getDataPaneByContent(tableHeader.getTable());
+        new SQLPageProcessAction(ResultSetDataProcess.REFRESH,panel).executeAction(null);
+    }
     /* ���� Javadoc��
      * @see com.coolsql.pub.display.BaseMenuManage#itemSet()
      */
     public BasePopupMenu itemCheck() {
         if(popMenu==null)
             createPopMenu();
+        SortableTableModel model=getSortModel();
+        SQLResultSetResults result=getQueryResult();
+        boolean isSortable=model!=null&&model.getActualModel() instanceof ResultStoreTableModel
+            &&((ResultStoreTableModel)model.getActualModel()).isSortable();
+        filterRows.setEnabled(isSortable);
+        filterInDatabase.setEnabled(result!=null);
+        clearFilter.setEnabled((model!=null&&model.getRowFilter()!=null)||(result!=null
+            &&result.getFilterSort()!=null&&result.getFilterSort().getCondition()!=null));
         return popMenu;
     }
 
@@ -0,0 +1,372 @@
+package com.cattsoft.coolsql.view.resultset;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import javax.swing.SwingUtilities;
+
+import com.cattsoft.coolsql.bookmarkBean.Bookmark;
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+import com.cattsoft.coolsql.sql.ResultBlockReader;
+import com.cattsoft.coolsql.sql.SQLStandardResultSetResults;
+import com.cattsoft.coolsql.sql.store.ResultStore;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
+import com.cattsoft.coolsql.system.task.ManagedTask;
+import com.cattsoft.coolsql.system.task.TaskExecutor;
+import com.cattsoft.coolsql.view.log.LogProxy;
+
+/**
+ * Table model which displays all rows of a query result in one table, while only a
+ * few blocks of rows are held in memory. A block has the rows of one page, it's read
+ * in background when a row of it is displayed, and the block following the scroll
+ * direction is read ahead. The least recently used blocks are released when the
+ * blocks take more heap than the configured budget.
+ * <p>
+ * The row count is estimated as the rows read so far plus one block until the end of
+ * the result has been read. Cells of a block which hasn't been read are displayed as
+ * empty. Rows can't be edited or sorted in client side.
+ * <p>
+ * The blocks are read by a task of {@link TaskExecutor}, which is started when a
+ * block is requested and ends when no block is left to read, so an idle model
+ * doesn't hold a thread or a connection.
+ *
+ * @author agent
+ */
+public class VirtualResultTableModel extends ResultStoreTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Min number of blocks held in memory whatever the budget is.
+     */
+    private static final int MIN_BLOCKS = 3;
+
+    private final ResultBlockReader reader;
+
+    private final Bookmark bookmark;
+
+    private final int blockSize;
+
+    /**
+     * Max heap size of the blocks in bytes.
+     */
+    private final long memoryBudget;
+
+    /**
+     * Blocks in memory in access order, mapped by block number.
+     */
+    private final LinkedHashMap<Integer, Block> blocks = new LinkedHashMap<Integer, Block>(
+            16, 0.75f, true);
+
+    private long memorySize = 0;
+
+    /**
+     * Number of rows of the result, -1 until the end has been read. It's changed in
+     * the event dispatch thread only, like the loaded row count.
+     */
+    private volatile int knownRowCount = -1;
+
+    /**
+     * Number of rows up to the end of the farthest block which has been read.
+     */
+    private volatile int loadedRowCount;
+
+    /**
+     * Block of a displayed row which isn't in memory, -1 if there is none.
+     */
+    private int requestedBlock = -1;
+
+    /**
+     * Block to read ahead, -1 if there is none.
+     */
+    private int prefetchBlock = -1;
+
+    /**
+     * Last block which has been requested, and whether it follows the previous one.
+     */
+    private int lastBlock = 0;
+
+    private boolean isForward = true;
+
+    private boolean isDisposed = false;
+
+    /**
+     * Whether a task reading blocks has been started and hasn't ended.
+     */
+    private boolean isLoading = false;
+
+    /**
+     * Set when reading a block failed, no more blocks are read.
+     */
+    private boolean isFailed = false;
+
+    /**
+     * Create the model of the result whose first page has been read. The cursor of
+     * the result is taken over by the model, it's closed by {@link #dispose()}.
+     */
+    public VirtualResultTableModel(SQLStandardResultSetResults results) {
+        super(results.getStore());
+        ResultStore first = results.getStore();
+        this.bookmark = results.getBookmark();
+        this.reader = new ResultBlockReader(results);
+        this.blockSize = Math.max(results.getNumberOfRowsPerPage(), first.getRowCount());
+        this.memoryBudget = Setting.getInstance().getIntProperty(
+                PropertyConstant.PROPERTY_VIEW_RESULTSET_VIRTUALSCROLL_MEMORYBUDGET, 32) * 1024L * 1024L;
+        addBlock(0, first);
+        loadedRowCount = first.getRowCount();
+        if (!reader.hasMore())
+            knownRowCount = loadedRowCount;
+        else
+            prefetchBlock = 1;
+        synchronized (this) {
+            startLoader();
+        }
+    }
+
+    public int getRowCount() {
+        return knownRowCount < 0 ? loadedRowCount + blockSize : knownRowCount;
+    }
+
+    /**
+     * Return the value of the cell, null if its block hasn't been read yet. Reading
+     * the block is requested in that case.
+     */
+    public Object getValueAt(int row, int column) {
+        int number = row / blockSize;
+        Block block;
+        synchronized (this) {
+            block = blocks.get(Integer.valueOf(number));
+            if (block == null) {
+                if (requestedBlock != number) {
+                    if (number != lastBlock)
+                        isForward = number > lastBlock;
+                    lastBlock = number;
+                    requestedBlock = number;
+                    startLoader();
+                }
+                return null;
+            }
+            int next = isForward ? number + 1 : number - 1;
+            if (next != prefetchBlock && isAvailable(next)
+                    && !blocks.containsKey(Integer.valueOf(next))) {
+                prefetchBlock = next;
+                startLoader();
+            }
+        }
+        int offset = row - number * blockSize;
+        if (offset >= block.store.getRowCount() || column >= block.store.getColumnCount())
+            return null;
+        return block.store.getValue(offset, column);
+    }
+
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    public boolean isSortable() {
+        return false;
+    }
+
+    public void setValueAt(Object value, int row, int column) {
+    }
+
+    public void setValueQuietly(Object value, int row, int column) {
+    }
+
+    public void addRow(Object[] values) {
+        throw new UnsupportedOperationException("rows of virtual scrolling are read only");
+    }
+
+    public void addRow(Vector<?> values) {
+        throw new UnsupportedOperationException("rows of virtual scrolling are read only");
+    }
+
+    public void removeRow(int row) {
+        throw new UnsupportedOperationException("rows of virtual scrolling are read only");
+    }
+
+    public void removeRows(int[] rows) {
+        throw new UnsupportedOperationException("rows of virtual scrolling are read only");
+    }
+
+    /**
+     * Stop reading blocks and close the cursor of the result. The blocks in memory
+     * are released.
+     */
+    public synchronized void dispose() {
+        isDisposed = true;
+        blocks.clear();
+        memorySize = 0;
+        //A running loader closes the reader when it ends
+        if (!isLoading)
+            reader.close();
+    }
+
+    /**
+     * Start the task reading the blocks if it isn't running. It's called with the
+     * lock of the model held.
+     */
+    private void startLoader() {
+        if (isLoading || isDisposed || isFailed)
+            return;
+        isLoading = true;
+        ManagedTask task = TaskExecutor.getInstance().createTask(new BlockLoader(),
+                "read blocks " + bookmark.getAliasName(), TaskExecutor.PRIORITY_INTERACTIVE,
+                bookmark);
+        task.setCancelAction(new Runnable() {
+            public void run() {
+                loaderEnded(false);
+            }
+        });
+        task.start();
+    }
+
+    /**
+     * Called by the loader when it ends.
+     *
+     * @param isFailure --true if reading a block failed.
+     */
+    private synchronized void loaderEnded(boolean isFailure) {
+        isLoading = false;
+        if (isFailure)
+            isFailed = true;
+        if (isDisposed)
+            reader.close();
+    }
+
+    /**
+     * Return whether the block may contain rows of the result.
+     */
+    private boolean isAvailable(int number) {
+        if (number < 0)
+            return false;
+        return knownRowCount < 0 || number * blockSize < knownRowCount;
+    }
+
+    /**
+     * Return the next block to read, -1 if none has to be read. It's called with the
+     * lock of the model held.
+     */
+    private int takeBlock() {
+        int number = requestedBlock;
+        requestedBlock = -1;
+        if (number >= 0 && !blocks.containsKey(Integer.valueOf(number))) {
+            //Read ahead from the block which is displayed
+            prefetchBlock = isForward ? number + 1 : number - 1;
+            return number;
+        }
+        number = prefetchBlock;
+        prefetchBlock = -1;
+        if (isAvailable(number) && !blocks.containsKey(Integer.valueOf(number)))
+            return number;
+        return -1;
+    }
+
+    /**
+     * Hold the block in memory, and release the least recently used blocks while the
+     * budget is exceeded. It's called with the lock of the model held.
+     */
+    private void addBlock(int number, ResultStore store) {
+        Block block = new Block(store);
+        Block old = blocks.put(Integer.valueOf(number), block);
+        if (old != null)
+            memorySize -= old.memorySize;
+        memorySize += block.memorySize;
+        Iterator<Map.Entry<Integer, Block>> it = blocks.entrySet().iterator();
+        while (memorySize > memoryBudget && blocks.size() > MIN_BLOCKS && it.hasNext()) {
+            Map.Entry<Integer, Block> entry = it.next();
+            int key = entry.getKey().intValue();
+            if (key == number || key == lastBlock)
+                continue;
+            memorySize -= entry.getValue().memorySize;
+            it.remove();
+        }
+    }
+
+    /**
+     * Update the row count after the block has been read, and repaint its rows. It's
+     * called in the event dispatch thread.
+     */
+    private void blockLoaded(int number, int rowCount, boolean hasMore) {
+        int oldCount = getRowCount();
+        int end = number * blockSize + rowCount;
+        if (!hasMore)
+            knownRowCount = end;
+        else if (end > loadedRowCount)
+            loadedRowCount = end;
+        int newCount = getRowCount();
+        if (newCount > oldCount)
+            fireTableRowsInserted(oldCount, newCount - 1);
+        else if (newCount < oldCount)
+            fireTableRowsDeleted(newCount, oldCount - 1);
+        int first = number * blockSize;
+        int last = Math.min(first + blockSize, newCount) - 1;
+        if (last >= first)
+            fireTableRowsUpdated(first, last);
+    }
+
+    /**
+     * Rows of a block and their estimated heap size.
+     */
+    private static class Block {
+
+        private final ResultStore store;
+
+        private final long memorySize;
+
+        private Block(ResultStore store) {
+            this.store = store;
+            this.memorySize = store.getMemorySize();
+        }
+    }
+
+    /**
+     * Reads the requested blocks one by one until no block is left to read, the model
+     * is disposed or an error occurs.
+     */
+    private class BlockLoader implements Runnable {
+
+        public void run() {
+            boolean isFailure = true;
+            try {
+                while (true) {
+                    int next;
+                    synchronized (VirtualResultTableModel.this) {
+                        next = isDisposed ? -1 : takeBlock();
+                        if (next < 0) {
+                            isFailure = false;
+                            isLoading = false;
+                            if (isDisposed)
+                                reader.close();
+                            return;
+                        }
+                    }
+                    final int number = next;
+                    ResultStore store = reader.readBlock(number * blockSize + 1, blockSize);
+                    final int rowCount = store.getRowCount();
+                    final boolean hasMore = reader.hasMore();
+                    synchronized (VirtualResultTableModel.this) {
+                        if (!isDisposed)
+                            addBlock(number, store);
+                    }
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            blockLoaded(number, rowCount, hasMore);
+                        }
+                    });
+                }
+            } catch (SQLException e) {
+                LogProxy.SQLErrorReport(e);
+            } catch (UnifyException e) {
+                LogProxy.errorReport(e);
+            } finally {
+                if (isFailure)
+                    loaderEnded(true);
+            }
+        }
+    }
+}
@@ -7,12 +7,16 @@ import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -24,7 +28,6 @@ import javax.swing.table.TableColumnModel;
 import org.jdesktop.swingworker.SwingWorker;
 
 import com.cattsoft.coolsql.action.framework.AutoCsAction;
-import com.cattsoft.coolsql.adapters.dialect.DialectFactory;
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.exportdata.Actionable;
 import com.cattsoft.coolsql.pub.component.WaitDialog;
@@ -34,13 +37,17 @@ import com.cattsoft.coolsql.pub.exception.UnifyException;
 import com.cattsoft.coolsql.pub.parse.StringManager;
 import com.cattsoft.coolsql.pub.parse.StringManagerFactory;
 import com.cattsoft.coolsql.pub.util.SqlUtil;
-import com.cattsoft.coolsql.pub.util.StringUtil;
 import com.cattsoft.coolsql.sql.Database;
+import com.cattsoft.coolsql.sql.QueryRegistry;
+import com.cattsoft.coolsql.sql.RunningQuery;
 import com.cattsoft.coolsql.sql.SQLResultSetResults;
 import com.cattsoft.coolsql.sql.model.DataType;
 import com.cattsoft.coolsql.sql.model.Table;
+import com.cattsoft.coolsql.system.PropertyConstant;
+import com.cattsoft.coolsql.system.Setting;
 import com.cattsoft.coolsql.view.ViewManage;
 import com.cattsoft.coolsql.view.log.LogProxy;
+import com.cattsoft.coolsql.view.resultset.CellEditOverlay;
 import com.cattsoft.coolsql.view.resultset.DataSetPanel;
 import com.cattsoft.coolsql.view.resultset.DataSetTable;
 import com.cattsoft.coolsql.view.resultset.SortableTableModel;
@@ -96,61 +103,53 @@ public class SaveChangeToDBAction extends AutoCsAction {
 		dialog.setVisible(true);
 	}
 
-	private String generateRowUpdateSQL(String qualifiedName,
-			Database db,
-			int rowIndex,
-			List<SortModelModifyStruct> list,
-			Map<Integer,DataType> colTypeMap,
-			DataSetTable table,
-			List<UpdateKey> keyList) throws UnifyException
+	/**
+	 * Build the UPDATE statement of the rows whose modified columns are
+	 * <code>columns</code>, the values are bound to '?'.
+	 * @param nullKeys whether the value of each key is null, such a key is compared by "is null".
+	 */
+	private String generateUpdateSQL(String qualifiedName,
+			SortableTableModel model,
+			List<Integer> columns,
+			List<UpdateKey> keyList,
+			boolean[] nullKeys)
 	{
 		StringBuilder sb=new StringBuilder("UPDATE ").append(qualifiedName).append(" SET ");
-		SortableTableModel model=(SortableTableModel)table.getModel();
-		
-		 boolean isPostgreSQL=DialectFactory.isPostgreSQL(db.getDatabaseMetaData());
-		for(SortModelModifyStruct struct:list)
+		for(int i=0;i<columns.size();i++)
 		{
-			int columnIndex=struct.getColumnIndex();
-			Object value=struct.getValue();
-			DataType dataType=getColumnDataType(db,table.getColumnModel(),columnIndex,colTypeMap);
-			String name=model.getColumnName(columnIndex);
-			
-			if(dataType==null||isPostgreSQL)
-			{
-				int columnDataType=getColumnDataType(columnIndex,table.getColumnModel());
-				sb.append(name).append("=").append(value==null?"null":SqlUtil.qualifyColumnValue(value.toString(),columnDataType)).append(",");
-				continue;
-			}
-			
-			String realValue = (value == null ? "null"
-                    : (StringUtil.trim(dataType.getLiteralPrefix())
-                            + value.toString()
-                            + StringUtil.trim(dataType.getLiteralSuffix())));
-			sb.append(name).append("=").append(realValue).append(",");
+			if(i>0)
+				sb.append(",");
+			sb.append(model.getColumnName(columns.get(i))).append("=?");
 		}
-		sb.deleteCharAt(sb.length()-1);
-		
+		appendKeyCondition(sb,keyList,nullKeys);
+		return sb.toString();
+	}
+	private String generateDeleteSQL(String qualifiedName,List<UpdateKey> keyList,boolean[] nullKeys)
+	{
+		StringBuilder sb=new StringBuilder("DELETE FROM ").append(qualifiedName);
+		appendKeyCondition(sb,keyList,nullKeys);
+		return sb.toString();
+	}
+	private void appendKeyCondition(StringBuilder sb,List<UpdateKey> keyList,boolean[] nullKeys)
+	{
 		sb.append(" WHERE ");
-		for(UpdateKey key:keyList)
+		for(int i=0;i<keyList.size();i++)
 		{
-			Object value=model.getValueInRealModel(rowIndex, key.getColumnIndex());
-			DataType dataType=getColumnDataType(db,table.getColumnModel(),key.getColumnIndex(),colTypeMap);
-			
-			if(dataType==null||isPostgreSQL)
-			{
-				int columnDataType=getColumnDataType(key.getColumnIndex(),table.getColumnModel());
-				sb.append(key.getColumnName()).
-				append(value==null?" is null ":("=" + SqlUtil.qualifyColumnValue(value.toString(),columnDataType))).append(" AND ");
-				continue;
-			}
-			
-			String realValue = (value == null ? " is null "
-                    : "="+(StringUtil.trim(dataType.getLiteralPrefix())
-                            + value.toString()
-                            + StringUtil.trim(dataType.getLiteralSuffix())));
-			sb.append(key.getColumnName()).append(realValue).append(" AND ");
+			if(i>0)
+				sb.append(" AND ");
+			sb.append(keyList.get(i).getColumnName()).append(nullKeys[i]?" is null":"=?");
 		}
-		return sb.substring(0, sb.length()-5);//Clear up AND
+	}
+	/**
+	 * Return the JDBC type of the column, it's taken from the data types of the
+	 * database, or from the result if the database doesn't know the type name.
+	 */
+	private int getColumnSqlType(Database db,TableColumnModel columnModel,int columnIndex,Map<Integer,DataType> colTypeMap) throws UnifyException
+	{
+		DataType dataType=getColumnDataType(db,columnModel,columnIndex,colTypeMap);
+		if(dataType!=null)
+			return dataType.getJavaType();
+		return getColumnDataType(columnIndex,columnModel);
 	}
 	private DataType getColumnDataType(Database db ,TableColumnModel columnModel,int columnIndex,Map<Integer,DataType> colTypeMap) throws UnifyException
 	{
@@ -200,18 +199,45 @@ public class SaveChangeToDBAction extends AutoCsAction {
 		
 		private DataSetPanel panel;
 		
-		private Map<Integer,List<SortModelModifyStruct>> modifyDataStruct;
+		private SortableTableModel model;
 		
-		private Set<Integer>  shouldDeletedRows;
+		private CellEditOverlay edits;
 		private boolean isRun;
 		
 		private int processCount; //rows count that have been processed.
 		
-		private Map<String ,TempCellObject> processedCell;
+		private CellEditOverlay processedCell;
 		private Set<Integer> processedRow;
 		
+		/**
+		 * Deleted rows which have been committed, they can't be rolled back anymore.
+		 */
+		private Set<Integer> committedRow;
+		
+		/**
+		 * True if the user has rolled back the saved rows.
+		 */
+		private boolean isRolledBack;
+		
+		private int batchSize;
+		
+		private int commitInterval;
+		
+		/**
+		 * Number of rows saved since the last commit.
+		 */
+		private int savedSinceCommit;
+		
 		private Connection con = null;
-        private Statement sm = null;
+		
+		private Table tableEntity;
+		private DataSetTable dsTable;
+		private Map<Integer,DataType> colTypeMap;
+		
+		/**
+		 * Batches of rows keyed by the shape of their statement.
+		 */
+		private Map<String,ChangeBatch> batches;
 		public SaveChangeWorker(final WaitDialog dialog)
 		{
 			this.dialog=dialog;
@@ -224,13 +250,11 @@ public class SaveChangeToDBAction extends AutoCsAction {
 				return;
 			
 			DataSetTable dsTable=(DataSetTable)((DataSetPanel)panel).getContent();
-			SortableTableModel model=(SortableTableModel)dsTable.getModel();
-			modifyDataStruct = model.getModifiedDataStructure();
-			
-			shouldDeletedRows = model.getShouldDeletedRows();
+			model=(SortableTableModel)dsTable.getModel();
+			edits = model.getEditOverlay();
 			
         	final Thread current=Thread.currentThread();
-            dialog.setTaskLength(modifyDataStruct.size() + shouldDeletedRows.size()); //Set the length of task
+            dialog.setTaskLength(getModifiedRowCount() + edits.getDeletedCount()); //Set the length of task
             dialog.addQuitAction(new Actionable() {
 
 				public void action() {
@@ -249,11 +273,40 @@ public class SaveChangeToDBAction extends AutoCsAction {
 		                    }
 		                }
 		            });
-			processedCell=new HashMap<String,TempCellObject>();
+			processedCell=new CellEditOverlay();
 			processedRow = new HashSet<Integer>();
+			committedRow = new HashSet<Integer>();
+			batches = new LinkedHashMap<String,ChangeBatch>();
+			
+			Setting setting=Setting.getInstance();
+			batchSize=Math.max(1,setting.getIntProperty(PropertyConstant.PROPERTY_VIEW_RESULTSET_SAVE_BATCHSIZE,500));
+			commitInterval=Math.max(0,setting.getIntProperty(PropertyConstant.PROPERTY_VIEW_RESULTSET_SAVE_COMMITINTERVAL,0));
 			
 			dialog.setPrompt(stringMgr.getString("resultset.action.savechange.processdialog.prompt"));
 		}
+		/**
+		 * Return the number of modified rows which aren't marked as deleted.
+		 */
+		private int getModifiedRowCount()
+		{
+			int count = 0;
+			for (int row = edits.nextDirtyRow(0); row > -1; row = edits.nextDirtyRow(row + 1))
+			{
+				if (!edits.isDeleted(row))
+					count++;
+			}
+			return count;
+		}
+		/**
+		 * Return the next modified row which isn't marked as deleted, -1 if there is no more row.
+		 */
+		private int nextModifiedRow(int fromRow)
+		{
+			int row = edits.nextDirtyRow(fromRow);
+			while (row > -1 && edits.isDeleted(row))
+				row = edits.nextDirtyRow(row + 1);
+			return row;
+		}
 		/* (non-Javadoc)
 		 * @see org.jdesktop.swingworker.SwingWorker#doInBackground()
 		 */
@@ -270,10 +323,9 @@ public class SaveChangeToDBAction extends AutoCsAction {
 				return;
 			
 			SQLResultSetResults queryResult=(SQLResultSetResults)panel.getSqlResult();
-			Table tableEntity=(Table)queryResult.getEntities()[0];
+			tableEntity=(Table)queryResult.getEntities()[0];
 			
-			Map<Integer,DataType> colTypeMap = new HashMap<Integer,DataType>();
-			Iterator<Integer> rows=modifyDataStruct.keySet().iterator();
+			colTypeMap = new HashMap<Integer,DataType>();
 			
 			Bookmark bookmark = tableEntity.getBookmark();
 	        boolean oldIsAutoCommit = bookmark.isAutoCommit();
@@ -296,99 +348,72 @@ public class SaveChangeToDBAction extends AutoCsAction {
 	        
 	        try {
 	            con = bookmark.getConnection();
-	            sm = con.createStatement();
 	        } catch (UnifyException e) {
 	            LogProxy.errorReport(GUIUtil.findLikelyOwnerWindow(), e);
 	            return;
-	        } catch (SQLException e) {
-	            LogProxy.SQLErrorReport(GUIUtil.findLikelyOwnerWindow(), e);
-	            return;
 	        }
 			
-	        DataSetTable dsTable = (DataSetTable)((DataSetPanel)panel).getContent();
+	        dsTable = (DataSetTable)((DataSetPanel)panel).getContent();
 	        processCount = 0;
+	        List<UpdateKey> keyList = panel.getKeyList();
 	        
 	        try
 	        {
-				while(isRun && rows.hasNext())
+				for(int index = nextModifiedRow(0); isRun && index > -1; index = nextModifiedRow(index + 1))
 				{
-					boolean isSuccess = true;
-					int index=rows.next();
-					List<SortModelModifyStruct> list=modifyDataStruct.get(index);
-					try
-					{
-						isSuccess = modifyTask(index, dsTable, tableEntity, colTypeMap);
-						
-					}catch(Exception e)
+					List<SortModelModifyStruct> list=model.getRowModifies(index);
+					if(list.isEmpty())
 					{
-						isSuccess=false;
-						try
-						{
-							if(processError(e,dsTable,index,con))
-							{
-								continue;
-							}else
-							{
-	//							con.commit();
-								isRun=false;
-							}
-						}catch(Throwable e1)
-						{
-							LogProxy.errorReport(e1);
-						}
-					}finally
-					{
-						if(isSuccess) {
-							processStateForModify(index,list,dsTable);//Save the information of cell that has been process successfully.
-						}
-						
 						setProgress(++processCount);
+						continue;
 					}
+					List<Integer> columns=new ArrayList<Integer>(list.size());
+					for(SortModelModifyStruct struct:list)
+						columns.add(struct.getColumnIndex());
+					boolean[] nullKeys=getNullKeys(index,keyList);
+					
+					String shape="UPDATE"+columns+Arrays.toString(nullKeys);
+					ChangeBatch batch=batches.get(shape);
+					if(batch==null)
+					{
+						batch=new ChangeBatch(generateUpdateSQL(tableEntity.getQualifiedName(),model,columns,keyList,nullKeys),false);
+						batches.put(shape,batch);
+					}
+					batch.add(index,list);
+					if(batch.size()>=batchSize)
+						executeBatch(batch);
 				}
+				flushBatches();
 				
 				/**
 				 * process deleting .
 				 */
-				rows = new HashSet<Integer>(shouldDeletedRows).iterator();
-//				Integer[] deleteedshouldDeletedRows.toArray(new Integer[shouldDeletedRows.size()]);
-				while(isRun && rows.hasNext())
+				for(int index = edits.nextDeletedRow(0); isRun && index > -1; index = edits.nextDeletedRow(index + 1))
 				{
-					boolean isSuccess = true;
-					int index=rows.next();
-					try
-					{
-						isSuccess = deleteTask(index, tableEntity, dsTable, colTypeMap);
-						
-					}catch(Exception e)
-					{
-						isSuccess=false;
-						try
-						{
-							if(processError(e,dsTable,index,con))
-							{
-								continue;
-							}else
-							{
-								isRun=false;
-							}
-						}catch(Throwable e1)
-						{
-							LogProxy.errorReport(e1);
-						}
-					}finally
+					boolean[] nullKeys=getNullKeys(index,keyList);
+					
+					String shape="DELETE"+Arrays.toString(nullKeys);
+					ChangeBatch batch=batches.get(shape);
+					if(batch==null)
 					{
-						if(isSuccess) {
-							processStateForDelete(index, dsTable);
-						}
-						setProgress(++processCount);
+						batch=new ChangeBatch(generateDeleteSQL(tableEntity.getQualifiedName(),keyList,nullKeys),true);
+						batches.put(shape,batch);
 					}
+					batch.add(index,null);
+					if(batch.size()>=batchSize)
+						executeBatch(batch);
 				}
+				flushBatches();
 	        }finally
 	        {
+	        	for(ChangeBatch batch:batches.values())
+	        		batch.close();
+	        	batches.clear();
+	        	
 	        	//Release all resource including deleting rows have been marked.
 	        	processedCell.clear();
+	        	processedRow.addAll(committedRow);
 	        	if (processedRow.size() > 0) {
-	        		SortableTableModel model = (SortableTableModel) dsTable.getModel();
 	        		int[] deletedRows = new int[processedRow.size()];
 	        		Integer[] rowsObj = processedRow.toArray(new Integer[processedRow.size()]);
 	        		for (int i = 0; i < processedRow.size(); i++) {
@@ -397,12 +422,11 @@ public class SaveChangeToDBAction extends AutoCsAction {
 	        		model.deleteRows(deletedRows);
 	        		
 	        		processedRow.clear();
+	        		committedRow.clear();
 	        	}
-	        	modifyDataStruct.clear();
 	        	dialog.dispose();
 				try {
 					con.commit();
-					sm.close();
 					bookmark.setAutoCommit(oldIsAutoCommit);
 					
 					if(!dsTable.hasModified() && isRun) {
@@ -417,126 +441,225 @@ public class SaveChangeToDBAction extends AutoCsAction {
 	        }
 		}
 		/**
-		 * Save the modification of updating into database.
-		 * @param index the row index.
-		 * @param dsTable the table modified by user.
-		 * @param tableEntity the table entity to which result data belongs
-		 * @param colTypeMap the map of column type cache.
-		 * @return return true if processing successfully.
+		 * Return whether the value of each key is null in the row.
 		 */
-		private boolean modifyTask(int index, DataSetTable dsTable,
-				Table tableEntity, Map<Integer, DataType> colTypeMap)
-				throws Exception {
-			List<SortModelModifyStruct> list = modifyDataStruct.get(index);
-			if (list == null) {
-				return true;
+		private boolean[] getNullKeys(int index,List<UpdateKey> keyList)
+		{
+			boolean[] nullKeys=new boolean[keyList.size()];
+			for(int i=0;i<nullKeys.length;i++)
+				nullKeys[i]=model.getValueInRealModel(index,keyList.get(i).getColumnIndex())==null;
+			return nullKeys;
+		}
+		/**
+		 * Execute the rows left in all batches.
+		 */
+		private void flushBatches()
+		{
+			for(ChangeBatch batch:batches.values())
+			{
+				if(!isRun)
+					break;
+				executeBatch(batch);
 			}
-
-			boolean isSuccess = true;
-			SortableTableModel model = (SortableTableModel) dsTable.getModel();
-			String updateSQL = generateRowUpdateSQL(tableEntity
-					.getQualifiedName(), tableEntity.getBookmark()
-					.getDbInfoProvider(), index, list, colTypeMap, dsTable,
-					panel.getKeyList());
-			LogProxy.getProxy().debug(updateSQL);
-			int updateCount = sm.executeUpdate(updateSQL);
-
-			if (updateCount == 0) {
-				String message = stringMgr.getString(
-						"resultset.action.savechange.norowupdate", model
-								.getViewRow(index) + 1);
-				JOptionPane.showMessageDialog(GUIUtil.findLikelyOwnerWindow(),
-						message, "warning", JOptionPane.WARNING_MESSAGE);
-				isSuccess = false;
-			} else if (updateCount > 1) {
-				String message = stringMgr.getString(
-						"resultset.action.savechange.multiRowUpdated",
-						new Object[]{updateCount, model.getViewRow(index) + 1});
-				JOptionPane.showMessageDialog(GUIUtil.findLikelyOwnerWindow(),
-						message, "warning", JOptionPane.WARNING_MESSAGE);
-				isSuccess = false;
+		}
+		/**
+		 * Send the rows of the batch to the database and report the result of each row
+		 * on the table, the batch is empty afterward. If the driver stops at a failed
+		 * row and the user goes on, the rows after it are sent again.
+		 */
+		private void executeBatch(ChangeBatch batch)
+		{
+			int position=0;
+			while(isRun && position<batch.size())
+			{
+				PreparedStatement ps;
+				try
+				{
+					ps=batch.getStatement(con);
+				}catch(SQLException e)
+				{
+					reportFailure(e,batch.getRow(position++));
+					continue;
+				}
 				
-				processStateForModify(index, list, dsTable);
+				//Positions of the rows which have been added to the JDBC batch.
+				List<Integer> submitted=new ArrayList<Integer>();
+				for(;isRun && position<batch.size();position++)
+				{
+					if(batch.isSkipped(position))
+						continue;
+					try
+					{
+						bindRow(ps,batch,position);
+						ps.addBatch();
+						submitted.add(position);
+					}catch(Exception e)
+					{
+						batch.skip(position);
+						reportFailure(e,batch.getRow(position));
+					}
+				}
+				if(isRolledBack||submitted.isEmpty())
+				{
+					clearBatch(ps);
+					break;
+				}
 				
-				if (!isContinue(dsTable, con, processCount + 1)) {
-					isRun = false;
+				int[] counts;
+				SQLException error=null;
+				RunningQuery query=QueryRegistry.getInstance().begin(tableEntity.getBookmark(),
+						batch.getSql(),ps);
+				try
+				{
+					counts=ps.executeBatch();
+				}catch(BatchUpdateException e)
+				{
+					error=e;
+					counts=e.getUpdateCounts();
+					if(counts==null)
+						counts=new int[0];
+				}catch(SQLException e)
+				{
+					error=e;
+					counts=new int[0];
+				}finally
+				{
+					QueryRegistry.getInstance().end(query);
+					clearBatch(ps);
+				}
+				
+				for(int i=0;i<submitted.size()&&!isRolledBack;i++)
+				{
+					int current=submitted.get(i);
+					if(i<counts.length||error==null)
+					{
+						processUpdateCount(batch,current,i<counts.length?counts[i]:Statement.SUCCESS_NO_INFO,error);
+					}else
+					{
+						//The driver has stopped at this row, the rows after it haven't been executed.
+						reportFailure(error,batch.getRow(current));
+						position=current+1;
+						break;
+					}
 				}
+				commitIfNeeded();
 			}
-			return isSuccess;
-
+			batch.clear();
 		}
-		private boolean deleteTask(int index, Table tableEntity,
-				DataSetTable dsTable, Map<Integer, DataType> colTypeMap)
-				throws Exception {
-			String updateSQL = generateDeleteSQL(index, tableEntity, dsTable,
-					colTypeMap);
-
-			boolean isSuccess = true;
-			LogProxy.getProxy().debug(updateSQL);
-			int updateCount = sm.executeUpdate(updateSQL);
-
-			SortableTableModel model = (SortableTableModel) dsTable.getModel();
+		/**
+		 * Bind the modified values and the keys of the row at the position of the batch.
+		 */
+		private void bindRow(PreparedStatement ps,ChangeBatch batch,int position) throws SQLException, UnifyException
+		{
+			Database db=tableEntity.getBookmark().getDbInfoProvider();
+			TableColumnModel columnModel=dsTable.getColumnModel();
+			int row=batch.getRow(position);
+			int index=1;
+			if(!batch.isDelete())
+			{
+				for(SortModelModifyStruct struct:batch.getModifies(position))
+				{
+					SqlUtil.bindColumnValue(ps,index++,struct.getValue(),
+							getColumnSqlType(db,columnModel,struct.getColumnIndex(),colTypeMap));
+				}
+			}
+			for(UpdateKey key:panel.getKeyList())
+			{
+				Object value=model.getValueInRealModel(row,key.getColumnIndex());
+				if(value==null)
+					continue;
+				SqlUtil.bindColumnValue(ps,index++,value,getColumnSqlType(db,columnModel,key.getColumnIndex(),colTypeMap));
+			}
+		}
+		private void clearBatch(PreparedStatement ps)
+		{
+			try
+			{
+				ps.clearBatch();
+			}catch(SQLException e)
+			{
+				LogProxy.sqlErrorLog("clearing batch failed", e);
+			}
+		}
+		/**
+		 * Report the update count of a row as the statements of a single row were
+		 * reported.
+		 */
+		private void processUpdateCount(ChangeBatch batch,int position,int updateCount,SQLException error)
+		{
+			int index=batch.getRow(position);
+			if(updateCount==Statement.EXECUTE_FAILED)
+			{
+				reportFailure(error,index);
+				return;
+			}
+			setProgress(++processCount);
 			if (updateCount == 0) {
 				String message = stringMgr.getString(
 						"resultset.action.savechange.norowupdate", model
 								.getViewRow(index) + 1);
 				JOptionPane.showMessageDialog(GUIUtil.findLikelyOwnerWindow(),
 						message, "warning", JOptionPane.WARNING_MESSAGE);
-				isSuccess = false;
-			} else if (updateCount > 1) {
+				return;
+			}
+			processState(batch,position);
+			if (updateCount > 1) {
 				String message = stringMgr.getString(
 						"resultset.action.savechange.multiRowUpdated",
 						new Object[]{updateCount, model.getViewRow(index) + 1});
 				JOptionPane.showMessageDialog(GUIUtil.findLikelyOwnerWindow(),
 						message, "warning", JOptionPane.WARNING_MESSAGE);
-				isSuccess = false;
-				
-				processStateForDelete(index, dsTable);
-				
-				if (!isContinue(dsTable, con, processCount + 1)) {
-					isRun = false;
+				try {
+					if (!isContinue(dsTable, con, savedSinceCommit)) {
+						isRun = false;
+					}
+				} catch (Throwable e) {
+					LogProxy.errorReport(e);
 				}
 			}
-			return isSuccess;
 		}
-		private String generateDeleteSQL(int index, Table tableEntity,
-				DataSetTable dsTable, Map<Integer, DataType> colTypeMap)
-				throws Exception {
-			StringBuilder deleteSQL = new StringBuilder("DELETE FROM ");
-			deleteSQL.append(tableEntity.getQualifiedName());
-
-			deleteSQL.append(" WHERE ");
-
-			SortableTableModel model = (SortableTableModel) dsTable.getModel();
-			boolean isPostgreSQL = DialectFactory.isPostgreSQL(tableEntity
-					.getBookmark().getDbInfoProvider().getDatabaseMetaData());
-			for (UpdateKey key : panel.getKeyList()) {
-				Object value = model.getValueInRealModel(index, key
-						.getColumnIndex());
-				DataType dataType = getColumnDataType(tableEntity.getBookmark()
-						.getDbInfoProvider(), dsTable.getColumnModel(), key
-						.getColumnIndex(), colTypeMap);
-
-				if (dataType == null || isPostgreSQL) {
-					int columnDataType = getColumnDataType(
-							key.getColumnIndex(), dsTable.getColumnModel());
-					deleteSQL.append(key.getColumnName()).append(
-							value == null ? " is null " : ("=" + SqlUtil
-									.qualifyColumnValue(value.toString(),
-											columnDataType))).append(" AND ");
-					continue;
+		private void processState(ChangeBatch batch,int position)
+		{
+			if(batch.isDelete())
+				processStateForDelete(batch.getRow(position),dsTable);
+			else
+				processStateForModify(batch.getRow(position),batch.getModifies(position),dsTable);//Save the information of cell that has been process successfully.
+			savedSinceCommit++;
+		}
+		private void reportFailure(Exception e,int modelRow)
+		{
+			setProgress(++processCount);
+			try
+			{
+				if(!processError(e,dsTable,modelRow,con))
+				{
+					isRun=false;
 				}
-
-				String realValue = (value == null ? " is null " : "="
-						+ (StringUtil.trim(dataType.getLiteralPrefix())
-								+ value.toString() + StringUtil.trim(dataType
-								.getLiteralSuffix())));
-				deleteSQL.append(key.getColumnName()).append(realValue).append(
-						" AND ");
+			}catch(Throwable e1)
+			{
+				LogProxy.errorReport(e1);
+			}
+		}
+		/**
+		 * Commit the saved rows if the commit interval is reached, they can't be rolled
+		 * back afterward.
+		 */
+		private void commitIfNeeded()
+		{
+			if(commitInterval==0||savedSinceCommit<commitInterval||isRolledBack)
+				return;
+			try
+			{
+				con.commit();
+				processedCell.clear();
+				committedRow.addAll(processedRow);
+				processedRow.clear();
+				savedSinceCommit=0;
+			}catch(SQLException e)
+			{
+				LogProxy.SQLErrorReport(GUIUtil.findLikelyOwnerWindow(), e);
+				isRun=false;
 			}
-			return deleteSQL.substring(0, deleteSQL.length() - 5);// Clear up
-			// AND
-
 		}
 		private void processStateForModify(int row,
 				List<SortModelModifyStruct> list, DataSetTable dsTable) {
@@ -545,11 +668,10 @@ public class SaveChangeToDBAction extends AutoCsAction {
 			}
 			SortableTableModel model = (SortableTableModel) dsTable.getModel();
 			for (SortModelModifyStruct struct : list) {
-				String key = StringUtil.compose(row, struct.getColumnIndex());
-				processedCell.put(key, new TempCellObject(model
+				processedCell.put(row, struct.getColumnIndex(), new TempCellObject(model
 						.getValueInRealModel(row, struct.getColumnIndex()),
 						struct.getValue()));
-				model.removeModify(key);
+				model.removeModify(row, struct.getColumnIndex());
 				model.setValueInRealModel(struct.getValue(), row, struct
 						.getColumnIndex());
 			}
@@ -564,10 +686,10 @@ public class SaveChangeToDBAction extends AutoCsAction {
 		{
 			//Give a prompt to user for error
 			SortableTableModel model=(SortableTableModel)dsTable.getModel();
-			String message=stringMgr.getString("resultset.action.savechange.errorconfirm"+(model.getViewRow(modelRow)+1));
+			String message=stringMgr.getString("resultset.action.savechange.errorconfirm")+(model.getViewRow(modelRow)+1);
 			LogProxy.errorReport(message,e);
 			
-			return isContinue(dsTable,con, processCount + 1);
+			return isContinue(dsTable,con, savedSinceCommit);
 		}
 		private boolean isContinue(DataSetTable dsTable,Connection con, int processedCount) throws SQLException
 		{
@@ -584,14 +706,15 @@ public class SaveChangeToDBAction extends AutoCsAction {
 					if(result)
 					{
 						if (processedCell.size() > 0) {
-							Iterator<String> it=processedCell.keySet().iterator();
-							while(it.hasNext())
+							for (int row = processedCell.nextDirtyRow(0); row > -1; row = processedCell.nextDirtyRow(row + 1))
 							{
-								String key=it.next();
-								TempCellObject cellObject=processedCell.get(key);
-								model.modifyCell(key, cellObject.getNewValue());
-								int[] cellIndex=StringUtil.resolveString(key);
-								model.setValueInRealModel(cellObject.getOldValue(), cellIndex[0], cellIndex[1]);
+								for (int column = processedCell.nextModifiedColumn(row, 0); column > -1;
+										column = processedCell.nextModifiedColumn(row, column + 1))
+								{
+									TempCellObject cellObject=(TempCellObject)processedCell.get(row, column);
+									model.putModify(row, column, cellObject.getNewValue());
+									model.setValueInRealModel(cellObject.getOldValue(), row, column);
+								}
 							}
 							processedCell.clear();
 						}
@@ -604,12 +727,107 @@ public class SaveChangeToDBAction extends AutoCsAction {
 						
 						dsTable.repaint();
 						con.rollback();
+						isRolledBack=true;
+						savedSinceCommit=0;
 					}
 				}
 				return false;
 			}
 		}
 	}
+	/**
+	 * Rows saved by the same statement, they are sent to the database in a batch.
+	 */
+	private static class ChangeBatch
+	{
+		private final String sql;
+		private final boolean isDelete;
+		
+		private final List<Integer> rows=new ArrayList<Integer>();
+		private final List<List<SortModelModifyStruct>> modifies=new ArrayList<List<SortModelModifyStruct>>();
+		
+		/**
+		 * Positions of the rows which can't be bound.
+		 */
+		private final Set<Integer> skipped=new HashSet<Integer>();
+		
+		private PreparedStatement statement;
+		
+		public ChangeBatch(String sql,boolean isDelete)
+		{
+			this.sql=sql;
+			this.isDelete=isDelete;
+		}
+		public void add(int row,List<SortModelModifyStruct> list)
+		{
+			rows.add(row);
+			modifies.add(list);
+		}
+		public int size()
+		{
+			return rows.size();
+		}
+		public int getRow(int position)
+		{
+			return rows.get(position);
+		}
+		/**
+		 * Return the modified cells of the row at the position, null for a deleted row.
+		 */
+		public List<SortModelModifyStruct> getModifies(int position)
+		{
+			return modifies.get(position);
+		}
+		public boolean isDelete()
+		{
+			return isDelete;
+		}
+		public String getSql()
+		{
+			return sql;
+		}
+		public void skip(int position)
+		{
+			skipped.add(position);
+		}
+		public boolean isSkipped(int position)
+		{
+			return skipped.contains(position);
+		}
+		/**
+		 * Return the statement of the batch, it's prepared the first time.
+		 */
+		public PreparedStatement getStatement(Connection con) throws SQLException
+		{
+			if(statement==null)
+			{
+				LogProxy.getProxy().debug(sql);
+				statement=con.prepareStatement(sql);
+			}
+			return statement;
+		}
+		public void clear()
+		{
+			rows.clear();
+			modifies.clear();
+			skipped.clear();
+		}
+		public void close()
+		{
+			clear();
+			if(statement!=null)
+			{
+				try
+				{
+					statement.close();
+				}catch(SQLException e)
+				{
+					LogProxy.sqlErrorLog("closing statement failed", e);
+				}
+				statement=null;
+			}
+		}
+	}
 	private class TempCellObject
 	{
 		private Object newValue;
@@ -48,6 +48,12 @@ public class ScriptParser
 	
 	private int maxFileSize;
 	
+	// line of the last command returned by getNextCommand()
+	private int lastCommandLine = 0;
+	// position and line number reached while counting lines of the original script
+	private int lineCountPos = 0;
+	private int lineCount = 1;
+	
 	public ScriptParser()
 	{
 		this(Setting.getInstance().getInMemoryScriptSizeThreshold());
@@ -386,6 +392,9 @@ public class ScriptParser
 	public void startIterator()
 	{
 		this.currentIteratorIndex = 0;
+		this.lastCommandLine = 0;
+		this.lineCountPos = 0;
+		this.lineCount = 1;
 		if (this.iteratingParser == null && this.commands == null)
 		{
 			this.parseCommands();
@@ -520,16 +529,33 @@ public class ScriptParser
 			command = this.iteratingParser.getNextCommand();
 			if (command == null) return null;
 			result = command.getSQL();
+			this.lastCommandLine = this.iteratingParser.getLineNumber(command.getStartPositionInScript());
 		}
 		else
 		{
 			command = this.commands.get(this.currentIteratorIndex);
 			result = this.originalScript.substring(command.getStartPositionInScript(), command.getEndPositionInScript());
 			this.currentIteratorIndex ++;
+			int pos = command.getStartPositionInScript();
+			for (int i = lineCountPos; i < pos; i++)
+			{
+				if (this.originalScript.charAt(i) == '\n') lineCount ++;
+			}
+			lineCountPos = pos;
+			this.lastCommandLine = lineCount;
 		}
 
 		return result;
 	}
+	
+	/**
+	 * Return the line number (starting with 1) in the script where the command 
+	 * returned by the last call of {@link #getNextCommand()} starts.
+	 */
+	public int getLastCommandLine()
+	{
+		return this.lastCommandLine;
+	}
 	/**
 	 * return the command definition indicated by index
 	 * @param index the index of command definition
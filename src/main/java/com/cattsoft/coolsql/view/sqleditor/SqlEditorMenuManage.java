@@ -50,6 +50,8 @@ public class SqlEditorMenuManage extends BaseMenuManage {
 
 	// ������excel�ļ�
 	private JMenuItem exportExcel;
+
+	private JMenuItem exportSql;
 	
 	//Add selected text in the sql editor.
 	private CsAction addSelectedTextAsFavoriteAction;
@@ -179,6 +181,12 @@ public class SqlEditorMenuManage extends BaseMenuManage {
 				.getIcon("table.popup.export.excelicon"),
 				new ExportDataOfDBAction(ExportData.EXPORT_EXCEL));
 		export.add(exportExcel);
+
+		exportSql = createMenuItem(PublicResource
+				.getString("table.popup.exportSql"), PublicResource
+				.getIcon("table.popup.export.txticon"),
+				new ExportDataOfDBAction(ExportData.EXPORT_SQL));
+		export.add(exportSql);
 		isInit = true;
 	}
 	/**
@@ -38,6 +38,7 @@ import com.cattsoft.coolsql.pub.display.IAdditionalPainter;
 import com.cattsoft.coolsql.pub.parse.PublicResource;
 import com.cattsoft.coolsql.pub.util.StringUtil;
 import com.cattsoft.coolsql.sql.ScriptCommandDefinition;
+import com.cattsoft.coolsql.sql.execute.ParallelStatementExecute;
 import com.cattsoft.coolsql.system.ActionCollection;
 import com.cattsoft.coolsql.system.PropertyConstant;
 import com.cattsoft.coolsql.system.Setting;
@@ -241,6 +242,33 @@ public class SqlPanel extends JPanel {
 		sqlParser.done();
         return list;
     }
+	/**
+	 * Return the selected statements by group, groups are separated by lines which
+	 * only hold {@link ParallelStatementExecute#GROUP_MARKER}. Empty groups are
+	 * skipped.
+	 */
+	public List<List<String>> getQueryGroups() {
+		List<List<String>> groups=new ArrayList<List<String>>();
+		String content=editor.getSelectedText();
+		if(content==null||content.equals(""))
+			return groups;
+		
+		for(String part:ParallelStatementExecute.splitGroups(content))
+		{
+			sqlParser.setScript(part);
+			List<String> list=new ArrayList<String>(sqlParser.getSize());
+			@SuppressWarnings("unchecked")
+			Iterator it=sqlParser.getIterator();
+			while(it.hasNext())
+			{
+				list.add((String)it.next());
+			}
+			sqlParser.done();
+			if(list.size()>0)
+				groups.add(list);
+		}
+		return groups;
+	}
 	/**
 	 * ��ȡ�༭��������ĵ�����
 	 * @return
@@ -9,6 +9,7 @@ import java.util.List;
 import com.cattsoft.coolsql.action.common.ActionCommand;
 import com.cattsoft.coolsql.bookmarkBean.Bookmark;
 import com.cattsoft.coolsql.bookmarkBean.BookmarkManage;
+import com.cattsoft.coolsql.sql.execute.ParallelStatementExecute;
 import com.cattsoft.coolsql.system.menu.action.BaseEditorSelectAction;
 import com.cattsoft.coolsql.view.SqlEditorView;
 import com.cattsoft.coolsql.view.ViewManage;
@@ -33,8 +34,17 @@ public class MultiStatementExecuteAction extends BaseEditorSelectAction {
 	public void executeAction(ActionEvent e) {
 		SqlEditorView view=ViewManage.getInstance().getSqlEditor();
 		Bookmark bookmark=BookmarkManage.getInstance().getDefaultBookmark();
-		List<String> sqls=view.getQueries();
-		ActionCommand command=new MultiStatementExecuteCommand(bookmark,sqls);
+		ActionCommand command;
+		List<List<String>> groups=view.getQueryGroups();
+		//Groups separated by a group marker are independent, they are executed in parallel
+		//if the connections of the pool can commit them like the bookmark does
+		if(groups.size()>1&&bookmark!=null&&bookmark.getConnectionPool()!=null&&bookmark.isAutoCommit())
+			command=new MultiStatementExecuteCommand(bookmark,groups,ParallelStatementExecute.getDefaultWorkerCount());
+		else
+		{
+			List<String> sqls=view.getQueries();
+			command=new MultiStatementExecuteCommand(bookmark,sqls);
+		}
 		try {
 			command.exectue();
 		} catch (Exception e1) {
@@ -14,6 +14,7 @@ import com.cattsoft.coolsql.sql.commonoperator.OperatorFactory;
 import com.cattsoft.coolsql.sql.commonoperator.SQLScriptExecuteOperator;
 import com.cattsoft.coolsql.sql.execute.IMultiStatementExecute;
 import com.cattsoft.coolsql.sql.execute.MultiStatementExecute;
+import com.cattsoft.coolsql.sql.execute.ParallelStatementExecute;
 import com.cattsoft.coolsql.view.log.LogProxy;
 
 /**
@@ -29,6 +30,13 @@ public class MultiStatementExecuteCommand implements ActionCommand {
 	{
 		executer=new MultiStatementExecute(bookmark,sqls);
 	}
+	/**
+	 * Execute the groups of statements in parallel, each group in its own connection.
+	 */
+	public MultiStatementExecuteCommand(Bookmark bookmark,List<List<String>> groups,int workerCount)
+	{
+		executer=ParallelStatementExecute.createForStatements(bookmark,groups,workerCount);
+	}
 	/* (non-Javadoc)
 	 * @see com.coolsql.action.common.ActionCommand#exectue()
 	 */
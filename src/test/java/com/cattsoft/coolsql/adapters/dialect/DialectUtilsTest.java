@@ -0,0 +1,61 @@
+package com.cattsoft.coolsql.adapters.dialect;
+
+import java.sql.Types;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the literals of values written by {@link DialectUtils} for the dialects.
+ *
+ * @author agent
+ */
+public class DialectUtilsTest extends TestCase {
+
+	private static final byte[] DATA = { (byte) 0xCA, (byte) 0xFE, 0x01 };
+
+	public void testStandardLiterals() {
+		assertEquals("12", DialectUtils.getLiteral(null, Types.INTEGER, "12"));
+		assertEquals("-1.5E3", DialectUtils.getLiteral(null, Types.DOUBLE, " -1.5E3 "));
+		assertEquals("'NaN'", DialectUtils.getLiteral(null, Types.DOUBLE, "NaN"));
+		assertEquals("'It''s'", DialectUtils.getLiteral(null, Types.VARCHAR, "It's"));
+		assertEquals("TRUE", DialectUtils.getLiteral(null, Types.BOOLEAN, "true"));
+		assertEquals("FALSE", DialectUtils.getLiteral(null, Types.BIT, "false"));
+		assertEquals("DATE '2008-04-29'", DialectUtils.getLiteral(null, Types.DATE,
+				"2008-04-29"));
+		assertEquals("TIME '10:30:00'", DialectUtils.getLiteral(null, Types.TIME, "10:30:00"));
+		assertEquals("TIMESTAMP '2008-04-29 10:30:00.0'", DialectUtils.getLiteral(null,
+				Types.TIMESTAMP, "2008-04-29 10:30:00.0"));
+		assertEquals("X'CAFE01'", DialectUtils.getBinaryLiteral(null, DATA));
+	}
+
+	public void testQuotedLiterals() {
+		assertEquals("12", DialectUtils.getQuotedLiteral(Types.DECIMAL, "12"));
+		assertEquals("1", DialectUtils.getQuotedLiteral(Types.BOOLEAN, "true"));
+		assertEquals("0", DialectUtils.getQuotedLiteral(Types.BIT, "false"));
+		assertEquals("'2008-04-29'", DialectUtils.getQuotedLiteral(Types.DATE, "2008-04-29"));
+	}
+
+	public void testDialectsWithoutLiteralsOfTheirOwn() {
+		HibernateDialect dialect = new H2Dialect();
+		assertEquals("DATE '2008-04-29'", DialectUtils.getLiteral(dialect, Types.DATE,
+				"2008-04-29"));
+		assertEquals("X'CAFE01'", DialectUtils.getBinaryLiteral(dialect, DATA));
+	}
+
+	public void testMySQLEscapesBackslashes() {
+		HibernateDialect dialect = new MySQLDialect();
+		assertEquals("'C:\\\\temp\\\\It''s'", DialectUtils.getLiteral(dialect, Types.VARCHAR,
+				"C:\\temp\\It's"));
+		assertEquals("X'CAFE01'", DialectUtils.getBinaryLiteral(dialect, DATA));
+	}
+
+	public void testSQLServerAndSybaseLiterals() {
+		HibernateDialect[] dialects = { new SQLServerDialect(), new SybaseDialect() };
+		for (HibernateDialect dialect : dialects) {
+			assertEquals("'2008-04-29'", DialectUtils.getLiteral(dialect, Types.DATE,
+					"2008-04-29"));
+			assertEquals("1", DialectUtils.getLiteral(dialect, Types.BOOLEAN, "true"));
+			assertEquals("0xCAFE01", DialectUtils.getBinaryLiteral(dialect, DATA));
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.cattsoft.coolsql.exportdata;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.cattsoft.coolsql.importdata.DelimitedFileSource;
+import com.cattsoft.coolsql.importdata.RowHandler;
+
+/**
+ * Tests writing fields of {@link DelimitedWriter} and reading them back by
+ * {@link DelimitedFileSource}.
+ *
+ * @author agent
+ */
+public class DelimitedWriterTest extends TestCase {
+
+	public void testFieldsAreQuotedWhenNeeded() throws Exception {
+		StringWriter out = new StringWriter();
+		DelimitedWriter writer = new DelimitedWriter(out, ",");
+		writer.writeRecord(new String[] { "a", null, "", "b,c", "say \"hi\"", "x\ny" });
+		writer.close();
+		assertEquals("a,,\"\",\"b,c\",\"say \"\"hi\"\"\",\"x\ny\"\r\n", out.toString());
+	}
+
+	public void testRoundTrip() throws Exception {
+		String[][] records = { { "a", null, "", "b,c" }, { "say \"hi\"", "x\r\ny", "", null },
+				{ "" }, { null, "1" } };
+		File file = File.createTempFile("delimited", ".csv");
+		try {
+			DelimitedWriter writer = new DelimitedWriter(new OutputStreamWriter(
+					new FileOutputStream(file), "UTF-8"), ",");
+			for (String[] record : records)
+				writer.writeRecord(record);
+			writer.close();
+
+			final List<Object[]> rows = new ArrayList<Object[]>();
+			new DelimitedFileSource(file, "UTF-8", ',', '"').read(new RowHandler() {
+				public boolean handleRow(Object[] values) {
+					rows.add(values);
+					return true;
+				}
+			});
+			assertEquals(records.length, rows.size());
+			for (int i = 0; i < records.length; i++)
+				assertEquals(Arrays.asList(records[i]), Arrays.asList(rows.get(i)));
+		} finally {
+			file.delete();
+		}
+	}
+}
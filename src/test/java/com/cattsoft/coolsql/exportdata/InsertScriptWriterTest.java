@@ -0,0 +1,100 @@
+package com.cattsoft.coolsql.exportdata;
+
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.cattsoft.coolsql.adapters.dialect.HibernateDialect;
+
+/**
+ * Tests splitting the rows into statements of {@link InsertScriptWriter}.
+ *
+ * @author agent
+ */
+public class InsertScriptWriterTest extends TestCase {
+
+	private static final String[] COLUMNS = { "a", "b" };
+
+	private static final int[] TYPES = { Types.INTEGER, Types.VARCHAR };
+
+	public void testOneRowPerStatementWithoutDialect() throws Exception {
+		String script = write(null, 100, new Object[][] { { 1, "x" }, { 2, "It's" } });
+		assertEquals("INSERT INTO t (a, b) VALUES (1, 'x');\n"
+				+ "INSERT INTO t (a, b) VALUES (2, 'It''s');\n", script);
+	}
+
+	public void testRowsAreGroupedByRowsPerStatement() throws Exception {
+		String script = write(createMultiRowDialect(), 2, new Object[][] { { 1, "x" },
+				{ 2, "y" }, { 3, null } });
+		assertEquals("INSERT INTO t (a, b) VALUES\n(1, 'x'),\n(2, 'y');\n"
+				+ "INSERT INTO t (a, b) VALUES\n(3, NULL);\n", script);
+	}
+
+	public void testLongStatementIsEnded() throws Exception {
+		char[] text = new char[InsertScriptWriter.MAX_STATEMENT_LENGTH / 2];
+		Arrays.fill(text, 'v');
+		String value = new String(text);
+		String script = write(createMultiRowDialect(), 100, new Object[][] { { 1, value },
+				{ 2, value }, { 3, "x" } });
+		String[] statements = script.split(";\n");
+		assertEquals(2, statements.length);
+		assertTrue(statements[0].length() <= InsertScriptWriter.MAX_STATEMENT_LENGTH);
+		assertTrue(statements[1].startsWith("INSERT INTO t (a, b) VALUES\n(2, 'v"));
+		assertTrue(statements[1].endsWith("'),\n(3, 'x')"));
+	}
+
+	public void testEmptyResultWritesNothing() throws Exception {
+		assertEquals("", write(createMultiRowDialect(), 10, new Object[0][]));
+	}
+
+	private static String write(HibernateDialect dialect, int rowsPerStatement,
+			Object[][] rows) throws Exception {
+		StringWriter out = new StringWriter();
+		InsertScriptWriter writer = new InsertScriptWriter(out, dialect, "t", COLUMNS, TYPES,
+				rowsPerStatement);
+		ResultSet set = createResultSet(rows);
+		while (set.next())
+			writer.writeRow(set);
+		writer.close();
+		assertEquals(rows.length, writer.getRowCount());
+		return out.toString();
+	}
+
+	private static HibernateDialect createMultiRowDialect() {
+		return (HibernateDialect) Proxy.newProxyInstance(InsertScriptWriterTest.class
+				.getClassLoader(), new Class[] { HibernateDialect.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("supportsMultiRowInsert"))
+							return Boolean.TRUE;
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	/**
+	 * Return a result set of the rows, its values are read by getString.
+	 */
+	private static ResultSet createResultSet(final Object[][] rows) {
+		return (ResultSet) Proxy.newProxyInstance(InsertScriptWriterTest.class
+				.getClassLoader(), new Class[] { ResultSet.class }, new InvocationHandler() {
+			private int row = -1;
+
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("next"))
+					return Boolean.valueOf(++row < rows.length);
+				if (method.getName().equals("getString")) {
+					Object value = rows[row][((Integer) args[0]).intValue() - 1];
+					return value == null ? null : value.toString();
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+}
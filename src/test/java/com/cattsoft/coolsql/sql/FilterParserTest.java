@@ -0,0 +1,61 @@
+package com.cattsoft.coolsql.sql;
+
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests parsing filter conditions with {@link FilterParser}.
+ *
+ * @author agent
+ */
+public class FilterParserTest extends TestCase {
+
+	public void testComparisons() throws UnifyException {
+		assertEquals("ID = 1", FilterParser.parse("ID = 1").toSQL());
+		assertEquals("a <> 1", FilterParser.parse("a != 1").toSQL());
+		assertEquals("b <> 'x''y'", FilterParser.parse("b <> 'x''y'").toSQL());
+	}
+
+	public void testPredicates() throws UnifyException {
+		assertEquals("d NOT LIKE '%z'", FilterParser.parse("d not like '%z'").toSQL());
+		assertEquals("c IN (1, 2, 3)", FilterParser.parse("c in (1, 2,3)").toSQL());
+		assertEquals("c NOT IN ('a')", FilterParser.parse("c NOT IN ('a')").toSQL());
+		assertEquals("ID BETWEEN 1 AND 10", FilterParser.parse("ID between 1 and 10").toSQL());
+		assertEquals("\"My Col\" IS NOT NULL", FilterParser.parse("\"My Col\" is not null")
+				.toSQL());
+	}
+
+	public void testPrecedence() throws UnifyException {
+		assertEquals("((a >= 1 AND b <= 2) OR c < 3)", FilterParser.parse(
+				"a >= 1 and b <= 2 or c < 3").toSQL());
+		assertEquals("(a >= 1 AND (b <= 2 OR c < 3))", FilterParser.parse(
+				"a >= 1 and (b <= 2 or c < 3)").toSQL());
+		assertEquals("NOT ((a > 2 OR b <> 'x'))", FilterParser.parse(
+				"not (a > 2 or b <> 'x')").toSQL());
+		assertEquals("(NAME LIKE 'A%' AND ID BETWEEN 1 AND 10)", FilterParser.parse(
+				"NAME LIKE 'A%' AND ID BETWEEN 1 AND 10").toSQL());
+	}
+
+	public void testRegexIsNotSQL() throws UnifyException {
+		FilterCondition condition = FilterParser.parse("x regexp '^a'");
+		assertEquals("x REGEXP '^a'", condition.toString());
+		try {
+			condition.toSQL();
+			fail("REGEXP is executed by database");
+		} catch (UnifyException e) {
+		}
+	}
+
+	public void testInvalidConditions() {
+		String[] invalid = { "", "a =", "a = 'x", "(a = 1", "a = 1 b", "= 1", "a is 1" };
+		for (int i = 0; i < invalid.length; i++) {
+			try {
+				FilterParser.parse(invalid[i]);
+				fail("invalid condition is parsed: " + invalid[i]);
+			} catch (UnifyException e) {
+				assertNotNull(e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.cattsoft.coolsql.sql;
+
+import com.cattsoft.coolsql.pub.exception.UnifyException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests wrapping a query by {@link FilterSort#apply(String, String[])}.
+ *
+ * @author agent
+ */
+public class FilterSortTest extends TestCase {
+
+	private static final String[] COLUMNS = { "ID", "NAME" };
+
+	private FilterSort filterSort;
+
+	protected void setUp() throws UnifyException {
+		filterSort = new FilterSort();
+		filterSort.setCondition(FilterParser.parse("ID > 1"));
+	}
+
+	public void testNoFilter() throws UnifyException {
+		assertEquals("select * from t", new FilterSort().apply("select * from t", COLUMNS));
+	}
+
+	public void testWrapsQuery() throws UnifyException {
+		assertEquals("SELECT * FROM (select id, name from t where a = 1) coolsql_filter"
+				+ " WHERE ID > 1", filterSort.apply("select id, name from t where a = 1;",
+				COLUMNS));
+	}
+
+	public void testMovesOrderOutOfSubquery() throws UnifyException {
+		assertEquals("SELECT * FROM (select t.id, t.name from t) coolsql_filter"
+				+ " WHERE ID > 1 ORDER BY name desc, 1", filterSort.apply(
+				"select t.id, t.name from t order by t.name desc, 1", COLUMNS));
+	}
+
+	public void testKeepsOrderOfLimitedQuery() throws UnifyException {
+		String query = "select top 10 id, name from t order by name";
+		assertEquals("SELECT * FROM (" + query + ") coolsql_filter WHERE ID > 1",
+				filterSort.apply(query, COLUMNS));
+	}
+
+	public void testKeepsOrderByOtherColumn() throws UnifyException {
+		String query = "select id, name from t order by created";
+		assertEquals("SELECT * FROM (" + query + ") coolsql_filter WHERE ID > 1",
+				filterSort.apply(query, COLUMNS));
+	}
+
+	public void testSortReplacesOrder() throws UnifyException {
+		filterSort.addSort("ID", "DESC");
+		assertEquals("SELECT * FROM (select id, name from t) coolsql_filter"
+				+ " WHERE ID > 1 ORDER BY ID DESC", filterSort.apply(
+				"select id, name from t order by name", COLUMNS));
+	}
+
+	public void testDuplicateColumns() {
+		try {
+			filterSort.apply("select a.id, b.id from a, b", new String[] { "ID", "id" });
+			fail("duplicate columns are wrapped");
+		} catch (UnifyException e) {
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.cattsoft.coolsql.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests finding and binding the parameters of {@link ParameterizedSql}.
+ *
+ * @author agent
+ */
+public class ParameterizedSqlTest extends TestCase {
+
+	public void testNamedParameters() {
+		ParameterizedSql sql = ParameterizedSql
+				.parse("select * from t where a = :id and b > :min or a = :id");
+		assertEquals("select * from t where a = ? and b > ? or a = ?", sql.getSql());
+		assertEquals(Arrays.asList(new String[] { "id", "min" }), sql.getNames());
+		assertTrue(sql.hasParameters());
+		assertTrue(Arrays.equals(new Object[] { "x", 3, "x" }, sql
+				.getPlaceValues(new Object[] { "x", 3 })));
+	}
+
+	public void testPositionalParameters() {
+		ParameterizedSql sql = ParameterizedSql.parse("select * from t where a = ? and b = ?");
+		assertEquals("select * from t where a = ? and b = ?", sql.getSql());
+		assertEquals(Arrays.asList(new String[] { "?1", "?2" }), sql.getNames());
+		assertTrue(ParameterizedSql.isPositional("?2"));
+		assertFalse(ParameterizedSql.isPositional("id"));
+	}
+
+	public void testQuotesCommentsAndCastsAreSkipped() {
+		String text = "select 'a:b ?', \"c:d\", x::int, -- :e ?\n y /* :f ? */ from t where z := 1";
+		ParameterizedSql sql = ParameterizedSql.parse(text);
+		assertEquals(text, sql.getSql());
+		assertFalse(sql.hasParameters());
+	}
+
+	public void testProceduralBlocksAreNotParsed() {
+		String text = "create trigger tr before insert on t for each row begin :new.a := 1; end;";
+		ParameterizedSql sql = ParameterizedSql.parse(text);
+		assertEquals(text, sql.getSql());
+		assertFalse(sql.hasParameters());
+	}
+
+	public void testBindAll() throws Exception {
+		final List<String> calls = new ArrayList<String>();
+		PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(getClass()
+				.getClassLoader(), new Class[] { PreparedStatement.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						calls.add(method.getName() + Arrays.asList(args));
+						return null;
+					}
+				});
+		ParameterizedSql.bindAll(statement, new Object[] { "x", null, 5 });
+		ParameterizedSql.bindAll(statement, null);
+		assertEquals(Arrays.asList(new String[] { "setObject[1, x]",
+				"setNull[2, " + Types.NULL + "]", "setObject[3, 5]" }), calls);
+	}
+}
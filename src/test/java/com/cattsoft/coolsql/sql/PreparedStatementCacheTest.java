@@ -0,0 +1,82 @@
+package com.cattsoft.coolsql.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the keys and the reuse of the statements of {@link PreparedStatementCache}.
+ *
+ * @author agent
+ */
+public class PreparedStatementCacheTest extends TestCase {
+
+	private final List<String> prepared = new ArrayList<String>();
+
+	public void testLayoutIsNormalized() {
+		assertEquals("select a from t where b = 'x  y'", PreparedStatementCache
+				.normalize("  select a\n\tfrom   t\r\nwhere b = 'x  y' ;"));
+	}
+
+	public void testLineCommentKeepsItsLineBreak() {
+		assertEquals("select a -- x\nfrom t", PreparedStatementCache
+				.normalize("select a -- x\n   from t"));
+		assertEquals("select a -- x\nfrom t", PreparedStatementCache
+				.normalize("select a   -- x  \r\nfrom t"));
+		assertEquals("select a -- x from t", PreparedStatementCache
+				.normalize("select a -- x from t"));
+		assertEquals("select '--' from t", PreparedStatementCache
+				.normalize("select '--'\nfrom t"));
+	}
+
+	public void testStatementIsReused() throws Exception {
+		PreparedStatementCache cache = new PreparedStatementCache(newConnection(), 4);
+		PreparedStatement statement = cache.borrow("select a from t");
+		cache.release(statement);
+		assertSame(statement, cache.borrow("select a\n  from t;"));
+		assertEquals(1, prepared.size());
+	}
+
+	public void testCommentedTextIsNotShared() throws Exception {
+		PreparedStatementCache cache = new PreparedStatementCache(newConnection(), 4);
+		PreparedStatement statement = cache.borrow("select a -- x\nfrom t");
+		cache.release(statement);
+		assertNotSame(statement, cache.borrow("select a -- x from t"));
+		assertEquals(2, prepared.size());
+	}
+
+	/**
+	 * A connection which prepares statements doing nothing.
+	 */
+	private Connection newConnection() {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class[] { Connection.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("prepareStatement")) {
+							prepared.add((String) args[0]);
+							return newStatement();
+						}
+						return null;
+					}
+				});
+	}
+
+	private PreparedStatement newStatement() {
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class[] { PreparedStatement.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("hashCode"))
+							return System.identityHashCode(proxy);
+						if (method.getName().equals("equals"))
+							return proxy == args[0];
+						return null;
+					}
+				});
+	}
+}
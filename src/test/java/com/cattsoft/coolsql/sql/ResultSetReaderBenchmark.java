@@ -0,0 +1,309 @@
+package com.cattsoft.coolsql.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.cattsoft.coolsql.sql.store.ResultStore;
+
+/**
+ * Measures the rows per second read from a 30-column result of mixed types by
+ * {@link ResultSetReader}, against the former way of reading a cell: asking the
+ * metadata for the type of the column, then calling getObject() and boxing the
+ * value again.
+ * <p>
+ * The result is an in-memory ResultSet, so the cost of a driver isn't measured.
+ * Every call to the ResultSet goes through a proxy, which boxes the primitives
+ * returned by getInt(), getLong() and getDouble(); the cost of the proxy is most of
+ * the cost of reading a cell, so gains smaller than a call to the ResultSet don't
+ * show. Reading into a sink which drops the values shows the cost of the readers
+ * apart from the cost of the store. It's run by hand:
+ *
+ * <pre>
+ * java com.cattsoft.coolsql.sql.ResultSetReaderBenchmark [rows] [rounds]
+ * </pre>
+ *
+ * @author agent
+ */
+public class ResultSetReaderBenchmark {
+
+	/**
+	 * Types of the columns, repeated up to 30 columns.
+	 */
+	private static final int[] TYPES = { Types.INTEGER, Types.BIGINT, Types.DOUBLE,
+			Types.DECIMAL, Types.VARCHAR, Types.TIMESTAMP, Types.DATE, Types.SMALLINT,
+			Types.VARCHAR, Types.INTEGER };
+
+	private static final int COLUMN_COUNT = 30;
+
+	/**
+	 * Number of distinct values of each column, the rows cycle through them.
+	 */
+	private static final int VALUE_COUNT = 1024;
+
+	public static void main(String[] args) throws Exception {
+		int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int[] types = new int[COLUMN_COUNT];
+		for (int i = 0; i < types.length; i++)
+			types[i] = TYPES[i % TYPES.length];
+		Object[][] values = createValues(types);
+
+		System.out.println(rowCount + " rows of " + COLUMN_COUNT + " columns, " + rounds
+				+ " rounds");
+		//The first round warms up the JIT, it isn't counted
+		Read[] reads = { new PerCellRead(), new RowRead(), new DiscardingSinkRead(),
+				new SinkRead(types) };
+		long[] times = new long[reads.length];
+		for (int round = 0; round <= rounds; round++) {
+			for (int i = 0; i < reads.length; i++) {
+				long time = time(reads[i], types, values, rowCount);
+				if (round > 0)
+					times[i] += time;
+			}
+		}
+		print("per cell getObject()", rowCount * (long) rounds, times[0]);
+		print("ResultSetReader.readRow()", rowCount * (long) rounds, times[1]);
+		print("ResultSetReader.readRows() into a discarding sink", rowCount
+				* (long) rounds, times[2]);
+		print("ResultSetReader.readRows() into ResultStore", rowCount * (long) rounds,
+				times[3]);
+	}
+
+	private static void print(String name, long rows, long nanos) {
+		long rowsPerSecond = nanos == 0 ? 0 : rows * 1000000000L / nanos;
+		System.out.println(name + ": " + rowsPerSecond + " rows/s");
+	}
+
+	private static long time(Read read, int[] types, Object[][] values, int rowCount)
+			throws SQLException {
+		ResultSet rs = createResultSet(types, values, rowCount);
+		long start = System.nanoTime();
+		int count = read.read(rs);
+		long time = System.nanoTime() - start;
+		if (count != rowCount)
+			throw new IllegalStateException(count + " rows read instead of " + rowCount);
+		return time;
+	}
+
+	private static Object[][] createValues(int[] types) {
+		Object[][] values = new Object[types.length][VALUE_COUNT];
+		for (int c = 0; c < types.length; c++) {
+			for (int r = 0; r < VALUE_COUNT; r++) {
+				//A value out of 20 is null
+				if ((r + c) % 20 == 0)
+					continue;
+				switch (types[c]) {
+				case Types.INTEGER:
+				case Types.SMALLINT:
+					values[c][r] = Integer.valueOf(r * 31 + c);
+					break;
+				case Types.BIGINT:
+					values[c][r] = Long.valueOf(r * 1000003L + c);
+					break;
+				case Types.DOUBLE:
+					values[c][r] = Double.valueOf(r / 7.0 + c);
+					break;
+				case Types.DECIMAL:
+					values[c][r] = BigDecimal.valueOf(r * 100 + c, 2);
+					break;
+				case Types.TIMESTAMP:
+					values[c][r] = new Timestamp(1200000000000L + r * 60000L);
+					break;
+				case Types.DATE:
+					values[c][r] = new Date(1200000000000L + r * 86400000L);
+					break;
+				default:
+					values[c][r] = "value " + r + " of column " + c;
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Create a forward-only result of the rows, its metadata has the types.
+	 */
+	private static ResultSet createResultSet(final int[] types, final Object[][] values,
+			final int rowCount) {
+		final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+				ResultSetReaderBenchmark.class.getClassLoader(),
+				new Class[] { ResultSetMetaData.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if (name.equals("getColumnCount"))
+							return types.length;
+						if (name.equals("getColumnType"))
+							return types[(Integer) args[0] - 1];
+						if (name.equals("getColumnName") || name.equals("getColumnLabel"))
+							return "C" + args[0];
+						if (name.equals("getColumnTypeName"))
+							return "";
+						return null;
+					}
+				});
+		return (ResultSet) Proxy.newProxyInstance(ResultSetReaderBenchmark.class
+				.getClassLoader(), new Class[] { ResultSet.class }, new InvocationHandler() {
+
+			private int row = -1;
+
+			private boolean wasNull = false;
+
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				String name = method.getName();
+				if (name.equals("next"))
+					return ++row < rowCount;
+				if (name.equals("wasNull"))
+					return wasNull;
+				if (name.equals("getMetaData"))
+					return metaData;
+				if (args == null || args.length != 1 || !(args[0] instanceof Integer))
+					return null;
+				Object value = values[(Integer) args[0] - 1][row % VALUE_COUNT];
+				wasNull = value == null;
+				Class<?> type = method.getReturnType();
+				if (type == int.class)
+					return value == null ? 0 : ((Number) value).intValue();
+				if (type == long.class)
+					return value == null ? 0L : ((Number) value).longValue();
+				if (type == double.class)
+					return value == null ? 0.0 : ((Number) value).doubleValue();
+				if (type == String.class)
+					return value == null ? null : value.toString();
+				return value;
+			}
+		});
+	}
+
+	private interface Read {
+
+		/**
+		 * Read all rows, return the number of rows read.
+		 */
+		int read(ResultSet rs) throws SQLException;
+	}
+
+	/**
+	 * The former way of reading a row: for each cell the type is asked to the
+	 * metadata, and the value is read by getObject() then boxed again.
+	 */
+	private static class PerCellRead implements Read {
+
+		public int read(ResultSet rs) throws SQLException {
+			ResultSetMetaData md = rs.getMetaData();
+			int columnCount = md.getColumnCount();
+			int count = 0;
+			while (rs.next()) {
+				Object[] row = new Object[columnCount];
+				for (int i = 0; i < columnCount; i++)
+					row[i] = readCell(rs, md, i + 1);
+				count++;
+			}
+			return count;
+		}
+
+		private static Object readCell(ResultSet rs, ResultSetMetaData md, int idx)
+				throws SQLException {
+			Object value;
+			switch (md.getColumnType(idx)) {
+			case Types.TIMESTAMP:
+				return rs.getTimestamp(idx);
+			case Types.DATE:
+				return rs.getDate(idx);
+			case Types.BIGINT:
+				value = rs.getObject(idx);
+				if (value != null && !(value instanceof Long))
+					value = Long.valueOf(((Number) value).longValue());
+				return value;
+			case Types.DOUBLE:
+				value = rs.getObject(idx);
+				if (value != null && !(value instanceof Double))
+					value = new Double(((Number) value).doubleValue());
+				return value;
+			case Types.DECIMAL:
+				value = rs.getObject(idx);
+				if (value != null && !(value instanceof BigDecimal))
+					value = new BigDecimal(((Number) value).doubleValue());
+				return value;
+			case Types.INTEGER:
+			case Types.SMALLINT:
+				value = rs.getObject(idx);
+				if (rs.wasNull())
+					value = null;
+				if (value != null && !(value instanceof Integer))
+					value = Integer.valueOf(((Number) value).intValue());
+				return value;
+			default:
+				value = rs.getString(idx);
+				if (rs.wasNull())
+					value = null;
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Rows read as arrays by the column readers.
+	 */
+	private static class RowRead implements Read {
+
+		public int read(ResultSet rs) throws SQLException {
+			ResultSetReader reader = new ResultSetReader(rs, null, 2048, "");
+			int count = 0;
+			while (reader.readRow() != null)
+				count++;
+			return count;
+		}
+	}
+
+	/**
+	 * Rows read by the column readers into a sink which drops the values, so the
+	 * cost of reading is measured without the cost of storing.
+	 */
+	private static class DiscardingSinkRead implements Read, RowSink {
+
+		public int read(ResultSet rs) throws SQLException {
+			return new ResultSetReader(rs, null, 2048, "").readRows(0, this);
+		}
+
+		public void addInt(int column, int value) {
+		}
+
+		public void addLong(int column, long value) {
+		}
+
+		public void addDouble(int column, double value) {
+		}
+
+		public void addObject(int column, Object value) {
+		}
+
+		public void endRow() {
+		}
+	}
+
+	/**
+	 * Rows read by the column readers into a columnar store.
+	 */
+	private static class SinkRead implements Read {
+
+		private final int[] types;
+
+		SinkRead(int[] types) {
+			this.types = types;
+		}
+
+		public int read(ResultSet rs) throws SQLException {
+			ResultSetReader reader = new ResultSetReader(rs, null, 2048, "");
+			ResultStore store = new ResultStore(types);
+			return reader.readRows(0, store);
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package com.cattsoft.coolsql.sql.execute;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests grouping statements by their shape and executing batches in
+ * {@link BatchStatementExecute}.
+ *
+ * @author agent
+ */
+public class BatchStatementExecuteTest extends TestCase {
+
+	private BatchStatementExecute batch;
+
+	protected void setUp() {
+		batch = new BatchStatementExecute(null, 3, 0);
+	}
+
+	public void testLiteralsAreReplaced() {
+		assertEquals("INSERT INTO t ( a , b ) VALUES ( ? , ? )", batch
+				.getShape("insert into t (a, b) values (1, 'x')"));
+		assertEquals("UPDATE t SET a = ? WHERE b = ?", batch
+				.getShape("update t set a = 2.5 where b = 'q'"));
+		assertEquals("DELETE FROM t WHERE id = ?", batch.getShape("delete from t where id = 3"));
+	}
+
+	public void testStatementsOfSameValuesShape() {
+		String shape = batch.getShape("insert into t (a, b) values (1, 'x')");
+		assertEquals(shape, batch.getShape("INSERT INTO t (a,b) VALUES (22,'it''s')"));
+		assertFalse(shape.equals(batch.getShape("insert into u (a, b) values (1, 'x')")));
+		assertFalse(shape.equals(batch.getShape("insert into t (b, a) values (1, 'x')")));
+	}
+
+	public void testOtherStatementsAreNotBatched() {
+		assertNull(batch.getShape("select * from t"));
+		assertNull(batch.getShape("create table x (a int)"));
+		assertNull(batch.getShape(""));
+		assertNull(batch.getShape("insert into t values (1, 'unterminated"));
+	}
+
+	public void testBatchAcceptsOneShape() {
+		String insert = batch.getShape("insert into t values (1)");
+		String delete = batch.getShape("delete from t where id = 1");
+		assertTrue(batch.accept(delete));
+		batch.add("insert into t values (1)", insert, 4);
+		batch.add("insert into t values (2)", insert, 5);
+		assertTrue(batch.accept(insert));
+		assertFalse(batch.accept(delete));
+		assertFalse(batch.isFull());
+		batch.add("insert into t values (3)", insert, 6);
+		assertTrue(batch.isFull());
+		assertEquals(3, batch.size());
+		assertEquals(4, batch.getFirstLine());
+		assertEquals(6, batch.getLastLine());
+
+		batch.finish();
+		assertEquals(0, batch.size());
+		assertTrue(batch.accept(delete));
+	}
+
+	public void testBatchIsExecuted() {
+		Driver driver = new Driver(true, true);
+		BatchStatementExecute executer = newBatch(driver, true);
+		assertTrue(executer.execute());
+		assertEquals(Arrays.asList(ROWS), driver.executed);
+		assertEquals(1, driver.batchCount);
+		assertEquals(3, executer.getExecuteResultInfo().getTotalUpdateCount());
+
+		executer.finish();
+		assertEquals(3, driver.committedCount);
+		assertTrue(driver.isAutoCommit);
+	}
+
+	public void testBatchStopsAtFailureWhenDriverGoesOn() {
+		Driver driver = new Driver(true, true);
+		BatchStatementExecute executer = newBatch(driver, true, FAILED);
+		assertFalse(executer.execute());
+		assertEquals(Arrays.asList(ROWS[0]), driver.executed);
+		assertError(executer, FAILED);
+		assertTrue(executer.getRemainingStatements().isEmpty());
+
+		executer.finish();
+		assertEquals(1, driver.committedCount);
+		assertTrue(driver.isAutoCommit);
+	}
+
+	public void testBatchStopsAtFailureWithoutSavepoints() {
+		Driver driver = new Driver(true, false);
+		BatchStatementExecute executer = newBatch(driver, true, FAILED);
+		assertFalse(executer.execute());
+		assertEquals(Arrays.asList(ROWS[0]), driver.executed);
+		assertError(executer, FAILED);
+
+		executer.finish();
+		assertEquals(1, driver.committedCount);
+	}
+
+	public void testBatchStopsAtFailureWhenDriverStops() {
+		Driver driver = new Driver(false, true);
+		BatchStatementExecute executer = newBatch(driver, true, FAILED);
+		assertFalse(executer.execute());
+		assertEquals(Arrays.asList(ROWS[0]), driver.executed);
+		assertError(executer, FAILED);
+		assertTrue(executer.getRemainingStatements().isEmpty());
+	}
+
+	public void testRemainingStatementsWhenExecutionGoesOn() {
+		Driver driver = new Driver(false, true);
+		BatchStatementExecute executer = newBatch(driver, false, FAILED);
+		assertFalse(executer.execute());
+		assertEquals(Arrays.asList(ROWS[0]), driver.executed);
+		assertEquals(Arrays.asList(ROWS[2]), executer.getRemainingStatements());
+	}
+
+	private static final String[] ROWS = {"insert into t values (1)",
+			"insert into t values (2)", "insert into t values (3)"};
+
+	private static final String FAILED = "insert into t values (0)";
+
+	private BatchStatementExecute newBatch(Driver driver, boolean stopOnError) {
+		return newBatch(driver, stopOnError, ROWS[1]);
+	}
+
+	/**
+	 * A batch of the rows, the second one is replaced by the given statement.
+	 */
+	private BatchStatementExecute newBatch(Driver driver, boolean stopOnError, String second) {
+		BatchStatementExecute executer = new BatchStatementExecute(null, driver
+				.getConnection(), 10, 0);
+		executer.setStopOnError(stopOnError);
+		String shape = executer.getShape(ROWS[0]);
+		executer.add(ROWS[0], shape, 1);
+		executer.add(second, shape, 2);
+		executer.add(ROWS[2], shape, 3);
+		return executer;
+	}
+
+	private static void assertError(BatchStatementExecute executer, String sql) {
+		StatementRunnerResult result = executer.getExecuteResultInfo();
+		assertFalse(result.isSuccess());
+		assertTrue(result.getMessageBuffer().toString().indexOf(sql) >= 0);
+	}
+
+	/**
+	 * A JDBC connection which keeps the statements it has executed. A statement
+	 * which inserts 0 fails.
+	 */
+	private static class Driver implements InvocationHandler {
+
+		private final boolean goesOnAfterFailure;
+
+		private final boolean supportsSavepoints;
+
+		private final List<String> executed = new ArrayList<String>();
+
+		private final List<String> batch = new ArrayList<String>();
+
+		private int committedCount = 0;
+
+		private int batchCount = 0;
+
+		private boolean isAutoCommit = true;
+
+		Driver(boolean goesOnAfterFailure, boolean supportsSavepoints) {
+			this.goesOnAfterFailure = goesOnAfterFailure;
+			this.supportsSavepoints = supportsSavepoints;
+		}
+
+		Connection getConnection() {
+			return (Connection) proxy(Connection.class);
+		}
+
+		private Object proxy(Class<?> type) {
+			return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {type},
+					this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("getAutoCommit"))
+				return isAutoCommit;
+			if (name.equals("setAutoCommit")) {
+				isAutoCommit = (Boolean) args[0];
+				return null;
+			}
+			if (name.equals("getMetaData"))
+				return proxy(DatabaseMetaData.class);
+			if (name.equals("supportsSavepoints"))
+				return supportsSavepoints;
+			if (name.equals("createStatement"))
+				return proxy(Statement.class);
+			if (name.equals("setSavepoint")) {
+				assertTrue(supportsSavepoints);
+				final int size = executed.size();
+				return Proxy.newProxyInstance(getClass().getClassLoader(),
+						new Class[] {Savepoint.class}, new InvocationHandler() {
+							public Object invoke(Object proxy, Method method, Object[] args) {
+								return size;
+							}
+						});
+			}
+			if (name.equals("rollback")) {
+				int size = args == null ? committedCount : (Integer) ((Savepoint) args[0])
+						.getSavepointId();
+				executed.subList(size, executed.size()).clear();
+				return null;
+			}
+			if (name.equals("commit")) {
+				assertFalse(isAutoCommit);
+				committedCount = executed.size();
+				return null;
+			}
+			if (name.equals("addBatch")) {
+				batch.add((String) args[0]);
+				return null;
+			}
+			if (name.equals("clearBatch")) {
+				batch.clear();
+				return null;
+			}
+			if (name.equals("executeBatch"))
+				return executeBatch();
+			if (name.equals("executeUpdate")) {
+				String sql = (String) args[0];
+				if (sql.equals(FAILED))
+					throw new SQLException("failed");
+				executed.add(sql);
+				return 1;
+			}
+			if (name.equals("hashCode"))
+				return System.identityHashCode(proxy);
+			if (name.equals("equals"))
+				return proxy == args[0];
+			return null;
+		}
+
+		private int[] executeBatch() throws BatchUpdateException {
+			batchCount++;
+			List<Integer> counts = new ArrayList<Integer>();
+			boolean failed = false;
+			for (String sql : batch) {
+				if (sql.equals(FAILED)) {
+					failed = true;
+					if (!goesOnAfterFailure)
+						break;
+					counts.add(Statement.EXECUTE_FAILED);
+				} else {
+					executed.add(sql);
+					counts.add(1);
+				}
+			}
+			batch.clear();
+			if (isAutoCommit)
+				committedCount = executed.size();
+			int[] result = new int[counts.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = counts.get(i);
+			if (failed)
+				throw new BatchUpdateException("failed", result);
+			return result;
+		}
+	}
+}
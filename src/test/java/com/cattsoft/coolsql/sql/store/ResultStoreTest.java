@@ -0,0 +1,93 @@
+package com.cattsoft.coolsql.sql.store;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the heap taken by the rows of {@link ResultStore}, compared with the rows of
+ * a page as they were kept before: a row object wrapping a list of the values, and
+ * its copy in a Vector for the table model.
+ *
+ * @author agent
+ */
+public class ResultStoreTest extends TestCase {
+
+	private static final int ROW_COUNT = 10000;
+
+	/**
+	 * 20 columns of a typical result: numbers, dates, codes of few distinct values
+	 * and names.
+	 */
+	private static final int[] TYPES = { Types.INTEGER, Types.INTEGER, Types.INTEGER,
+			Types.INTEGER, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT,
+			Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.TIMESTAMP,
+			Types.TIMESTAMP, Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+			Types.VARCHAR, Types.VARCHAR };
+
+	private static final String[] CODES = { "NEW", "OPEN", "CLOSED", "ON HOLD" };
+
+	public void testMemoryPerRowIsAThirdOfRowCopies() {
+		ResultStore store = new ResultStore(TYPES);
+		long copiesSize = 0;
+		for (int i = 0; i < ROW_COUNT; i++) {
+			Object[] row = newRow(i);
+			store.addRow(row);
+			copiesSize += estimateRowCopies(row);
+		}
+		long memoryPerRow = store.getMemoryPerRow();
+		long copiesPerRow = copiesSize / ROW_COUNT;
+		assertTrue(memoryPerRow > 0);
+		assertTrue("store: " + memoryPerRow + " bytes per row, copies: " + copiesPerRow
+				+ " bytes per row", copiesPerRow >= 3 * memoryPerRow);
+	}
+
+	public void testValuesAreKept() {
+		ResultStore store = new ResultStore(TYPES);
+		for (int i = 0; i < ROW_COUNT; i++)
+			store.addRow(newRow(i));
+		assertEquals(ROW_COUNT, store.getRowCount());
+		Object[] expected = newRow(ROW_COUNT - 1);
+		for (int i = 0; i < TYPES.length; i++)
+			assertEquals(expected[i], store.getValue(ROW_COUNT - 1, i));
+	}
+
+	/**
+	 * Build a row as a driver reads it, each cell is a new object.
+	 */
+	private static Object[] newRow(int i) {
+		Object[] row = new Object[TYPES.length];
+		for (int c = 0; c < 4; c++)
+			row[c] = Integer.valueOf(i * 4 + c + 1000);
+		for (int c = 4; c < 8; c++)
+			row[c] = Long.valueOf(i * 100000L + c);
+		for (int c = 8; c < 12; c++)
+			row[c] = Double.valueOf(i + c / 10.0);
+		for (int c = 12; c < 15; c++)
+			row[c] = new Timestamp(1200000000000L + i * 60000L + c);
+		for (int c = 15; c < 18; c++)
+			row[c] = new String(CODES[(i + c) % CODES.length]);
+		row[18] = "customer " + i;
+		row[19] = "city " + (i % 977);
+		return row;
+	}
+
+	/**
+	 * Estimate the heap of a row kept as a row object wrapping Arrays.asList() of
+	 * the values in a list, and copied into a Vector of a Vector for the table model.
+	 * The values are shared by both copies.
+	 */
+	private static long estimateRowCopies(Object[] row) {
+		long size = 0;
+		for (int i = 0; i < row.length; i++)
+			size += ColumnStore.estimateSize(row[i]);
+		int arraySize = ColumnStore.ARRAY_HEADER + ColumnStore.REFERENCE_SIZE * row.length;
+		//The row object, the list of Arrays.asList() and its array, the reference of
+		//the list of rows
+		size += 24 + 16 + arraySize + ColumnStore.REFERENCE_SIZE;
+		//The Vector of the row, its array and the reference of the Vector of rows
+		size += 32 + arraySize + ColumnStore.REFERENCE_SIZE;
+		return size;
+	}
+}
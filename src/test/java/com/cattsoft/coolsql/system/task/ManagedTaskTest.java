@@ -0,0 +1,104 @@
+package com.cattsoft.coolsql.system.task;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests cancelling the tasks of {@link TaskExecutor}.
+ *
+ * @author agent
+ */
+public class ManagedTaskTest extends TestCase {
+
+	private TaskExecutor executor;
+
+	protected void setUp() {
+		//One batch task runs at a time, the second one waits
+		executor = new TaskExecutor(2, 1, 4);
+	}
+
+	public void testCancelledWaitingTaskNeverRuns() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		ManagedTask first = executor.createTask(new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "first", TaskExecutor.PRIORITY_BATCH, null);
+		final boolean[] hasRun = new boolean[1];
+		ManagedTask second = executor.createTask(new Runnable() {
+			public void run() {
+				hasRun[0] = true;
+			}
+		}, "second", TaskExecutor.PRIORITY_BATCH, null);
+		final boolean[] isDiscarded = new boolean[1];
+		second.setCancelAction(new Runnable() {
+			public void run() {
+				isDiscarded[0] = true;
+			}
+		});
+
+		first.start();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		second.start();
+		assertEquals(ManagedTask.STATE_WAITING, second.getState());
+
+		second.cancel();
+		assertEquals(ManagedTask.STATE_DONE, second.getState());
+		assertTrue(isDiscarded[0]);
+		assertEquals(1, executor.getRunningCount());
+		assertEquals(0, executor.getWaitingCount());
+
+		release.countDown();
+		first.getThread().join(5000);
+		assertEquals(ManagedTask.STATE_DONE, first.getState());
+		assertFalse(second.getThread().isAlive());
+		assertFalse(hasRun[0]);
+	}
+
+	public void testTaskCancelledBeforeStartNeverRuns() throws Exception {
+		final boolean[] hasRun = new boolean[1];
+		ManagedTask task = executor.createTask(new Runnable() {
+			public void run() {
+				hasRun[0] = true;
+			}
+		}, "task", TaskExecutor.PRIORITY_INTERACTIVE, null);
+		task.cancel();
+		task.start();
+		assertEquals(ManagedTask.STATE_DONE, task.getState());
+		assertEquals(0, executor.getWaitingCount());
+		assertFalse(hasRun[0]);
+	}
+
+	public void testCancelRunningTask() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final boolean[] isCancelled = new boolean[1];
+		final ManagedTask[] task = new ManagedTask[1];
+		task[0] = executor.createTask(new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				isCancelled[0] = task[0].isCancelled();
+			}
+		}, "task", TaskExecutor.PRIORITY_INTERACTIVE, null);
+		task[0].start();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		task[0].cancel();
+		release.countDown();
+		task[0].getThread().join(5000);
+		assertTrue(isCancelled[0]);
+		assertEquals(ManagedTask.STATE_DONE, task[0].getState());
+	}
+}
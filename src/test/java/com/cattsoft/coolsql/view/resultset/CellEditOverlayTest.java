@@ -0,0 +1,132 @@
+package com.cattsoft.coolsql.view.resultset;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the modified cells and deleted rows of {@link CellEditOverlay}.
+ *
+ * @author agent
+ */
+public class CellEditOverlayTest extends TestCase {
+
+	private CellEditOverlay edits;
+
+	protected void setUp() {
+		edits = new CellEditOverlay();
+	}
+
+	public void testPutGetRemove() {
+		assertNull(edits.put(3, 2, "a"));
+		assertEquals("a", edits.put(3, 2, "b"));
+		assertEquals("b", edits.get(3, 2));
+		assertTrue(edits.containsKey(3, 2));
+		assertFalse(edits.containsKey(2, 3));
+		assertEquals(1, edits.size());
+
+		assertEquals("b", edits.remove(3, 2));
+		assertFalse(edits.containsKey(3, 2));
+		assertTrue(edits.isEmpty());
+		assertEquals(-1, edits.nextDirtyRow(0));
+	}
+
+	public void testNullValueIsModification() {
+		edits.put(0, 0, null);
+		assertTrue(edits.containsKey(0, 0));
+		assertNull(edits.get(0, 0));
+		assertEquals(0, edits.nextDirtyRow(0));
+	}
+
+	public void testInvalidCell() {
+		try {
+			edits.put(-1, 0, "a");
+			fail("a negative row is accepted");
+		} catch (IllegalArgumentException e) {
+		}
+		assertFalse(edits.containsKey(-1, 0));
+	}
+
+	/**
+	 * Many cells grow the table and removing them moves back colliding keys, the
+	 * overlay must still match a plain map.
+	 */
+	public void testMatchesMap() {
+		Map<Long, Object> expected = new HashMap<Long, Object>();
+		Random random = new Random(7);
+		for (int i = 0; i < 20000; i++) {
+			int row = random.nextInt(500);
+			int column = random.nextInt(20);
+			Long key = Long.valueOf(((long) row << 32) | column);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), edits.remove(row, column));
+			} else {
+				Object value = Integer.valueOf(i);
+				assertEquals(expected.put(key, value), edits.put(row, column, value));
+			}
+		}
+		assertEquals(expected.size(), edits.size());
+		for (int row = 0; row < 500; row++) {
+			for (int column = 0; column < 20; column++) {
+				Long key = Long.valueOf(((long) row << 32) | column);
+				assertEquals(expected.containsKey(key), edits.containsKey(row, column));
+				assertEquals(expected.get(key), edits.get(row, column));
+			}
+		}
+	}
+
+	public void testDirtyRowsInOrder() {
+		edits.put(9, 1, "a");
+		edits.put(2, 4, "b");
+		edits.put(2, 0, "c");
+		edits.put(5, 3, "d");
+		assertEquals(3, edits.getDirtyRowCount());
+		assertEquals(2, edits.nextDirtyRow(0));
+		assertEquals(5, edits.nextDirtyRow(3));
+		assertEquals(9, edits.nextDirtyRow(6));
+		assertEquals(-1, edits.nextDirtyRow(10));
+
+		assertEquals(0, edits.nextModifiedColumn(2, 0));
+		assertEquals(4, edits.nextModifiedColumn(2, 1));
+		assertEquals(-1, edits.nextModifiedColumn(2, 5));
+		assertEquals(-1, edits.nextModifiedColumn(3, 0));
+
+		edits.remove(2, 0);
+		assertEquals(2, edits.nextDirtyRow(0));
+		edits.remove(2, 4);
+		assertEquals(5, edits.nextDirtyRow(0));
+	}
+
+	public void testDeletedRows() {
+		assertTrue(edits.markDeleted(4));
+		assertFalse(edits.markDeleted(4));
+		assertTrue(edits.markDeleted(1));
+		assertTrue(edits.isDeleted(4));
+		assertEquals(2, edits.getDeletedCount());
+		assertEquals(1, edits.nextDeletedRow(0));
+		assertEquals(4, edits.nextDeletedRow(2));
+		assertTrue(edits.hasChanges());
+
+		assertTrue(edits.cancelDeleted(1));
+		assertFalse(edits.cancelDeleted(1));
+		assertFalse(edits.isDeleted(1));
+		assertEquals(1, edits.getDeletedCount());
+	}
+
+	public void testClearKeepsDeletedRows() {
+		for (int i = 0; i < 100; i++)
+			edits.put(i, i % 3, "v" + i);
+		edits.markDeleted(7);
+		edits.clear();
+		assertTrue(edits.isEmpty());
+		assertEquals(-1, edits.nextDirtyRow(0));
+		assertFalse(edits.containsKey(1, 1));
+		assertTrue(edits.isDeleted(7));
+		assertTrue(edits.hasChanges());
+
+		edits.put(1, 1, "a");
+		assertEquals("a", edits.get(1, 1));
+	}
+}